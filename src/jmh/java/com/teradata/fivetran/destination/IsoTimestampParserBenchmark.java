@@ -0,0 +1,42 @@
+package com.teradata.fivetran.destination;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.teradata.fivetran.destination.writers.util.IsoTimestampParser;
+
+/**
+ * Compares the ISO timestamp parser against formatISODateTime followed by getTimestampFromObject,
+ * the path timestamp cells took before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IsoTimestampParserBenchmark {
+    @Param({"2024-01-02T03:04:05.123456789Z", "2024-01-02T03:04:05Z", "2024-01-02T03:04:05.123"})
+    public String text;
+
+    @Benchmark
+    public Timestamp formatAndValueOf() {
+        return TeradataJDBCUtil.getTimestampFromObject(TeradataJDBCUtil.formatISODateTime(text));
+    }
+
+    @Benchmark
+    public Timestamp isoTimestampParser() {
+        return IsoTimestampParser.parse(text);
+    }
+}
@@ -0,0 +1,79 @@
+package com.teradata.fivetran.destination;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The transaction the apply steps of a writeBatch run in when transactional.apply is enabled.
+ *
+ * In auto-commit mode every DELETE, INSERT ... SELECT and row-level UPDATE commits on its own and
+ * flushes the transient journal, and a failed step leaves the target half-applied. With the
+ * transaction, the steps commit once and a failure rolls all of them back. Auto-commit is turned
+ * off, as for alterTable and migrate; the Teradata JDBC driver brackets the requests with BT and
+ * ET in TERA mode and commits with COMMIT in ANSI mode.
+ *
+ * Staging loads run before the transaction, and so does the widening of VARCHAR columns of the
+ * target, since Teradata needs DDL to end a transaction: the staging writers widen while they
+ * load, and the update files, which are not staged, are scanned for their longest values first.
+ */
+public class ApplyTransaction implements AutoCloseable {
+    private final Connection conn;
+    private final boolean active;
+    private boolean done = false;
+
+    private ApplyTransaction(Connection conn, boolean active) {
+        this.conn = conn;
+        this.active = active;
+    }
+
+    /**
+     * Starts the transaction of the apply steps.
+     *
+     * @param conn    The connection the apply steps run on.
+     * @param enabled Whether the steps run in one transaction; if not, the steps commit on their own.
+     * @throws SQLException If auto-commit cannot be turned off.
+     */
+    public static ApplyTransaction begin(Connection conn, boolean enabled) throws SQLException {
+        if (enabled) {
+            Logger.logMessage(Logger.LogLevel.INFO, "Applying the batch in one transaction");
+            conn.setAutoCommit(false);
+        }
+        return new ApplyTransaction(conn, enabled);
+    }
+
+    /**
+     * Commits the apply steps.
+     *
+     * @throws SQLException If the commit fails; the steps are then rolled back.
+     */
+    public void commit() throws SQLException {
+        if (active) {
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+        done = true;
+    }
+
+    /**
+     * Rolls the apply steps back unless they were committed, and turns auto-commit on again for
+     * the cleanup of the staging tables.
+     */
+    @Override
+    public void close() {
+        if (!active || done) {
+            return;
+        }
+        done = true;
+        try {
+            conn.rollback();
+            Logger.logMessage(Logger.LogLevel.WARNING, "Rolled back the apply steps of the batch");
+        } catch (SQLException e) {
+            Logger.logMessage(Logger.LogLevel.SEVERE, "Failed to roll back the apply steps of the batch: " + e.getMessage());
+        }
+        try {
+            conn.setAutoCommit(true);
+        } catch (SQLException e) {
+            Logger.logMessage(Logger.LogLevel.WARNING, "Failed to turn auto-commit on again: " + e.getMessage());
+        }
+    }
+}
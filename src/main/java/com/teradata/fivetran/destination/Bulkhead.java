@@ -0,0 +1,230 @@
+package com.teradata.fivetran.destination;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the gRPC calls of one kind on at most a fixed number of threads of an executor.
+ *
+ * Control calls, which Fivetran expects to answer within seconds, and heavy calls, which load or
+ * rewrite tables for minutes, get a bulkhead each, so that many syncs at once cannot make
+ * describeTable wait behind writeBatch. Every running call holds at most a few Teradata sessions,
+ * so the limit of a bulkhead is also its quota of sessions.
+ *
+ * Tasks beyond the limit wait in the queue of the bulkhead. A running task that waits for
+ * something else, such as the turn of its table, leaves its place to a queued task while it waits
+ * (see {@link #releaseWhile}) and takes a place again, ahead of the queue, once it is done
+ * waiting. The executor therefore needs a thread beyond the limit for each task waiting this way.
+ * The queue depth and the time tasks waited are logged every minute while the bulkhead is used.
+ */
+public class Bulkhead implements Executor {
+    // RPCs that return quickly and must not queue behind loads; all others are heavy
+    private static final Set<String> CONTROL_METHODS = new HashSet<>(Arrays.asList(
+            "ConfigurationForm", "Capabilities", "Test", "DescribeTable", "CreateTable"));
+
+    // The bulkhead of the task running on the current thread
+    private static final ThreadLocal<Bulkhead> CURRENT = new ThreadLocal<>();
+
+    private static final ScheduledExecutorService REPORTER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "bulkhead-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String name;
+    private final int limit;
+    private final Executor executor;
+    private final Semaphore permits;
+    private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+    // Tasks that left their place while they wait, and those of them taking a place again
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger resuming = new AtomicInteger();
+
+    // Counters since the last report
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * @param name     The name of the bulkhead in the logs.
+     * @param limit    The number of tasks that run at once.
+     * @param executor The executor that runs the tasks.
+     */
+    public Bulkhead(String name, int limit, Executor executor) {
+        this.name = name;
+        this.limit = limit;
+        this.executor = executor;
+        this.permits = new Semaphore(limit);
+    }
+
+    /**
+     * Returns whether an RPC is a control call rather than a heavy one.
+     *
+     * @param methodName The bare method name of the RPC, for example "DescribeTable".
+     */
+    public static boolean isControl(String methodName) {
+        return CONTROL_METHODS.contains(methodName);
+    }
+
+    /**
+     * Logs the queue depth and wait times of the bulkheads every minute while they are used.
+     */
+    public static void report(Bulkhead... bulkheads) {
+        REPORTER.scheduleAtFixedRate(() -> {
+            for (Bulkhead bulkhead : bulkheads) {
+                bulkhead.log();
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * A wait of a running task.
+     */
+    public interface Wait<T> {
+        T await() throws InterruptedException;
+    }
+
+    /**
+     * Runs a wait of the task running on the current thread without holding its place in the
+     * bulkhead, so that queued tasks may run meanwhile. Outside of a bulkhead the wait just runs.
+     *
+     * @param wait The wait, for example for the turn of a table.
+     * @return The result of the wait.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public static <T> T releaseWhile(Wait<T> wait) throws InterruptedException {
+        Bulkhead bulkhead = CURRENT.get();
+        return bulkhead == null ? wait.await() : bulkhead.awaitReleased(wait);
+    }
+
+    private <T> T awaitReleased(Wait<T> wait) throws InterruptedException {
+        waiting.incrementAndGet();
+        permits.release();
+        dispatch();
+        // Waits nested in this one do not leave the place again
+        CURRENT.remove();
+        try {
+            return wait.await();
+        } finally {
+            CURRENT.set(this);
+            // Resuming tasks take the next free place before queued ones; the task releases it when it ends
+            resuming.incrementAndGet();
+            try {
+                permits.acquireUninterruptibly();
+            } finally {
+                resuming.decrementAndGet();
+                waiting.decrementAndGet();
+            }
+            dispatch();
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        queue.add(new Task(command));
+        dispatch();
+    }
+
+    // Hands queued tasks to the executor while permits are free and no waiting task resumes
+    private void dispatch() {
+        while (!queue.isEmpty() && resuming.get() == 0 && permits.tryAcquire()) {
+            Task task = queue.poll();
+            if (task == null) {
+                permits.release();
+                continue;
+            }
+            try {
+                executor.execute(task);
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of tasks running, not counting those that left their place while they wait.
+     */
+    public int getRunning() {
+        return limit - permits.availablePermits();
+    }
+
+    /**
+     * Returns the number of tasks that left their place while they wait.
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * Waits until no task of the bulkhead runs, waits or is queued.
+     *
+     * @return Whether the bulkhead became idle before the timeout passed.
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (getRunning() > 0 || getWaiting() > 0 || getQueueDepth() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(100);
+        }
+        return true;
+    }
+
+    private void log() {
+        long count = started.getAndSet(0);
+        long wait = waitNanos.getAndSet(0);
+        long maxWait = maxWaitNanos.getAndSet(0);
+        int depth = getQueueDepth();
+        int waitingTasks = getWaiting();
+        if (count == 0 && depth == 0 && waitingTasks == 0) {
+            return;
+        }
+        Logger.logMessage(Logger.LogLevel.INFO, String.format(
+                "Bulkhead %s: running %d/%d, waiting %d, queued %d, %d tasks started in the last minute, average wait %d ms, max wait %d ms",
+                name, getRunning(), limit, waitingTasks, depth, count, count == 0 ? 0 : wait / count / 1000000, maxWait / 1000000));
+    }
+
+    private final class Task implements Runnable {
+        private final Runnable command;
+        private final long queuedAt = System.nanoTime();
+
+        Task(Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            long waited = System.nanoTime() - queuedAt;
+            started.incrementAndGet();
+            waitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            CURRENT.set(Bulkhead.this);
+            try {
+                command.run();
+            } finally {
+                CURRENT.remove();
+                permits.release();
+                dispatch();
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.teradata.fivetran.destination;
+
+import io.grpc.Context;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Ties the Teradata statements of a gRPC call to the cancellation of the call.
+ *
+ * When Fivetran cancels a call, or its deadline passes, gRPC only cancels the context of the call;
+ * the thread running it would go on loading files into Teradata for nothing. The scope of a call
+ * listens to its context, cancels the statements running on the connections it tracks, and lets
+ * the loops of the writers stop before their next row.
+ *
+ * The interceptor opens a scope on the thread that runs each call; code below it reaches the scope
+ * with {@link #current()}. Outside of a call, {@code current()} returns a scope that is never cancelled.
+ */
+public class CancellationScope implements Context.CancellationListener, AutoCloseable {
+    private static final ThreadLocal<CancellationScope> CURRENT = new ThreadLocal<>();
+    private static final CancellationScope NONE = new CancellationScope("none", null);
+
+    private final String rpc;
+    private final Context context;
+    // Statements created on tracked connections; weak, so closed statements are not kept alive
+    private final Set<Statement> statements = Collections.newSetFromMap(new WeakHashMap<>());
+    private volatile boolean cancelled = false;
+
+    private CancellationScope(String rpc, Context context) {
+        this.rpc = rpc;
+        this.context = context;
+    }
+
+    /**
+     * Opens the scope of a call on the current thread, listening to the current gRPC context.
+     *
+     * @param rpc The name of the call, for the logs.
+     */
+    public static CancellationScope open(String rpc) {
+        CancellationScope scope = new CancellationScope(rpc, Context.current());
+        scope.context.addListener(scope, Runnable::run);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Returns the scope of the call running on the current thread.
+     */
+    public static CancellationScope current() {
+        CancellationScope scope = CURRENT.get();
+        return scope == null ? NONE : scope;
+    }
+
+    /**
+     * Returns a connection whose statements are cancelled with the call.
+     */
+    public Connection track(Connection conn) {
+        if (this == NONE || conn == null) {
+            return conn;
+        }
+        return (Connection) Proxy.newProxyInstance(CancellationScope.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Statement) {
+                        register((Statement) result);
+                    }
+                    return result;
+                });
+    }
+
+    // Statements created after the cancellation are not cancelled, they drop the staging tables
+    private void register(Statement stmt) {
+        synchronized (statements) {
+            statements.add(stmt);
+        }
+    }
+
+    @Override
+    public void cancelled(Context context) {
+        cancelled = true;
+        Throwable cause = context.cancellationCause();
+        Logger.logMessage(Logger.LogLevel.WARNING, String.format("Call %s was cancelled (%s), cancelling its statements",
+                rpc, cause == null ? "no cause" : cause.getMessage()));
+        List<Statement> running;
+        synchronized (statements) {
+            running = new ArrayList<>(statements);
+        }
+        for (Statement stmt : running) {
+            cancel(stmt);
+        }
+    }
+
+    private void cancel(Statement stmt) {
+        try {
+            if (!stmt.isClosed()) {
+                stmt.cancel();
+            }
+        } catch (SQLException e) {
+            Logger.logMessage(Logger.debugLogLevel, "Failed to cancel a statement of " + rpc + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns whether the call was cancelled or its deadline passed.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Throws if the call was cancelled, so that loops stop before their next row.
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Call " + rpc + " was cancelled");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this == NONE) {
+            return;
+        }
+        context.removeListener(this);
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Returns the interceptor that opens a scope around every call.
+     */
+    public static ServerInterceptor interceptor() {
+        return new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                         ServerCallHandler<ReqT, RespT> next) {
+                String rpc = call.getMethodDescriptor().getBareMethodName();
+                return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(next.startCall(call, headers)) {
+                    // Unary calls run in onHalfClose, on the thread of the call and with its context attached
+                    @Override
+                    public void onHalfClose() {
+                        // Calls cancelled while they waited for a thread, for example at shutdown, do not start
+                        if (Context.current().isCancelled()) {
+                            Logger.logMessage(Logger.LogLevel.WARNING, "Call " + rpc + " was cancelled before it started");
+                            return;
+                        }
+                        try (CancellationScope scope = open(rpc)) {
+                            super.onHalfClose();
+                        }
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package com.teradata.fivetran.destination;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Executors of the gRPC server that depend on the Java version.
+ *
+ * When the jar is built with JDK 21 it is multi-release: on Java 21 and later the class of the
+ * same name under META-INF/versions/21, built from src/main/java21, replaces this one. A jar built
+ * with an older JDK has this class only, and virtual threads are not available.
+ */
+public class ServerExecutors {
+
+    private ServerExecutors() {
+    }
+
+    /**
+     * Returns an executor that runs every task on a new virtual thread.
+     *
+     * @return The executor, or null if the JVM has no virtual threads.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        return null;
+    }
+}
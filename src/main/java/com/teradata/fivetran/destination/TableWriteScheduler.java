@@ -0,0 +1,283 @@
+package com.teradata.fivetran.destination;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the calls that change a table one after the other, in the order they arrived, and calls on
+ * different tables in parallel up to a global limit.
+ *
+ * writeBatch, alterTable and truncate on the same table would otherwise take conflicting table
+ * locks, DELETE against INSERT SELECT against ALTER, and end in Teradata deadlock aborts. A call
+ * takes a ticket of its table and waits for its turn before it opens a session, so waiting calls
+ * do not hold sessions either. While they wait they also leave their place in the bulkhead to
+ * other calls.
+ *
+ * The number of calls waiting for each table is logged every minute while calls wait.
+ */
+public class TableWriteScheduler {
+    private static final ScheduledExecutorService REPORTER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "table-scheduler-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // How often waiting calls check whether they were cancelled
+    private static final long POLL_MILLIS = 1000;
+
+    private final Map<String, TableQueue> queues = new ConcurrentHashMap<>();
+    private final int limit;
+    private final Semaphore tables;
+
+    /**
+     * @param parallelTables The number of tables that are changed at once.
+     */
+    public TableWriteScheduler(int parallelTables) {
+        this.limit = Math.max(1, parallelTables);
+        this.tables = new Semaphore(limit, true);
+    }
+
+    /**
+     * Waits until the call may change a table. The permit must be closed when the call is done.
+     *
+     * @param rpc      The name of the call, for the logs.
+     * @param database The database of the table.
+     * @param table    The table.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     * @throws java.util.concurrent.CancellationException If the call was cancelled while waiting.
+     */
+    public Permit acquire(String rpc, String database, String table) throws InterruptedException {
+        return take(rpc, database, table).await();
+    }
+
+    /**
+     * Takes the place of a call among the calls on a table, without waiting for its turn. The
+     * ticket must be awaited, or closed if the call gives up.
+     *
+     * @param rpc      The name of the call, for the logs.
+     * @param database The database of the table.
+     * @param table    The table.
+     */
+    public Ticket take(String rpc, String database, String table) {
+        // Teradata object names are not case sensitive
+        String key = (database + "." + table).toLowerCase(Locale.ROOT);
+        long[] ticket = new long[1];
+        TableQueue queue = queues.compute(key, (k, q) -> {
+            TableQueue result = q == null ? new TableQueue() : q;
+            ticket[0] = result.enqueue();
+            return result;
+        });
+        return new Ticket(rpc, database, table, key, queue, ticket[0]);
+    }
+
+    private void release(String key) {
+        queues.computeIfPresent(key, (k, q) -> q.advance() ? null : q);
+    }
+
+    /**
+     * Returns the number of calls running or waiting on a table.
+     */
+    public int getQueueDepth(String database, String table) {
+        TableQueue queue = queues.get((database + "." + table).toLowerCase(Locale.ROOT));
+        return queue == null ? 0 : queue.depth();
+    }
+
+    /**
+     * Logs the queue depth of the tables with waiting calls every minute.
+     */
+    public void report() {
+        REPORTER.scheduleAtFixedRate(() -> {
+            Map<String, Integer> waiting = new TreeMap<>();
+            queues.forEach((key, queue) -> {
+                int depth = queue.depth();
+                if (depth > 1) {
+                    waiting.put(key, depth - 1);
+                }
+            });
+            if (!waiting.isEmpty()) {
+                Logger.logMessage(Logger.LogLevel.INFO, String.format("Tables changed at once: %d/%d, calls waiting per table: %s",
+                        limit - tables.availablePermits(), limit, waiting));
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * The place of a call among the calls on its table.
+     */
+    public final class Ticket implements AutoCloseable {
+        private final String rpc;
+        private final String database;
+        private final String table;
+        private final String key;
+        private final TableQueue queue;
+        private final long number;
+        private boolean used = false;
+
+        private Ticket(String rpc, String database, String table, String key, TableQueue queue, long number) {
+            this.rpc = rpc;
+            this.database = database;
+            this.table = table;
+            this.key = key;
+            this.queue = queue;
+            this.number = number;
+        }
+
+        /**
+         * Returns whether no call on the table took a ticket after this one.
+         */
+        public boolean isLatest() {
+            return queue.isLatest(number);
+        }
+
+        /**
+         * Waits for the turn of the call. The permit must be closed when the call is done.
+         *
+         * @throws InterruptedException If the thread was interrupted while waiting.
+         * @throws java.util.concurrent.CancellationException If the call was cancelled while waiting.
+         */
+        public Permit await() throws InterruptedException {
+            if (used) {
+                throw new IllegalStateException("The ticket was already used");
+            }
+            used = true;
+            CancellationScope cancellation = CancellationScope.current();
+            int ahead = queue.ahead(number);
+            if (ahead > 0) {
+                Logger.logMessage(Logger.LogLevel.INFO, String.format("%s on %s waits for %d earlier calls on the table",
+                        rpc, TeradataJDBCUtil.escapeTable(database, table), ahead));
+            }
+            if (ahead == 0) {
+                boolean acquired;
+                try {
+                    // A zero timeout keeps the fairness of the semaphore, unlike tryAcquire()
+                    acquired = tables.tryAcquire(0, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    release(key);
+                    throw e;
+                }
+                if (acquired) {
+                    return new Permit(key);
+                }
+            }
+            // The call leaves its place in the bulkhead to other calls while it waits
+            return Bulkhead.releaseWhile(() -> awaitTurn(cancellation));
+        }
+
+        private Permit awaitTurn(CancellationScope cancellation) throws InterruptedException {
+            try {
+                queue.awaitTurn(number, cancellation);
+            } catch (InterruptedException | RuntimeException e) {
+                abandon();
+                throw e;
+            }
+            try {
+                while (!tables.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    cancellation.checkCancelled();
+                }
+            } catch (InterruptedException | RuntimeException e) {
+                release(key);
+                throw e;
+            }
+            return new Permit(key);
+        }
+
+        /**
+         * Gives up the place of a call that did not wait for its turn.
+         */
+        @Override
+        public void close() {
+            if (!used) {
+                used = true;
+                abandon();
+            }
+        }
+
+        private void abandon() {
+            queues.computeIfPresent(key, (k, q) -> q.abandon(number) ? null : q);
+        }
+    }
+
+    /**
+     * The turn of a call on its table; closing it lets the next call on the table run.
+     */
+    public final class Permit implements AutoCloseable {
+        private final String key;
+        private boolean closed = false;
+
+        private Permit(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            tables.release();
+            release(key);
+        }
+    }
+
+    /**
+     * Tickets of the calls on one table. The call whose ticket is served runs, the others wait.
+     * Calls that give up waiting leave their ticket behind, and it is skipped when its turn comes.
+     */
+    private static final class TableQueue {
+        private long next = 0;
+        private long serving = 0;
+        private final Set<Long> abandoned = new HashSet<>();
+
+        synchronized long enqueue() {
+            return next++;
+        }
+
+        synchronized int ahead(long ticket) {
+            return (int) (ticket - serving);
+        }
+
+        synchronized boolean isLatest(long ticket) {
+            return next == ticket + 1;
+        }
+
+        synchronized void awaitTurn(long ticket, CancellationScope cancellation) throws InterruptedException {
+            while (serving != ticket) {
+                cancellation.checkCancelled();
+                wait(POLL_MILLIS);
+            }
+        }
+
+        // Serves the next ticket and returns whether the queue is empty
+        synchronized boolean advance() {
+            serving++;
+            skipAbandoned();
+            notifyAll();
+            return serving == next;
+        }
+
+        // Leaves a ticket that is still waiting and returns whether the queue is empty
+        synchronized boolean abandon(long ticket) {
+            abandoned.add(ticket);
+            skipAbandoned();
+            notifyAll();
+            return serving == next;
+        }
+
+        private void skipAbandoned() {
+            while (abandoned.remove(serving)) {
+                serving++;
+            }
+        }
+
+        synchronized int depth() {
+            return (int) (next - serving) - abandoned.size();
+        }
+    }
+}
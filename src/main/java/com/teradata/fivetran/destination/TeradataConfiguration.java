@@ -18,7 +18,20 @@ public class TeradataConfiguration {
     private final String sslServerCert;
     private final String driverParameters;
     private final Integer batchSize;
+    private final long batchMaxBytes;
+    private final boolean adaptiveBatchSize;
+    private final int batchSizeMin;
+    private final int batchSizeMax;
     private final String queryBand;
+    private final Long fastLoadCheckpointInterval;
+    private final boolean failOnRejectedRows;
+    private final boolean unifiedApply;
+    private final boolean parallelStaging;
+    private final boolean transactionalApply;
+    private final int multiStatementSize;
+    private final int statementCacheSize;
+    private final long coalesceWindowMs;
+    private final long coalesceMaxBytes;
 
     /**
      * Constructs a TeradataConfiguration object using the provided configuration map.
@@ -41,7 +54,20 @@ public class TeradataConfiguration {
         this.sslServerCert = getOrDefault(conf.get("ssl.server.cert"), null);
         this.driverParameters = getOrDefault(conf.get("driver.parameters"), null);
         this.batchSize = Integer.valueOf(getOrDefault(conf.get("batch.size"), "10000"));
+        this.batchMaxBytes = Long.parseLong(getOrDefault(conf.get("batch.max.bytes"), "16777216"));
+        this.adaptiveBatchSize = Boolean.parseBoolean(getOrDefault(conf.get("batch.size.adaptive"), "false"));
+        this.batchSizeMin = Integer.parseInt(getOrDefault(conf.get("batch.size.min"), "1000"));
+        this.batchSizeMax = Integer.parseInt(getOrDefault(conf.get("batch.size.max"), "100000"));
         this.queryBand = getOrDefault(conf.get("query.band"), "org=teradata-internal-telem;appname=fivetran;");
+        this.fastLoadCheckpointInterval = Long.valueOf(getOrDefault(conf.get("fastload.checkpoint.interval"), "1000000"));
+        this.failOnRejectedRows = "fail".equalsIgnoreCase(getOrDefault(conf.get("fastload.rejected.rows"), "warn"));
+        this.unifiedApply = Boolean.parseBoolean(getOrDefault(conf.get("unified.apply"), "false"));
+        this.parallelStaging = Boolean.parseBoolean(getOrDefault(conf.get("parallel.staging"), "false"));
+        this.transactionalApply = Boolean.parseBoolean(getOrDefault(conf.get("transactional.apply"), "false"));
+        this.multiStatementSize = Integer.parseInt(getOrDefault(conf.get("multi.statement.size"), "16"));
+        this.statementCacheSize = Integer.parseInt(getOrDefault(conf.get("statement.cache.size"), "32"));
+        this.coalesceWindowMs = Long.parseLong(getOrDefault(conf.get("coalesce.window.ms"), "0"));
+        this.coalesceMaxBytes = Long.parseLong(getOrDefault(conf.get("coalesce.max.bytes"), "16777216"));
     }
 
     /**
@@ -129,12 +155,135 @@ public class TeradataConfiguration {
         return batchSize;
     }
 
+    /**
+     * Returns the estimated size in bytes of a batch after which it is executed, even if it has
+     * fewer rows than the batch size.
+     *
+     * @return The batch byte budget.
+     */
+    public long batchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    /**
+     * Returns whether the batch size of replace loads follows the measured throughput of each batch.
+     *
+     * @return true if the batch size is adaptive.
+     */
+    public boolean adaptiveBatchSize() {
+        return adaptiveBatchSize;
+    }
+
+    /**
+     * Returns the smallest batch size the adaptive batch size goes down to.
+     *
+     * @return The minimum batch size.
+     */
+    public int batchSizeMin() {
+        return batchSizeMin;
+    }
+
+    /**
+     * Returns the largest batch size the adaptive batch size goes up to.
+     *
+     * @return The maximum batch size.
+     */
+    public int batchSizeMax() {
+        return batchSizeMax;
+    }
+
     public boolean useFastLoad() {
         return useFastLoad;
     }
 
     public String queryBand(){ return queryBand; }
 
+    /**
+     * Returns the number of rows each FastLoad session sends between two checkpoints.
+     * 0 disables interval checkpoints and FastLoad restart.
+     *
+     * @return The FastLoad checkpoint interval.
+     */
+    public Long fastLoadCheckpointInterval() {
+        return fastLoadCheckpointInterval;
+    }
+
+    /**
+     * Returns whether a batch fails when rows FastLoad rejected cannot be loaded. Otherwise each
+     * such row is reported as a warning and kept in the FastLoad error tables.
+     *
+     * @return true if rejected rows fail the batch.
+     */
+    public boolean failOnRejectedRows() {
+        return failOnRejectedRows;
+    }
+
+    /**
+     * Returns whether replace, update and delete files are staged together and applied in one pass.
+     *
+     * @return true if unified apply is enabled.
+     */
+    public boolean unifiedApply() {
+        return unifiedApply;
+    }
+
+    /**
+     * Returns whether the replace, update and delete files of a unified apply are staged at once,
+     * each kind on a session of its own.
+     *
+     * @return true if parallel staging is enabled.
+     */
+    public boolean parallelStaging() {
+        return parallelStaging;
+    }
+
+    /**
+     * Returns whether the apply steps of a writeBatch run in one transaction.
+     *
+     * @return true if transactional apply is enabled.
+     */
+    public boolean transactionalApply() {
+        return transactionalApply;
+    }
+
+    /**
+     * Returns the maximum number of per-row statements that are sent in one multi-statement request.
+     *
+     * @return The multi-statement request size.
+     */
+    public int multiStatementSize() {
+        return multiStatementSize;
+    }
+
+    /**
+     * Returns the maximum number of prepared statements a call keeps open for reuse.
+     *
+     * @return The statement cache size.
+     */
+    public int statementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Returns how long small replace-only batches of a table are held to be merged together;
+     * 0 turns coalescing off.
+     *
+     * @return The coalescing window in milliseconds.
+     */
+    public long coalesceWindowMs() {
+        return coalesceWindowMs;
+    }
+
+    /**
+     * Returns the size of the files up to which batches are coalesced, for a single batch and for
+     * the batches merged together.
+     *
+     * @return The coalescing size threshold in bytes.
+     */
+    public long coalesceMaxBytes() {
+        return coalesceMaxBytes;
+    }
+
     public Object sslCrc() {
         return sslCrc;
     }
@@ -1,9 +1,17 @@
 package com.teradata.fivetran.destination;
 
+import fivetran_sdk.v2.BatchFileFormat;
 import io.grpc.*;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 import org.apache.commons.cli.*;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Example Plugin Connector (gRPC server)
@@ -26,10 +34,32 @@ public class TeradataDestination {
         // Create Options object
         Options options = new Options();
         options.addOption("p", "port", true, "Port to run the gRPC server");
+        options.addOption(null, "executor", true,
+                "Executor of the gRPC calls: fixed (default), virtual (Java 21 and later) or cached");
+        options.addOption(null, "executor-threads", true, "Number of threads of the fixed executor. Default is 64");
+        options.addOption(null, "control-calls", true,
+                "Number of configurationForm, capabilities, test, describeTable and createTable calls that run at once. Default is 8");
+        options.addOption(null, "heavy-calls", true,
+                "Number of writeBatch, migrate and other table-changing calls that run at once. Default is 32");
+        options.addOption(null, "parallel-tables", true,
+                "Number of tables changed at once; calls on the same table always run one after the other. Default is 32");
+        options.addOption(null, "max-concurrent-calls", true,
+                "Maximum number of calls a client connection runs at once; further calls wait. Default is unlimited");
+        options.addOption(null, "max-inbound-message-size", true, "Maximum size in bytes of a request message. Default is 4194304");
+        options.addOption(null, "flow-control-window", true, "HTTP/2 flow control window in bytes. Default is 1048576");
+        options.addOption(null, "keepalive-time-seconds", true, "Seconds without activity after which the server pings the client");
+        options.addOption(null, "keepalive-timeout-seconds", true, "Seconds the server waits for a ping reply before closing the connection");
+        options.addOption(null, "permit-keepalive-time-seconds", true, "Shortest interval in seconds at which clients may send pings");
+        options.addOption(null, "shutdown-grace-seconds", true,
+                "Seconds running calls get to finish when the server is stopped, before they are cancelled. Default is 30");
+        options.addOption(null, "shutdown-cleanup-seconds", true,
+                "Seconds cancelled calls get to end their FastLoad jobs and drop their staging tables. Default is 15");
+        options.addOption(null, "batch-file-format", true,
+                "Format of the batch files requested from Fivetran: csv (default) or parquet");
 
         // Parse command line arguments
         CommandLineParser parser = new DefaultParser();
-        CommandLine cmd;
+        CommandLine cmd = null;
         int port = 50052; // Default port
 
         try {
@@ -41,17 +71,172 @@ public class TeradataDestination {
             System.err.println("Invalid port number, using default port 50052");
         }
 
+        NettyServerBuilder builder = NettyServerBuilder.forPort(port);
+
+        // A bounded executor keeps concurrent syncs from growing into a thread, and a Teradata
+        // session, per call
+        String executorName = getOption(cmd, "executor", "fixed");
+        ExecutorService executor = null;
+        if (executorName.equalsIgnoreCase("virtual")) {
+            executor = ServerExecutors.newVirtualThreadPerTaskExecutor();
+            if (executor == null) {
+                System.err.println("Virtual threads need Java 21 or later and a jar built with JDK 21, using the fixed executor");
+                executorName = "fixed";
+            }
+        }
+        if (executorName.equalsIgnoreCase("fixed")) {
+            executor = Executors.newFixedThreadPool(getIntOption(cmd, "executor-threads", 64));
+        } else if (executor == null && !executorName.equalsIgnoreCase("cached")) {
+            System.err.println("Unknown executor " + executorName + ", using the cached executor of gRPC");
+        }
+        if (executor != null) {
+            builder.executor(executor);
+        }
+
+        // Control and heavy calls run in separate bulkheads, so loads cannot starve describeTable
+        int controlCalls = getIntOption(cmd, "control-calls", 8);
+        int heavyCalls = getIntOption(cmd, "heavy-calls", 32);
+        Bulkhead control = new Bulkhead("control", controlCalls, bulkheadExecutor(executorName, executor, controlCalls));
+        Bulkhead heavy = new Bulkhead("heavy", heavyCalls, bulkheadExecutor(executorName, executor, heavyCalls));
+        builder.callExecutor(new ServerCallExecutorSupplier() {
+            @Override
+            public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+                return Bulkhead.isControl(call.getMethodDescriptor().getBareMethodName()) ? control : heavy;
+            }
+        });
+        Bulkhead.report(control, heavy);
+
+        // Calls on the same table run in arrival order, so they do not deadlock on table locks
+        TableWriteScheduler scheduler = new TableWriteScheduler(getIntOption(cmd, "parallel-tables",
+                TeradataDestinationServiceImpl.DEFAULT_PARALLEL_TABLES));
+        scheduler.report();
+
+        int maxConcurrentCalls = getIntOption(cmd, "max-concurrent-calls", 0);
+        if (maxConcurrentCalls > 0) {
+            builder.maxConcurrentCallsPerConnection(maxConcurrentCalls);
+        }
+        int maxInboundMessageSize = getIntOption(cmd, "max-inbound-message-size", 0);
+        if (maxInboundMessageSize > 0) {
+            builder.maxInboundMessageSize(maxInboundMessageSize);
+        }
+        int flowControlWindow = getIntOption(cmd, "flow-control-window", 0);
+        if (flowControlWindow > 0) {
+            builder.flowControlWindow(flowControlWindow);
+        }
+        int keepAliveTime = getIntOption(cmd, "keepalive-time-seconds", 0);
+        if (keepAliveTime > 0) {
+            builder.keepAliveTime(keepAliveTime, TimeUnit.SECONDS);
+        }
+        int keepAliveTimeout = getIntOption(cmd, "keepalive-timeout-seconds", 0);
+        if (keepAliveTimeout > 0) {
+            builder.keepAliveTimeout(keepAliveTimeout, TimeUnit.SECONDS);
+        }
+        int permitKeepAliveTime = getIntOption(cmd, "permit-keepalive-time-seconds", 0);
+        if (permitKeepAliveTime > 0) {
+            builder.permitKeepAliveTime(permitKeepAliveTime, TimeUnit.SECONDS);
+        }
+
+        String batchFileFormat = getOption(cmd, "batch-file-format", "csv");
+        if (!batchFileFormat.equalsIgnoreCase("csv") && !batchFileFormat.equalsIgnoreCase("parquet")) {
+            throw new IllegalArgumentException("Unknown batch file format: " + batchFileFormat);
+        }
+        Logger.logMessage(Logger.LogLevel.INFO, "Requesting " + batchFileFormat.toLowerCase() + " batch files");
+
         // Create and start the gRPC server on the specified port
-        Server server = ServerBuilder
-                .forPort(port)
-                .addService(new TeradataDestinationServiceImpl())
+        Server server = builder
+                // Cancelled calls and passed deadlines cancel the Teradata statements of the call
+                .addService(ServerInterceptors.intercept(new TeradataDestinationServiceImpl(scheduler,
+                        batchFileFormat.equalsIgnoreCase("parquet") ? BatchFileFormat.PARQUET : BatchFileFormat.CSV), CancellationScope.interceptor()))
                 .build();
 
         // Start the server
         server.start();
-        System.out.println("Destination gRPC server started on port " + port);
+        System.out.println("Destination gRPC server started on port " + port + " with the " + executorName + " executor");
+
+        // A stopped container drains its calls instead of leaving FastLoad-locked and staging tables behind
+        int graceSeconds = getIntOption(cmd, "shutdown-grace-seconds", 30);
+        int cleanupSeconds = getIntOption(cmd, "shutdown-cleanup-seconds", 15);
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> shutdown(server, graceSeconds, cleanupSeconds, control, heavy), "shutdown"));
 
         // Wait for the server to terminate
         server.awaitTermination();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Stops the server without leaving half-loaded tables behind.
+     *
+     * New calls are refused at once and running calls get the grace period to finish. Calls still
+     * running after it are cancelled: their statements are cancelled, FastLoad jobs run END LOADING
+     * and staging tables are dropped before the sessions of the calls close, for which the calls get
+     * the cleanup period.
+     */
+    private static void shutdown(Server server, int graceSeconds, int cleanupSeconds, Bulkhead... bulkheads) {
+        Logger.logMessage(Logger.LogLevel.INFO, "Shutting down, running calls get " + graceSeconds + " seconds to finish");
+        server.shutdown();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(graceSeconds);
+            if (!server.awaitTermination(graceSeconds, TimeUnit.SECONDS) || !awaitIdle(deadline, bulkheads)) {
+                Logger.logMessage(Logger.LogLevel.WARNING, "Cancelling the calls still running after " + graceSeconds + " seconds");
+                server.shutdownNow();
+                // Calls clean up after the gRPC stream is closed, so the bulkheads tell when they are done
+                if (!awaitIdle(System.nanoTime() + TimeUnit.SECONDS.toNanos(cleanupSeconds), bulkheads)) {
+                    Logger.logMessage(Logger.LogLevel.WARNING, "Calls did not finish their cleanup within " + cleanupSeconds + " seconds");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Logger.logMessage(Logger.LogLevel.INFO, "Shutdown complete");
+    }
+
+    /**
+     * Waits until the bulkheads are idle or the deadline, a System.nanoTime value, passes.
+     */
+    private static boolean awaitIdle(long deadline, Bulkhead... bulkheads) throws InterruptedException {
+        for (Bulkhead bulkhead : bulkheads) {
+            if (!bulkhead.awaitIdle(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the executor of a bulkhead: a pool of its own with the fixed executor, the shared
+     * executor otherwise. The pool keeps a thread per place of the bulkhead and adds threads only
+     * for calls that left their place while they wait for their table.
+     */
+    private static Executor bulkheadExecutor(String executorName, ExecutorService executor, int limit) {
+        if (executorName.equalsIgnoreCase("fixed")) {
+            return new ThreadPoolExecutor(limit, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+        }
+        return executor != null ? executor : Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Returns the value of an option, or the default value if it is not given.
+     */
+    private static String getOption(CommandLine cmd, String name, String defaultValue) {
+        return cmd == null ? defaultValue : cmd.getOptionValue(name, defaultValue);
+    }
+
+    /**
+     * Returns the value of a numeric option, or the default value if it is not given or not a number.
+     */
+    private static int getIntOption(CommandLine cmd, String name, int defaultValue) {
+        String value = getOption(cmd, name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value " + value + " of --" + name + ", using the default");
+            return defaultValue;
+        }
     }
-}
\ No newline at end of file
+}
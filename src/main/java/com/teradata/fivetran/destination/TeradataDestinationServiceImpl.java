@@ -6,22 +6,71 @@ import com.teradata.fivetran.destination.warning_util.MigrateWarningHandler;
 import com.teradata.fivetran.destination.warning_util.WarningHandler;
 import com.teradata.fivetran.destination.warning_util.WriteBatchWarningHandler;
 import com.teradata.fivetran.destination.writers.*;
+import com.teradata.fivetran.destination.writers.util.PreparedStatementCache;
+import com.teradata.fivetran.destination.writers.util.VarcharWidener;
 import fivetran_sdk.v2.*;
 import io.grpc.stub.StreamObserver;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Implementation of the gRPC service for Teradata destination connector.
  */
 public class TeradataDestinationServiceImpl extends DestinationConnectorGrpc.DestinationConnectorImplBase {
+    // Calls that change a table at once by default, which is also the default number of heavy calls
+    static final int DEFAULT_PARALLEL_TABLES = 32;
+    // Threads that stage the update and delete files of parallel staging, shared by all calls
+    private static final ExecutorService STAGERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "parallel-stager");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final TableWriteScheduler scheduler;
+    private final BatchFileFormat batchFileFormat;
+    private final WriteBatchCoalescer<WriteBatchRequest, WriteBatchResponse> coalescer;
+
+    /**
+     * Creates the service with the default number of tables changed at once.
+     */
+    public TeradataDestinationServiceImpl() {
+        this(new TableWriteScheduler(DEFAULT_PARALLEL_TABLES));
+    }
+
+    /**
+     * Creates the service that requests CSV batch files.
+     *
+     * @param scheduler Serializes the calls that change the same table.
+     */
+    public TeradataDestinationServiceImpl(TableWriteScheduler scheduler) {
+        this(scheduler, BatchFileFormat.CSV);
+    }
+
+    /**
+     * @param scheduler       Serializes the calls that change the same table.
+     * @param batchFileFormat The format of the batch files the capabilities request from Fivetran.
+     */
+    public TeradataDestinationServiceImpl(TableWriteScheduler scheduler, BatchFileFormat batchFileFormat) {
+        this.scheduler = scheduler;
+        this.coalescer = new WriteBatchCoalescer<>(scheduler);
+        this.batchFileFormat = batchFileFormat;
+    }
 
     /**
      * Handles the configuration form request.
@@ -383,6 +432,159 @@ public class TeradataDestinationServiceImpl extends DestinationConnectorGrpc.Des
                 .setPlaceholder("your_batch_size")
                 .build();
 
+        FormField batchMaxBytes = FormField.newBuilder()
+                .setName("batch.max.bytes")
+                .setLabel("Batch Max Bytes")
+                .setRequired(false)
+                .setDescription("Estimated size in bytes of a batch of rows after which it is sent to Teradata, even if it has fewer rows than the batch size.<br />" +
+                        "Keeps batches of wide rows within the request size of the driver. Default is 16777216 (16 MB)")
+                .setTextField(TextField.PlainText)
+                .setPlaceholder("your_batch_max_bytes")
+                .build();
+
+        FormField adaptiveBatchSize = FormField.newBuilder()
+                .setName("batch.size.adaptive")
+                .setLabel("Adaptive Batch Size")
+                .setRequired(false)
+                .setDescription(
+                        "Specifies whether the batch size of replace loads follows the measured throughput of each batch.<br />"
+                                + "It starts at the batch size and moves between the minimum and maximum batch size.<br />"
+                                + "The size reached for a table is reused by its next sync while the connector runs.<br />"
+                )
+                .setDropdownField(DropdownField.newBuilder()
+                        .addDropdownField("false")
+                        .addDropdownField("true")
+                )
+                .build();
+
+        FormField batchSizeMin = FormField.newBuilder()
+                .setName("batch.size.min")
+                .setLabel("Minimum Batch Size")
+                .setRequired(false)
+                .setDescription("Smallest number of rows in a batch when the batch size is adaptive. Default is 1000")
+                .setTextField(TextField.PlainText)
+                .setPlaceholder("your_min_batch_size")
+                .build();
+
+        FormField batchSizeMax = FormField.newBuilder()
+                .setName("batch.size.max")
+                .setLabel("Maximum Batch Size")
+                .setRequired(false)
+                .setDescription("Largest number of rows in a batch when the batch size is adaptive. Default is 100000")
+                .setTextField(TextField.PlainText)
+                .setPlaceholder("your_max_batch_size")
+                .build();
+
+        FormField fastLoadCheckpointInterval = FormField.newBuilder()
+                .setName("fastload.checkpoint.interval")
+                .setLabel("FastLoad Checkpoint Interval")
+                .setRequired(false)
+                .setDescription("Number of rows each FastLoad session loads between two checkpoints.<br />" +
+                        "If a FastLoad fails, the retry resumes from the last checkpoint instead of reloading all files.<br />" +
+                        "Set to 0 to disable checkpoints. Default is 1000000")
+                .setTextField(TextField.PlainText)
+                .setPlaceholder("your_checkpoint_interval")
+                .build();
+
+        FormField fastLoadRejectedRows = FormField.newBuilder()
+                .setName("fastload.rejected.rows")
+                .setLabel("FastLoad Rejected Rows")
+                .setRequired(false)
+                .setDescription(
+                        "What to do with rows FastLoad rejected that cannot be loaded on a second attempt either.<br />"
+                                + "warn: report each row as a warning, keep it in the FastLoad error tables and let the batch succeed.<br />"
+                                + "fail: fail the batch. Default is warn<br />"
+                )
+                .setDropdownField(DropdownField.newBuilder()
+                        .addDropdownField("warn")
+                        .addDropdownField("fail")
+                )
+                .build();
+
+        FormField unifiedApply = FormField.newBuilder()
+                .setName("unified.apply")
+                .setLabel("Unified Apply")
+                .setRequired(false)
+                .setDescription(
+                        "Specifies whether replace, update and delete files of a batch are loaded into a single staging table<br />"
+                                + "and applied to the target with a few set-based statements instead of row-by-row updates and deletes.<br />"
+                                + "Not used together with FastLoad.<br />"
+                )
+                .setDropdownField(DropdownField.newBuilder()
+                        .addDropdownField("false")
+                        .addDropdownField("true")
+                )
+                .build();
+
+        FormField parallelStaging = FormField.newBuilder()
+                .setName("parallel.staging")
+                .setLabel("Parallel Staging")
+                .setRequired(false)
+                .setDescription(
+                        "Specifies whether the replace, update and delete files of a batch are staged at once, each kind on a session of its own,<br />"
+                                + "before they are applied in order. Used with Unified Apply; a batch then uses up to three sessions.<br />"
+                )
+                .setDropdownField(DropdownField.newBuilder()
+                        .addDropdownField("false")
+                        .addDropdownField("true")
+                )
+                .build();
+
+        FormField transactionalApply = FormField.newBuilder()
+                .setName("transactional.apply")
+                .setLabel("Transactional Apply")
+                .setRequired(false)
+                .setDescription(
+                        "Specifies whether the apply steps of a batch, the merge of the replace rows and the updates and deletes,<br />"
+                                + "run in one transaction that commits once and is rolled back as a whole when a step fails.<br />"
+                                + "Staging loads are not part of the transaction.<br />"
+                )
+                .setDropdownField(DropdownField.newBuilder()
+                        .addDropdownField("false")
+                        .addDropdownField("true")
+                )
+                .build();
+
+        FormField multiStatementSize = FormField.newBuilder()
+                .setName("multi.statement.size")
+                .setLabel("Multi-Statement Request Size")
+                .setRequired(false)
+                .setDescription("Maximum number of row-level UPDATE and DELETE statements sent to Teradata in one multi-statement request.<br />" +
+                        "Set to 1 to send every statement on its own. Default is 16")
+                .setTextField(TextField.PlainText)
+                .setPlaceholder("your_multi_statement_size")
+                .build();
+
+        FormField statementCacheSize = FormField.newBuilder()
+                .setName("statement.cache.size")
+                .setLabel("Statement Cache Size")
+                .setRequired(false)
+                .setDescription("Maximum number of prepared row-level statements kept open for reuse while a table is written.<br />" +
+                        "Default is 32")
+                .setTextField(TextField.PlainText)
+                .setPlaceholder("your_statement_cache_size")
+                .build();
+
+        FormField coalesceWindowMs = FormField.newBuilder()
+                .setName("coalesce.window.ms")
+                .setLabel("Coalescing Window (ms)")
+                .setRequired(false)
+                .setDescription("Time small replace-only batches of the same table are held to be loaded and merged together.<br />" +
+                        "Every batch is answered after the shared merge commits. Default is 0, which turns coalescing off")
+                .setTextField(TextField.PlainText)
+                .setPlaceholder("your_coalesce_window_ms")
+                .build();
+
+        FormField coalesceMaxBytes = FormField.newBuilder()
+                .setName("coalesce.max.bytes")
+                .setLabel("Coalescing Size Threshold")
+                .setRequired(false)
+                .setDescription("Size in bytes of the batch files up to which batches are coalesced; the merge starts early<br />" +
+                        "once the held batches reach it. Default is 16777216 (16 MB)")
+                .setTextField(TextField.PlainText)
+                .setPlaceholder("your_coalesce_max_bytes")
+                .build();
+
         FormField queryBand = FormField.newBuilder()
                 .setName("query.band")
                 .setLabel("Query Band")
@@ -401,7 +603,9 @@ public class TeradataDestinationServiceImpl extends DestinationConnectorGrpc.Des
                 .addAllFields(Arrays.asList(
                         host, logmech, TD2Logmech, LDAPLogmech, database, tmode,
                         varcharCharacterSet, defaultVarcharSize, useFastLoad, sslMode, sslVerifyCa,
-                        sslVerifyFull, driverParameters, BatchSize, queryBand
+                        sslVerifyFull, driverParameters, BatchSize, batchMaxBytes, adaptiveBatchSize, batchSizeMin, batchSizeMax,
+                        fastLoadCheckpointInterval, fastLoadRejectedRows, unifiedApply, parallelStaging, transactionalApply,
+                        multiStatementSize, statementCacheSize, coalesceWindowMs, coalesceMaxBytes, queryBand
                 ))
                 .addAllTests(Arrays.asList(
                         ConfigurationTest.newBuilder().setName("connect").setLabel("Tests connection").build()
@@ -414,7 +618,7 @@ public class TeradataDestinationServiceImpl extends DestinationConnectorGrpc.Des
                              StreamObserver<CapabilitiesResponse> responseObserver) {
         responseObserver.onNext(CapabilitiesResponse
                 .newBuilder()
-                .setBatchFileFormat(BatchFileFormat.CSV)
+                .setBatchFileFormat(batchFileFormat)
                 .build());
         responseObserver.onCompleted();
     }
@@ -537,8 +741,11 @@ public class TeradataDestinationServiceImpl extends DestinationConnectorGrpc.Des
                            StreamObserver<AlterTableResponse> responseObserver) {
         Logger.logMessage(Logger.LogLevel.INFO,"#########################alterTable#############################################################");
         TeradataConfiguration conf = new TeradataConfiguration(request.getConfigurationMap());
+        String database = TeradataJDBCUtil.getDatabaseName(conf, request.getSchemaName());
+        String table = TeradataJDBCUtil.getTableName(request.getSchemaName(), request.getTable().getName());
         String query = "";
-        try (Connection conn = TeradataJDBCUtil.createConnection(conf);
+        try (TableWriteScheduler.Permit permit = scheduler.acquire("AlterTable", database, table);
+             Connection conn = TeradataJDBCUtil.createConnection(conf);
              Statement stmt = conn.createStatement()) {
             // ANSI mode requires explicit COMMIT after DDL, so commit per query
             // and ensure cleanup queries on failure are also committed.
@@ -600,7 +807,11 @@ public class TeradataDestinationServiceImpl extends DestinationConnectorGrpc.Des
     public void migrate(MigrateRequest request, StreamObserver<MigrateResponse> responseObserver) {
         Logger.logMessage(Logger.LogLevel.INFO, "Migrate request received");
         TeradataConfiguration conf = new TeradataConfiguration(request.getConfigurationMap());
-        try (Connection conn = TeradataJDBCUtil.createConnection(conf)) {
+        String database = TeradataJDBCUtil.getDatabaseName(conf, request.getDetails().getSchema());
+        String table = TeradataJDBCUtil.getTableName(request.getDetails().getSchema(),
+                request.getDetails().getTable());
+        try (TableWriteScheduler.Permit permit = scheduler.acquire("Migrate", database, table);
+             Connection conn = TeradataJDBCUtil.createConnection(conf)) {
             // ANSI mode requires COMMIT after DDL before any DML can execute,
             // so we commit after each query rather than batching into one transaction.
             conn.setAutoCommit(false);
@@ -643,9 +854,6 @@ public class TeradataDestinationServiceImpl extends DestinationConnectorGrpc.Des
             responseObserver.onNext(MigrateResponse.newBuilder().setSuccess(true).build());
             responseObserver.onCompleted();
         } catch (Exception e) {
-            String database = TeradataJDBCUtil.getDatabaseName(conf, request.getDetails().getSchema());
-            String table = TeradataJDBCUtil.getTableName(request.getDetails().getSchema(),
-                    request.getDetails().getTable());
             Logger.logMessage(Logger.LogLevel.WARNING, String.format("Migrate failed for %s with exception %s",
                     TeradataJDBCUtil.escapeTable(database, table), e));
 
@@ -671,7 +879,8 @@ public class TeradataDestinationServiceImpl extends DestinationConnectorGrpc.Des
         String database = TeradataJDBCUtil.getDatabaseName(conf, request.getSchemaName());
         String table = TeradataJDBCUtil.getTableName(request.getSchemaName(), request.getTableName());
         String query = "";
-        try (Connection conn = TeradataJDBCUtil.createConnection(conf);
+        try (TableWriteScheduler.Permit permit = scheduler.acquire("Truncate", database, table);
+             Connection conn = TeradataJDBCUtil.createConnection(conf);
              Statement stmt = conn.createStatement()) {
             if (!TeradataJDBCUtil.checkTableExists(stmt, database, table)) {
                 Logger.logMessage(Logger.LogLevel.WARNING, String.format("Table %s doesn't exist", TeradataJDBCUtil.escapeTable(database, table)));
@@ -721,62 +930,243 @@ public class TeradataDestinationServiceImpl extends DestinationConnectorGrpc.Des
         TeradataConfiguration conf = new TeradataConfiguration(request.getConfigurationMap());
         String database = TeradataJDBCUtil.getDatabaseName(conf, request.getSchemaName());
         String table = TeradataJDBCUtil.getTableName(request.getSchemaName(), request.getTable().getName());
+        long bytes = coalescableBytes(conf, request);
+        if (bytes < 0) {
+            writeBatch(conf, request, responseObserver, false, scheduler.take("WriteBatch", database, table));
+            return;
+        }
+
+        // Requests that differ only in their replace files and keys are merged
+        WriteBatchRequest key = request.toBuilder().clearReplaceFiles().clearKeys().build();
+        WriteBatchCoalescer<WriteBatchRequest, WriteBatchResponse>.Group group =
+                coalescer.join("WriteBatch", database, table, key, request, bytes, conf.coalesceMaxBytes());
+        if (!group.ledBy(request)) {
+            Logger.logMessage(Logger.LogLevel.INFO, "WriteBatch on " + TeradataJDBCUtil.escapeTable(database, table)
+                    + " is coalesced with earlier batches of the table");
+            try {
+                for (WriteBatchResponse response : group.await()) {
+                    responseObserver.onNext(response);
+                }
+            } catch (Exception e) {
+                Logger.logMessage(Logger.LogLevel.SEVERE, String.format("Coalesced WriteBatch failed for %s with exception %s",
+                        TeradataJDBCUtil.escapeTable(database, table), e.getMessage()));
+                responseObserver.onNext(WriteBatchResponse.newBuilder()
+                        .setTask(Task.newBuilder()
+                                .setMessage("writeBatch :: Table: " + TeradataJDBCUtil.escapeTable(database, table) + ", Error: " + e.getMessage()).build())
+                        .build());
+            }
+            responseObserver.onCompleted();
+            return;
+        }
+
+        // The responses of the merged batch, Task responses included, answer the coalesced calls too
+        List<WriteBatchResponse> responses = new ArrayList<>();
+        String error = "The coalesced batch was not written";
+        try {
+            List<WriteBatchRequest> requests = group.close(conf.coalesceWindowMs());
+            WriteBatchRequest.Builder merged = request.toBuilder().clearReplaceFiles().clearKeys();
+            for (WriteBatchRequest r : requests) {
+                merged.addAllReplaceFiles(r.getReplaceFilesList());
+                merged.putAllKeys(r.getKeysMap());
+            }
+            if (requests.size() > 1) {
+                Logger.logMessage(Logger.LogLevel.INFO, String.format("Coalesced %d batches of %s into one",
+                        requests.size(), TeradataJDBCUtil.escapeTable(database, table)));
+            }
+            writeBatch(conf, merged.build(), new StreamObserver<WriteBatchResponse>() {
+                @Override
+                public void onNext(WriteBatchResponse response) {
+                    responses.add(response);
+                    responseObserver.onNext(response);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    responseObserver.onError(t);
+                }
+
+                @Override
+                public void onCompleted() {
+                    responseObserver.onCompleted();
+                }
+            }, requests.size() > 1, group.ticket());
+            error = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Interrupted while waiting for batches to coalesce";
+            Logger.logMessage(Logger.LogLevel.SEVERE, String.format("WriteBatch failed for %s with exception %s",
+                    TeradataJDBCUtil.escapeTable(database, table), error));
+            responseObserver.onNext(WriteBatchResponse.newBuilder()
+                    .setTask(Task.newBuilder()
+                            .setMessage("writeBatch :: Table: " + TeradataJDBCUtil.escapeTable(database, table) + ", Error: " + error).build())
+                    .build());
+            responseObserver.onCompleted();
+        } finally {
+            // Gives up the turn of the group on the table if the merged batch did not take it
+            group.ticket().close();
+            group.complete(responses, error);
+        }
+    }
+
+    /**
+     * Returns the size of the replace files of a batch that can be coalesced with other small
+     * batches of its table, or -1 if it is written on its own.
+     *
+     * Only batches with replace files alone are coalesced, since their rows can be staged together
+     * with the rows of a later batch winning; FastLoad is left out, as it loads into an empty table.
+     */
+    private long coalescableBytes(TeradataConfiguration conf, WriteBatchRequest request) {
+        if (conf.coalesceWindowMs() <= 0 || conf.useFastLoad() || request.getReplaceFilesList().isEmpty()
+                || !request.getUpdateFilesList().isEmpty() || !request.getDeleteFilesList().isEmpty()) {
+            return -1;
+        }
+        long bytes = 0;
+        try {
+            for (String file : request.getReplaceFilesList()) {
+                bytes += Files.size(Paths.get(file));
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return bytes <= conf.coalesceMaxBytes() ? bytes : -1;
+    }
+
+    /**
+     * Writes a batch.
+     *
+     * @param conf The configuration of the batch.
+     * @param request The write batch request.
+     * @param responseObserver The response observer to send the response.
+     * @param coalesced Whether the batch merges several batches, whose replace rows are then staged
+     *                  together and deduplicated with the rows of the later batches winning.
+     * @param ticket The place of the batch among the calls on its table, taken when the call arrived.
+     */
+    private void writeBatch(TeradataConfiguration conf, WriteBatchRequest request,
+                            StreamObserver<WriteBatchResponse> responseObserver, boolean coalesced,
+                            TableWriteScheduler.Ticket ticket) {
+        String database = TeradataJDBCUtil.getDatabaseName(conf, request.getSchemaName());
+        String table = TeradataJDBCUtil.getTableName(request.getSchemaName(), request.getTable().getName());
         LoadDataWriter w = null;
         FastLoadDataWriter fw = null;
-        try (Connection conn = TeradataJDBCUtil.createConnection(conf)) {
-            if (request.getTable().getColumnsList().stream()
-                    .noneMatch(column -> column.getPrimaryKey())) {
-                throw new Exception("No primary key found");
-            }
+        UnifiedApplyWriter uw = null;
+        try (TableWriteScheduler.Permit permit = ticket.await();
+             Connection conn = TeradataJDBCUtil.createConnection(conf);
+             // Prepared per-row statements are reused by all files and writers of the call
+             PreparedStatementCache statements = new PreparedStatementCache(conn, conf.statementCacheSize())) {
+            try {
+                if (request.getTable().getColumnsList().stream()
+                        .noneMatch(column -> column.getPrimaryKey())) {
+                    throw new Exception("No primary key found");
+                }
 
-            setTimeZoneToUTCIfNeeded(conn);
+                setTimeZoneToUTCIfNeeded(conn);
+
+                if ((conf.unifiedApply() || coalesced) && !conf.useFastLoad()) {
+                    Logger.logMessage(Logger.LogLevel.INFO, "********************************In UnifiedApplyWriter**********************************");
+                    WarningHandler warningHandler = new WriteBatchWarningHandler(responseObserver);
+                    uw = newUnifiedApplyWriter(conf, conn, database, table, request, warningHandler);
+                    if (conf.parallelStaging()) {
+                        stageInParallel(conf, uw, database, table, request, warningHandler);
+                    } else {
+                        uw.stage(UnifiedApplyWriter.OP_REPLACE, request.getReplaceFilesList());
+                        uw.stage(UnifiedApplyWriter.OP_UPDATE, request.getUpdateFilesList());
+                        uw.stage(UnifiedApplyWriter.OP_DELETE, request.getDeleteFilesList());
+                    }
+                    try (ApplyTransaction tx = ApplyTransaction.begin(conn, conf.transactionalApply())) {
+                        uw.apply();
+                        tx.commit();
+                    }
 
-            Logger.logMessage(Logger.LogLevel.INFO, "********************************In LoadDataWriter**********************************");
-            Logger.logMessage(Logger.LogLevel.INFO, "Start: Timestamp: " + System.currentTimeMillis());
-            Logger.logMessage(Logger.LogLevel.INFO, "No. of files to be written: " + request.getReplaceFilesList().size());
+                    responseObserver.onNext(WriteBatchResponse.newBuilder().setSuccess(true).build());
+                    responseObserver.onCompleted();
+                    Logger.logMessage(Logger.LogLevel.INFO, "End: Timestamp: " + System.currentTimeMillis());
+                    return;
+                }
 
-            if (conf.useFastLoad()) {
-                fw = new FastLoadDataWriter(conf, conn, database, table, request.getTable().getColumnsList(),
-                        request.getFileParams(), request.getKeysMap(), conf.batchSize());
-                fw.writeData(request.getReplaceFilesList());
-                if (!request.getReplaceFilesList().isEmpty()) {
-                    fw.deleteInsert();
-                    fw.dropTempTable();
+                Logger.logMessage(Logger.LogLevel.INFO, "********************************In LoadDataWriter**********************************");
+                Logger.logMessage(Logger.LogLevel.INFO, "Start: Timestamp: " + System.currentTimeMillis());
+                Logger.logMessage(Logger.LogLevel.INFO, "No. of files to be written: " + request.getReplaceFilesList().size());
+
+                if (conf.useFastLoad()) {
+                    fw = new FastLoadDataWriter(conf, conn, database, table, request.getTable().getColumnsList(),
+                            request.getFileParams(), request.getKeysMap(), conf.batchSize(),
+                            new WriteBatchWarningHandler(responseObserver));
+                    fw.writeData(request.getReplaceFilesList());
+                } else {
+                    w = new LoadDataWriter(conn, database, table, request.getTable().getColumnsList(),
+                            request.getFileParams(), request.getKeysMap(), conf.batchSize(),
+                            new WriteBatchWarningHandler(responseObserver));
+                    w.setBatchMaxBytes(conf.batchMaxBytes());
+                    if (conf.adaptiveBatchSize()) {
+                        w.setAdaptiveBatchSize(conf.batchSizeMin(), conf.batchSizeMax());
+                    }
+                    for (String file : request.getReplaceFilesList()) {
+                        w.write(file);
+                    }
+                }
+
+                if (conf.transactionalApply() && !request.getUpdateFilesList().isEmpty()) {
+                    // Widening commits, so the columns the updates need are widened before the transaction
+                    VarcharLengthScanner scanner = new VarcharLengthScanner(conn, database, table,
+                            request.getTable().getColumnsList(), request.getFileParams(), request.getKeysMap(),
+                            conf.batchSize());
+                    for (String file : request.getUpdateFilesList()) {
+                        scanner.write(file);
+                    }
+                    scanner.widen(new VarcharWidener(database, table));
+                }
+
+                // The apply steps run in one transaction with transactional.apply; the staging
+                // tables are dropped after it, in the finally block
+                try (ApplyTransaction tx = ApplyTransaction.begin(conn, conf.transactionalApply())) {
+                    if (!request.getReplaceFilesList().isEmpty()) {
+                        if (fw != null) {
+                            fw.deleteInsert();
+                        } else {
+                            w.deleteInsert();
+                        }
+                    }
+
+                    Logger.logMessage(Logger.LogLevel.INFO, "********************************In UpdateWriter**********************************");
+                    UpdateWriter u =
+                            new UpdateWriter(conn, database, table, request.getTable().getColumnsList(),
+                                    request.getFileParams(), request.getKeysMap(), conf.batchSize());
+                    u.setMultiStatementSize(conf.multiStatementSize());
+                    u.setStatementCache(statements);
+                    Logger.logMessage(Logger.LogLevel.INFO, "No. of files to be updated: " + request.getUpdateFilesList().size());
+                    for (String file : request.getUpdateFilesList()) {
+                        u.write(file);
+                    }
+                    Logger.logMessage(Logger.LogLevel.INFO, "********************************In DeleteWriter**********************************");
+                    DeleteWriter d =
+                            new DeleteWriter(conn, database, table, request.getTable().getColumnsList(),
+                                    request.getFileParams(), request.getKeysMap(), conf.batchSize());
+                    Logger.logMessage(Logger.LogLevel.INFO, "No. of files to be deleted: " + request.getDeleteFilesList().size());
+                    for (String file : request.getDeleteFilesList()) {
+                        d.write(file);
+                    }
+                    tx.commit();
+                }
+                if (fw != null && !request.getReplaceFilesList().isEmpty()) {
                     fw.dropErrorTables();
                 }
-            } else {
-                w = new LoadDataWriter(conn, database, table, request.getTable().getColumnsList(),
-                        request.getFileParams(), request.getKeysMap(), conf.batchSize(),
-                        new WriteBatchWarningHandler(responseObserver));
-                for (String file : request.getReplaceFilesList()) {
-                    w.write(file);
+
+                responseObserver.onNext(WriteBatchResponse.newBuilder().setSuccess(true).build());
+                responseObserver.onCompleted();
+                Logger.logMessage(Logger.LogLevel.INFO, "End: Timestamp: " + System.currentTimeMillis());
+            } finally {
+                // Staging tables are dropped before the connection closes, also when the call failed or was cancelled
+                if (uw != null) {
+                    uw.dropTempTable();
                 }
-                if (!request.getReplaceFilesList().isEmpty()) {
-                    w.deleteInsert();
+                if (w != null && !request.getReplaceFilesList().isEmpty()) {
                     w.dropTempTable();
                 }
+                if (conf.useFastLoad() && fw != null && !request.getReplaceFilesList().isEmpty()) {
+                    // Error tables are kept when the load failed, for the analysis of the rejected rows
+                    fw.dropTempTable();
+                }
             }
-
-            Logger.logMessage(Logger.LogLevel.INFO, "********************************In UpdateWriter**********************************");
-            UpdateWriter u =
-                    new UpdateWriter(conn, database, table, request.getTable().getColumnsList(),
-                            request.getFileParams(), request.getKeysMap(), conf.batchSize());
-            Logger.logMessage(Logger.LogLevel.INFO, "No. of files to be updated: " + request.getUpdateFilesList().size());
-            for (String file : request.getUpdateFilesList()) {
-                u.write(file);
-            }
-            Logger.logMessage(Logger.LogLevel.INFO, "********************************In DeleteWriter**********************************");
-            DeleteWriter d =
-                    new DeleteWriter(conn, database, table, request.getTable().getColumnsList(),
-                            request.getFileParams(), request.getKeysMap(), conf.batchSize());
-            Logger.logMessage(Logger.LogLevel.INFO, "No. of files to be deleted: " + request.getDeleteFilesList().size());
-            for (String file : request.getDeleteFilesList()) {
-                d.write(file);
-            }
-
-            responseObserver.onNext(WriteBatchResponse.newBuilder().setSuccess(true).build());
-            responseObserver.onCompleted();
-            Logger.logMessage(Logger.LogLevel.INFO, "End: Timestamp: " + System.currentTimeMillis());
         } catch (BatchUpdateException bue) {
             String actualError = "";
             if (bue.getNextException() != null) {
@@ -799,14 +1189,6 @@ public class TeradataDestinationServiceImpl extends DestinationConnectorGrpc.Des
                             .setMessage("writeBatch :: Table: " + TeradataJDBCUtil.escapeTable(database, table) + ", Error: " + e.getMessage()).build())
                     .build());
             responseObserver.onCompleted();
-        } finally {
-            if (w != null && !request.getReplaceFilesList().isEmpty()) {
-                w.dropTempTable();
-            }
-            if (conf.useFastLoad() && fw != null && !request.getReplaceFilesList().isEmpty()) {
-                fw.dropTempTable();
-                fw.dropErrorTables();
-            }
         }
     }
 
@@ -819,60 +1201,85 @@ public class TeradataDestinationServiceImpl extends DestinationConnectorGrpc.Des
         String table = TeradataJDBCUtil.getTableName(request.getSchemaName(), request.getTable().getName());
         LoadDataWriter w = null;
         FastLoadDataWriter fw = null;
-        try (Connection conn = TeradataJDBCUtil.createConnection(conf);) {
-            if (request.getTable().getColumnsList().stream()
-                    .noneMatch(Column::getPrimaryKey)) {
-                throw new Exception("No primary key found");
-            }
+        try (TableWriteScheduler.Permit permit = scheduler.acquire("WriteHistoryBatch", database, table);
+             Connection conn = TeradataJDBCUtil.createConnection(conf);
+             // Prepared per-row statements are reused by all files and writers of the call
+             PreparedStatementCache statements = new PreparedStatementCache(conn, conf.statementCacheSize())) {
+            try {
+                if (request.getTable().getColumnsList().stream()
+                        .noneMatch(Column::getPrimaryKey)) {
+                    throw new Exception("No primary key found");
+                }
 
-            setTimeZoneToUTCIfNeeded(conn);
+                setTimeZoneToUTCIfNeeded(conn);
 
-            Logger.logMessage(Logger.LogLevel.INFO,"********************************In EarliestStartHistoryWriter**********************************");
-            EarliestStartHistoryWriter e = new EarliestStartHistoryWriter(conn, database, table, request.getTable().getColumnsList(),
-                    request.getFileParams(), request.getKeysMap(), conf.batchSize());
-            Logger.logMessage(Logger.LogLevel.INFO, "No. of files to be written with earliest start: " + request.getEarliestStartFilesList().size());
-            for (String file : request.getEarliestStartFilesList()) {
-                e.write(file);
-            }
-            Logger.logMessage(Logger.LogLevel.INFO, "********************************In UpdateHistoryWriter**********************************");
-            UpdateHistoryWriter u = new UpdateHistoryWriter(conn, database, table, request.getTable().getColumnsList(),
-                    request.getFileParams(), request.getKeysMap(), conf.batchSize());
-            Logger.logMessage(Logger.LogLevel.INFO, "No. of files to be updated with history: " + request.getUpdateFilesList().size());
-            for (String file : request.getUpdateFilesList()) {
-                u.write(file);
-            }
-            Logger.logMessage(Logger.LogLevel.INFO, "********************************In LoadDataWriter**********************************");
-            if (conf.useFastLoad()) {
-                fw = new FastLoadDataWriter(conf, conn, database, table, request.getTable().getColumnsList(),
+                Logger.logMessage(Logger.LogLevel.INFO,"********************************In EarliestStartHistoryWriter**********************************");
+                EarliestStartHistoryWriter e = new EarliestStartHistoryWriter(conn, database, table, request.getTable().getColumnsList(),
                         request.getFileParams(), request.getKeysMap(), conf.batchSize());
-                fw.writeData(request.getReplaceFilesList());
-                if (!request.getReplaceFilesList().isEmpty()) {
-                    fw.deleteInsert();
-                    fw.dropTempTable();
-                    fw.dropErrorTables();
+                e.setMultiStatementSize(conf.multiStatementSize());
+                e.setStatementCache(statements);
+                Logger.logMessage(Logger.LogLevel.INFO, "No. of files to be written with earliest start: " + request.getEarliestStartFilesList().size());
+                for (String file : request.getEarliestStartFilesList()) {
+                    e.write(file);
                 }
-            } else {
-                w = new LoadDataWriter(conn, database, table, request.getTable().getColumnsList(),
-                        request.getFileParams(), request.getKeysMap(), conf.batchSize(),
-                        new WriteBatchWarningHandler(responseObserver));
-                for (String file : request.getReplaceFilesList()) {
-                    w.write(file);
+                Logger.logMessage(Logger.LogLevel.INFO, "********************************In UpdateHistoryWriter**********************************");
+                UpdateHistoryWriter u = new UpdateHistoryWriter(conn, database, table, request.getTable().getColumnsList(),
+                        request.getFileParams(), request.getKeysMap(), conf.batchSize());
+                u.setMultiStatementSize(conf.multiStatementSize());
+                u.setStatementCache(statements);
+                Logger.logMessage(Logger.LogLevel.INFO, "No. of files to be updated with history: " + request.getUpdateFilesList().size());
+                for (String file : request.getUpdateFilesList()) {
+                    u.write(file);
                 }
-                if (!request.getReplaceFilesList().isEmpty()) {
-                    w.deleteInsert();
+                Logger.logMessage(Logger.LogLevel.INFO, "********************************In LoadDataWriter**********************************");
+                if (conf.useFastLoad()) {
+                    fw = new FastLoadDataWriter(conf, conn, database, table, request.getTable().getColumnsList(),
+                            request.getFileParams(), request.getKeysMap(), conf.batchSize(),
+                            new WriteBatchWarningHandler(responseObserver));
+                    fw.writeData(request.getReplaceFilesList());
+                    if (!request.getReplaceFilesList().isEmpty()) {
+                        fw.deleteInsert();
+                        fw.dropTempTable();
+                        fw.dropErrorTables();
+                    }
+                } else {
+                    w = new LoadDataWriter(conn, database, table, request.getTable().getColumnsList(),
+                            request.getFileParams(), request.getKeysMap(), conf.batchSize(),
+                            new WriteBatchWarningHandler(responseObserver));
+                    w.setBatchMaxBytes(conf.batchMaxBytes());
+                    if (conf.adaptiveBatchSize()) {
+                        w.setAdaptiveBatchSize(conf.batchSizeMin(), conf.batchSizeMax());
+                    }
+                    for (String file : request.getReplaceFilesList()) {
+                        w.write(file);
+                    }
+                    if (!request.getReplaceFilesList().isEmpty()) {
+                        w.deleteInsert();
+                        w.dropTempTable();
+                    }
+                }
+                Logger.logMessage(Logger.LogLevel.INFO, "********************************In DeleteHistoryWriter**********************************");
+                DeleteHistoryWriter d = new DeleteHistoryWriter(conn, database, table, request.getTable().getColumnsList(),
+                        request.getFileParams(), request.getKeysMap(), conf.batchSize());
+                d.setMultiStatementSize(conf.multiStatementSize());
+                d.setStatementCache(statements);
+                Logger.logMessage(Logger.LogLevel.INFO, "No. of files to be deleted with history: " + request.getDeleteFilesList().size());
+                for (String file : request.getDeleteFilesList()) {
+                    d.write(file);
+                }
+
+                responseObserver.onNext(WriteBatchResponse.newBuilder().setSuccess(true).build());
+                responseObserver.onCompleted();
+            } finally {
+                // Staging tables are dropped before the connection closes, also when the call failed or was cancelled
+                if (w != null && !request.getReplaceFilesList().isEmpty()) {
                     w.dropTempTable();
                 }
+                if (conf.useFastLoad() && fw != null && !request.getReplaceFilesList().isEmpty()) {
+                    // Error tables are kept when the load failed, for the analysis of the rejected rows
+                    fw.dropTempTable();
+                }
             }
-            Logger.logMessage(Logger.LogLevel.INFO, "********************************In DeleteHistoryWriter**********************************");
-            DeleteHistoryWriter d = new DeleteHistoryWriter(conn, database, table, request.getTable().getColumnsList(),
-                    request.getFileParams(), request.getKeysMap(), conf.batchSize());
-            Logger.logMessage(Logger.LogLevel.INFO, "No. of files to be deleted with history: " + request.getDeleteFilesList().size());
-            for (String file : request.getDeleteFilesList()) {
-                d.write(file);
-            }
-
-            responseObserver.onNext(WriteBatchResponse.newBuilder().setSuccess(true).build());
-            responseObserver.onCompleted();
         }
         catch (BatchUpdateException bue) {
             String actualMessage = "";
@@ -899,14 +1306,95 @@ public class TeradataDestinationServiceImpl extends DestinationConnectorGrpc.Des
                     .build());
             responseObserver.onCompleted();
         }
-        finally {
-            if (w != null && !request.getReplaceFilesList().isEmpty()) {
-                w.dropTempTable();
+    }
+
+    private UnifiedApplyWriter newUnifiedApplyWriter(TeradataConfiguration conf, Connection conn, String database,
+                                                     String table, WriteBatchRequest request, WarningHandler warningHandler) {
+        UnifiedApplyWriter writer = new UnifiedApplyWriter(conn, database, table, request.getTable().getColumnsList(),
+                request.getFileParams(), request.getKeysMap(), conf.batchSize(), warningHandler);
+        writer.setBatchMaxBytes(conf.batchMaxBytes());
+        return writer;
+    }
+
+    /**
+     * Stages the update and delete files of a batch on sessions of their own while the replace
+     * files are staged on the session of the call. The writer of the call then adopts the staging
+     * tables of the other sessions, so that apply() still applies replace, update and delete rows
+     * in this order. A batch takes about as long to stage as its slowest kind of file.
+     *
+     * If a stage fails, the stages still running are cancelled rather than waited for; each of
+     * them drops its staging table and closes its session when it ends.
+     */
+    private void stageInParallel(TeradataConfiguration conf, UnifiedApplyWriter uw, String database, String table,
+                                 WriteBatchRequest request, WarningHandler warningHandler) throws Exception {
+        int[] ops = {UnifiedApplyWriter.OP_UPDATE, UnifiedApplyWriter.OP_DELETE};
+        List<List<String>> files = Arrays.asList(request.getUpdateFilesList(), request.getDeleteFilesList());
+        List<Connection> sessions = new ArrayList<>();
+        List<UnifiedApplyWriter> writers = new ArrayList<>();
+        List<CompletableFuture<Void>> staged = new ArrayList<>();
+        int adopted = 0;
+        try {
+            for (int i = 0; i < ops.length; i++) {
+                if (files.get(i).isEmpty()) {
+                    continue;
+                }
+                // Sessions are opened on the thread of the call, so that a cancelled call cancels them
+                Connection session = TeradataJDBCUtil.createConnection(conf);
+                sessions.add(session);
+                setTimeZoneToUTCIfNeeded(session);
+                UnifiedApplyWriter writer = newUnifiedApplyWriter(conf, session, database, table, request, warningHandler);
+                // The target is widened by one writer at a time, and never shortened
+                writer.shareWidener(uw);
+                writers.add(writer);
+                int op = ops[i];
+                List<String> opFiles = files.get(i);
+                staged.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        writer.stage(op, opFiles);
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, STAGERS));
             }
-            if (conf.useFastLoad() && fw != null && !request.getReplaceFilesList().isEmpty()) {
-                fw.dropTempTable();
-                fw.dropErrorTables();
+            Logger.logMessage(Logger.LogLevel.INFO, String.format("Staging %d kinds of files on %d extra sessions",
+                    writers.size() + 1, sessions.size()));
+            uw.stage(UnifiedApplyWriter.OP_REPLACE, request.getReplaceFilesList());
+            for (; adopted < staged.size(); adopted++) {
+                try {
+                    staged.get(adopted).get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                uw.adopt(writers.get(adopted));
+            }
+        } finally {
+            // Adopted staging tables are dropped by the writer of the call; their stages have ended
+            for (int i = 0; i < adopted; i++) {
+                closeQuietly(sessions.get(i));
             }
+            for (int i = adopted; i < staged.size(); i++) {
+                UnifiedApplyWriter writer = writers.get(i);
+                Connection session = sessions.get(i);
+                writer.cancel();
+                staged.get(i).whenComplete((ignored, error) -> {
+                    writer.dropTempTable();
+                    closeQuietly(session);
+                });
+            }
+            // Sessions opened for a stage that was never submitted
+            for (int i = staged.size(); i < sessions.size(); i++) {
+                closeQuietly(sessions.get(i));
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection session) {
+        try {
+            session.close();
+        } catch (SQLException e) {
+            Logger.logMessage(Logger.LogLevel.WARNING, "Failed to close a staging session: " + e.getMessage());
         }
     }
 
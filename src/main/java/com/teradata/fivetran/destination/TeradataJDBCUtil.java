@@ -1,12 +1,11 @@
 package com.teradata.fivetran.destination;
 
 import com.teradata.fivetran.destination.warning_util.WarningHandler;
+import com.teradata.fivetran.destination.writers.util.ColumnCodec;
 import com.teradata.fivetran.destination.writers.util.ColumnMetadata;
-import com.teradata.fivetran.destination.writers.util.JSONStruct;
 import fivetran_sdk.v2.*;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.sql.*;
 import java.sql.Date;
 import java.util.*;
@@ -63,7 +62,8 @@ public class TeradataJDBCUtil {
 
         String url = String.format("jdbc:teradata://%s", conf.host());
         Class.forName("com.teradata.jdbc.TeraDriver");
-        Connection conn = DriverManager.getConnection(url, connectionProps);
+        // Statements of the connection are cancelled with the gRPC call that opened it
+        Connection conn = CancellationScope.current().track(DriverManager.getConnection(url, connectionProps));
         Statement stmt = conn.createStatement();
 
         try{
@@ -557,61 +557,28 @@ public class TeradataJDBCUtil {
         if (value.equals(nullStr)) {
             stmt.setNull(id, Types.NULL);
         } else {
-            switch (type) {
-                case BOOLEAN:
-                    if (value.equalsIgnoreCase("true")) {
-                        stmt.setShort(id, Short.parseShort("1"));
-                    } else if (value.equalsIgnoreCase("false")) {
-                        stmt.setShort(id, Short.parseShort("0"));
-                    } else {
-                        stmt.setShort(id, Short.parseShort(value));
-                    }
-                    break;
-                case SHORT:
-                    stmt.setShort(id, Short.parseShort(value));
-                    break;
-                case INT:
-                    stmt.setInt(id, Integer.parseInt(value));
-                    break;
-                case LONG:
-                    stmt.setLong(id, Long.parseLong(value));
-                    break;
-                case DECIMAL:
-                    stmt.setBigDecimal(id, new BigDecimal(value));
-                case FLOAT:
-                    stmt.setFloat(id, Float.parseFloat(value));
-                    break;
-                case DOUBLE:
-                    stmt.setDouble(id, Double.parseDouble(value));
-                    break;
-                case NAIVE_TIME:
-                    stmt.setTime(id, Time.valueOf(value));
-                    break;
-                case NAIVE_DATE:
-                    stmt.setDate(id, Date.valueOf(value));
-                    break;
-                case NAIVE_DATETIME:
-                case UTC_DATETIME:
-                    stmt.setTimestamp(id, TeradataJDBCUtil.getTimestampFromObject(formatISODateTime(value)));
-                    break;
-                case BINARY:
-                    stmt.setBytes(id, Base64.getDecoder().decode(value));
-                    break;
-                case XML:
-                    SQLXML sqlxml =  stmt.getConnection().createSQLXML();
-                    sqlxml.setString(value);
-                    stmt.setSQLXML(id, sqlxml);
-                    break;
-                case STRING:
-                    stmt.setString(id, value);
-                    break;
-                case JSON:
-                    stmt.setObject(id, new JSONStruct("JSON", new Object[] {value}));
-                case UNSPECIFIED:
-                default:
-                    stmt.setString(id, value);
-                    break;
-            }
+            ColumnCodec.forType(type).bindText(stmt, id, value);
+        }
+    }
+
+    /**
+     * Sets a parameter in a prepared statement from a typed value, such as one read from a Parquet
+     * file. Values of the Java type matching the column are bound as they are, without being
+     * formatted and parsed again; other values are bound like their text with {@link #setParameter}.
+     *
+     * @param stmt The prepared statement.
+     * @param id The parameter index.
+     * @param type The data type of the parameter.
+     * @param value The value of the parameter, null for SQL NULL.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static void setValue(PreparedStatement stmt, Integer id, DataType type, Object value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(id, Types.NULL);
+        } else if (value instanceof String) {
+            ColumnCodec.forType(type).bindText(stmt, id, (String) value);
+        } else {
+            ColumnCodec.forType(type).bindValue(stmt, id, value);
         }
     }
 
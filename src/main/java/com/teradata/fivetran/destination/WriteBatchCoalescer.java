@@ -0,0 +1,187 @@
+package com.teradata.fivetran.destination;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds small consecutive writeBatch calls on the same table for a short window, so that their
+ * files are staged into one table and merged once.
+ *
+ * Every writeBatch pays a fixed cost, the session, the staging CREATE, the DELETE and INSERT SELECT
+ * of the merge and the DROP, that outweighs the load of a batch of a few rows. The first call on a
+ * table opens a group and leads it: it waits for the window, or until the files of the group reach
+ * the size threshold, then writes the calls of the group as one batch. The other calls join the
+ * group and are answered with the responses of the leader once the shared merge committed.
+ *
+ * The leader takes the ticket of the group on its table when it opens the group, so the merged
+ * batch keeps the place of its first call among the calls on the table. A call joins the group only
+ * while no other call on the table took a ticket after it; a truncate, alterTable or update that
+ * arrived in between makes later calls open a new group, which runs after it.
+ *
+ * @param <R> The type of the requests.
+ * @param <S> The type of the responses.
+ */
+public class WriteBatchCoalescer<R, S> {
+    // How often waiting calls check whether they were cancelled
+    private static final long POLL_MILLIS = 1000;
+
+    private final TableWriteScheduler scheduler;
+    private final Map<Object, Group> open = new HashMap<>();
+
+    /**
+     * @param scheduler The scheduler the groups take their tickets from.
+     */
+    public WriteBatchCoalescer(TableWriteScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Adds a call to the open group of its key, or opens a group that the call leads.
+     *
+     * @param rpc      The name of the call, for the logs.
+     * @param database The database of the table.
+     * @param table    The table.
+     * @param key      The key of the calls that can be merged, the table and everything but the files.
+     * @param request  The request of the call.
+     * @param bytes    The size of the files of the call.
+     * @param maxBytes The size of the files at which the group stops waiting for more calls.
+     */
+    public Group join(String rpc, String database, String table, Object key, R request, long bytes, long maxBytes) {
+        synchronized (open) {
+            Group group = open.get(key);
+            if (group != null && !group.ticket.isLatest()) {
+                // Another call on the table arrived after the group was opened
+                group.seal();
+                group = null;
+            }
+            if (group == null) {
+                group = new Group(key, maxBytes, scheduler.take(rpc, database, table));
+                open.put(key, group);
+            }
+            group.add(request, bytes);
+            return group;
+        }
+    }
+
+    /**
+     * The calls merged into one batch.
+     */
+    public class Group {
+        private final Object key;
+        private final long maxBytes;
+        private final TableWriteScheduler.Ticket ticket;
+        private final List<R> requests = new ArrayList<>();
+        private long bytes = 0;
+        private volatile boolean closed = false;
+        private List<S> responses = null;
+        private String error = null;
+
+        private Group(Object key, long maxBytes, TableWriteScheduler.Ticket ticket) {
+            this.key = key;
+            this.maxBytes = maxBytes;
+            this.ticket = ticket;
+        }
+
+        // Called with the lock of open held
+        private void add(R request, long size) {
+            requests.add(request);
+            bytes += size;
+            if (bytes >= maxBytes) {
+                seal();
+            }
+        }
+
+        // Called with the lock of open held
+        private void seal() {
+            if (!closed) {
+                closed = true;
+                open.remove(key, this);
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Returns whether the call of the request leads the group and writes the merged batch.
+         */
+        public boolean ledBy(R request) {
+            synchronized (open) {
+                return requests.get(0) == request;
+            }
+        }
+
+        /**
+         * Returns the ticket of the group on its table, which the leader awaits before it writes the
+         * merged batch, or closes if it gives up.
+         */
+        public TableWriteScheduler.Ticket ticket() {
+            return ticket;
+        }
+
+        /**
+         * Waits for the window or for the size threshold, then closes the group to further calls.
+         * Called by the leader.
+         *
+         * @param windowMs How long the group waits for more calls.
+         * @return The requests of the group, in the order the calls arrived.
+         * @throws InterruptedException If the thread was interrupted while waiting.
+         */
+        public List<R> close(long windowMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + windowMs;
+            synchronized (this) {
+                long remaining;
+                while (!closed && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    wait(remaining);
+                }
+            }
+            synchronized (open) {
+                seal();
+                return Collections.unmodifiableList(new ArrayList<>(requests));
+            }
+        }
+
+        /**
+         * Hands the outcome of the merged batch to the other calls of the group. Called by the leader.
+         *
+         * @param responses The responses the leader sent for the merged batch.
+         * @param error     The error the merged batch failed with outside of the responses, or null.
+         */
+        public synchronized void complete(List<S> responses, String error) {
+            this.responses = new ArrayList<>(responses);
+            this.error = error;
+            notifyAll();
+        }
+
+        /**
+         * Waits for the leader to write the merged batch. Called by the other calls of the group.
+         *
+         * @return The responses of the merged batch.
+         * @throws InterruptedException If the thread was interrupted while waiting.
+         * @throws java.util.concurrent.CancellationException If the call was cancelled while waiting.
+         * @throws IllegalStateException If the merged batch failed outside of its responses.
+         */
+        public List<S> await() throws InterruptedException {
+            // The call leaves its place in the bulkhead to other calls while the leader writes
+            List<S> result = Bulkhead.releaseWhile(this::awaitResponses);
+            synchronized (this) {
+                if (error != null) {
+                    throw new IllegalStateException(error);
+                }
+            }
+            return result;
+        }
+
+        private synchronized List<S> awaitResponses() throws InterruptedException {
+            CancellationScope cancellation = CancellationScope.current();
+            while (responses == null) {
+                cancellation.checkCancelled();
+                wait(POLL_MILLIS);
+            }
+            return responses;
+        }
+    }
+}
@@ -8,7 +8,6 @@ import fivetran_sdk.v2.FileParams;
 
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -41,6 +40,8 @@ public class DeleteHistoryWriter extends Writer {
 
     List<Column> headerColumns = new ArrayList<>();
     Integer fivetranEndPos;
+    private String updateQuery;
+    private int parameterCount;
 
     /**
      * Sets the header for the writer.
@@ -67,34 +68,48 @@ public class DeleteHistoryWriter extends Writer {
         if (fivetranEndPos == null) {
             throw new IllegalArgumentException("File doesn't contain _fivetran_end column");
         }
+        updateQuery = null;
     }
 
     /**
-     * Writes a row to the writer.
+     * Builds the update statement. It only depends on the header, so every row reuses the same
+     * prepared statement.
      *
-     * @param row The list of row values.
-     * @throws Exception If an error occurs.
+     * @param rowSize The number of values in a row.
      */
-    @Override
-    public void writeRow(List<String> row) throws Exception {
-        Logger.logMessage(Logger.debugLogLevel,
-                "#########################DeleteHistoryWriter.writeRow#########################");
-        StringBuilder updateQuery = new StringBuilder(String.format(
+    private void buildQuery(int rowSize) {
+        StringBuilder updateBuilder = new StringBuilder(String.format(
                 "UPDATE %s SET _fivetran_active = 0, _fivetran_end = ? WHERE _fivetran_active = 1 ",
                 TeradataJDBCUtil.escapeTable(database, table)));
-        Logger.logMessage(Logger.LogLevel.INFO,"updateQuery is " + updateQuery);
 
-        for (int i = 0; i < row.size(); i++) {
+        parameterCount = 1;
+        for (int i = 0; i < rowSize; i++) {
             Column c = headerColumns.get(i);
             if (c != null && c.getPrimaryKey() && !c.getName().equals("_fivetran_start")) {
-                updateQuery.append(
+                updateBuilder.append(
                         String.format("AND %s = ? ", TeradataJDBCUtil.escapeIdentifier(c.getName())));
+                parameterCount++;
             }
         }
+        updateQuery = updateBuilder.toString();
+        Logger.logMessage(Logger.LogLevel.INFO,"updateQuery is " + updateQuery);
+    }
 
-        int paramIndex = 0;
-        try (PreparedStatement stmt = conn.prepareStatement(updateQuery.toString())) {
-            paramIndex++;
+    /**
+     * Writes a row to the writer.
+     *
+     * @param row The list of row values.
+     * @throws Exception If an error occurs.
+     */
+    @Override
+    public void writeRow(List<String> row) throws Exception {
+        Logger.logMessage(Logger.debugLogLevel,
+                "#########################DeleteHistoryWriter.writeRow#########################");
+        if (updateQuery == null) {
+            buildQuery(row.size());
+        }
+        statementPacker().add(updateQuery, parameterCount, (stmt, firstIndex) -> {
+            int paramIndex = firstIndex;
             TeradataJDBCUtil.setParameter(stmt, paramIndex, DataType.UTC_DATETIME, row.get(fivetranEndPos), params.getNullString());
 
             for (int i = 0; i < row.size(); i++) {
@@ -107,22 +122,16 @@ public class DeleteHistoryWriter extends Writer {
                 paramIndex++;
                 TeradataJDBCUtil.setParameter(stmt, paramIndex, c.getType(), value, params.getNullString());
             }
-            try {
-                stmt.execute();
-            } catch (SQLException e) {
-                throw new SQLException("Failed to execute (" + updateQuery + ") on table: "
-                        + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
-                        + e.getMessage(), e);
-            }
-            Logger.logMessage(Logger.debugLogLevel,"Executed update statement for row: " + row);
-        }
+        }, row);
     }
 
     /**
-     * Commits the written rows to the database.
+     * Sends the pending update statements to the database.
+     *
+     * @throws SQLException If an SQL error occurs.
      */
     @Override
-    public void commit() {
-        // Implementation for commit
+    public void commit() throws SQLException {
+        flushStatements();
     }
 }
\ No newline at end of file
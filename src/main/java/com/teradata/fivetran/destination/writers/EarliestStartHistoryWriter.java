@@ -9,7 +9,6 @@ import fivetran_sdk.v2.FileParams;
 
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -40,6 +39,9 @@ public class EarliestStartHistoryWriter extends Writer {
 
     List<Column> headerColumns = new ArrayList<>();
     Integer earliestFivetranStartPos;
+    private String deleteQuery;
+    private String updateQuery;
+    private int keyParameterCount;
 
     /**
      * Sets the header for the writer.
@@ -64,37 +66,61 @@ public class EarliestStartHistoryWriter extends Writer {
         if (earliestFivetranStartPos == null) {
             throw new IllegalArgumentException("File doesn't contain _fivetran_start column");
         }
+        deleteQuery = null;
+        updateQuery = null;
     }
 
     /**
-     * Writes a delete statement for the given row.
+     * Builds the delete and update statements. They only depend on the header, so they are built
+     * once and every row reuses the same prepared statements.
      *
-     * @param row The list of row values.
-     * @throws Exception If an error occurs.
+     * @param rowSize The number of values in a row.
      */
-    public void writeDelete(List<String> row) throws Exception {
-        Logger.logMessage(Logger.debugLogLevel, "#########################EarliestStartHistoryWriter.writeDelete#############################################################");
-        StringBuilder deleteQuery = new StringBuilder(String.format("DELETE FROM %s WHERE ", TeradataJDBCUtil.escapeTable(database, table)));
+    private void buildQueries(int rowSize) {
+        StringBuilder deleteBuilder = new StringBuilder(String.format("DELETE FROM %s WHERE ", TeradataJDBCUtil.escapeTable(database, table)));
+        StringBuilder updateBuilder = new StringBuilder(String.format(
+                "UPDATE %s SET _fivetran_active = 0, _fivetran_end = ? - INTERVAL '1' SECOND WHERE _fivetran_active = 1 ",
+                TeradataJDBCUtil.escapeTable(database, table)));
 
+        keyParameterCount = 0;
         boolean firstPKColumn = true;
-        for (int i = 0; i < row.size(); i++) {
+        for (int i = 0; i < rowSize; i++) {
             Column c = headerColumns.get(i);
             if (c != null && c.getPrimaryKey() && !c.getName().equals("_fivetran_start")) {
+                keyParameterCount++;
                 if (firstPKColumn) {
-                    deleteQuery.append(
+                    deleteBuilder.append(
                             String.format("%s = ? ", TeradataJDBCUtil.escapeIdentifier(c.getName())));
                     firstPKColumn = false;
                 } else {
-                    deleteQuery.append(
+                    deleteBuilder.append(
                             String.format("AND %s = ? ", TeradataJDBCUtil.escapeIdentifier(c.getName())));
                 }
+                updateBuilder.append(
+                        String.format("AND %s = ? ", TeradataJDBCUtil.escapeIdentifier(c.getName())));
             }
         }
 
-        deleteQuery.append("AND _fivetran_start >= ?");
+        deleteBuilder.append("AND _fivetran_start >= ?");
+        deleteQuery = deleteBuilder.toString();
+        updateQuery = updateBuilder.toString();
         Logger.logMessage(Logger.LogLevel.INFO,"deleteQuery is " + deleteQuery);
-        int paramIndex = 0;
-        try (PreparedStatement stmt = conn.prepareStatement(deleteQuery.toString())) {
+        Logger.logMessage(Logger.LogLevel.INFO,"updateQuery is " + updateQuery);
+    }
+
+    /**
+     * Adds a delete statement for the given row to the pending requests.
+     *
+     * @param row The list of row values.
+     * @throws Exception If an error occurs.
+     */
+    public void writeDelete(List<String> row) throws Exception {
+        Logger.logMessage(Logger.debugLogLevel, "#########################EarliestStartHistoryWriter.writeDelete#############################################################");
+        if (deleteQuery == null) {
+            buildQueries(row.size());
+        }
+        statementPacker().add(deleteQuery, keyParameterCount + 1, (stmt, firstIndex) -> {
+            int paramIndex = firstIndex - 1;
             for (int i = 0; i < row.size(); i++) {
                 String value = row.get(i);
                 Column c = headerColumns.get(i);
@@ -108,39 +134,22 @@ public class EarliestStartHistoryWriter extends Writer {
 
             paramIndex++;
             TeradataJDBCUtil.setParameter(stmt, paramIndex, DataType.UTC_DATETIME, row.get(earliestFivetranStartPos), params.getNullString());
-            try {
-                stmt.execute();
-            } catch (SQLException e) {
-                throw new SQLException("Failed to execute (" + deleteQuery + ") on table: "
-                        + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
-                        + e.getMessage(), e);
-            }
-            Logger.logMessage(Logger.debugLogLevel,"Executed delete statement: " + stmt.toString());
-        }
+        }, row);
     }
 
     /**
-     * Writes an update statement for the given row.
+     * Adds an update statement for the given row to the pending requests.
      *
      * @param row The list of row values.
      * @throws Exception If an error occurs.
      */
     public void writeUpdate(List<String> row) throws Exception {
         Logger.logMessage(Logger.debugLogLevel, "#########################EarliestStartHistoryWriter.writeUpdate#############################################################");
-        StringBuilder updateQuery = new StringBuilder(String.format(
-                "UPDATE %s SET _fivetran_active = 0, _fivetran_end = ? - INTERVAL '1' SECOND WHERE _fivetran_active = 1 ",
-                TeradataJDBCUtil.escapeTable(database, table)));
-        for (int i = 0; i < row.size(); i++) {
-            Column c = headerColumns.get(i);
-            if (c != null && c.getPrimaryKey() && !c.getName().equals("_fivetran_start")) {
-                updateQuery.append(
-                        String.format("AND %s = ? ", TeradataJDBCUtil.escapeIdentifier(c.getName())));
-            }
+        if (updateQuery == null) {
+            buildQueries(row.size());
         }
-        Logger.logMessage(Logger.LogLevel.INFO,"updateQuery is " + updateQuery);
-        int paramIndex = 0;
-        try (PreparedStatement stmt = conn.prepareStatement(updateQuery.toString())) {
-            paramIndex++;
+        statementPacker().add(updateQuery, keyParameterCount + 1, (stmt, firstIndex) -> {
+            int paramIndex = firstIndex;
             TeradataJDBCUtil.setParameter(stmt, paramIndex, DataType.UTC_DATETIME, row.get(earliestFivetranStartPos), params.getNullString());
             for (int i = 0; i < row.size(); i++) {
                 String value = row.get(i);
@@ -152,15 +161,7 @@ public class EarliestStartHistoryWriter extends Writer {
                 paramIndex++;
                 TeradataJDBCUtil.setParameter(stmt, paramIndex, c.getType(), value, params.getNullString());
             }
-            try {
-                stmt.execute();
-            } catch (SQLException e) {
-                throw new SQLException("Failed to execute (" + updateQuery + ") on table: "
-                        + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
-                        + e.getMessage(), e);
-            }
-            Logger.logMessage(Logger.debugLogLevel,"Executed update statement: " + stmt.toString());
-        }
+        }, row);
     }
 
     /**
@@ -186,6 +187,6 @@ public class EarliestStartHistoryWriter extends Writer {
      */
     @Override
     public void commit() throws InterruptedException, IOException, SQLException {
-        // Implementation for commit
+        flushStatements();
     }
 }
@@ -1,42 +1,42 @@
 package com.teradata.fivetran.destination.writers;
 
-import com.github.luben.zstd.ZstdInputStream;
 import com.google.protobuf.ByteString;
-import com.opencsv.CSVParserBuilder;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
+import com.teradata.fivetran.destination.CancellationScope;
 import com.teradata.fivetran.destination.Logger;
 import com.teradata.fivetran.destination.TeradataJDBCUtil;
-import com.teradata.fivetran.destination.writers.util.JSONStruct;
+import com.teradata.fivetran.destination.writers.util.AdaptiveBatchSizer;
+import com.teradata.fivetran.destination.writers.util.BatchFileDecoder;
+import com.teradata.fivetran.destination.writers.util.BatchFileProbe;
+import com.teradata.fivetran.destination.writers.util.BatchStats;
+import com.teradata.fivetran.destination.writers.util.CodecPlan;
+import com.teradata.fivetran.destination.writers.util.ColumnCodec;
+import com.teradata.fivetran.destination.writers.util.RowReader;
+import com.teradata.fivetran.destination.writers.util.TypedRowReader;
 import fivetran_sdk.v2.*;
 
-import javax.crypto.Cipher;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
-import javax.crypto.CipherInputStream;
 import java.io.*;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.security.SecureRandom;
 import java.sql.*;
-import java.sql.Date;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
-import java.util.zip.GZIPInputStream;
 
 
-public class FastLoad {
+public class FastLoad implements TypedRowWriter {
     Connection fastLoadConnection;
     PreparedStatement preparedStatement;
     int instanceNumber;
     int batchCount;
     int batchSize;
+    long batchMaxBytes = Writer.DEFAULT_BATCH_MAX_BYTES;
+    private final BatchStats batchStats = new BatchStats();
+    // Shared by the sessions of a job when the batch size is adaptive
+    private AdaptiveBatchSizer batchSizer;
     boolean loadCompleteStatus = false;
     private List<Column> headerColumns;
     private String columnNames;
     private List<Column> matchingCols;
     private List<Column> columns;
+    private CodecPlan codecPlan;
     Map<String, Integer> decimalScales;
     FileParams params;
 
@@ -49,6 +49,20 @@ public class FastLoad {
     int[] nullJdbcTypes = null;
     int[] nullJdbcScales = null;
 
+    // Checkpoint bookkeeping: rows of each file that were sent to the DBS, and fully loaded files
+    private FastLoadCheckpointer checkpointer;
+    // Cancellation of the gRPC call, captured on its thread when the session is created
+    private CancellationScope cancellation = CancellationScope.current();
+    private long checkpointInterval;
+    private long rowsSinceCheckpoint = 0;
+    private String currentFile;
+    private long rowsReadInFile = 0;
+    private final Map<String, Long> acknowledgedRows = new ConcurrentHashMap<>();
+    private final Set<String> completedFiles = ConcurrentHashMap.newKeySet();
+
+    // Header of the first file of the job, whose decoded reader one session takes over
+    private BatchFileProbe probe;
+
     public boolean createFastLoadConnection(int instanceNumber, String url, String username, String password, int batchSize, Map<String, Integer> decimalScales) {
         Logger.logMessage(Logger.LogLevel.INFO,"in createFastLoadConnection()");
         this.url = url;
@@ -60,7 +74,8 @@ public class FastLoad {
         this.instanceNumber = instanceNumber;
         try {
             Class.forName("com.teradata.jdbc.TeraDriver");
-            fastLoadConnection = DriverManager.getConnection(url, username, password);
+            cancellation = CancellationScope.current();
+            fastLoadConnection = cancellation.track(DriverManager.getConnection(url, username, password));
             Logger.logMessage(Logger.LogLevel.INFO,"fastLoadConnection done, session no: "
                     + fastLoadConnection.nativeSQL("{fn teradata_session_number}"));
             preparedStatement = fastLoadConnection.prepareStatement(null);
@@ -75,6 +90,46 @@ public class FastLoad {
         return true;
     }
 
+    /**
+     * Makes this session take part in interval checkpoints.
+     *
+     * @param checkpointer       The barrier shared by all sessions of the job.
+     * @param checkpointInterval Number of rows this session sends between two checkpoints.
+     */
+    public void setCheckpointer(FastLoadCheckpointer checkpointer, long checkpointInterval) {
+        this.checkpointer = checkpointer;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Sets the probe of the first file of the job. The session loading that file continues with the
+     * probed reader, and every file must have the header of the probed one.
+     *
+     * @param probe The probe of the first file.
+     */
+    public void setProbe(BatchFileProbe probe) {
+        this.probe = probe;
+    }
+
+    /**
+     * Sets the estimated size of a batch after which it is sent, even if it has fewer rows than the
+     * batch size.
+     *
+     * @param batchMaxBytes The byte budget of a batch.
+     */
+    public void setBatchMaxBytes(long batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    /**
+     * Lets the batch size follow the measured throughput of executeBatch.
+     *
+     * @param batchSizer The controller of the table, shared by all sessions of the job.
+     */
+    public void setBatchSizer(AdaptiveBatchSizer batchSizer) {
+        this.batchSizer = batchSizer;
+    }
+
     public boolean closeFastLoadConnection() {
         Logger.logMessage(Logger.LogLevel.INFO,"in closeFastLoadConnection()");
         try {
@@ -87,36 +142,6 @@ public class FastLoad {
         return true;
     }
 
-    private int getSqlTypeFromDataType(DataType type) {
-        switch (type) {
-            case BOOLEAN:
-            case SHORT:
-            case INT:
-                return java.sql.Types.INTEGER;
-            case LONG:
-                return java.sql.Types.BIGINT;
-            case DECIMAL:
-                return java.sql.Types.DECIMAL;
-            case FLOAT:
-                return java.sql.Types.FLOAT;
-            case DOUBLE:
-                return java.sql.Types.DOUBLE;
-            case NAIVE_TIME:
-                return java.sql.Types.TIME;
-            case NAIVE_DATE:
-                return java.sql.Types.DATE;
-            case NAIVE_DATETIME:
-            case UTC_DATETIME:
-                return java.sql.Types.TIMESTAMP;
-            case BINARY:
-                return java.sql.Types.BINARY;
-            case XML:
-                return java.sql.Types.SQLXML;
-            default:
-                return java.sql.Types.VARCHAR;
-        }
-    }
-
     public void setHeader(List<String> header) throws SQLException {
         Logger.logMessage(Logger.LogLevel.INFO,
                 String.format("Setting header with columns: %s", header));
@@ -136,133 +161,45 @@ public class FastLoad {
                 .collect(Collectors.joining(", "));
 
         String placeholders = headerColumns.stream().map(c -> "?").collect(Collectors.joining(", "));
+
+        // DECIMAL values are rounded to the scale of the column, as the USING clause expects. The
+        // scale is looked up here, once per column, rather than for every cell
+        ColumnCodec[] codecs = new ColumnCodec[headerColumns.size()];
+        for (int i = 0; i < codecs.length; i++) {
+            Column column = headerColumns.get(i);
+            Integer scale = decimalScales.get(column.getName().toLowerCase());
+            if (column.getType() == DataType.DECIMAL && scale != null) {
+                // Without decimal params the precision is not known, and values are parsed by BigDecimal
+                int precision = column.getParams().getDecimal().getPrecision();
+                codecs[i] = ColumnCodec.forDecimal(precision > 0 ? precision : 38, scale);
+            } else {
+                codecs[i] = ColumnCodec.forType(column.getType());
+            }
+        }
+        codecPlan = new CodecPlan(codecs, params.getNullString());
     }
 
     public void writeRow(List<String> row) throws Exception {
-        Logger.logMessage(Logger.debugLogLevel, "#########################LoadDataWriter.writeRow#########################");
         try {
-            for (int i = 0; i < row.size(); i++) {
-                String columnName = headerColumns.get(i).getName();
-                DataType type = headerColumns.get(i).getType();
-                String value = row.get(i);
-
-                if (value == null || value.equals("null") || value.equals(params.getNullString())) {
-                    preparedStatement.setNull(i + 1, getSqlTypeFromDataType(type));
-                    Logger.logMessage(Logger.debugLogLevel,
-                            String.format("Set parameter at index %d to NULL (DataType: %s)", i + 1, type));
-                    continue;
-                }
-
-                switch (type) {
-                    case BOOLEAN:
-                        if (value.equalsIgnoreCase("true")) {
-                            preparedStatement.setByte(i + 1, (byte) 1);
-                            Logger.logMessage(Logger.debugLogLevel,
-                                    String.format("Set BOOLEAN parameter at index %d: %s (as byte 1)", i + 1, value));
-                        } else if (value.equalsIgnoreCase("false")) {
-                            preparedStatement.setByte(i + 1, (byte) 0);
-                            Logger.logMessage(Logger.debugLogLevel,
-                                    String.format("Set BOOLEAN parameter at index %d: %s (as byte 0)", i + 1, value));
-                        }
-                        break;
-
-                    case SHORT:
-                        preparedStatement.setShort(i + 1, Short.parseShort(value));
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: SHORT) at index %d: %s", i + 1, value));
-                        break;
-                    case INT:
-                        preparedStatement.setInt(i + 1, Integer.parseInt(value));
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: INT) at index %d: %s", i + 1, value));
-                        break;
-
-                    case LONG:
-                        preparedStatement.setLong(i + 1, Long.parseLong(value));
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: LONG) at index %d: %s", i + 1, value));
-                        break;
-
-                    case DECIMAL:
-                        int scale = decimalScales.get(columnName.toLowerCase());
-                        BigDecimal bd = new BigDecimal(value).setScale(scale, RoundingMode.HALF_UP);
-                        preparedStatement.setBigDecimal(i + 1, bd);
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: DECIMAL) at index %d: %s", i + 1, bd.toString()));
-                        break;
-
-                    case FLOAT:
-                        preparedStatement.setFloat(i + 1, Float.parseFloat(value));
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: FLOAT) at index %d: %s", i + 1, value));
-                        break;
-
-                    case DOUBLE:
-                        preparedStatement.setDouble(i + 1, Double.parseDouble(value));
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: DOUBLE) at index %d: %s", i + 1, value));
-                        break;
-
-                    case NAIVE_TIME:
-                        preparedStatement.setTime(i + 1, Time.valueOf(value));
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: NAIVE_TIME) at index %d: %s", i + 1, value));
-                        break;
-
-                    case NAIVE_DATE:
-                        preparedStatement.setDate(i + 1, Date.valueOf(value));
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: NAIVE_DATE) at index %d: %s", i + 1, value));
-                        break;
-
-                    case NAIVE_DATETIME:
-                    case UTC_DATETIME:
-                        Timestamp ts = TeradataJDBCUtil.getTimestampFromObject(
-                                TeradataJDBCUtil.formatISODateTime(value));
-                        preparedStatement.setTimestamp(i + 1, ts);
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: NAIVE_DATETIME/UTC_DATETIME) at index %d: %s (Formatted: %s)",
-                                        i + 1, value, ts));
-                        break;
-
-                    case BINARY:
-                        preparedStatement.setBytes(i + 1, Base64.getDecoder().decode(value));
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: BINARY) at index %d (Base64-decoded)", i + 1));
-                        break;
-
-                    case XML:
-                        SQLXML sqlxml = preparedStatement.getConnection().createSQLXML();
-                        sqlxml.setString(value);
-                        preparedStatement.setSQLXML(i + 1, sqlxml);
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: XML) at index %d", i + 1));
-                        break;
-
-                    case STRING:
-                        preparedStatement.setString(i + 1, value);
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: STRING) at index %d: %s", i + 1, value));
-                        break;
-
-                    case JSON:
-                        preparedStatement.setObject(i + 1, new JSONStruct("JSON", new Object[]{value}));
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: JSON) at index %d: %s", i + 1, value));
-                        break;
-
-                    default:
-                        preparedStatement.setObject(i + 1, value);
-                        Logger.logMessage(Logger.debugLogLevel,
-                                String.format("Set parameter (DataType: %s) at index %d: %s", type, i + 1, value));
-                        break;
-                }
-            }
-
+            codecPlan.bindRow(preparedStatement, row);
             preparedStatement.addBatch();
             batchCount++;
             Logger.logMessage(Logger.debugLogLevel, "Added row to batch. Current batch count: " + batchCount);
+        } catch (SQLException e) {
+            throw new Exception("Failed to write row to FastLoad: " + e.getMessage(), e);
+        }
+    }
 
+    /**
+     * Adds a row of typed values, read from a Parquet file, to the batch. Values are bound with the
+     * same JDBC types as the text rows of {@link #writeRow(List)}.
+     */
+    @Override
+    public void writeValues(Object[] values) throws Exception {
+        try {
+            codecPlan.bindValues(preparedStatement, values);
+            preparedStatement.addBatch();
+            batchCount++;
         } catch (SQLException e) {
             throw new Exception("Failed to write row to FastLoad: " + e.getMessage(), e);
         }
@@ -270,62 +207,95 @@ public class FastLoad {
 
 
     public void loadData(String file, List<Column> columns, FileParams params, Map<String, ByteString> secretKeys) throws Exception {
-        Logger.logMessage(Logger.LogLevel.INFO,"Instance[" + instanceNumber + "] in loadData() for file: " + file);
+        loadData(file, columns, params, secretKeys, 0);
+    }
+
+    /**
+     * Loads a file, skipping the data rows that were already acknowledged at the last checkpoint
+     * of a previous attempt.
+     *
+     * @param skipRows Number of data rows at the beginning of the file to skip.
+     */
+    public void loadData(String file, List<Column> columns, FileParams params, Map<String, ByteString> secretKeys,
+                         long skipRows) throws Exception {
+        Logger.logMessage(Logger.LogLevel.INFO,"Instance[" + instanceNumber + "] in loadData() for file: " + file
+                + (skipRows > 0 ? ", resuming after row " + skipRows : ""));
         this.params = params;
         this.columns = columns;
         batchCount = 0;
-        FileInputStream is = new FileInputStream(file);
-        InputStream decoded = is ;
-        if (params.getEncryption() == Encryption.AES) {
-            decoded = decodeAES(is, secretKeys.get(file).toByteArray(), file);
+        currentFile = file;
+        rowsReadInFile = 0;
+        if (skipRows > 0) {
+            acknowledgedRows.put(file, skipRows);
         }
-
-        InputStream uncompressed = decoded;
-        if (params.getCompression() == Compression.ZSTD) {
-            uncompressed = new ZstdInputStream(decoded);
-        } else if (params.getCompression() == Compression.GZIP) {
-            uncompressed = new GZIPInputStream(decoded);
+        BatchFileDecoder decoder;
+        RowReader reader = probe == null ? null : probe.take(file);
+        boolean probed = reader != null;
+        if (probed) {
+            // The header was already read when the job was set up
+            decoder = probe.getDecoder();
+        } else {
+            decoder = new BatchFileDecoder(params, secretKeys);
+            reader = decoder.openRows(file);
         }
-
-        try (CSVReader csvReader = new CSVReaderBuilder(new BufferedReader(new InputStreamReader(uncompressed)))
-                .withCSVParser(new CSVParserBuilder().withEscapeChar('\0').build())
-                .build()) {
-            String[] headerString = csvReader.readNext();
-            if (headerString == null) {
-                // Finish if file is empty
-                return;
+        try (RowReader csvReader = reader) {
+            List<String> header;
+            if (probed) {
+                header = probe.getHeader();
+            } else {
+                String[] headerString = csvReader.readNext();
+                if (headerString == null) {
+                    // Finish if file is empty
+                    return;
+                }
+                header = new ArrayList<>(Arrays.asList(headerString));
+            }
+            if (probe != null && !header.equals(probe.getHeader())) {
+                // The USING clause of the job follows the column order of the probed file
+                throw new Exception(String.format("Header of file %s %s does not match the header of file %s %s",
+                        file, header, probe.getFile(), probe.getHeader()));
             }
-            List<String> header = new ArrayList<>(Arrays.asList(headerString));
             setHeader(header);
 
-            String[] tokens;
-            while ((tokens = csvReader.readNext()) != null) {
-                List<String> row = new ArrayList<>(Arrays.asList(tokens));
-                writeRow(row);
+            TypedRowReader typedReader = csvReader instanceof TypedRowReader ? (TypedRowReader) csvReader : null;
+            String[] tokens = null;
+            Object[] values = null;
+            while (typedReader != null ? (values = typedReader.readNextValues()) != null
+                    : (tokens = csvReader.readNext()) != null) {
+                cancellation.checkCancelled();
+                rowsReadInFile++;
+                if (rowsReadInFile <= skipRows) {
+                    continue;
+                }
+                if (typedReader != null) {
+                    writeValues(values);
+                } else {
+                    List<String> row = new ArrayList<>(Arrays.asList(tokens));
+                    writeRow(row);
+                }
                 Logger.logMessage(Logger.debugLogLevel,"batch size: " + batchSize);
                 Logger.logMessage(Logger.debugLogLevel, "Current batch count after writing row: " + batchCount);
-                if (batchCount >= batchSize) {
+                int batchSizeLimit = batchSizer == null ? batchSize : batchSizer.batchSize();
+                if (batchCount >= batchSizeLimit || codecPlan.getBatchBytes() >= batchMaxBytes) {
                     try {
+                        long start = System.nanoTime();
                         preparedStatement.executeBatch();
+                        if (batchSizer != null) {
+                            batchSizer.record(batchCount, System.nanoTime() - start);
+                        }
                         Logger.logMessage(Logger.LogLevel.INFO,"Instance[" + instanceNumber + "] inserted " + batchCount + " rows in DBS");
-                        batchCount = 0;
+                        batchSent();
                     } catch (BatchUpdateException bue) {
-                        String actualError = "";
-                        if (bue.getNextException() != null) {
-                            Exception nextException = bue.getNextException();
-                            actualError = nextException.getMessage();
-                        } else {
-                            actualError = bue.getMessage();
-                        }
-                        Logger.logMessage(Logger.LogLevel.SEVERE,
-                                String.format("WriteBatch failed with exception %s", actualError));
-                    }
-                    catch (SQLException e) {
+                        // The rows of the batch are not recorded as sent, so no checkpoint covers them
+                        throw new Exception("Failed to execute batch: " + batchError(bue), bue);
+                    } catch (SQLException e) {
                         throw new Exception("Failed to execute batch: " + e.getMessage(), e);
                     }
                 }
             }
         }
+        decoder.getStats().log(file);
+        batchStats.log("instance " + instanceNumber);
         Logger.logMessage(Logger.LogLevel.INFO,"Instance[" + instanceNumber + "] loadData completed for file: " + file);
     }
 
@@ -341,50 +311,57 @@ public class FastLoad {
         return loadCompleteStatus;
     }
 
-    public void loadLeftOverRows() {
+    /**
+     * Records the rows of the batch that was just sent and waits for a checkpoint once this
+     * session has sent a full checkpoint interval.
+     */
+    private void batchSent() {
+        acknowledgedRows.put(currentFile, rowsReadInFile);
+        rowsSinceCheckpoint += batchCount;
+        batchStats.record(batchCount, codecPlan.getBatchBytes());
+        codecPlan.resetBatchBytes();
+        batchCount = 0;
+        if (checkpointer != null && checkpointInterval > 0 && rowsSinceCheckpoint >= checkpointInterval) {
+            rowsSinceCheckpoint = 0;
+            checkpointer.arriveAndAwaitAdvance();
+        }
+    }
+
+    public void markFileCompleted(String file) {
+        completedFiles.add(file);
+    }
+
+    public Map<String, Long> getAcknowledgedRows() {
+        return new HashMap<>(acknowledgedRows);
+    }
+
+    public Set<String> getCompletedFiles() {
+        return new HashSet<>(completedFiles);
+    }
+
+    /**
+     * Sends the rows left in the batch once a file was read.
+     *
+     * @throws SQLException If the batch fails, in which case its rows are not recorded as sent.
+     */
+    public void loadLeftOverRows() throws SQLException {
         if (batchCount > 0) {
             try {
                 preparedStatement.executeBatch();
-                Logger.logMessage(Logger.LogLevel.INFO,"Instance[" + instanceNumber + "] inserted " + batchCount + " rows in DBS from loadLeftOverRows()");
-                batchCount = 0;
             } catch (BatchUpdateException bue) {
-                String actualError = "";
-                if (bue.getNextException() != null) {
-                    Exception nextException = bue.getNextException();
-                    actualError = nextException.getMessage();
-                } else {
-                    actualError = bue.getMessage();
-                }
-                Logger.logMessage(Logger.LogLevel.SEVERE,
-                        String.format("WriteBatch failed with exception %s", actualError));
-            }
-            catch (SQLException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+                throw new SQLException("Failed to execute batch: " + batchError(bue), bue);
             }
+            Logger.logMessage(Logger.LogLevel.INFO,"Instance[" + instanceNumber + "] inserted " + batchCount + " rows in DBS from loadLeftOverRows()");
+            acknowledgedRows.put(currentFile, rowsReadInFile);
+            rowsSinceCheckpoint += batchCount;
+            batchStats.record(batchCount, codecPlan.getBatchBytes());
+            codecPlan.resetBatchBytes();
+            batchCount = 0;
         }
     }
 
-    private InputStream decodeAES(InputStream is, byte[] secretKeyBytes, String file) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        IvParameterSpec iv = readIV(is, file);
-        SecretKey secretKey = new SecretKeySpec(secretKeyBytes, "AES");
-        cipher.init(Cipher.DECRYPT_MODE, secretKey, iv);
-        return new CipherInputStream(is, cipher);
-    }
-
-    private IvParameterSpec readIV(InputStream is, String file) throws Exception {
-        byte[] ivBytes = new byte[16];
-        SecureRandom secureRandom = new SecureRandom();
-        secureRandom.nextBytes(ivBytes); // Generate a random IV
-        int bytesRead = 0;
-        while (bytesRead < ivBytes.length) {
-            int read = is.read(ivBytes, bytesRead, ivBytes.length - bytesRead);
-            if (read == -1) {
-                throw new Exception(String.format("Failed to read initialization vector. File '%s' has only %d bytes", file, bytesRead));
-            }
-            bytesRead += read;
-        }
-        return new IvParameterSpec(ivBytes);
+    // The error of the first failed row, which the driver chains to the BatchUpdateException
+    private static String batchError(BatchUpdateException bue) {
+        return bue.getNextException() != null ? bue.getNextException().getMessage() : bue.getMessage();
     }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.teradata.fivetran.destination.writers;
+
+import com.teradata.fivetran.destination.Logger;
+import com.teradata.fivetran.destination.writers.util.FastLoadJournal;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Phaser;
+
+/**
+ * Barrier shared by the FastLoad sessions of one job.
+ *
+ * Every session arrives after it has sent the configured checkpoint interval of rows. When the
+ * last active session arrives, the control session issues CHECKPOINT LOADING and the position
+ * of every session is written to the FastLoad journal. Sessions that finished their files
+ * deregister, so they never hold up the remaining ones.
+ */
+class FastLoadCheckpointer extends Phaser {
+    private final Connection controlConnection;
+    private final Statement controlStatement;
+    private final FastLoad[] sessions;
+    private final FastLoadJournal journal;
+    private volatile boolean checkpointTaken = false;
+
+    FastLoadCheckpointer(Connection controlConnection, Statement controlStatement, FastLoad[] sessions,
+                         FastLoadJournal journal, boolean resumed) {
+        super(sessions.length);
+        this.controlConnection = controlConnection;
+        this.controlStatement = controlStatement;
+        this.sessions = sessions;
+        this.journal = journal;
+        // A resumed job already has a checkpoint in the database that it can restart from again
+        this.checkpointTaken = resumed && journal.getCheckpoints() > 0;
+    }
+
+    @Override
+    protected boolean onAdvance(int phase, int registeredParties) {
+        if (registeredParties == 0) {
+            return true;
+        }
+        try {
+            controlStatement.executeUpdate("CHECKPOINT LOADING");
+            controlConnection.commit();
+
+            // All registered sessions are parked on the barrier, so their counters are stable
+            Map<Integer, Map<String, Long>> progress = new HashMap<>();
+            Set<String> finishedFiles = new HashSet<>();
+            for (FastLoad session : sessions) {
+                progress.put(session.instanceNumber, session.getAcknowledgedRows());
+                finishedFiles.addAll(session.getCompletedFiles());
+            }
+            journal.recordCheckpoint(progress, finishedFiles);
+            checkpointTaken = true;
+            return false;
+        } catch (Exception e) {
+            Logger.logMessage(Logger.LogLevel.SEVERE,
+                    "FastLoad checkpoint failed, continuing without further checkpoints: " + e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Returns true if the database holds a checkpoint the job can be restarted from.
+     */
+    boolean hasCheckpoint() {
+        return checkpointTaken;
+    }
+}
@@ -1,32 +1,28 @@
 package com.teradata.fivetran.destination.writers;
 
 import java.io.*;
-import java.security.SecureRandom;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
-import java.util.zip.GZIPInputStream;
 
-import com.github.luben.zstd.ZstdInputStream;
 import com.google.protobuf.ByteString;
-import com.opencsv.CSVParserBuilder;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
+import com.teradata.fivetran.destination.CancellationScope;
 import com.teradata.fivetran.destination.TeradataConfiguration;
 import com.teradata.fivetran.destination.TeradataJDBCUtil;
+import com.teradata.fivetran.destination.warning_util.WarningHandler;
+import com.teradata.fivetran.destination.writers.util.AdaptiveBatchSizer;
+import com.teradata.fivetran.destination.writers.util.BatchFileProbe;
 import com.teradata.fivetran.destination.writers.util.TeradataColumnDesc;
 import com.teradata.fivetran.destination.writers.util.ConnectorSchemaParser;
+import com.teradata.fivetran.destination.writers.util.DataParcelDecoder;
+import com.teradata.fivetran.destination.writers.util.FastLoadJournal;
 import fivetran_sdk.v2.Column;
-import fivetran_sdk.v2.Compression;
-import fivetran_sdk.v2.Encryption;
 import fivetran_sdk.v2.FileParams;
 import com.teradata.fivetran.destination.Logger;
 
-import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 
 /**
  * FastLoadDataWriter - Handles high-performance data loading using Teradata FastLoad
@@ -46,6 +42,10 @@ public class FastLoadDataWriter {
     /** SQL template for SELECT statements */
     protected static final String SQL_SELECT_FROM_SOURCE_WHERE = "SELECT %s FROM %s %s";
 
+    /** Teradata errors after which a paused FastLoad is worth restarting, see isRestartable() */
+    private static final Set<Integer> RESTARTABLE_ERROR_CODES = new HashSet<>(Arrays.asList(
+            2631, 2639, 2641, 2825, 2826, 2828, 3111, 3120, 3598, 3603));
+
     /** JDBC driver class name for Teradata connections */
     protected static String jdbcDriver = "com.teradata.jdbc.TeraDriver";
 
@@ -72,6 +72,8 @@ public class FastLoadDataWriter {
     private FileParams params;                  // File parameters (compression, encryption)
     private Map<String, ByteString> secretKeys; // Encryption keys for file decryption
     private Integer batchSize;                  // Batch size for loading operations
+    private long batchMaxBytes;                 // Estimated batch size after which a batch is sent
+    private AdaptiveBatchSizer batchSizer;      // Tunes the batch size of all sessions, null if fixed
 
     // Header and column information
     private List<Column> headerColumns;         // Columns extracted from CSV header
@@ -90,6 +92,18 @@ public class FastLoadDataWriter {
     private String errorTable1;                 // First error table for FastLoad
     private String errorTable2;                 // Second error table for FastLoad
 
+    // Checkpoint/restart
+    private long checkpointInterval;            // Rows per session between checkpoints, 0 disables them
+    private boolean keepForRestart = false;     // Staging and error tables belong to a paused FastLoad
+
+    // Error row recovery
+    private final WarningHandler warningHandler;          // Reports rows that cannot be loaded at all
+    private final List<String> usingFieldNames = new ArrayList<>();  // USING clause layout of the job
+    private final List<String> usingFieldTypes = new ArrayList<>();
+    private Charset sessionCharset = null;                // Character set the parcels are sent in
+    private ByteOrder sessionByteOrder = null;            // Byte order the parcels are sent in
+    private final boolean failOnRejectedRows;             // Rows that cannot be loaded fail the batch
+
     // ========== CONSTRUCTOR ==========
 
     /**
@@ -106,8 +120,20 @@ public class FastLoadDataWriter {
      */
     public FastLoadDataWriter(TeradataConfiguration conf, Connection conn, String database, String table, List<Column> columns,
                               FileParams params, Map<String, ByteString> secretKeys, Integer batchSize) {
+        this(conf, conn, database, table, columns, params, secretKeys, batchSize, new WarningHandler());
+    }
+
+    /**
+     * Constructs a FastLoadDataWriter that reports rows rejected by FastLoad through the given handler.
+     *
+     * @param warningHandler Handler for rows that cannot be recovered from the FastLoad error tables
+     */
+    public FastLoadDataWriter(TeradataConfiguration conf, Connection conn, String database, String table, List<Column> columns,
+                              FileParams params, Map<String, ByteString> secretKeys, Integer batchSize,
+                              WarningHandler warningHandler) {
 
         this.conn = conn;
+        this.warningHandler = warningHandler;
         this.database = database;
         this.table = table;
         this.columns = columns;
@@ -118,6 +144,13 @@ public class FastLoadDataWriter {
         this.dbsHost = conf.host();
         this.username = conf.user();
         this.password = conf.password();
+        this.checkpointInterval = conf.fastLoadCheckpointInterval();
+        this.failOnRejectedRows = conf.failOnRejectedRows();
+        this.batchMaxBytes = conf.batchMaxBytes();
+        if (conf.adaptiveBatchSize()) {
+            this.batchSizer = new AdaptiveBatchSizer(database + "." + table, batchSize,
+                    conf.batchSizeMin(), conf.batchSizeMax());
+        }
     }
 
     // ========== PUBLIC METHODS ==========
@@ -131,14 +164,21 @@ public class FastLoadDataWriter {
      * @throws Exception If any error occurs during the loading process
      */
     public void writeData(List<String> sourceFilesList) throws Exception {
+        // The first file is decoded once: for its header here, and for its rows by the session loading it
+        try (BatchFileProbe probe = BatchFileProbe.open(sourceFilesList.get(0), params, secretKeys)) {
+            writeData(sourceFilesList, probe);
+        }
+    }
+
+    private void writeData(List<String> sourceFilesList, BatchFileProbe probe) throws Exception {
 
         // Log the number of source files and requested FastLoad sessions
         Logger.logMessage(Logger.LogLevel.INFO, "Number of source files to load: " + sourceFilesList.size());
         Logger.logMessage(Logger.LogLevel.INFO, "Number of requested FastLoad sessions: " + sourceFilesList.size());
         this.requestedSessions = sourceFilesList.size();
 
-        // Read header from first file to validate file and setup column mapping
-        List<String> header = getHeader(sourceFilesList.get(0), params, secretKeys);
+        // Header of the first file, to validate the file and setup column mapping
+        List<String> header = probe.getHeader();
         if (header == null) {
             Logger.logMessage(Logger.LogLevel.SEVERE, "Source file is empty. Exiting FastLoadDataWriter.");
             return;
@@ -161,34 +201,67 @@ public class FastLoadDataWriter {
                 .map(TeradataJDBCUtil::escapeIdentifier)
                 .collect(Collectors.joining(", "));
 
-        // Create temporary tables for FastLoad operation
-        outputTableName = String.format("%s_%s", "td_tmp", UUID.randomUUID().toString().replace("-", "_"));
-        errorTable1 = outputTableName + "_ERR1";
-        errorTable2 = outputTableName + "_ERR2";
-        Logger.logMessage(Logger.LogLevel.INFO, "Output Table Name: " + outputTableName);
-        Logger.logMessage(Logger.LogLevel.INFO, "Error Table 1: " + errorTable1);
-        Logger.logMessage(Logger.LogLevel.INFO, "Error Table 2: " + errorTable2);
-
         String columnDefinitions = TeradataJDBCUtil.getColumnDefinitions(headerColumns);
-        Logger.logMessage(Logger.LogLevel.INFO,
-                String.format("Column definitions for temporary table: %s", columnDefinitions));
-
-        String createTempTableSQL = String.format("CREATE MULTISET TABLE %s (%s)",
-                TeradataJDBCUtil.escapeTable(database, outputTableName), columnDefinitions);
+        String fileParams = Base64.getEncoder().encodeToString(params.toByteArray());
+
+        // Look for a paused FastLoad of the same batch left behind by a previous attempt
+        FastLoadJournal journal = null;
+        if (checkpointInterval > 0) {
+            journal = FastLoadJournal.load(conn, database, table);
+            // Without a checkpoint there is no restart point the database and the journal agree on
+            if (journal != null && (!journal.matches(sourceFilesList, header, columnDefinitions, fileParams)
+                    || journal.getCheckpoints() == 0)) {
+                Logger.logMessage(Logger.LogLevel.INFO,
+                        "Discarding FastLoad journal that cannot be resumed, staging table: " + journal.getStagingTable());
+                dropTableQuietly(journal.getStagingTable());
+                dropTableQuietly(journal.getErrorTable1());
+                dropTableQuietly(journal.getErrorTable2());
+                journal.discard();
+                journal = null;
+            }
+        }
+        boolean resuming = journal != null;
+
+        if (resuming) {
+            outputTableName = journal.getStagingTable();
+            errorTable1 = journal.getErrorTable1();
+            errorTable2 = journal.getErrorTable2();
+            Logger.logMessage(Logger.LogLevel.INFO, String.format(
+                    "Resuming FastLoad into %s from checkpoint %d", outputTableName, journal.getCheckpoints()));
+        } else {
+            // Create temporary tables for FastLoad operation
+            outputTableName = String.format("%s_%s", "td_tmp", UUID.randomUUID().toString().replace("-", "_"));
+            errorTable1 = outputTableName + "_ERR1";
+            errorTable2 = outputTableName + "_ERR2";
+            Logger.logMessage(Logger.LogLevel.INFO, "Output Table Name: " + outputTableName);
+            Logger.logMessage(Logger.LogLevel.INFO, "Error Table 1: " + errorTable1);
+            Logger.logMessage(Logger.LogLevel.INFO, "Error Table 2: " + errorTable2);
 
-        try {
-            dropTempTable();
-            dropErrorTables();
             Logger.logMessage(Logger.LogLevel.INFO,
-                    String.format("Creating temporary table: %s", createTempTableSQL));
-            conn.createStatement().execute(createTempTableSQL);
-            Logger.logMessage(Logger.LogLevel.INFO,
-                    String.format("Temporary table %s created successfully.", outputTableName));
-        } catch (SQLException e) {
-            Logger.logMessage(Logger.LogLevel.SEVERE,
-                    String.format("Failed to create temporary table: %s", e.getMessage()));
-            throw new SQLException("Failed to create temporary table: " + e.getMessage() + " , with SQL: " +
-                    createTempTableSQL , e);
+                    String.format("Column definitions for temporary table: %s", columnDefinitions));
+
+            String createTempTableSQL = String.format("CREATE MULTISET TABLE %s (%s)",
+                    TeradataJDBCUtil.escapeTable(database, outputTableName), columnDefinitions);
+
+            try {
+                dropTempTable();
+                dropErrorTables();
+                Logger.logMessage(Logger.LogLevel.INFO,
+                        String.format("Creating temporary table: %s", createTempTableSQL));
+                conn.createStatement().execute(createTempTableSQL);
+                Logger.logMessage(Logger.LogLevel.INFO,
+                        String.format("Temporary table %s created successfully.", outputTableName));
+            } catch (SQLException e) {
+                Logger.logMessage(Logger.LogLevel.SEVERE,
+                        String.format("Failed to create temporary table: %s", e.getMessage()));
+                throw new SQLException("Failed to create temporary table: " + e.getMessage() + " , with SQL: " +
+                        createTempTableSQL , e);
+            }
+
+            if (checkpointInterval > 0) {
+                journal = FastLoadJournal.start(conn, database, table, outputTableName, errorTable1, errorTable2,
+                        sourceFilesList, header, columnDefinitions, fileParams);
+            }
         }
 
         String beginLoading = String.format("BEGIN LOADING %s ERRORFILES %s, %s WITH INTERVAL", outputTableName, errorTable1, errorTable2);
@@ -196,9 +269,14 @@ public class FastLoadDataWriter {
 
         String lsnUrl = "jdbc:teradata://" + dbsHost
                 + "/LSS_TYPE=L,TMODE=TERA,CONNECT_FUNCTION=1,TSNANO=6,TNANO=0"; // Control Session
+        FastLoad fastLoad[] = null;
+        FastLoadCheckpointer checkpointer = null;
         try {
             Class.forName(jdbcDriver);
-            lsnConnection = DriverManager.getConnection(lsnUrl, username, password);
+            lsnConnection = CancellationScope.current().track(DriverManager.getConnection(lsnUrl, username, password));
+            // The FastLoad sessions log on with the same defaults as the control session
+            sessionCharset = getSessionCharset(lsnConnection);
+            sessionByteOrder = getSessionByteOrder(lsnConnection);
 
             Map<String, Integer> decimalScales = new HashMap<>();
 
@@ -239,9 +317,12 @@ public class FastLoadDataWriter {
             Logger.logMessage(Logger.LogLevel.INFO,"=============================");
 
             // Creating FastLoad Connections
-            FastLoad fastLoad[] = new FastLoad[numSessions];
+            fastLoad = new FastLoad[numSessions];
             for (int i = 0; i < numSessions; i++) {
                 fastLoad[i] = new FastLoad();
+                fastLoad[i].setProbe(probe);
+                fastLoad[i].setBatchMaxBytes(batchMaxBytes);
+                fastLoad[i].setBatchSizer(batchSizer);
             }
             Logger.logMessage(Logger.LogLevel.INFO,"fastLoadURL: " + fastLoadURL);
 
@@ -256,7 +337,8 @@ public class FastLoadDataWriter {
             lsnConnection.setAutoCommit(true);
             stmt.execute(beginLoading);
 
-            String usingInsertSQL = getusingInsertSQL(lsnConnection, database, outputTableName, header);
+            String usingInsertSQL = getusingInsertSQL(lsnConnection, database, outputTableName, header,
+                    usingFieldNames, usingFieldTypes);
             Logger.logMessage(Logger.LogLevel.INFO,"usingInsertSQL: " + usingInsertSQL);
             // submitting usingInsertSQL
             lsnConnection.setAutoCommit(false);
@@ -272,9 +354,17 @@ public class FastLoadDataWriter {
             }
 
 
+            if (journal != null) {
+                checkpointer = new FastLoadCheckpointer(lsnConnection, stmt, fastLoad, journal, resuming);
+                for (int i = 0; i < numSessions; i++) {
+                    fastLoad[i].setCheckpointer(checkpointer, checkpointInterval);
+                }
+            }
+
             FastLoadThread fastLoadThread[] = new FastLoadThread[numSessions];
             for (int i = 0; i < numSessions; i++) {
-                fastLoadThread[i] = new FastLoadThread(fastLoad[i], fileBatches.get(i), columns, params, secretKeys);
+                fastLoadThread[i] = new FastLoadThread(fastLoad[i], fileBatches.get(i), columns, params, secretKeys,
+                        checkpointer, resuming ? journal : null);
                 Logger.logMessage(Logger.LogLevel.INFO,"Starting Thread: " + i);
                 fastLoadThread[i].start();
             }
@@ -285,6 +375,7 @@ public class FastLoadDataWriter {
             // If the last session doesn’t complete within that timeout → throw exception
             long lastSessionTimeoutMs = 30L * 60 * 1000; // 30 minutes
             long lastSessionStartTime = -1;
+            CancellationScope cancellation = CancellationScope.current();
             while (true) {
                 try {
                     Thread.sleep(10000);
@@ -292,7 +383,12 @@ public class FastLoadDataWriter {
                     Thread.currentThread().interrupt();
                     throw new RuntimeException("Thread interrupted while waiting for FastLoad completion", e);
                 }
+                cancellation.checkCancelled();
                 for (int i = 0; i < numSessions; i++) {
+                    if (fastLoadThread[i].getFailure() != null) {
+                        throw new SQLException("FastLoad session " + (i + 1) + " failed: "
+                                + fastLoadThread[i].getFailure().getMessage(), fastLoadThread[i].getFailure());
+                    }
                     if (fastLoad[i].getLoadCompleted()) {
                         count++;
                     }
@@ -332,19 +428,191 @@ public class FastLoadDataWriter {
             }
 
             lsnConnection.close();
-        } catch (SQLException ex) {
-            try {
-                stmt.executeUpdate(endLoading);
-                lsnConnection.commit();
-            } catch (SQLException e) {
-                e.printStackTrace();
+            if (journal != null) {
+                journal.discard();
             }
-            ex.printStackTrace();
+        } catch (SQLException ex) {
+            stopLoading(fastLoad, checkpointer, journal, endLoading, ex);
+            // Do not let the caller merge a partially loaded staging table
+            throw ex;
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
         } catch (Exception e) {
+            stopLoading(fastLoad, checkpointer, journal, endLoading, e);
             throw new RuntimeException(e);
         }
+
+        recoverErrorRows();
+    }
+
+    /**
+     * Stops a FastLoad job that failed. The job is paused at its last checkpoint when a retry of the
+     * batch can get past the failure. Otherwise it is ended, which releases the lock on the staging
+     * table so that it can be dropped, and its journal is removed. A cancelled call, as at shutdown,
+     * always ends the job and drops its error tables too, since nothing would resume or drop them.
+     */
+    private void stopLoading(FastLoad[] fastLoad, FastLoadCheckpointer checkpointer, FastLoadJournal journal,
+                             String endLoading, Exception cause) {
+        boolean cancelled = isCancellation(cause);
+        if (checkpointer != null && checkpointer.hasCheckpoint() && !cancelled && isRestartable(cause)) {
+            pauseLoading(fastLoad, checkpointer, cause);
+            return;
+        }
+        if (checkpointer != null) {
+            checkpointer.forceTermination();
+        }
+        endLoading(endLoading);
+        if (journal != null) {
+            journal.discard();
+        }
+        if (cancelled) {
+            dropErrorTables();
+        }
+    }
+
+    private static boolean isCancellation(Throwable failure) {
+        if (CancellationScope.current().isCancelled()) {
+            return true;
+        }
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the failure is one a retry of the batch can get past: a lost connection, or
+     * a deadlock (2631), too many transactions (2639), a restructured table (2641), a database
+     * restart or recovery (2825, 2826, 2828, 3120), a dispatcher timeout (3111) or a concurrent
+     * change conflict (3598, 3603).
+     */
+    static boolean isRestartable(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (!(t instanceof SQLException)) {
+                continue;
+            }
+            for (SQLException e = (SQLException) t; e != null; e = e.getNextException()) {
+                String state = e.getSQLState();
+                if (e instanceof SQLTransientException || e instanceof SQLRecoverableException
+                        || RESTARTABLE_ERROR_CODES.contains(e.getErrorCode())
+                        || (state != null && state.startsWith("08"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ends a FastLoad job that failed, which releases the lock on the staging table so that it can
+     * be dropped.
+     */
+    private void endLoading(String endLoading) {
+        try {
+            if (stmt != null) {
+                stmt.executeUpdate(endLoading);
+                lsnConnection.commit();
+            }
+        } catch (SQLException e) {
+            Logger.logMessage(Logger.LogLevel.WARNING,
+                    "Failed to end the FastLoad of " + outputTableName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the rows FastLoad rejected into its error tables back into the staging table through
+     * typed JDBC inserts. Each row that still cannot be loaded is reported as a warning and kept in
+     * its error table; the batch fails because of them only if the configuration says so.
+     *
+     * @throws SQLException If the error tables cannot be read, or rows could not be recovered and
+     *                      rejected rows fail the batch.
+     */
+    private void recoverErrorRows() throws SQLException {
+        if (usingFieldNames.isEmpty()) {
+            return;
+        }
+        FastLoadErrorRowHandler handler = new FastLoadErrorRowHandler(conn, database, table, outputTableName,
+                errorTable1, errorTable2, usingFieldNames.toArray(new String[0]),
+                usingFieldTypes.toArray(new String[0]), sessionCharset, sessionByteOrder, columns, batchSize,
+                warningHandler);
+        long unrecoverable = handler.recover();
+        if (unrecoverable == 0) {
+            return;
+        }
+        String message = String.format(
+                "%d rows of table %s were rejected by FastLoad and could not be loaded; see error tables %s and %s",
+                unrecoverable, TeradataJDBCUtil.escapeTable(database, table), errorTable1, errorTable2);
+        if (failOnRejectedRows) {
+            throw new SQLException(message);
+        }
+        Logger.logMessage(Logger.LogLevel.WARNING, message);
+    }
+
+    /**
+     * Returns the session character set of a connection, in which character data is exchanged.
+     */
+    private static Charset getSessionCharset(Connection connection) throws SQLException {
+        try (Statement helpStmt = connection.createStatement();
+             ResultSet rs = helpStmt.executeQuery("HELP SESSION")) {
+            String charset = rs.next() ? rs.getString("Character Set") : null;
+            Logger.logMessage(Logger.LogLevel.INFO, "FastLoad session character set: " + charset);
+            return DataParcelDecoder.forSessionCharset(charset);
+        }
+    }
+
+    /**
+     * Returns the byte order of the data parcels of the sessions of a job, which FastLoad keeps as
+     * they are in the DataParcel column of the acquisition error table. Parcels travel in the data
+     * format the client logged the session on with, and the Teradata JDBC Driver logs its sessions
+     * on with the little-endian Intel format on every platform.
+     */
+    private static ByteOrder getSessionByteOrder(Connection connection) throws SQLException {
+        Logger.logMessage(Logger.LogLevel.INFO, "FastLoad session client: " + connection.getMetaData().getDriverName());
+        return ByteOrder.LITTLE_ENDIAN;
+    }
+
+    /**
+     * Leaves a failed FastLoad paused at its last checkpoint instead of ending it, so that the
+     * next attempt of the same batch can restart from there. The sessions are logged off without
+     * END LOADING and the staging and error tables are kept.
+     */
+    private void pauseLoading(FastLoad[] fastLoad, FastLoadCheckpointer checkpointer, Exception cause) {
+        Logger.logMessage(Logger.LogLevel.WARNING, String.format(
+                "FastLoad into %s failed after a checkpoint, keeping it paused for restart: %s",
+                outputTableName, cause.getMessage()));
+        keepForRestart = true;
+        checkpointer.forceTermination();
+        if (fastLoad != null) {
+            for (FastLoad session : fastLoad) {
+                if (session != null && session.fastLoadConnection != null) {
+                    session.closeFastLoadConnection();
+                }
+            }
+        }
+        try {
+            lsnConnection.close();
+        } catch (SQLException e) {
+            Logger.logMessage(Logger.LogLevel.WARNING, "Failed to close FastLoad control session: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops a table left behind by an abandoned FastLoad, ignoring any error.
+     */
+    private void dropTableQuietly(String tableName) {
+        if (tableName == null) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(String.format("DROP TABLE %s", TeradataJDBCUtil.escapeTable(database, tableName)));
+        } catch (SQLException e) {
+            if (e.getErrorCode() != 3807) {
+                Logger.logMessage(Logger.LogLevel.WARNING,
+                        "Failed to drop abandoned FastLoad table " + tableName + ": " + e.getMessage());
+            }
+        }
     }
 
     /**
@@ -425,6 +693,8 @@ public class FastLoadDataWriter {
     /**
      * Performs delete-insert operation (upsert) from temporary table to target table.
      * Deletes existing records based on primary key matches and inserts all records from temporary table.
+     * The temporary and error tables are dropped by the caller, also when this fails, so that the
+     * statements can run in one transaction.
      *
      * @throws SQLException If any SQL operation fails during delete or insert
      */
@@ -457,8 +727,6 @@ public class FastLoadDataWriter {
                             "Failed to execute (" + deleteQuery + ") on table: "
                                     + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
                                     + e.getMessage());
-                    dropTempTable();
-                    dropErrorTables();
                     throw new SQLException("Failed to execute (" + deleteQuery + ") on table: "
                             + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
                             + e.getMessage(), e);
@@ -482,14 +750,10 @@ public class FastLoadDataWriter {
                     "Failed to execute (" + insertQuery + ") on table: "
                             + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
                             + e.getMessage());
-            dropTempTable();
-            dropErrorTables();
             throw new SQLException("Failed to execute (" + insertQuery + ") on table: "
                     + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
                     + e.getMessage(), e);
         }
-        dropTempTable();
-        dropErrorTables();
     }
 
     /**
@@ -497,6 +761,10 @@ public class FastLoadDataWriter {
      * Handles SQLException gracefully for cases where table doesn't exist.
      */
     public void dropTempTable() {
+        if (keepForRestart) {
+            Logger.logMessage(Logger.LogLevel.INFO, "Keeping temporary table " + outputTableName + " for FastLoad restart.");
+            return;
+        }
         try {
             if (conn == null || conn.isClosed()) {
                 Logger.logMessage(Logger.debugLogLevel,"Connection is closed. Cannot drop temporary table.");
@@ -515,6 +783,7 @@ public class FastLoadDataWriter {
             Logger.logMessage(Logger.debugLogLevel,"Temporary table deleted successfully.");
             conn.createStatement().execute(dropQuery);
             Logger.logMessage(Logger.debugLogLevel,"Temporary table dropped successfully.");
+            outputTableName = null;
         } catch (SQLException e) {
             if (e.getErrorCode() != 3807) {
                 Logger.logMessage(Logger.LogLevel.SEVERE,"Failed to delete or drop temporary table: " + e.getMessage());
@@ -527,6 +796,9 @@ public class FastLoadDataWriter {
      * Throws exception if error tables contain rows that need analysis.
      */
     public void dropErrorTables() {
+        if (keepForRestart) {
+            return;
+        }
         try {
             if (conn == null || conn.isClosed()) {
                 Logger.logMessage(Logger.debugLogLevel, "Connection is closed. Cannot drop error tables.");
@@ -607,42 +879,6 @@ public class FastLoadDataWriter {
 
     // ========== STATIC UTILITY METHODS ==========
 
-    /**
-     * Reads the header row from a CSV file with support for encryption and compression.
-     *
-     * @param file      Path to the CSV file
-     * @param params    File parameters specifying compression and encryption
-     * @param secretKeys Map of file names to encryption keys
-     * @return List of column names from the header, or null if file is empty
-     * @throws Exception If file reading, decryption, or decompression fails
-     */
-    public static List<String> getHeader(String file, FileParams params, Map<String, ByteString> secretKeys) throws Exception {
-        FileInputStream is = new FileInputStream(file);
-        InputStream decoded = is ;
-        if (params.getEncryption() == Encryption.AES) {
-            decoded = decodeAES(is, secretKeys.get(file).toByteArray(), file);
-        }
-
-        InputStream uncompressed = decoded;
-        if (params.getCompression() == Compression.ZSTD) {
-            uncompressed = new ZstdInputStream(decoded);
-        } else if (params.getCompression() == Compression.GZIP) {
-            uncompressed = new GZIPInputStream(decoded);
-        }
-
-        try (CSVReader csvReader = new CSVReaderBuilder(new BufferedReader(new InputStreamReader(uncompressed)))
-                .withCSVParser(new CSVParserBuilder().withEscapeChar('\0').build())
-                .build()) {
-            String[] headerString = csvReader.readNext();
-            if (headerString == null) {
-                // Finish if file is empty
-                return null;
-            }
-            List<String> header = new ArrayList<>(Arrays.asList(headerString));
-            return header;
-        }
-    }
-
     /**
      * Generates the USING INSERT SQL statement for FastLoad operations.
      * This method queries the database to get column metadata and constructs the appropriate USING clause.
@@ -651,9 +887,12 @@ public class FastLoadDataWriter {
      * @param database       Database name
      * @param outputTableName Temporary table name
      * @param header         List of column names from header
+     * @param usingNames     Receives the column names of the USING clause, in parcel order
+     * @param usingTypes     Receives the USING types of those columns
      * @return USING INSERT SQL statement, or null if no valid columns found
      */
-    private static String getusingInsertSQL(Connection con, String database, String outputTableName, List<String> header) {
+    private static String getusingInsertSQL(Connection con, String database, String outputTableName, List<String> header,
+                                            List<String> usingNames, List<String> usingTypes) {
         try {
             Statement stmt = con.createStatement();
             Logger.logMessage(Logger.LogLevel.INFO,"Query: " + "select count(*) from dbc.ColumnsV where tablename='" + database + "." + outputTableName + "';");
@@ -749,7 +988,12 @@ public class FastLoadDataWriter {
 
             Logger.logMessage(Logger.LogLevel.INFO,"Field Names: " + Arrays.toString(fieldNames));
             Logger.logMessage(Logger.LogLevel.INFO,"Field Types: " + Arrays.toString(fieldTypes4Using));
-            return getUsingSQL(outputTableName, fieldNames, fieldTypes4Using, "UTF-8");
+            String usingSQL = getUsingSQL(outputTableName, fieldNames, fieldTypes4Using, "UTF-8");
+            usingNames.clear();
+            usingNames.addAll(Arrays.asList(fieldNames));
+            usingTypes.clear();
+            usingTypes.addAll(Arrays.asList(fieldTypes4Using));
+            return usingSQL;
         } catch (SQLException sqle) {
             sqle.printStackTrace();
         } catch (InterruptedException e) {
@@ -958,46 +1202,4 @@ public class FastLoadDataWriter {
     public static String getQuotedName(String name) {
         return quoteFieldNameForSql(name);
     }
-
-    // ========== ENCRYPTION/DECRYPTION METHODS ==========
-
-    /**
-     * Decodes an AES-encrypted input stream using the provided secret key.
-     *
-     * @param is             Input stream containing encrypted data
-     * @param secretKeyBytes AES secret key bytes
-     * @param file           File name for error reporting
-     * @return Decrypted input stream
-     * @throws Exception If decryption setup or execution fails
-     */
-    private static InputStream decodeAES(InputStream is, byte[] secretKeyBytes, String file) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        IvParameterSpec iv = readIV(is, file);
-        SecretKey secretKey = new SecretKeySpec(secretKeyBytes, "AES");
-        cipher.init(Cipher.DECRYPT_MODE, secretKey, iv);
-        return new CipherInputStream(is, cipher);
-    }
-
-    /**
-     * Reads the initialization vector (IV) from the input stream.
-     *
-     * @param is   Input stream containing the IV
-     * @param file File name for error reporting
-     * @return IV parameter specification for AES decryption
-     * @throws Exception If IV reading fails or insufficient bytes are available
-     */
-    private static IvParameterSpec readIV(InputStream is, String file) throws Exception {
-        byte[] ivBytes = new byte[16];
-        SecureRandom secureRandom = new SecureRandom();
-        secureRandom.nextBytes(ivBytes); // Generate a random IV
-        int bytesRead = 0;
-        while (bytesRead < ivBytes.length) {
-            int read = is.read(ivBytes, bytesRead, ivBytes.length - bytesRead);
-            if (read == -1) {
-                throw new Exception(String.format("Failed to read initialization vector. File '%s' has only %d bytes", file, bytesRead));
-            }
-            bytesRead += read;
-        }
-        return new IvParameterSpec(ivBytes);
-    }
 }
\ No newline at end of file
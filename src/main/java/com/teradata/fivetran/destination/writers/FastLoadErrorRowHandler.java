@@ -0,0 +1,296 @@
+package com.teradata.fivetran.destination.writers;
+
+import com.teradata.fivetran.destination.Logger;
+import com.teradata.fivetran.destination.TeradataJDBCUtil;
+import com.teradata.fivetran.destination.warning_util.WarningHandler;
+import com.teradata.fivetran.destination.writers.util.ColumnMetadata;
+import com.teradata.fivetran.destination.writers.util.DataParcelDecoder;
+import com.teradata.fivetran.destination.writers.util.JSONStruct;
+import fivetran_sdk.v2.Column;
+import fivetran_sdk.v2.DataType;
+
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.sql.*;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Recovers the rows FastLoad rejected into its error tables.
+ *
+ * Rows in the uniqueness violation table (ERR2) already have the staging table layout and are
+ * moved back with a single INSERT ... SELECT. Rows in the acquisition error table (ERR1) are only
+ * available as raw data parcels; they are decoded with the USING layout of the job and inserted
+ * into the staging table through regular typed JDBC binding, widening VARCHAR columns when
+ * needed. Rows that fail on that path as well are reported one by one through the warning handler,
+ * so that they are not lost silently, and counted for the caller. An error table is dropped once
+ * all its rows were recovered and kept otherwise, for the analysis of the rejected rows.
+ */
+public class FastLoadErrorRowHandler {
+    private final Connection conn;
+    private final String database;
+    private final String table;
+    private final String stagingTable;
+    private final String errorTable1;
+    private final String errorTable2;
+    private final String[] fieldNames;
+    private final String[] types4Using;
+    private final Charset charset;
+    private final ByteOrder byteOrder;
+    private final Column[] fieldColumns;
+    private final int batchSize;
+    private final WarningHandler warningHandler;
+
+    private Map<String, ColumnMetadata> varcharColumnLengths;
+    private PreparedStatement insertStatement;
+    private final List<Object[]> pendingRows = new ArrayList<>();
+    private long recoveredRows = 0;
+    private long unrecoverableRows = 0;
+    private long unrecoverableUniquenessRows = 0;
+
+    /**
+     * @param fieldNames  Column names of the USING clause, in parcel order.
+     * @param types4Using USING types of those columns.
+     * @param charset     The character set of the FastLoad sessions, which the parcels were sent in.
+     * @param byteOrder   The byte order of the FastLoad sessions, which the parcels were sent in.
+     * @param columns     Column definitions from the schema.
+     */
+    public FastLoadErrorRowHandler(Connection conn, String database, String table, String stagingTable,
+                                   String errorTable1, String errorTable2, String[] fieldNames, String[] types4Using,
+                                   Charset charset, ByteOrder byteOrder, List<Column> columns, int batchSize,
+                                   WarningHandler warningHandler) {
+        this.conn = conn;
+        this.database = database;
+        this.table = table;
+        this.stagingTable = stagingTable;
+        this.errorTable1 = errorTable1;
+        this.errorTable2 = errorTable2;
+        this.fieldNames = fieldNames;
+        this.types4Using = types4Using;
+        this.charset = charset;
+        this.byteOrder = byteOrder;
+        this.batchSize = batchSize;
+        this.warningHandler = warningHandler;
+
+        Map<String, Column> nameToColumn = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Column column : columns) {
+            nameToColumn.put(column.getName(), column);
+        }
+        this.fieldColumns = new Column[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            fieldColumns[i] = nameToColumn.get(fieldNames[i]);
+        }
+    }
+
+    /**
+     * Moves the rows of both error tables into the staging table and drops the error tables whose
+     * rows were all recovered.
+     *
+     * @return The number of rows that could not be loaded.
+     * @throws SQLException If the error tables cannot be read.
+     */
+    public long recover() throws SQLException {
+        recoverUniquenessViolations();
+        recoverAcquisitionErrors();
+        if (unrecoverableRows - unrecoverableUniquenessRows == 0) {
+            dropErrorTable(errorTable1);
+        }
+        if (unrecoverableUniquenessRows == 0) {
+            dropErrorTable(errorTable2);
+        }
+        Logger.logMessage(Logger.LogLevel.INFO, String.format(
+                "FastLoad error row recovery for %s: %d rows recovered, %d rows could not be loaded",
+                TeradataJDBCUtil.escapeTable(database, table), recoveredRows, unrecoverableRows));
+        return unrecoverableRows;
+    }
+
+    private void recoverUniquenessViolations() throws SQLException {
+        long rows = countRows(errorTable2);
+        if (rows <= 0) {
+            return;
+        }
+        String cols = Arrays.stream(fieldNames)
+                .map(TeradataJDBCUtil::escapeIdentifier)
+                .collect(Collectors.joining(", "));
+        String insertQuery = String.format("INSERT INTO %s (%s) SELECT %s FROM %s",
+                TeradataJDBCUtil.escapeTable(database, stagingTable), cols, cols,
+                TeradataJDBCUtil.escapeTable(database, errorTable2));
+        Logger.logMessage(Logger.LogLevel.INFO, "Recovering uniqueness violation rows: " + insertQuery);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(insertQuery);
+            recoveredRows += rows;
+        } catch (SQLException e) {
+            unrecoverableRows += rows;
+            unrecoverableUniquenessRows += rows;
+            warningHandler.handle(String.format("Failed to recover %d rows from FastLoad error table %s", rows, errorTable2), e);
+        }
+    }
+
+    private void recoverAcquisitionErrors() throws SQLException {
+        if (countRows(errorTable1) <= 0) {
+            return;
+        }
+        DataParcelDecoder decoder = new DataParcelDecoder(types4Using, charset, byteOrder);
+        varcharColumnLengths = TeradataJDBCUtil.getVarcharColumnLengths(conn, database, table);
+        prepareInsert();
+
+        String selectQuery = String.format("SELECT ErrorCode, ErrorFieldName, DataParcel FROM %s",
+                TeradataJDBCUtil.escapeTable(database, errorTable1));
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(batchSize);
+            try (ResultSet rs = stmt.executeQuery(selectQuery)) {
+                while (rs.next()) {
+                    int errorCode = rs.getInt(1);
+                    String errorField = rs.getString(2);
+                    byte[] parcel = rs.getBytes(3);
+                    Object[] row;
+                    try {
+                        row = decoder.decode(parcel);
+                    } catch (IllegalArgumentException e) {
+                        reportRow(errorCode, errorField, e.getMessage());
+                        continue;
+                    }
+                    addRow(row);
+                }
+            }
+        }
+        flush();
+        insertStatement.close();
+    }
+
+    private void prepareInsert() throws SQLException {
+        String cols = Arrays.stream(fieldNames)
+                .map(TeradataJDBCUtil::escapeIdentifier)
+                .collect(Collectors.joining(", "));
+        String placeholders = Arrays.stream(fieldNames).map(c -> "?").collect(Collectors.joining(", "));
+        String query = String.format("INSERT INTO %s (%s) VALUES (%s)",
+                TeradataJDBCUtil.escapeTable(database, stagingTable), cols, placeholders);
+        Logger.logMessage(Logger.LogLevel.INFO, "Prepared SQL statement for error rows: " + query);
+        insertStatement = conn.prepareStatement(query);
+    }
+
+    private void addRow(Object[] row) throws SQLException {
+        widenIfNeeded(row);
+        try {
+            bind(insertStatement, row);
+        } catch (IllegalArgumentException | ClassCastException e) {
+            insertStatement.clearParameters();
+            reportRow(0, null, "Cannot convert decoded value: " + e.getMessage());
+            return;
+        }
+        insertStatement.addBatch();
+        pendingRows.add(row);
+        if (pendingRows.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (pendingRows.isEmpty()) {
+            return;
+        }
+        try {
+            insertStatement.executeBatch();
+            recoveredRows += pendingRows.size();
+        } catch (BatchUpdateException bue) {
+            // Find the rows that fail on their own
+            insertStatement.clearBatch();
+            for (Object[] row : pendingRows) {
+                try {
+                    bind(insertStatement, row);
+                    insertStatement.executeUpdate();
+                    recoveredRows++;
+                } catch (SQLException | IllegalArgumentException e) {
+                    reportRow(e instanceof SQLException ? ((SQLException) e).getErrorCode() : 0, null, e.getMessage());
+                }
+            }
+        }
+        pendingRows.clear();
+    }
+
+    /**
+     * Widens staging and target VARCHAR columns for values that do not fit, like LoadDataWriter.
+     */
+    private void widenIfNeeded(Object[] row) throws SQLException {
+        for (int i = 0; i < row.length; i++) {
+            if (!(row[i] instanceof String) || fieldColumns[i] == null || fieldColumns[i].getType() != DataType.STRING) {
+                continue;
+            }
+            String columnName = fieldColumns[i].getName();
+            ColumnMetadata meta = varcharColumnLengths.get(columnName);
+            if (meta == null) {
+                continue;
+            }
+            int maxAllowed = meta.getMaxAllowedLength();
+            int currentLen = meta.getLength();
+            int safeLength = Math.min(((String) row[i]).length(), maxAllowed);
+            if (safeLength > currentLen && currentLen < maxAllowed) {
+                // DDL must not run with rows pending in the batch
+                flush();
+                TeradataJDBCUtil.resizeVarcharColumn(conn, database, table, stagingTable, columnName, currentLen, safeLength);
+                varcharColumnLengths.put(columnName, new ColumnMetadata(safeLength, meta.isUnicode() ? 2 : 1));
+                insertStatement.close();
+                prepareInsert();
+            }
+        }
+    }
+
+    private void bind(PreparedStatement stmt, Object[] row) throws SQLException {
+        for (int i = 0; i < row.length; i++) {
+            Object value = row[i];
+            DataType type = fieldColumns[i] == null ? DataType.STRING : fieldColumns[i].getType();
+            if (value == null) {
+                stmt.setNull(i + 1, Types.NULL);
+                continue;
+            }
+            switch (type) {
+                case NAIVE_TIME:
+                    stmt.setTime(i + 1, Time.valueOf(((String) value).substring(0, 8)));
+                    break;
+                case NAIVE_DATETIME:
+                case UTC_DATETIME:
+                    stmt.setTimestamp(i + 1, TeradataJDBCUtil.getTimestampFromObject(
+                            TeradataJDBCUtil.formatISODateTime((String) value)));
+                    break;
+                case JSON:
+                    stmt.setObject(i + 1, new JSONStruct("JSON", new Object[]{value}));
+                    break;
+                default:
+                    stmt.setObject(i + 1, value);
+                    break;
+            }
+        }
+    }
+
+    private void reportRow(int errorCode, String errorField, String message) {
+        unrecoverableRows++;
+        warningHandler.handle(String.format(
+                "FastLoad error row for %s could not be loaded and is kept in %s (error code %d%s): %s",
+                TeradataJDBCUtil.escapeTable(database, table), TeradataJDBCUtil.escapeTable(database, errorTable1),
+                errorCode, errorField == null ? "" : ", field " + errorField.trim(), message));
+    }
+
+    private long countRows(String errorTable) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + TeradataJDBCUtil.escapeTable(database, errorTable))) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            if (e.getErrorCode() == 3807) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+
+    private void dropErrorTable(String errorTable) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE " + TeradataJDBCUtil.escapeTable(database, errorTable));
+        } catch (SQLException e) {
+            if (e.getErrorCode() != 3807) {
+                Logger.logMessage(Logger.LogLevel.WARNING,
+                        "Failed to drop FastLoad error table " + errorTable + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Map;
 
 import com.google.protobuf.ByteString;
+import com.teradata.fivetran.destination.Logger;
+import com.teradata.fivetran.destination.writers.util.FastLoadJournal;
 import fivetran_sdk.v2.Column;
 import fivetran_sdk.v2.FileParams;
 
@@ -14,24 +16,63 @@ public class FastLoadThread extends Thread {
     FileParams params;
     Map<String, ByteString> secretKeys;
     List<Column> columns;
+    FastLoadCheckpointer checkpointer;
+    FastLoadJournal resumeJournal;
+    private volatile Exception failure = null;
 
     public FastLoadThread(FastLoad fastLoad, List<String> files, List<Column> columns, FileParams params, Map<String, ByteString> secretKeys) {
+        this(fastLoad, files, columns, params, secretKeys, null, null);
+    }
+
+    /**
+     * @param checkpointer  Barrier used for interval checkpoints, or null if checkpoints are disabled.
+     * @param resumeJournal Journal of the attempt being resumed, or null when the load starts from scratch.
+     */
+    public FastLoadThread(FastLoad fastLoad, List<String> files, List<Column> columns, FileParams params,
+                          Map<String, ByteString> secretKeys, FastLoadCheckpointer checkpointer,
+                          FastLoadJournal resumeJournal) {
         this.fastLoad = fastLoad;
         this.files = files;
         this.params = params;
         this.secretKeys = secretKeys;
         this.columns = columns;
+        this.checkpointer = checkpointer;
+        this.resumeJournal = resumeJournal;
     }
 
     public void run() {
         try {
             for (String file : files) {
-                fastLoad.loadData(file, columns, params, secretKeys);
+                if (resumeJournal != null && resumeJournal.isCompleted(file)) {
+                    Logger.logMessage(Logger.LogLevel.INFO, "File " + file + " was loaded before the last checkpoint. Skipping.");
+                    fastLoad.markFileCompleted(file);
+                    continue;
+                }
+                long skipRows = resumeJournal == null ? 0 : resumeJournal.acknowledgedRows(file);
+                fastLoad.loadData(file, columns, params, secretKeys, skipRows);
                 fastLoad.loadLeftOverRows();
+                fastLoad.markFileCompleted(file);
             }
             fastLoad.markLoadCompleted();
         } catch (Exception e) {
-            throw new RuntimeException(e);
+            Logger.logMessage(Logger.LogLevel.SEVERE,
+                    "FastLoad session " + fastLoad.instanceNumber + " failed: " + e.getMessage());
+            failure = e;
+            if (checkpointer != null) {
+                // Rows of the failed batch may be partially applied, so no further checkpoint is safe
+                checkpointer.forceTermination();
+            }
+        } finally {
+            if (checkpointer != null) {
+                checkpointer.arriveAndDeregister();
+            }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the exception that stopped this session, or null if it has not failed.
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+}
@@ -4,18 +4,17 @@ import com.google.protobuf.ByteString;
 import com.teradata.fivetran.destination.Logger;
 import com.teradata.fivetran.destination.TeradataJDBCUtil;
 import com.teradata.fivetran.destination.warning_util.WarningHandler;
+import com.teradata.fivetran.destination.writers.util.CodecPlan;
+import com.teradata.fivetran.destination.writers.util.ColumnCodec;
 import com.teradata.fivetran.destination.writers.util.ColumnMetadata;
-import com.teradata.fivetran.destination.writers.util.JSONStruct;
 import fivetran_sdk.v2.*;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.sql.*;
-import java.sql.Date;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class LoadDataWriter extends Writer {
+public class LoadDataWriter extends Writer implements TypedRowWriter {
     private Connection conn;
     private PreparedStatement preparedStatement;
     private String database;
@@ -24,6 +23,7 @@ public class LoadDataWriter extends Writer {
     private List<Column> headerColumns;
     private String columnNames;
     private Map<String, ColumnMetadata> varcharColumnLengths;
+    private CodecPlan codecPlan;
     private final WarningHandler warningHandler;
     private int currentBatchSize = 0;
     private List<Column> columns;
@@ -78,6 +78,15 @@ public class LoadDataWriter extends Writer {
         String placeholders = headerColumns.stream().map(c -> "?").collect(Collectors.joining(", "));
 
         varcharColumnLengths = TeradataJDBCUtil.getVarcharColumnLengths(conn, database, table);
+        ColumnCodec[] codecs = new ColumnCodec[headerColumns.size()];
+        for (int i = 0; i < codecs.length; i++) {
+            Column column = headerColumns.get(i);
+            ColumnMetadata meta = varcharColumnLengths.get(column.getName());
+            codecs[i] = column.getType() == DataType.STRING && meta != null
+                    ? ColumnCodec.forString(meta.getLength(), widener(column.getName()))
+                    : ColumnCodec.forType(column.getType());
+        }
+        codecPlan = new CodecPlan(codecs, params.getNullString());
 
         temp_table = String.format("%s_%s", "td_tmp", UUID.randomUUID().toString().replace("-", "_"));
 
@@ -108,122 +117,48 @@ public class LoadDataWriter extends Writer {
         preparedStatement = conn.prepareStatement(query);
     }
 
-    private int getSqlTypeFromDataType(DataType type) {
-        switch (type) {
-            case BOOLEAN:
-            case SHORT:
-            case INT:
-                return java.sql.Types.INTEGER;
-            case LONG:
-                return java.sql.Types.BIGINT;
-            case DECIMAL:
-                return java.sql.Types.DECIMAL;
-            case FLOAT:
-                return java.sql.Types.FLOAT;
-            case DOUBLE:
-                return java.sql.Types.DOUBLE;
-            case NAIVE_TIME:
-                return java.sql.Types.TIME;
-            case NAIVE_DATE:
-                return java.sql.Types.DATE;
-            case NAIVE_DATETIME:
-            case UTC_DATETIME:
-                return java.sql.Types.TIMESTAMP;
-            case BINARY:
-                return java.sql.Types.BINARY;
-            case XML:
-                return java.sql.Types.SQLXML;
-            default:
-                return java.sql.Types.VARCHAR;
-        }
+    /**
+     * Returns the widener of a VARCHAR column, which grows the column in the target and temporary
+     * tables up to the maximum length of its character set.
+     */
+    private ColumnCodec.Widener widener(String columnName) {
+        return length -> {
+            ColumnMetadata meta = varcharColumnLengths.get(columnName);
+            int maxAllowed = meta.getMaxAllowedLength();
+            int currentLen = meta.getLength();
+            int safeLength = Math.min(length, maxAllowed);
+
+            if (safeLength > currentLen && currentLen < maxAllowed) {
+                TeradataJDBCUtil.resizeVarcharColumn(conn, database, table, temp_table, columnName, currentLen, safeLength);
+                varcharColumnLengths.put(columnName, new ColumnMetadata(safeLength, meta.isUnicode() ? 2 : 1));
+                currentLen = safeLength;
+            }
+            return currentLen < maxAllowed ? currentLen : Integer.MAX_VALUE;
+        };
     }
 
     @Override
     public void writeRow(List<String> row) throws Exception {
         Logger.logMessage(Logger.debugLogLevel, "#########################LoadDataWriter.writeRow#########################");
         try {
-            for (int i = 0; i < row.size(); i++) {
-                DataType type = headerColumns.get(i).getType();
-                String value = row.get(i);
-                if (value == null || value.equals("null") || value.equals(params.getNullString())) {
-                    preparedStatement.setNull(i + 1, getSqlTypeFromDataType(type));
-                    Logger.logMessage(Logger.debugLogLevel, String.format("Set parameter at index %d to NULL", i + 1));
-                    continue;
-                }
-                switch (type) {
-                    case BOOLEAN:
-                        if (value.equalsIgnoreCase("true")) {
-                            preparedStatement.setByte(i + 1, (byte) 1);
-                        } else if (value.equalsIgnoreCase("false")) {
-                            preparedStatement.setByte(i + 1, (byte) 0);
-                        }
-                        break;
-                    case SHORT:
-                    case INT:
-                        preparedStatement.setInt(i + 1, Integer.parseInt(value));
-                        break;
-                    case LONG:
-                        preparedStatement.setLong(i + 1, Long.parseLong(value));
-                        break;
-                    case DECIMAL:
-                        preparedStatement.setBigDecimal(i + 1, new BigDecimal(value));
-                        break;
-                    case FLOAT:
-                        preparedStatement.setFloat(i + 1, Float.parseFloat(value));
-                        break;
-                    case DOUBLE:
-                        preparedStatement.setDouble(i + 1, Double.parseDouble(value));
-                        break;
-                    case NAIVE_TIME:
-                        preparedStatement.setTime(i + 1, Time.valueOf(value));
-                        break;
-                    case NAIVE_DATE:
-                        preparedStatement.setDate(i + 1, Date.valueOf(value));
-                        break;
-                    case NAIVE_DATETIME:
-                    case UTC_DATETIME:
-                        preparedStatement.setTimestamp(i + 1, TeradataJDBCUtil.getTimestampFromObject(TeradataJDBCUtil.formatISODateTime(value)));
-                        break;
-                    case BINARY:
-                        preparedStatement.setBytes(i + 1, Base64.getDecoder().decode(value));
-                        break;
-                    case XML:
-                        SQLXML sqlxml = preparedStatement.getConnection().createSQLXML();
-                        sqlxml.setString(value);
-                        preparedStatement.setSQLXML(i + 1, sqlxml);
-                        break;
-                    case STRING:
-                        int valueLength = value.length();
-                        String columnName = headerColumns.get(i).getName();
-                        ColumnMetadata meta = varcharColumnLengths.get(columnName);
-                        int maxAllowed = meta.getMaxAllowedLength();
-                        int currentLen = meta.getLength();
-                        int safeLength = Math.min(valueLength, maxAllowed);
-
-                        if (safeLength > currentLen && currentLen < maxAllowed) {
-                            TeradataJDBCUtil.resizeVarcharColumn(conn, database, table, temp_table, columnName, currentLen, safeLength);
-                            varcharColumnLengths.put(columnName, new ColumnMetadata(safeLength, meta.isUnicode() ? 2 : 1));
-                        }
-                        preparedStatement.setString(i + 1, value);
-                        break;
-                    case JSON:
-                        preparedStatement.setObject(i + 1, new JSONStruct("JSON", new Object[]{value}));
-                        break;
-                    default:
-                        preparedStatement.setObject(i + 1, value);
-                        break;
-                }
-                Logger.logMessage(Logger.debugLogLevel, String.format("Set parameter at index %d: %s", i + 1, value));
-            }
-
-            preparedStatement.addBatch();
-            currentBatchSize++;
-            Logger.logMessage(Logger.debugLogLevel, String.format("Added row to batch. Current batch size: %d", currentBatchSize));
+            codecPlan.bindRow(preparedStatement, row);
+            addRow();
+        } catch (BatchUpdateException bue) {
+            Logger.logMessage(Logger.LogLevel.SEVERE, "Failed to write row to batch with BatchUpdateException: " + bue.getMessage());
+            dropTempTable();
+            throw bue;
+        } catch (Exception e) {
+            Logger.logMessage(Logger.LogLevel.SEVERE, "Failed to write row to batch with Exception: " +e.getMessage());
+            dropTempTable();
+            throw e;
+        }
+    }
 
-            if (currentBatchSize >= batchSize) {
-                Logger.logMessage(Logger.debugLogLevel, String.format("Batch size limit reached. Committing batch of size: %d", currentBatchSize));
-                commit();
-            }
+    @Override
+    public void writeValues(Object[] values) throws Exception {
+        try {
+            codecPlan.bindValues(preparedStatement, values);
+            addRow();
         } catch (BatchUpdateException bue) {
             Logger.logMessage(Logger.LogLevel.SEVERE, "Failed to write row to batch with BatchUpdateException: " + bue.getMessage());
             dropTempTable();
@@ -235,12 +170,31 @@ public class LoadDataWriter extends Writer {
         }
     }
 
+    private void addRow() throws SQLException {
+        preparedStatement.addBatch();
+        currentBatchSize++;
+        Logger.logMessage(Logger.debugLogLevel, String.format("Added row to batch. Current batch size: %d", currentBatchSize));
+
+        if (currentBatchSize >= batchSizeLimit()) {
+            Logger.logMessage(Logger.debugLogLevel, String.format("Batch size limit reached. Committing batch of size: %d", currentBatchSize));
+            commit();
+        } else if (codecPlan.getBatchBytes() >= batchMaxBytes) {
+            Logger.logMessage(Logger.debugLogLevel, String.format("Batch bytes limit reached. Committing batch of size: %d with %d bytes",
+                    currentBatchSize, codecPlan.getBatchBytes()));
+            commit();
+        }
+    }
+
     @Override
     public void commit() throws SQLException {
         if (currentBatchSize > 0) {
             Logger.logMessage(Logger.LogLevel.INFO, "Committing batch of size: " + currentBatchSize);
             try {
+                long start = System.nanoTime();
                 preparedStatement.executeBatch();
+                if (batchSizer != null) {
+                    batchSizer.record(currentBatchSize, System.nanoTime() - start);
+                }
                 preparedStatement.clearBatch();
             }
             catch (BatchUpdateException bue) {
@@ -266,13 +220,20 @@ public class LoadDataWriter extends Writer {
             }
             Logger.logMessage(Logger.LogLevel.INFO,
                     String.format("Batch of size %d committed successfully", currentBatchSize));
+            batchStats.record(currentBatchSize, codecPlan.getBatchBytes());
             currentBatchSize = 0;
+            codecPlan.resetBatchBytes();
         } else {
             Logger.logMessage(Logger.LogLevel.INFO,
                     String.format("No rows to commit. Current batch size: %d", currentBatchSize));
         }
     }
 
+    /**
+     * Replaces the rows of the target that have a staged row by the staged rows. The staging
+     * tables are dropped by the caller, also when this fails, so that the statements can run in
+     * one transaction.
+     */
     public void deleteInsert() throws SQLException {
         if (matchingCols != null && !matchingCols.isEmpty()) {
             String cols = matchingCols.stream()
@@ -302,7 +263,6 @@ public class LoadDataWriter extends Writer {
                             "Failed to execute (" + deleteQuery + ") on table: "
                                     + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
                                     + e.getMessage());
-                    dropTempTable();
                     throw new SQLException("Failed to execute (" + deleteQuery + ") on table: "
                             + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
                             + e.getMessage(), e);
@@ -326,12 +286,10 @@ public class LoadDataWriter extends Writer {
                     "Failed to execute (" + insertQuery + ") on table: "
                             + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
                             + e.getMessage());
-            dropTempTable();
             throw new SQLException("Failed to execute (" + insertQuery + ") on table: "
                     + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
                     + e.getMessage(), e);
         }
-        dropTempTable();
     }
 
     public void dropTempTable() {
@@ -353,6 +311,7 @@ public class LoadDataWriter extends Writer {
             Logger.logMessage(Logger.debugLogLevel,"Temporary table deleted successfully.");
             conn.createStatement().execute(dropQuery);
             Logger.logMessage(Logger.debugLogLevel,"Temporary table dropped successfully.");
+            temp_table = null;
         } catch (SQLException e) {
             if (e.getErrorCode() != 3807) {
                 Logger.logMessage(Logger.LogLevel.SEVERE,"Failed to delete or drop temporary table: " + e.getMessage());
@@ -0,0 +1,18 @@
+package com.teradata.fivetran.destination.writers;
+
+/**
+ * Writer that binds rows of typed values, read from files that store their values with their
+ * types such as Parquet batch files, without converting them to text first.
+ *
+ * {@link Writer#write(String)} hands the rows of such files to writers implementing this interface
+ * as values, and to all other writers as text.
+ */
+public interface TypedRowWriter {
+    /**
+     * Writes a row of typed values.
+     *
+     * @param values The row values, null for SQL NULL.
+     * @throws Exception If an error occurs while writing the row.
+     */
+    void writeValues(Object[] values) throws Exception;
+}
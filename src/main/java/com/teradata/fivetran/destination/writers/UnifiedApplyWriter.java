@@ -0,0 +1,475 @@
+package com.teradata.fivetran.destination.writers;
+
+import com.google.protobuf.ByteString;
+import com.teradata.fivetran.destination.Logger;
+import com.teradata.fivetran.destination.TeradataJDBCUtil;
+import com.teradata.fivetran.destination.warning_util.WarningHandler;
+import com.teradata.fivetran.destination.writers.util.ColumnCodec;
+import com.teradata.fivetran.destination.writers.util.ColumnMetadata;
+import com.teradata.fivetran.destination.writers.util.VarcharWidener;
+import fivetran_sdk.v2.Column;
+import fivetran_sdk.v2.DataType;
+import fivetran_sdk.v2.FileParams;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+
+/**
+ * Writer that loads the replace, update and delete files of a batch into one staging table and
+ * applies them to the target with a small fixed set of set-based statements.
+ *
+ * Every staged row carries an op code, a global sequence number, a rank and a modification mask:
+ * <ul>
+ *     <li>_td_op: 1 for replace, 2 for update, 3 for delete rows.</li>
+ *     <li>_td_seq: order in which the rows were read.</li>
+ *     <li>_td_rank: for update rows, the n-th update of the same primary key in this batch.</li>
+ *     <li>_td_mask: for update rows, one '1' or '0' per table column telling whether the column was
+ *     modified or carried the unmodified marker.</li>
+ * </ul>
+ * The apply phase keeps the semantics of the separate writers: all replace rows first, then the
+ * updates in file order, then the deletes.
+ *
+ * With parallel staging, each kind of file is staged by a writer of its own on its own session and
+ * the writer of the call adopts the staging tables of the others before it applies them. These
+ * writers widen the target through the widener of the writer of the call.
+ */
+public class UnifiedApplyWriter extends Writer {
+    public static final int OP_REPLACE = 1;
+    public static final int OP_UPDATE = 2;
+    public static final int OP_DELETE = 3;
+
+    private static final String OP_COLUMN = "_td_op";
+    private static final String SEQ_COLUMN = "_td_seq";
+    private static final String RANK_COLUMN = "_td_rank";
+    private static final String MASK_COLUMN = "_td_mask";
+
+    private final WarningHandler warningHandler;
+    private final List<Column> pkColumns;
+    private final ColumnCodec[] codecs;
+    private final BitSet updatedColumns = new BitSet();
+    private final Map<String, Integer> updateRanks = new HashMap<>();
+
+    private String tempTable;
+    // Volatile, since cancel() may cancel it from another thread
+    private volatile PreparedStatement insertStatement;
+    // Lengths of the VARCHAR columns of the staging table
+    private Map<String, ColumnMetadata> varcharColumnLengths;
+    private VarcharWidener widener;
+    private int op = OP_REPLACE;
+    private int[] headerToColumn;
+    private long sequence = 0;
+    private int maxUpdateRank = 0;
+    private int currentBatchSize = 0;
+    private long currentBatchBytes = 0;
+    private final boolean[] stagedOps = new boolean[OP_DELETE + 1];
+    // Writers that staged files on other sessions, whose staging tables apply() applies too
+    private final List<UnifiedApplyWriter> adopted = new ArrayList<>();
+    private volatile boolean cancelled = false;
+
+    /**
+     * Constructor for UnifiedApplyWriter.
+     *
+     * @param conn           The database connection.
+     * @param database       The database name.
+     * @param table          The table name.
+     * @param columns        The list of columns.
+     * @param params         The file parameters.
+     * @param secretKeys     The map of secret keys.
+     * @param batchSize      The batch size for writing rows.
+     * @param warningHandler The warning handler.
+     */
+    public UnifiedApplyWriter(Connection conn, String database, String table, List<Column> columns,
+                              FileParams params, Map<String, ByteString> secretKeys, Integer batchSize,
+                              WarningHandler warningHandler) {
+        super(conn, database, table, columns, params, secretKeys, batchSize);
+        this.warningHandler = warningHandler;
+        this.pkColumns = columns.stream().filter(Column::getPrimaryKey).collect(Collectors.toList());
+        this.codecs = new ColumnCodec[columns.size()];
+        for (int i = 0; i < codecs.length; i++) {
+            codecs[i] = ColumnCodec.forType(columns.get(i).getType());
+        }
+        this.widener = new VarcharWidener(database, table);
+        Logger.logMessage(Logger.LogLevel.INFO,
+                String.format("UnifiedApplyWriter initialized with database: %s, table: %s, batchSize: %s", database, table, batchSize));
+    }
+
+    /**
+     * Stages all files of one kind.
+     *
+     * @param op    OP_REPLACE, OP_UPDATE or OP_DELETE.
+     * @param files The files to stage.
+     * @throws Exception If a file cannot be read or staged.
+     */
+    public void stage(int op, List<String> files) throws Exception {
+        this.op = op;
+        for (String file : files) {
+            write(file);
+        }
+    }
+
+    /**
+     * Makes this writer widen the target through the widener of another writer of the same call,
+     * so that writers staging on several sessions never resize a column of the target against
+     * each other.
+     *
+     * @param other The writer of the call.
+     */
+    public void shareWidener(UnifiedApplyWriter other) {
+        this.widener = other.widener;
+    }
+
+    /**
+     * Stops a stage running on another thread: cancels the statement it runs and makes it fail
+     * before its next row. The staging table is left for dropTempTable() once the stage ended.
+     */
+    public void cancel() {
+        cancelled = true;
+        PreparedStatement stmt = insertStatement;
+        try {
+            if (stmt != null && !stmt.isClosed()) {
+                stmt.cancel();
+            }
+        } catch (SQLException e) {
+            Logger.logMessage(Logger.debugLogLevel, "Failed to cancel a staging statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Makes apply() apply the rows another writer staged, in op order together with the rows of
+     * this writer. The staging table of the other writer is dropped with the one of this writer, on
+     * this session, so the session of the other writer may be closed. Each kind of file must be
+     * staged by one writer only, since the order of rows of one kind across writers is not known.
+     *
+     * @param other A writer that staged files of other kinds on a session of its own.
+     * @throws SQLException If the pending rows of the other writer cannot be staged.
+     */
+    public void adopt(UnifiedApplyWriter other) throws SQLException {
+        other.commit();
+        adopted.add(other);
+    }
+
+    @Override
+    public void setHeader(List<String> header) throws SQLException {
+        Logger.logMessage(Logger.LogLevel.INFO, String.format("Setting header with columns: %s (op %d)", header, op));
+        if (tempTable == null) {
+            createTempTable();
+        }
+
+        Map<String, Integer> nameToIndex = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            nameToIndex.put(columns.get(i).getName(), i);
+        }
+        headerToColumn = new int[header.size()];
+        for (int i = 0; i < header.size(); i++) {
+            headerToColumn[i] = nameToIndex.getOrDefault(header.get(i), -1);
+        }
+    }
+
+    private void createTempTable() throws SQLException {
+        tempTable = String.format("%s_%s", "td_tmp", UUID.randomUUID().toString().replace("-", "_"));
+
+        // The staging table holds several rows per key, so it gets a non-unique primary index
+        List<Column> stagingColumns = columns.stream()
+                .map(c -> c.toBuilder().setPrimaryKey(false).build())
+                .collect(Collectors.toList());
+        String columnDefinitions = TeradataJDBCUtil.getColumnDefinitions(stagingColumns)
+                + String.format(",\n%s BYTEINT NOT NULL", TeradataJDBCUtil.escapeIdentifier(OP_COLUMN))
+                + String.format(",\n%s BIGINT NOT NULL", TeradataJDBCUtil.escapeIdentifier(SEQ_COLUMN))
+                + String.format(",\n%s INTEGER NOT NULL", TeradataJDBCUtil.escapeIdentifier(RANK_COLUMN))
+                + String.format(",\n%s VARCHAR(%d) CHARACTER SET LATIN", TeradataJDBCUtil.escapeIdentifier(MASK_COLUMN),
+                Math.max(columns.size(), 1));
+        String primaryIndex = pkColumns.stream()
+                .map(Column::getName)
+                .map(TeradataJDBCUtil::escapeIdentifier)
+                .collect(Collectors.joining(", "));
+        String createTempTable = String.format("CREATE MULTISET TABLE %s (%s) PRIMARY INDEX (%s)",
+                TeradataJDBCUtil.escapeTable(database, tempTable), columnDefinitions, primaryIndex);
+
+        try {
+            Logger.logMessage(Logger.LogLevel.INFO, String.format("Creating unified staging table: %s", createTempTable));
+            conn.createStatement().execute(createTempTable);
+        } catch (SQLException e) {
+            Logger.logMessage(Logger.LogLevel.SEVERE,
+                    String.format("Failed to create temporary table: %s", e.getMessage()));
+            throw new SQLException("Failed to create temporary table: " + e.getMessage() + " , with SQL: " +
+                    createTempTable, e);
+        }
+
+        varcharColumnLengths = TeradataJDBCUtil.getVarcharColumnLengths(conn, database, table);
+        prepareInsert();
+    }
+
+    private void prepareInsert() throws SQLException {
+        String names = columns.stream()
+                .map(Column::getName)
+                .map(TeradataJDBCUtil::escapeIdentifier)
+                .collect(Collectors.joining(", "));
+        String placeholders = String.join(", ", Collections.nCopies(columns.size() + 4, "?"));
+        String query = String.format("INSERT INTO %s (%s, %s, %s, %s, %s) VALUES (%s)",
+                TeradataJDBCUtil.escapeTable(database, tempTable), names,
+                TeradataJDBCUtil.escapeIdentifier(OP_COLUMN), TeradataJDBCUtil.escapeIdentifier(SEQ_COLUMN),
+                TeradataJDBCUtil.escapeIdentifier(RANK_COLUMN), TeradataJDBCUtil.escapeIdentifier(MASK_COLUMN),
+                placeholders);
+        Logger.logMessage(Logger.LogLevel.INFO, String.format("Prepared SQL statement: %s", query));
+        insertStatement = conn.prepareStatement(query);
+    }
+
+    @Override
+    public void writeRow(List<String> row) throws Exception {
+        Logger.logMessage(Logger.debugLogLevel, "#########################UnifiedApplyWriter.writeRow#########################");
+        if (cancelled) {
+            throw new CancellationException("Staging of " + TeradataJDBCUtil.escapeTable(database, table) + " was cancelled");
+        }
+        String[] values = new String[columns.size()];
+        for (int i = 0; i < row.size() && i < headerToColumn.length; i++) {
+            if (headerToColumn[i] >= 0) {
+                values[headerToColumn[i]] = row.get(i);
+            }
+        }
+
+        char[] mask = new char[columns.size()];
+        int rank = 0;
+        if (op == OP_UPDATE) {
+            for (int i = 0; i < values.length; i++) {
+                boolean modified = values[i] != null && !values[i].equals(params.getUnmodifiedString());
+                mask[i] = modified ? '1' : '0';
+                if (modified && !columns.get(i).getPrimaryKey()) {
+                    updatedColumns.set(i);
+                }
+                if (!modified) {
+                    values[i] = null;
+                }
+            }
+            rank = updateRanks.merge(primaryKeyOf(values), 1, Integer::sum);
+            maxUpdateRank = Math.max(maxUpdateRank, rank);
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                // Delete rows only need their key; the other cells may hold the unmodified marker,
+                // which must neither be parsed as a value nor widen a VARCHAR column
+                boolean keep = values[i] != null && !values[i].equals(params.getUnmodifiedString())
+                        && (op != OP_DELETE || columns.get(i).getPrimaryKey());
+                mask[i] = keep ? '1' : '0';
+                if (!keep) {
+                    values[i] = null;
+                }
+            }
+        }
+
+        widenIfNeeded(values);
+
+        for (int i = 0; i < values.length; i++) {
+            bind(i + 1, codecs[i], values[i]);
+        }
+        int p = values.length;
+        insertStatement.setByte(++p, (byte) op);
+        insertStatement.setLong(++p, ++sequence);
+        insertStatement.setInt(++p, rank);
+        insertStatement.setString(++p, new String(mask));
+        insertStatement.addBatch();
+        stagedOps[op] = true;
+        currentBatchSize++;
+
+        // Row length, null bits and the op, sequence, rank and mask columns
+        currentBatchBytes += 2 + (values.length + 11) / 8 + 1 + 8 + 4 + mask.length + 2;
+
+        if (currentBatchSize >= batchSize || currentBatchBytes >= batchMaxBytes) {
+            commit();
+        }
+    }
+
+    private String primaryKeyOf(String[] values) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).getPrimaryKey()) {
+                key.append(values[i]).append('\u0001');
+            }
+        }
+        return key.toString();
+    }
+
+    private void widenIfNeeded(String[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            Column c = columns.get(i);
+            if (c.getType() != DataType.STRING || values[i] == null || values[i].equals(params.getNullString())) {
+                continue;
+            }
+            ColumnMetadata meta = varcharColumnLengths.get(c.getName());
+            if (meta == null) {
+                continue;
+            }
+            int maxAllowed = meta.getMaxAllowedLength();
+            int currentLen = meta.getLength();
+            int safeLength = Math.min(values[i].length(), maxAllowed);
+            if (safeLength > currentLen && currentLen < maxAllowed) {
+                // Pending rows must reach the staging table before its layout changes
+                commit();
+                // The target may already be longer than needed, widened by another writer of the call
+                int targetLen = Math.max(widener.widen(conn, c.getName(), safeLength), safeLength);
+                TeradataJDBCUtil.resizeVarcharColumn(conn, database, tempTable, null, c.getName(), currentLen, targetLen);
+                varcharColumnLengths.put(c.getName(), new ColumnMetadata(targetLen, meta.isUnicode() ? 2 : 1));
+                insertStatement.close();
+                prepareInsert();
+            }
+        }
+    }
+
+    private void bind(int index, ColumnCodec codec, String value) throws SQLException {
+        if (value == null || value.equals(params.getNullString())) {
+            codec.bindNull(insertStatement, index);
+        } else {
+            codec.bindText(insertStatement, index, value);
+            currentBatchBytes += codec.encodedSize(value);
+        }
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        if (currentBatchSize == 0) {
+            return;
+        }
+        Logger.logMessage(Logger.LogLevel.INFO, "Committing batch of size: " + currentBatchSize);
+        try {
+            insertStatement.executeBatch();
+            insertStatement.clearBatch();
+        } catch (BatchUpdateException bue) {
+            String actualError = bue.getNextException() != null ? bue.getNextException().getMessage() : bue.getMessage();
+            Logger.logMessage(Logger.LogLevel.SEVERE, String.format("WriteBatch failed with exception %s", actualError));
+            throw bue;
+        }
+        batchStats.record(currentBatchSize, currentBatchBytes);
+        currentBatchSize = 0;
+        currentBatchBytes = 0;
+    }
+
+    /**
+     * Applies the staged rows to the target table: replace rows with a delete-insert, update rows
+     * one rank at a time with a joined UPDATE, and delete rows with a single DELETE. The staging
+     * tables are left for dropTempTable(), so that the steps can run in one transaction.
+     *
+     * @throws SQLException If any apply statement fails.
+     */
+    public void apply() throws SQLException {
+        List<UnifiedApplyWriter> writers = new ArrayList<>();
+        writers.add(this);
+        writers.addAll(adopted);
+        writers.removeIf(w -> w.tempTable == null);
+        if (writers.isEmpty()) {
+            return;
+        }
+        commit();
+
+        String target = TeradataJDBCUtil.escapeTable(database, table);
+        String pkMatch = pkColumns.stream()
+                .map(Column::getName)
+                .map(TeradataJDBCUtil::escapeIdentifier)
+                .map(c -> String.format("t.%s = s.%s", c, c))
+                .collect(Collectors.joining(" AND "));
+        String opColumn = TeradataJDBCUtil.escapeIdentifier(OP_COLUMN);
+
+        for (UnifiedApplyWriter w : writers) {
+            if (!w.stagedOps[OP_REPLACE]) {
+                continue;
+            }
+            String staging = TeradataJDBCUtil.escapeTable(database, w.tempTable);
+            execute(String.format("DELETE FROM %s AS t WHERE EXISTS (SELECT 1 FROM %s AS s WHERE s.%s = %d AND %s)",
+                    target, staging, opColumn, OP_REPLACE, pkMatch));
+            String names = columns.stream()
+                    .map(Column::getName)
+                    .map(TeradataJDBCUtil::escapeIdentifier)
+                    .collect(Collectors.joining(", "));
+            String partition = pkColumns.stream()
+                    .map(Column::getName)
+                    .map(TeradataJDBCUtil::escapeIdentifier)
+                    .collect(Collectors.joining(", "));
+            // The last replace row of a key wins, like the sequential writers
+            execute(String.format("INSERT INTO %s (%s) SELECT %s FROM %s WHERE %s = %d " +
+                            "QUALIFY ROW_NUMBER() OVER (PARTITION BY %s ORDER BY %s DESC) = 1",
+                    target, names, names, staging, opColumn, OP_REPLACE, partition,
+                    TeradataJDBCUtil.escapeIdentifier(SEQ_COLUMN)));
+        }
+
+        for (UnifiedApplyWriter w : writers) {
+            if (!w.stagedOps[OP_UPDATE] || w.updatedColumns.isEmpty()) {
+                continue;
+            }
+            String staging = TeradataJDBCUtil.escapeTable(database, w.tempTable);
+            String setClause = w.updatedColumns.stream()
+                    .mapToObj(i -> {
+                        String c = TeradataJDBCUtil.escapeIdentifier(columns.get(i).getName());
+                        return String.format("%s = CASE WHEN SUBSTR(s.%s, %d, 1) = '1' THEN s.%s ELSE t.%s END",
+                                c, TeradataJDBCUtil.escapeIdentifier(MASK_COLUMN), i + 1, c, c);
+                    })
+                    .collect(Collectors.joining(", "));
+            // Each rank holds at most one update per key, so ranks are applied in file order
+            for (int rank = 1; rank <= w.maxUpdateRank; rank++) {
+                execute(String.format("UPDATE t FROM %s AS t, %s AS s SET %s WHERE %s AND s.%s = %d AND s.%s = %d",
+                        target, staging, setClause, pkMatch, opColumn, OP_UPDATE,
+                        TeradataJDBCUtil.escapeIdentifier(RANK_COLUMN), rank));
+            }
+        }
+
+        for (UnifiedApplyWriter w : writers) {
+            if (!w.stagedOps[OP_DELETE]) {
+                continue;
+            }
+            String staging = TeradataJDBCUtil.escapeTable(database, w.tempTable);
+            execute(String.format("DELETE FROM %s AS t WHERE EXISTS (SELECT 1 FROM %s AS s WHERE s.%s = %d AND %s)",
+                    target, staging, opColumn, OP_DELETE, pkMatch));
+        }
+    }
+
+    private void execute(String query) throws SQLException {
+        Logger.logMessage(Logger.LogLevel.INFO, "Executing unified apply statement: " + query);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(query);
+        } catch (SQLException e) {
+            Logger.logMessage(Logger.LogLevel.SEVERE,
+                    "Failed to execute (" + query + ") on table: "
+                            + TeradataJDBCUtil.escapeTable(database, table) + " with error: " + e.getMessage());
+            throw new SQLException("Failed to execute (" + query + ") on table: "
+                    + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Drops the staging table of this writer and those of the adopted writers.
+     */
+    public void dropTempTable() {
+        try {
+            if (conn == null || conn.isClosed()) {
+                return;
+            }
+            if (insertStatement != null) {
+                insertStatement.close();
+            }
+            tempTable = dropStagingTable(tempTable);
+            for (UnifiedApplyWriter w : adopted) {
+                w.tempTable = dropStagingTable(w.tempTable);
+            }
+        } catch (SQLException e) {
+            Logger.logMessage(Logger.LogLevel.SEVERE, "Failed to drop temporary table: " + e.getMessage());
+        }
+    }
+
+    // Drops a staging table and returns null, or the table if it could not be dropped
+    private String dropStagingTable(String stagingTable) {
+        if (stagingTable == null) {
+            return null;
+        }
+        try {
+            String dropQuery = String.format("DROP TABLE %s", TeradataJDBCUtil.escapeTable(database, stagingTable));
+            Logger.logMessage(Logger.debugLogLevel, "Prepared SQL drop statement: " + dropQuery);
+            conn.createStatement().execute(dropQuery);
+            return null;
+        } catch (SQLException e) {
+            if (e.getErrorCode() != 3807) {
+                Logger.logMessage(Logger.LogLevel.SEVERE, "Failed to drop temporary table: " + e.getMessage());
+                return stagingTable;
+            }
+            return null;
+        }
+    }
+}
@@ -9,7 +9,6 @@ import fivetran_sdk.v2.DataType;
 import fivetran_sdk.v2.FileParams;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -49,6 +48,9 @@ public class UpdateHistoryWriter extends Writer {
     private List<Column> headerColumns = new ArrayList<>();
     private Integer fivetranStartPos;
     private Map<String, Integer> nameToHeaderPos = new HashMap<>();
+    private final Map<BitSet, String> insertQueries = new HashMap<>();
+    private final BitSet copiedColumns = new BitSet();
+    private String updateQuery;
 
     /**
      * Sets the header for the writer.
@@ -75,6 +77,8 @@ public class UpdateHistoryWriter extends Writer {
         }
 
         varcharColumnLengths = TeradataJDBCUtil.getVarcharColumnLengths(conn, database, table);
+        insertQueries.clear();
+        updateQuery = null;
 
         if (fivetranStartPos == null) {
             throw new IllegalArgumentException("File doesn't contain _fivetran_start column");
@@ -91,7 +95,7 @@ public class UpdateHistoryWriter extends Writer {
     public void writeRow(List<String> row) throws SQLException {
         Logger.logMessage(Logger.LogLevel.INFO, "#########################UpdateHistoryWriter.writeRow#########################");
         rows.add(row);
-        commit();
+        processRows();
     }
 
     /**
@@ -102,6 +106,16 @@ public class UpdateHistoryWriter extends Writer {
     @Override
     public void commit() throws SQLException {
         Logger.logMessage(Logger.debugLogLevel, "#########################UpdateHistoryWriter.commit#########################");
+        processRows();
+        flushStatements();
+    }
+
+    /**
+     * Adds the statements of the buffered rows to the pending requests, ordered by _fivetran_start.
+     *
+     * @throws SQLException If an SQL error occurs.
+     */
+    private void processRows() throws SQLException {
         rows.sort(Comparator.comparing(row -> {
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
             String dateString = TeradataJDBCUtil.formatISODateTime(row.get(fivetranStartPos));
@@ -115,7 +129,7 @@ public class UpdateHistoryWriter extends Writer {
     }
 
     /**
-     * Processes a row by inserting a new row and updating the old row.
+     * Processes a row by inserting a new row and updating the old row. Both statements stay in order.
      *
      * @param row The list of row values.
      * @throws SQLException If an SQL error occurs.
@@ -128,7 +142,7 @@ public class UpdateHistoryWriter extends Writer {
     }
 
     /**
-     * Inserts a new row into the database.
+     * Adds the insert of the new version of a row to the pending requests.
      *
      * @param row The list of row values.
      * @throws SQLException If an SQL error occurs.
@@ -136,21 +150,72 @@ public class UpdateHistoryWriter extends Writer {
     private void insertNewRow(List<String> row) throws SQLException {
         Logger.logMessage(Logger.debugLogLevel, "#########################UpdateHistoryWriter.insertNewRow#########################");
         Logger.logMessage(Logger.debugLogLevel, "Inserting new row: " + row);
+        // The shape of the statement is the set of columns that take their value from the row
+        copiedColumns.clear();
+        int parameterCount = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            Integer pos = nameToHeaderPos.get(columns.get(i).getName());
+            if (pos != null && !row.get(pos).equals(params.getUnmodifiedString())) {
+                copiedColumns.set(i);
+                parameterCount++;
+            }
+        }
+        parameterCount += keyParameterCount(row.size());
+        String insertQuery = getInsertQuery(copiedColumns);
+
+        // Widen columns now, the statement itself may only be sent with a later request
+        for (int i = 0; i < row.size(); i++) {
+            resizeVarcharIfNeeded(headerColumns.get(i), row.get(i));
+        }
+
+        statementPacker().add(insertQuery, parameterCount, (stmt, firstIndex) -> {
+            int paramIndex = firstIndex - 1;
+            for (Column c : columns) {
+                Integer pos = nameToHeaderPos.get(c.getName());
+                if (pos != null && !row.get(pos).equals(params.getUnmodifiedString())) {
+                    paramIndex++;
+                    TeradataJDBCUtil.setParameter(stmt, paramIndex, c.getType(), row.get(pos), params.getNullString());
+                }
+            }
+
+            for (int i = 0; i < row.size(); i++) {
+                String value = row.get(i);
+                Column c = headerColumns.get(i);
+                if (c != null && c.getPrimaryKey() && !c.getName().equals("_fivetran_start")) {
+                    paramIndex++;
+                    TeradataJDBCUtil.setParameter(stmt, paramIndex, c.getType(), value, params.getNullString());
+                }
+            }
+        }, row);
+    }
+
+    /**
+     * Returns the insert statement for rows that set the given columns, building it on first use.
+     *
+     * @param copied The positions in the table columns of the columns that take their value from the row.
+     * @return The insert statement.
+     */
+    private String getInsertQuery(BitSet copied) {
+        String cached = insertQueries.get(copied);
+        if (cached != null) {
+            return cached;
+        }
+
         StringBuilder insertQuery = new StringBuilder(String.format(
                 "INSERT INTO %s SELECT ",
                 TeradataJDBCUtil.escapeTable(database, table)));
 
         boolean firstColumn = true;
-        for (Column c : columns) {
+        for (int i = 0; i < columns.size(); i++) {
+            Column c = columns.get(i);
             if (!firstColumn) {
                 insertQuery.append(", ");
             }
 
-            Integer pos = nameToHeaderPos.get(c.getName());
-            if (pos == null || row.get(pos).equals(params.getUnmodifiedString())) {
-                insertQuery.append(TeradataJDBCUtil.escapeIdentifier(c.getName()));
-            } else {
+            if (copied.get(i)) {
                 insertQuery.append("?");
+            } else {
+                insertQuery.append(TeradataJDBCUtil.escapeIdentifier(c.getName()));
             }
 
             firstColumn = false;
@@ -164,39 +229,27 @@ public class UpdateHistoryWriter extends Writer {
             }
         }
         Logger.logMessage(Logger.LogLevel.INFO, "Insert query is " + insertQuery);
-        int paramIndex = 0;
-        try (PreparedStatement stmt = conn.prepareStatement(insertQuery.toString())) {
-            for (Column c : columns) {
-                Integer pos = nameToHeaderPos.get(c.getName());
-                if (pos != null && !row.get(pos).equals(params.getUnmodifiedString())) {
-                    paramIndex++;
-                    TeradataJDBCUtil.setParameter(stmt, paramIndex, c.getType(), row.get(pos), params.getNullString());
-                }
-            }
-
-            for (int i = 0; i < row.size(); i++) {
-                String value = row.get(i);
-                Column c = headerColumns.get(i);
-                resizeVarcharIfNeeded(c, value);
-                if (c != null && c.getPrimaryKey() && !c.getName().equals("_fivetran_start")) {
-                    paramIndex++;
-                    TeradataJDBCUtil.setParameter(stmt, paramIndex, c.getType(), value, params.getNullString());
-                }
-            }
+        String query = insertQuery.toString();
+        insertQueries.put((BitSet) copied.clone(), query);
+        return query;
+    }
 
-            try {
-                stmt.execute();
-            } catch (SQLException e) {
-                throw new SQLException("Failed to execute (" + insertQuery + ") on table: "
-                        + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
-                        + e.getMessage(), e);
+    /**
+     * Returns the number of primary key parameters of a row, which excludes _fivetran_start.
+     */
+    private int keyParameterCount(int rowSize) {
+        int count = 0;
+        for (int i = 0; i < rowSize; i++) {
+            Column c = headerColumns.get(i);
+            if (c != null && c.getPrimaryKey() && !c.getName().equals("_fivetran_start")) {
+                count++;
             }
-            Logger.logMessage(Logger.debugLogLevel, "Executed insert statement for row: " + row);
         }
+        return count;
     }
 
     /**
-     * Updates the old row in the database.
+     * Adds the update that closes the old version of a row to the pending requests.
      *
      * @param row The list of row values.
      * @throws SQLException If an SQL error occurs.
@@ -204,20 +257,24 @@ public class UpdateHistoryWriter extends Writer {
     private void updateOldRow(List<String> row) throws SQLException {
         Logger.logMessage(Logger.debugLogLevel, "#########################UpdateHistoryWriter.updateOldRow#########################");
         Logger.logMessage(Logger.debugLogLevel, "Updating old row: " + row);
-        StringBuilder updateQuery = new StringBuilder(String.format(
-                "UPDATE %s SET _fivetran_active = 0, _fivetran_end = ? - INTERVAL '1' SECOND WHERE _fivetran_active = 1 AND _fivetran_start < ? ",
-                TeradataJDBCUtil.escapeTable(database, table)));
+        if (updateQuery == null) {
+            StringBuilder updateBuilder = new StringBuilder(String.format(
+                    "UPDATE %s SET _fivetran_active = 0, _fivetran_end = ? - INTERVAL '1' SECOND WHERE _fivetran_active = 1 AND _fivetran_start < ? ",
+                    TeradataJDBCUtil.escapeTable(database, table)));
 
-        for (int i = 0; i < row.size(); i++) {
-            Column c = headerColumns.get(i);
-            if (c != null && c.getPrimaryKey() && !c.getName().equals("_fivetran_start")) {
-                updateQuery.append(
-                        String.format("AND %s = ? ", TeradataJDBCUtil.escapeIdentifier(c.getName())));
+            for (int i = 0; i < row.size(); i++) {
+                Column c = headerColumns.get(i);
+                if (c != null && c.getPrimaryKey() && !c.getName().equals("_fivetran_start")) {
+                    updateBuilder.append(
+                            String.format("AND %s = ? ", TeradataJDBCUtil.escapeIdentifier(c.getName())));
+                }
             }
+            updateQuery = updateBuilder.toString();
+            Logger.logMessage(Logger.LogLevel.INFO, "Update query is " + updateQuery);
         }
-        Logger.logMessage(Logger.LogLevel.INFO, "Update query is " + updateQuery);
-        int paramIndex = 0;
-        try (PreparedStatement stmt = conn.prepareStatement(updateQuery.toString())) {
+
+        statementPacker().add(updateQuery, 2 + keyParameterCount(row.size()), (stmt, firstIndex) -> {
+            int paramIndex = firstIndex - 1;
             paramIndex++;
             TeradataJDBCUtil.setParameter(stmt, paramIndex, DataType.UTC_DATETIME, row.get(fivetranStartPos), params.getNullString());
             paramIndex++;
@@ -230,20 +287,10 @@ public class UpdateHistoryWriter extends Writer {
                     continue;
                 }
 
-                resizeVarcharIfNeeded(c, value);
                 paramIndex++;
                 TeradataJDBCUtil.setParameter(stmt, paramIndex, c.getType(), value, params.getNullString());
             }
-
-            try {
-                stmt.execute();
-            } catch (SQLException e) {
-                throw new SQLException("Failed to execute (" + updateQuery + ") on table: "
-                        + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
-                        + e.getMessage(), e);
-            }
-            Logger.logMessage(Logger.debugLogLevel, "Executed update statement for row: " + row);
-        }
+        }, row);
     }
 
     /**
@@ -259,6 +306,8 @@ public class UpdateHistoryWriter extends Writer {
             int safeLength = Math.min(valueLength, maxAllowed);
 
             if (safeLength > currentLen && currentLen < maxAllowed) {
+                // DDL must not run with statements pending
+                flushStatements();
                 TeradataJDBCUtil.resizeVarcharColumn(conn, database, table,null, columnName, currentLen, safeLength);
                 varcharColumnLengths.put(columnName, new ColumnMetadata(safeLength, meta.isUnicode() ? 2 : 1));
             }
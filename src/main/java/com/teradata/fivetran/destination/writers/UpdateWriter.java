@@ -9,9 +9,9 @@ import fivetran_sdk.v2.DataType;
 import fivetran_sdk.v2.FileParams;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +25,8 @@ public class UpdateWriter extends Writer {
     private String table;
     private List<Column> headerColumns = new ArrayList<>();
     private Map<String, ColumnMetadata> varcharColumnLengths = new HashMap<>();
+    private final Map<BitSet, String> updateQueries = new HashMap<>();
+    private final BitSet modifiedColumns = new BitSet();
 
     /**
      * Constructor to initialize UpdateWriter.
@@ -62,20 +64,25 @@ public class UpdateWriter extends Writer {
         for (String name : header) {
             headerColumns.add(nameToColumn.get(name));
         }
+        updateQueries.clear();
 
         varcharColumnLengths = TeradataJDBCUtil.getVarcharColumnLengths(conn, database, table);
         Logger.logMessage(Logger.LogLevel.INFO, "Header columns set: " + headerColumns);
     }
 
     /**
-     * Writes a row to the writer.
+     * Returns the update statement for rows that modify the given columns, building it on first use.
      *
-     * @param row The list of row values.
-     * @throws SQLException If an SQL error occurs.
+     * @param modified The header positions of the modified columns.
+     * @param rowSize  The number of values in the row.
+     * @return The update statement.
      */
-    @Override
-    public void writeRow(List<String> row) throws SQLException {
-        Logger.logMessage(Logger.debugLogLevel, "Writing row: " + row);
+    private String getUpdateQuery(BitSet modified, int rowSize) {
+        String query = updateQueries.get(modified);
+        if (query != null) {
+            return query;
+        }
+
         StringBuilder updateClause = new StringBuilder(
                 String.format("UPDATE %s SET ", TeradataJDBCUtil.escapeTable(database, table)));
         StringBuilder whereClause = new StringBuilder("WHERE ");
@@ -83,9 +90,9 @@ public class UpdateWriter extends Writer {
         boolean firstUpdateColumn = true;
         boolean firstPKColumn = true;
 
-        for (int i = 0; i < row.size(); i++) {
+        for (int i = 0; i < rowSize; i++) {
             Column c = headerColumns.get(i);
-            if (!row.get(i).equals(params.getUnmodifiedString())) {
+            if (modified.get(i)) {
                 if (firstUpdateColumn) {
                     updateClause.append(
                             String.format("%s = ? ", TeradataJDBCUtil.escapeIdentifier(c.getName())));
@@ -108,23 +115,57 @@ public class UpdateWriter extends Writer {
             }
         }
 
-        if (firstUpdateColumn) {
+        query = updateClause.toString() + " " + whereClause;
+        Logger.logMessage(Logger.LogLevel.INFO, "Prepared SQL update statement: " + query);
+        updateQueries.put((BitSet) modified.clone(), query);
+        return query;
+    }
+
+    /**
+     * Writes a row to the writer.
+     *
+     * @param row The list of row values.
+     * @throws SQLException If an SQL error occurs.
+     */
+    @Override
+    public void writeRow(List<String> row) throws SQLException {
+        Logger.logMessage(Logger.debugLogLevel, "Writing row: " + row);
+
+        // The shape of the statement is the set of modified columns
+        modifiedColumns.clear();
+        int parameterCount = 0;
+        for (int i = 0; i < row.size(); i++) {
+            if (!row.get(i).equals(params.getUnmodifiedString())) {
+                modifiedColumns.set(i);
+                parameterCount++;
+            }
+            if (headerColumns.get(i).getPrimaryKey()) {
+                parameterCount++;
+            }
+        }
+
+        if (modifiedColumns.isEmpty()) {
             Logger.logMessage(Logger.debugLogLevel, "No columns to update for row: " + row);
             return;
         }
 
-        String query = updateClause.toString() + " " + whereClause;
-        Logger.logMessage(Logger.LogLevel.INFO, "Prepared SQL update statement: " + query);
+        String query = getUpdateQuery(modifiedColumns, row.size());
+
+        // Widen columns now, the statement itself may only be sent with a later request
+        for (int i = 0; i < row.size(); i++) {
+            Column c = headerColumns.get(i);
+            if (modifiedColumns.get(i) || c.getPrimaryKey()) {
+                resizeVarcharIfNeeded(c, row.get(i));
+            }
+        }
 
-        int paramIndex = 0;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+        statementPacker().add(query, parameterCount, (stmt, firstIndex) -> {
+            int paramIndex = firstIndex - 1;
             for (int i = 0; i < row.size(); i++) {
-                Column c = headerColumns.get(i);
                 String value = row.get(i);
                 if (value.equals(params.getUnmodifiedString())) {
                     continue;
                 }
-                resizeVarcharIfNeeded(c, value);
 
                 paramIndex++;
                 TeradataJDBCUtil.setParameter(stmt, paramIndex, headerColumns.get(i).getType(), value,
@@ -133,39 +174,28 @@ public class UpdateWriter extends Writer {
             }
 
             for (int i = 0; i < row.size(); i++) {
-                Column c = headerColumns.get(i);
                 String value = row.get(i);
                 if (!headerColumns.get(i).getPrimaryKey()) {
                     continue;
                 }
-                resizeVarcharIfNeeded(c, value);
 
                 paramIndex++;
                 TeradataJDBCUtil.setParameter(stmt, paramIndex, headerColumns.get(i).getType(), value,
                         params.getNullString());
                 Logger.logMessage(Logger.debugLogLevel, String.format("Set primary key parameter at index %d: %s", paramIndex, value));
             }
-
-            try {
-                stmt.execute();
-            } catch (SQLException e) {
-                throw new SQLException("Failed to execute (" + query + ") on table: "
-                        + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
-                        + e.getMessage(), e);
-            }
-            Logger.logMessage(Logger.debugLogLevel, String.format("Executed update statement for row: %s", row));
-        } catch (SQLException e) {
-            Logger.logMessage(Logger.LogLevel.SEVERE, String.format("Failed to execute update statement for row: %s, %s", row, e.getMessage()));
-            throw e;
-        }
+        }, row);
     }
 
     /**
-     * Commits the written rows to the database.
+     * Sends the pending update statements to the database.
+     *
+     * @throws SQLException If an SQL error occurs.
      */
     @Override
-    public void commit() {
+    public void commit() throws SQLException {
         Logger.logMessage(Logger.LogLevel.INFO, "Commit called for UpdateWriter.");
+        flushStatements();
     }
 
     /**
@@ -181,6 +211,14 @@ public class UpdateWriter extends Writer {
             int safeLength = Math.min(valueLength, maxAllowed);
 
             if (safeLength > currentLen && currentLen < maxAllowed) {
+                // DDL would commit the apply steps run so far; VarcharLengthScanner widens before the transaction
+                if (!conn.getAutoCommit()) {
+                    throw new SQLException(String.format(
+                            "Column %s of %s must be widened to VARCHAR(%d) inside the transaction of the batch",
+                            columnName, TeradataJDBCUtil.escapeTable(database, table), safeLength));
+                }
+                // DDL must not run with statements pending in the pack
+                flushStatements();
                 TeradataJDBCUtil.resizeVarcharColumn(conn, database, table,null, columnName, currentLen, safeLength);
                 varcharColumnLengths.put(columnName, new ColumnMetadata(safeLength, meta.isUnicode() ? 2 : 1));
             }
@@ -0,0 +1,86 @@
+package com.teradata.fivetran.destination.writers;
+
+import com.google.protobuf.ByteString;
+import com.teradata.fivetran.destination.Logger;
+import com.teradata.fivetran.destination.writers.util.VarcharWidener;
+import fivetran_sdk.v2.Column;
+import fivetran_sdk.v2.DataType;
+import fivetran_sdk.v2.FileParams;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads update files ahead of the apply steps to find the longest value each VARCHAR column of
+ * the target must hold, so that the columns are widened before the transaction of the batch
+ * begins. Widening is DDL, which ends the transaction it runs in.
+ *
+ * The values are measured as UpdateWriter measures them: the modified and primary key cells of
+ * every row.
+ */
+public class VarcharLengthScanner extends Writer {
+    private final Map<String, Integer> maxLengths = new HashMap<>();
+    private List<Column> headerColumns = new ArrayList<>();
+
+    /**
+     * Constructor for VarcharLengthScanner.
+     *
+     * @param conn       The database connection.
+     * @param database   The database name.
+     * @param table      The table name.
+     * @param columns    The list of columns.
+     * @param params     The file parameters.
+     * @param secretKeys The map of secret keys.
+     * @param batchSize  The batch size for reading rows.
+     */
+    public VarcharLengthScanner(Connection conn, String database, String table, List<Column> columns,
+                                FileParams params, Map<String, ByteString> secretKeys, Integer batchSize) {
+        super(conn, database, table, columns, params, secretKeys, batchSize);
+    }
+
+    @Override
+    public void setHeader(List<String> header) {
+        Map<String, Column> nameToColumn = new HashMap<>();
+        for (Column column : columns) {
+            nameToColumn.put(column.getName(), column);
+        }
+        headerColumns = new ArrayList<>();
+        for (String name : header) {
+            headerColumns.add(nameToColumn.get(name));
+        }
+    }
+
+    @Override
+    public void writeRow(List<String> row) {
+        for (int i = 0; i < row.size() && i < headerColumns.size(); i++) {
+            Column c = headerColumns.get(i);
+            String value = row.get(i);
+            if (c == null || c.getType() != DataType.STRING || value == null
+                    || (value.equals(params.getUnmodifiedString()) && !c.getPrimaryKey())) {
+                continue;
+            }
+            maxLengths.merge(c.getName(), value.length(), Math::max);
+        }
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    /**
+     * Widens the VARCHAR columns of the target that are shorter than the longest value read.
+     *
+     * @param widener The widener of the target table.
+     * @throws SQLException If a column cannot be resized.
+     */
+    public void widen(VarcharWidener widener) throws SQLException {
+        Logger.logMessage(Logger.LogLevel.INFO, "Longest values of the update files: " + maxLengths);
+        if (!maxLengths.isEmpty()) {
+            widener.widen(conn, maxLengths);
+        }
+    }
+}
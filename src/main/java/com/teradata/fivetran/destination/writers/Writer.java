@@ -1,31 +1,30 @@
 package com.teradata.fivetran.destination.writers;
 
-import com.github.luben.zstd.ZstdInputStream;
 import com.google.protobuf.ByteString;
-import com.opencsv.CSVParserBuilder;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
+import com.teradata.fivetran.destination.CancellationScope;
+import com.teradata.fivetran.destination.writers.util.AdaptiveBatchSizer;
+import com.teradata.fivetran.destination.writers.util.BatchFileDecoder;
+import com.teradata.fivetran.destination.writers.util.BatchStats;
+import com.teradata.fivetran.destination.writers.util.MultiStatementPacker;
+import com.teradata.fivetran.destination.writers.util.PreparedStatementCache;
+import com.teradata.fivetran.destination.writers.util.RowReader;
+import com.teradata.fivetran.destination.writers.util.TypedRowReader;
 import fivetran_sdk.v2.Column;
-import fivetran_sdk.v2.Compression;
 import fivetran_sdk.v2.FileParams;
-import fivetran_sdk.v2.Encryption;
 
-import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 import java.io.*;
-import java.security.SecureRandom;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
 
-public abstract class Writer {
+public abstract class Writer implements AutoCloseable {
+    /**
+     * The default estimated size of a batch after which it is executed, whatever its row count.
+     */
+    public static final long DEFAULT_BATCH_MAX_BYTES = 16L * 1024 * 1024;
 
     protected Connection conn;
     protected String database;
@@ -34,6 +33,17 @@ public abstract class Writer {
     protected FileParams params;
     protected Map<String, ByteString> secretKeys;
     protected Integer batchSize;
+    protected int multiStatementSize = MultiStatementPacker.DEFAULT_SIZE;
+    protected int statementCacheSize = PreparedStatementCache.DEFAULT_SIZE;
+    protected long batchMaxBytes = DEFAULT_BATCH_MAX_BYTES;
+    protected final BatchStats batchStats = new BatchStats();
+    protected AdaptiveBatchSizer batchSizer;
+    private MultiStatementPacker statementPacker;
+    private PreparedStatementCache statementCache;
+    // Whether the writer created the statement cache itself, rather than sharing the one of the call
+    private boolean ownsStatementCache = false;
+    // Cancellation of the gRPC call the writer works for
+    private final CancellationScope cancellation = CancellationScope.current();
 
     /**
      * Constructor for Writer.
@@ -58,61 +68,133 @@ public abstract class Writer {
     }
 
     /**
-     * Sets the header for the CSV file.
+     * Sets the maximum number of per-row statements sent in one multi-statement request.
      *
-     * @param header The list of header columns.
-     * @throws SQLException, IOException If an error occurs while setting the header.
+     * @param multiStatementSize The number of statements per request. 1 disables packing.
      */
-    public abstract void setHeader(List<String> header) throws SQLException, IOException;
+    public void setMultiStatementSize(int multiStatementSize) {
+        this.multiStatementSize = multiStatementSize;
+    }
 
     /**
-     * Writes a row to the database.
+     * Sets the maximum number of prepared statements a writer keeps open for reuse.
      *
-     * @param row The list of row values.
-     * @throws Exception If an error occurs while writing the row.
+     * @param statementCacheSize The number of cached statements.
      */
-    public abstract void writeRow(List<String> row) throws Exception;
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
 
     /**
-     * Reads the initialization vector (IV) from the input stream.
+     * Makes the writer prepare its per-row statements in the cache of the connection, which keeps
+     * them for the other writers and files of the call. The caller closes the cache when the call
+     * ends.
      *
-     * @param is   The input stream.
-     * @param file The file name.
-     * @return The IV parameter specification.
-     * @throws Exception If an error occurs while reading the IV.
-     */
-    private IvParameterSpec readIV(InputStream is, String file) throws Exception {
-        byte[] ivBytes = new byte[16];
-        SecureRandom secureRandom = new SecureRandom();
-        secureRandom.nextBytes(ivBytes); // Generate a random IV
-        int bytesRead = 0;
-        while (bytesRead < ivBytes.length) {
-            int read = is.read(ivBytes, bytesRead, ivBytes.length - bytesRead);
-            if (read == -1) {
-                throw new Exception(String.format("Failed to read initialization vector. File '%s' has only %d bytes", file, bytesRead));
+     * @param statementCache The statement cache of the connection.
+     */
+    public void setStatementCache(PreparedStatementCache statementCache) {
+        this.statementCache = statementCache;
+    }
+
+    /**
+     * Sets the estimated size of a batch after which it is executed, even if it has fewer rows than
+     * the batch size.
+     *
+     * @param batchMaxBytes The byte budget of a batch.
+     */
+    public void setBatchMaxBytes(long batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    /**
+     * Lets the batch size follow the measured throughput of executeBatch, starting from the batch
+     * size or from the size the table was tuned to earlier in this process.
+     *
+     * @param min The smallest batch size.
+     * @param max The largest batch size.
+     */
+    public void setAdaptiveBatchSize(int min, int max) {
+        this.batchSizer = new AdaptiveBatchSizer(database + "." + table, batchSize, min, max);
+    }
+
+    /**
+     * Returns the number of rows after which the current batch is executed.
+     *
+     * @return The adaptive batch size if enabled, the configured batch size otherwise.
+     */
+    protected int batchSizeLimit() {
+        return batchSizer == null ? batchSize : batchSizer.batchSize();
+    }
+
+    /**
+     * Returns the rows and bytes of the batches this writer has executed.
+     *
+     * @return The batch histograms.
+     */
+    public BatchStats getBatchStats() {
+        return batchStats;
+    }
+
+    /**
+     * Returns the packer for per-row statements, creating it on first use.
+     *
+     * @return The statement packer of this writer.
+     */
+    protected MultiStatementPacker statementPacker() {
+        if (statementPacker == null) {
+            if (statementCache == null) {
+                statementCache = new PreparedStatementCache(conn, statementCacheSize);
+                ownsStatementCache = true;
             }
-            bytesRead += read;
+            statementPacker = new MultiStatementPacker(statementCache, database, table, multiStatementSize, batchSize);
         }
-        return new IvParameterSpec(ivBytes);
+        return statementPacker;
     }
 
     /**
-     * Decodes the AES-encrypted input stream.
+     * Sends the pending per-row statements. Must be called before DDL on the table.
      *
-     * @param is            The input stream.
-     * @param secretKeyBytes The secret key bytes.
-     * @param file          The file name.
-     * @return The decoded input stream.
-     * @throws Exception If an error occurs while decoding.
-     */
-    private InputStream decodeAES(InputStream is, byte[] secretKeyBytes, String file) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        IvParameterSpec iv = readIV(is, file);
-        SecretKey secretKey = new SecretKeySpec(secretKeyBytes, "AES");
-        cipher.init(Cipher.DECRYPT_MODE, secretKey, iv);
-        return new CipherInputStream(is, cipher);
+     * @throws SQLException If a statement fails.
+     */
+    protected void flushStatements() throws SQLException {
+        if (statementPacker != null) {
+            statementPacker.flush();
+        }
     }
 
+    /**
+     * Discards the per-row statements that were not sent and closes the statements the writer
+     * prepared in a cache of its own. A cache shared with setStatementCache stays open.
+     */
+    @Override
+    public void close() {
+        if (statementPacker != null) {
+            statementPacker.close();
+            statementPacker = null;
+        }
+        if (ownsStatementCache) {
+            statementCache.close();
+            statementCache = null;
+            ownsStatementCache = false;
+        }
+    }
+
+    /**
+     * Sets the header for the CSV file.
+     *
+     * @param header The list of header columns.
+     * @throws SQLException, IOException If an error occurs while setting the header.
+     */
+    public abstract void setHeader(List<String> header) throws SQLException, IOException;
+
+    /**
+     * Writes a row to the database.
+     *
+     * @param row The list of row values.
+     * @throws Exception If an error occurs while writing the row.
+     */
+    public abstract void writeRow(List<String> row) throws Exception;
+
     /**
      * Writes the content of the file to the database.
      *
@@ -120,9 +202,8 @@ public abstract class Writer {
      * @throws Exception If an error occurs while writing.
      */
     public void write(String file) throws Exception {
-        try (FileInputStream is = new FileInputStream(file)) {
-            write(file, is);
-        }
+        BatchFileDecoder decoder = new BatchFileDecoder(params, secretKeys);
+        write(file, decoder, decoder.openRows(file));
     }
 
     /**
@@ -133,21 +214,12 @@ public abstract class Writer {
      * @throws Exception If an error occurs while writing.
      */
     public void write(String file, InputStream is) throws Exception {
-        InputStream decoded = is;
-        if (params.getEncryption() == Encryption.AES) {
-            decoded = decodeAES(is, secretKeys.get(file).toByteArray(), file);
-        }
-
-        InputStream uncompressed = decoded;
-        if (params.getCompression() == Compression.ZSTD) {
-            uncompressed = new ZstdInputStream(decoded);
-        } else if (params.getCompression() == Compression.GZIP) {
-            uncompressed = new GZIPInputStream(decoded);
-        }
+        BatchFileDecoder decoder = new BatchFileDecoder(params, secretKeys);
+        write(file, decoder, decoder.openRows(file, is));
+    }
 
-        try (CSVReader csvReader = new CSVReaderBuilder(new BufferedReader(new InputStreamReader(uncompressed)))
-                .withCSVParser(new CSVParserBuilder().withEscapeChar('\0').build())
-                .build()) {
+    private void write(String file, BatchFileDecoder decoder, RowReader reader) throws Exception {
+        try (RowReader csvReader = reader) {
             String[] headerString = csvReader.readNext();
             if (headerString == null) {
                 // Finish if file is empty
@@ -157,14 +229,28 @@ public abstract class Writer {
             List<String> header = new ArrayList<>(Arrays.asList(headerString));
             setHeader(header);
 
-            String[] tokens;
-            while ((tokens = csvReader.readNext()) != null) {
-                List<String> row = new ArrayList<>(Arrays.asList(tokens));
-                writeRow(row);
+            // Typed rows go as values to writers that bind them, and as text to the others
+            if (csvReader instanceof TypedRowReader && this instanceof TypedRowWriter) {
+                TypedRowReader typedReader = (TypedRowReader) csvReader;
+                TypedRowWriter typedWriter = (TypedRowWriter) this;
+                Object[] values;
+                while ((values = typedReader.readNextValues()) != null) {
+                    cancellation.checkCancelled();
+                    typedWriter.writeValues(values);
+                }
+            } else {
+                String[] tokens;
+                while ((tokens = csvReader.readNext()) != null) {
+                    cancellation.checkCancelled();
+                    List<String> row = new ArrayList<>(Arrays.asList(tokens));
+                    writeRow(row);
+                }
             }
         }
+        decoder.getStats().log(file);
 
         commit();
+        batchStats.log(file);
     }
 
     /**
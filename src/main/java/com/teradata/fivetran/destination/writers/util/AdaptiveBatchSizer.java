@@ -0,0 +1,88 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import com.teradata.fivetran.destination.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tunes the row count of the batches of a table from the measured throughput of executeBatch.
+ *
+ * The controller is additive-increase, multiplicative-decrease: after every full batch the size
+ * grows by one step while the rows per second hold up, and is halved when they drop by more than
+ * a tenth compared to the previous batch. Batches that were cut short, by the end of a file or by
+ * the byte budget, say nothing about a larger size and are ignored.
+ *
+ * The tuned size of every table is kept for the life of the process, so the next sync of a table
+ * starts where the previous one ended.
+ */
+public class AdaptiveBatchSizer {
+    private static final Map<String, Integer> TUNED = new ConcurrentHashMap<>();
+    private static final double DROP_TOLERANCE = 0.9;
+
+    private final String key;
+    private final int min;
+    private final int max;
+    private final int step;
+    private int size;
+    private double lastThroughput = 0;
+
+    /**
+     * @param key     The table the batches are written to.
+     * @param initial The size to start with if the table was not tuned before.
+     * @param min     The smallest batch size.
+     * @param max     The largest batch size.
+     */
+    public AdaptiveBatchSizer(String key, int initial, int min, int max) {
+        this.key = key;
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.step = this.min;
+        this.size = clamp(TUNED.getOrDefault(key, initial));
+        Logger.logMessage(Logger.LogLevel.INFO,
+                String.format("Adaptive batch size for %s starts at %d (bounds %d to %d)", key, size, this.min, this.max));
+    }
+
+    private int clamp(int value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Returns the number of rows after which the current batch is executed.
+     */
+    public synchronized int batchSize() {
+        return size;
+    }
+
+    /**
+     * Records an executed batch and adjusts the batch size.
+     *
+     * @param rows  The number of rows of the batch.
+     * @param nanos The time executeBatch took.
+     */
+    public synchronized void record(int rows, long nanos) {
+        if (rows < size || nanos <= 0) {
+            return;
+        }
+        double throughput = rows * 1e9 / nanos;
+        int previous = size;
+        if (lastThroughput > 0 && throughput < lastThroughput * DROP_TOLERANCE) {
+            size = clamp(size / 2);
+        } else {
+            size = clamp(size + step);
+        }
+        lastThroughput = throughput;
+        TUNED.put(key, size);
+        if (size != previous) {
+            Logger.logMessage(Logger.debugLogLevel, String.format("Batch of %d rows for %s ran at %.0f rows/s, batch size is now %d",
+                    rows, key, throughput, size));
+        }
+    }
+
+    /**
+     * Returns the size a table was tuned to in this process, or null if it was not.
+     */
+    public static Integer tunedSize(String key) {
+        return TUNED.get(key);
+    }
+}
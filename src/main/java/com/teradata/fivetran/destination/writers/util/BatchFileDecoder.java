@@ -0,0 +1,681 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.google.protobuf.ByteString;
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.teradata.fivetran.destination.Logger;
+import fivetran_sdk.v2.Compression;
+import fivetran_sdk.v2.Encryption;
+import fivetran_sdk.v2.FileParams;
+import org.apache.parquet.io.LocalInputFile;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Turns a batch file into CSV rows: AES-CBC decryption, ZSTD or GZIP decompression, UTF-8
+ * decoding and CSV parsing.
+ *
+ * Every stage works on large buffers. Decryption reads the file in chunks of {@link #BUFFER_SIZE}
+ * and hands them to Cipher.update in one call instead of going through CipherInputStream, which
+ * processes a few hundred bytes at a time. Each stage counts the bytes it produced and the time
+ * spent in it, see {@link Stats}.
+ *
+ * Large encrypted files are decrypted in parallel. In CBC mode every plaintext block only depends
+ * on its own ciphertext block and the one before it, so the file is split into chunks that are read
+ * with positional reads and decrypted on a shared worker pool, each chunk using the last ciphertext
+ * block of the previous chunk as its IV. The decrypted chunks are handed to the decompressor in
+ * file order; at most {@link #MAX_CHUNKS_IN_FLIGHT} chunks are read ahead.
+ *
+ * ZSTD files written as several frames are decompressed in parallel on the same pool, see
+ * {@link ParallelZstdInputStream}, and so are the CSV rows of files with more than
+ * {@link #PARALLEL_PARSE_THRESHOLD} bytes of plain content, see {@link ParallelCsvParser}. The CSV
+ * chunks read ahead by all parsers together are bounded by {@link #MAX_PARSE_CHUNKS}, so that
+ * concurrent writers do not each hold their own read-ahead.
+ *
+ * Batch files can also be Parquet files, recognized by their magic bytes. Parquet is read from the
+ * end of the file, so a Parquet file that is encrypted or compressed is first decoded into a
+ * temporary file; a plain one is read in place. Its rows come from a {@link ParquetRowReader}.
+ */
+public class BatchFileDecoder {
+    public static final int BUFFER_SIZE = 1 << 20;
+    private static final int READER_BUFFER_SIZE = 1 << 16;
+    private static final int IV_SIZE = 16;
+    static final int DECRYPT_CHUNK_SIZE = 2 << 20;
+    static final long PARALLEL_DECRYPT_THRESHOLD = 4L * DECRYPT_CHUNK_SIZE;
+    static final int WORKER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    static final int MAX_CHUNKS_IN_FLIGHT = Math.min(2 * WORKER_THREADS, 8);
+    static final int PARALLEL_PARSE_THRESHOLD = 2 * ParallelCsvParser.CHUNK_SIZE;
+    static final int MAX_PARSE_CHUNKS = 2 * MAX_CHUNKS_IN_FLIGHT;
+    // "PAR1" followed by the first byte of a page header
+    private static final byte[] PARQUET_MAGIC = {'P', 'A', 'R', '1', 0x15};
+
+    private final FileParams params;
+    private final Map<String, ByteString> secretKeys;
+    private final Stats stats = new Stats();
+
+    /**
+     * @param params     The file parameters of the batch.
+     * @param secretKeys The AES key of every file, used when the files are encrypted.
+     */
+    public BatchFileDecoder(FileParams params, Map<String, ByteString> secretKeys) {
+        this.params = params;
+        this.secretKeys = secretKeys;
+    }
+
+    /**
+     * Opens a batch file for CSV parsing. Closing the reader closes the file.
+     *
+     * @param file The file name.
+     * @return The CSV reader.
+     * @throws Exception If the file cannot be opened or decryption cannot be set up.
+     */
+    public CSVReader openCsv(String file) throws Exception {
+        return csv(open(file));
+    }
+
+    /**
+     * Wraps the raw content of a batch file for CSV parsing. Closing the reader closes the stream.
+     *
+     * @param file The file name, used to look up the key.
+     * @param is   The raw content of the file.
+     * @return The CSV reader.
+     * @throws Exception If decryption cannot be set up.
+     */
+    public CSVReader openCsv(String file, InputStream is) throws Exception {
+        return csv(open(file, is));
+    }
+
+    /**
+     * Opens a batch file for reading its rows. Large CSV files are parsed in parallel; Parquet
+     * files return a {@link TypedRowReader}. Closing the reader closes the file.
+     *
+     * @param file The file name.
+     * @return The row reader.
+     * @throws Exception If the file cannot be opened or decryption cannot be set up.
+     */
+    public RowReader openRows(String file) throws Exception {
+        if (params.getEncryption() != Encryption.AES && params.getCompression() == Compression.OFF) {
+            Path path = Paths.get(file);
+            if (isParquet(path)) {
+                stats.add(Stage.READ, Files.size(path), 0);
+                return new ParquetRowReader(new LocalInputFile(path), params.getNullString(), null);
+            }
+        }
+        return rows(open(file));
+    }
+
+    /**
+     * Wraps the raw content of a batch file for reading its rows. Large CSV files are parsed in
+     * parallel; Parquet files return a {@link TypedRowReader}. Closing the reader closes the stream.
+     *
+     * @param file The file name, used to look up the key.
+     * @param is   The raw content of the file.
+     * @return The row reader.
+     * @throws Exception If decryption cannot be set up.
+     */
+    public RowReader openRows(String file, InputStream is) throws Exception {
+        return rows(open(file, is));
+    }
+
+    /**
+     * Returns a parser with the CSV dialect of batch files. Parsers keep state, so every reader
+     * needs its own.
+     */
+    static CSVParser csvParser() {
+        return new CSVParserBuilder().withEscapeChar('\0').build();
+    }
+
+    private CSVReader csv(InputStream plain) {
+        Reader reader = new StageReader(new InputStreamReader(plain, StandardCharsets.UTF_8), stats);
+        return new CSVReaderBuilder(new BufferedReader(reader, READER_BUFFER_SIZE))
+                .withCSVParser(csvParser())
+                .build();
+    }
+
+    private static boolean isParquet(Path path) throws IOException {
+        byte[] magic = new byte[PARQUET_MAGIC.length];
+        try (InputStream is = Files.newInputStream(path)) {
+            return readFully(is, magic) == magic.length && Arrays.equals(magic, PARQUET_MAGIC);
+        }
+    }
+
+    private static int readFully(InputStream is, byte[] b) throws IOException {
+        int n = 0;
+        while (n < b.length) {
+            int read = is.read(b, n, b.length - n);
+            if (read == -1) {
+                break;
+            }
+            n += read;
+        }
+        return n;
+    }
+
+    /**
+     * Reads up to limit bytes, growing the buffer as they arrive.
+     */
+    private static byte[] readHead(InputStream is, int limit) throws IOException {
+        byte[] head = new byte[Math.min(limit, READER_BUFFER_SIZE)];
+        int n = 0;
+        while (n < limit) {
+            if (n == head.length) {
+                head = Arrays.copyOf(head, Math.min(limit, 2 * head.length));
+            }
+            int read = is.read(head, n, head.length - n);
+            if (read == -1) {
+                break;
+            }
+            n += read;
+        }
+        return n == head.length ? head : Arrays.copyOf(head, n);
+    }
+
+    private RowReader rows(InputStream plain) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(plain, PARQUET_MAGIC.length);
+        byte[] magic = new byte[PARQUET_MAGIC.length];
+        int n;
+        try {
+            n = readFully(in, magic);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        if (n == magic.length && Arrays.equals(magic, PARQUET_MAGIC)) {
+            return parquet(magic, in);
+        }
+        in.unread(magic, 0, n);
+        plain = in;
+
+        if (WORKER_THREADS > 1) {
+            // Small files are parsed faster on the reading thread than split into chunks
+            byte[] head;
+            try {
+                head = readHead(in, PARALLEL_PARSE_THRESHOLD + 1);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+            plain = new SequenceInputStream(new ByteArrayInputStream(head), in);
+            if (head.length > PARALLEL_PARSE_THRESHOLD) {
+                return new ParallelCsvParser(plain, WorkerPool.EXECUTOR, MAX_CHUNKS_IN_FLIGHT,
+                        WorkerPool.PARSE_CHUNKS, stats);
+            }
+        }
+        final CSVReader reader = csv(plain);
+        return new RowReader() {
+            @Override
+            public String[] readNext() throws IOException {
+                return reader.readNext();
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    /**
+     * Decodes a Parquet file into a temporary file, which is deleted when the reader is closed.
+     */
+    private RowReader parquet(byte[] magic, InputStream rest) throws IOException {
+        Path temp = Files.createTempFile("batch-file-", ".parquet");
+        try {
+            try (InputStream content = new SequenceInputStream(new ByteArrayInputStream(magic), rest)) {
+                Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return new ParquetRowReader(new LocalInputFile(temp), params.getNullString(), temp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private InputStream open(String file) throws Exception {
+        if (params.getEncryption() == Encryption.AES && WORKER_THREADS > 1) {
+            Path path = Paths.get(file);
+            if (Files.size(path) >= PARALLEL_DECRYPT_THRESHOLD) {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                try {
+                    InputStream decoded = new StageInputStream(new ParallelAesInputStream(
+                            channel, secretKeys.get(file).toByteArray(), file, stats), Stage.DECRYPT, stats);
+                    return decompress(decoded);
+                } catch (Exception e) {
+                    channel.close();
+                    throw e;
+                }
+            }
+        }
+
+        FileInputStream is = new FileInputStream(file);
+        try {
+            return open(file, is);
+        } catch (Exception e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the decrypted and decompressed content of a batch file.
+     *
+     * @param file The file name, used to look up the key.
+     * @param is   The raw content of the file.
+     * @return The plain content.
+     * @throws Exception If decryption cannot be set up.
+     */
+    public InputStream open(String file, InputStream is) throws Exception {
+        InputStream raw = new StageInputStream(is, Stage.READ, stats);
+
+        InputStream decoded = raw;
+        if (params.getEncryption() == Encryption.AES) {
+            decoded = new StageInputStream(decryptAES(raw, secretKeys.get(file).toByteArray(), file), Stage.DECRYPT, stats);
+        }
+        return decompress(decoded);
+    }
+
+    private InputStream decompress(InputStream decoded) throws IOException {
+        InputStream uncompressed = decoded;
+        if (params.getCompression() == Compression.ZSTD) {
+            InputStream zstd = WORKER_THREADS > 1
+                    ? new ParallelZstdInputStream(decoded, WorkerPool.EXECUTOR)
+                    : new BufferedInputStream(new ZstdInputStream(decoded), BUFFER_SIZE);
+            uncompressed = new StageInputStream(zstd, Stage.DECOMPRESS, stats);
+        } else if (params.getCompression() == Compression.GZIP) {
+            uncompressed = new StageInputStream(
+                    new GZIPInputStream(decoded, BUFFER_SIZE), Stage.DECOMPRESS, stats);
+        }
+        return uncompressed;
+    }
+
+    /**
+     * Returns the counters of all files opened by this decoder.
+     */
+    public Stats getStats() {
+        return stats;
+    }
+
+    private static InputStream decryptAES(InputStream is, byte[] secretKeyBytes, String file) throws Exception {
+        byte[] ivBytes = new byte[IV_SIZE];
+        int bytesRead = 0;
+        while (bytesRead < ivBytes.length) {
+            int read = is.read(ivBytes, bytesRead, ivBytes.length - bytesRead);
+            if (read == -1) {
+                throw new Exception(String.format("Failed to read initialization vector. File '%s' has only %d bytes", file, bytesRead));
+            }
+            bytesRead += read;
+        }
+
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(secretKeyBytes, "AES"), new IvParameterSpec(ivBytes));
+        return new AesInputStream(is, cipher, file);
+    }
+
+    /**
+     * Worker pool shared by all parallel decryptions and decompressions, created on first use, and
+     * the CSV chunks all parsers may have read ahead.
+     */
+    private static class WorkerPool {
+        static final Semaphore PARSE_CHUNKS = new Semaphore(MAX_PARSE_CHUNKS);
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(WORKER_THREADS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "batch-file-decoder-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Decrypts a file in chunks on the worker pool and returns the plaintext in file order.
+     */
+    static class ParallelAesInputStream extends InputStream {
+        private final FileChannel channel;
+        private final SecretKeySpec key;
+        private final String file;
+        private final Stats stats;
+        private final long size;
+        private final long chunkCount;
+        private final ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        private long nextChunk = 0;
+        private byte[] current = new byte[0];
+        private int pos = 0;
+
+        ParallelAesInputStream(FileChannel channel, byte[] secretKeyBytes, String file, Stats stats) throws IOException {
+            this.channel = channel;
+            this.key = new SecretKeySpec(secretKeyBytes, "AES");
+            this.file = file;
+            this.stats = stats;
+            this.size = channel.size();
+            if (size < IV_SIZE) {
+                throw new IOException(String.format("Failed to read initialization vector. File '%s' has only %d bytes", file, size));
+            }
+            if ((size - IV_SIZE) % IV_SIZE != 0) {
+                throw new IOException(String.format("Failed to decrypt file '%s': ciphertext length %d is not a multiple of the block size",
+                        file, size - IV_SIZE));
+            }
+            this.chunkCount = (size - IV_SIZE + DECRYPT_CHUNK_SIZE - 1) / DECRYPT_CHUNK_SIZE;
+            schedule();
+        }
+
+        private void schedule() {
+            while (inFlight.size() < MAX_CHUNKS_IN_FLIGHT && nextChunk < chunkCount) {
+                final long chunk = nextChunk++;
+                inFlight.add(WorkerPool.EXECUTOR.submit(() -> decryptChunk(chunk)));
+            }
+        }
+
+        private byte[] decryptChunk(long chunk) throws IOException, GeneralSecurityException {
+            // The chunk is read together with the ciphertext block before it, which is its IV
+            long start = IV_SIZE + chunk * DECRYPT_CHUNK_SIZE;
+            int length = (int) Math.min(DECRYPT_CHUNK_SIZE, size - start);
+            ByteBuffer buf = ByteBuffer.allocate(IV_SIZE + length);
+            long readStart = System.nanoTime();
+            long position = start - IV_SIZE;
+            while (buf.hasRemaining()) {
+                int n = channel.read(buf, position + buf.position());
+                if (n < 0) {
+                    throw new EOFException(String.format("File '%s' ended while decrypting", file));
+                }
+            }
+            // The IV block of later chunks was already counted with the chunk before
+            stats.add(Stage.READ, chunk == 0 ? buf.capacity() : length, System.nanoTime() - readStart);
+
+            boolean last = chunk == chunkCount - 1;
+            Cipher cipher = Cipher.getInstance(last ? "AES/CBC/PKCS5Padding" : "AES/CBC/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(buf.array(), 0, IV_SIZE));
+            return cipher.doFinal(buf.array(), IV_SIZE, length);
+        }
+
+        private boolean next() throws IOException {
+            Future<byte[]> future = inFlight.poll();
+            if (future == null) {
+                return false;
+            }
+            try {
+                current = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while decrypting file " + file);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(String.format("Failed to decrypt file '%s': %s", file, cause.getMessage()), cause);
+            }
+            pos = 0;
+            schedule();
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (pos >= current.length) {
+                if (!next()) {
+                    return -1;
+                }
+            }
+            return current[pos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (pos >= current.length) {
+                if (!next()) {
+                    return -1;
+                }
+            }
+            int n = Math.min(len, current.length - pos);
+            System.arraycopy(current, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return current.length - pos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Future<byte[]> future : inFlight) {
+                future.cancel(true);
+            }
+            inFlight.clear();
+            channel.close();
+        }
+    }
+
+    /**
+     * Decrypts the underlying stream chunk by chunk with bulk Cipher.update calls.
+     */
+    private static class AesInputStream extends InputStream {
+        private final InputStream in;
+        private final Cipher cipher;
+        private final String file;
+        private final byte[] inBuf = new byte[BUFFER_SIZE];
+        private final byte[] outBuf;
+        private int outPos = 0;
+        private int outLimit = 0;
+        private boolean finished = false;
+
+        AesInputStream(InputStream in, Cipher cipher, String file) {
+            this.in = in;
+            this.cipher = cipher;
+            this.file = file;
+            // update can return one block held back from the previous call
+            this.outBuf = new byte[cipher.getOutputSize(BUFFER_SIZE)];
+        }
+
+        private boolean fill() throws IOException {
+            if (finished) {
+                return false;
+            }
+            int n = in.read(inBuf, 0, inBuf.length);
+            try {
+                if (n == -1) {
+                    outLimit = cipher.doFinal(outBuf, 0);
+                    finished = true;
+                } else {
+                    outLimit = cipher.update(inBuf, 0, n, outBuf, 0);
+                }
+            } catch (GeneralSecurityException e) {
+                throw new IOException(String.format("Failed to decrypt file '%s': %s", file, e.getMessage()), e);
+            }
+            outPos = 0;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (outPos >= outLimit) {
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            return outBuf[outPos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (outPos >= outLimit) {
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            int n = Math.min(len, outLimit - outPos);
+            System.arraycopy(outBuf, outPos, b, off, n);
+            outPos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return outLimit - outPos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    enum Stage { READ, DECRYPT, DECOMPRESS }
+
+    /**
+     * Counts the bytes returned by a stage and the time spent in it, including the stages below.
+     */
+    private static class StageInputStream extends FilterInputStream {
+        private final Stage stage;
+        private final Stats stats;
+
+        StageInputStream(InputStream in, Stage stage, Stats stats) {
+            super(in);
+            this.stage = stage;
+            this.stats = stats;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = in.read();
+            stats.add(stage, b == -1 ? 0 : 1, System.nanoTime() - start);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = in.read(b, off, len);
+            stats.add(stage, Math.max(n, 0), System.nanoTime() - start);
+            return n;
+        }
+    }
+
+    /**
+     * Counts the characters decoded from UTF-8 and the time spent, including the byte stages.
+     */
+    private static class StageReader extends FilterReader {
+        private final Stats stats;
+
+        StageReader(Reader in, Stats stats) {
+            super(in);
+            this.stats = stats;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = in.read(cbuf, off, len);
+            stats.addDecoded(Math.max(n, 0), System.nanoTime() - start);
+            return n;
+        }
+    }
+
+    /**
+     * Byte and time counters of the decoding stages. Times are inclusive: each stage contains the
+     * time of the stages it reads from. {@link #toString()} reports the time of each stage alone.
+     */
+    public static class Stats {
+        private long readBytes, readNanos;
+        private long decryptedBytes, decryptNanos;
+        private long decompressedBytes, decompressNanos;
+        private long decodedChars, decodeNanos;
+
+        synchronized void add(Stage stage, long bytes, long nanos) {
+            switch (stage) {
+                case READ:
+                    readBytes += bytes;
+                    readNanos += nanos;
+                    break;
+                case DECRYPT:
+                    decryptedBytes += bytes;
+                    decryptNanos += nanos;
+                    break;
+                case DECOMPRESS:
+                    decompressedBytes += bytes;
+                    decompressNanos += nanos;
+                    break;
+            }
+        }
+
+        synchronized void addDecoded(long chars, long nanos) {
+            decodedChars += chars;
+            decodeNanos += nanos;
+        }
+
+        public synchronized long getReadBytes() {
+            return readBytes;
+        }
+
+        public synchronized long getDecryptedBytes() {
+            return decryptedBytes;
+        }
+
+        public synchronized long getDecompressedBytes() {
+            return decompressedBytes;
+        }
+
+        public synchronized long getDecodedChars() {
+            return decodedChars;
+        }
+
+        @Override
+        public synchronized String toString() {
+            // With parallel decryption the read time is summed over the workers
+            long decryptOnly = decryptNanos > 0 ? Math.max(decryptNanos - readNanos, 0) : 0;
+            long below = decryptNanos > 0 ? decryptNanos : readNanos;
+            long decompressOnly = decompressNanos > 0 ? Math.max(decompressNanos - below, 0) : 0;
+            long decodeOnly = decodeNanos - (decompressNanos > 0 ? decompressNanos : below);
+            return String.format("read %d bytes in %d ms, decrypted %d bytes in %d ms, decompressed %d bytes in %d ms, "
+                            + "decoded %d chars in %d ms",
+                    readBytes, readNanos / 1000000, decryptedBytes, decryptOnly / 1000000,
+                    decompressedBytes, decompressOnly / 1000000, decodedChars, Math.max(decodeOnly, 0) / 1000000);
+        }
+
+        /**
+         * Logs the counters for a file or batch.
+         *
+         * @param what The name of the file or batch.
+         */
+        public void log(String what) {
+            Logger.logMessage(Logger.LogLevel.INFO, "Decoded " + what + ": " + this);
+        }
+    }
+}
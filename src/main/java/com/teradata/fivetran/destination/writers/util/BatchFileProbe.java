@@ -0,0 +1,106 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import com.google.protobuf.ByteString;
+import com.teradata.fivetran.destination.Logger;
+import fivetran_sdk.v2.FileParams;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the header of a batch file and keeps the decoded file open after it.
+ *
+ * A FastLoad job needs the header of its first file before the sessions are set up. Instead of
+ * decoding the file once for the header and again for its rows, the session that loads the file
+ * takes over the open reader and continues after the header.
+ */
+public class BatchFileProbe implements AutoCloseable {
+    private final String file;
+    private final BatchFileDecoder decoder;
+    private final List<String> header;
+    private RowReader reader;
+
+    private BatchFileProbe(String file, BatchFileDecoder decoder, List<String> header, RowReader reader) {
+        this.file = file;
+        this.decoder = decoder;
+        this.header = header;
+        this.reader = reader;
+    }
+
+    /**
+     * Opens a batch file and reads its header.
+     *
+     * @param file       The file name.
+     * @param params     The file parameters of the batch.
+     * @param secretKeys The AES key of every file, used when the files are encrypted.
+     * @return The probe, positioned after the header.
+     * @throws Exception If the file cannot be opened or decoded.
+     */
+    public static BatchFileProbe open(String file, FileParams params, Map<String, ByteString> secretKeys) throws Exception {
+        BatchFileDecoder decoder = new BatchFileDecoder(params, secretKeys);
+        RowReader reader = decoder.openRows(file);
+        try {
+            String[] headerString = reader.readNext();
+            List<String> header = headerString == null ? null : new ArrayList<>(Arrays.asList(headerString));
+            return new BatchFileProbe(file, decoder, header, reader);
+        } catch (Exception e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the name of the probed file.
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the header of the file, or null if the file is empty.
+     */
+    public List<String> getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the decoder of the file, which holds its counters.
+     */
+    public BatchFileDecoder getDecoder() {
+        return decoder;
+    }
+
+    /**
+     * Hands the open reader over to the caller, who must close it.
+     *
+     * @param file The file the caller is about to load.
+     * @return The reader positioned after the header, or null if the file is not the probed one or
+     *         the reader was already taken.
+     */
+    public synchronized RowReader take(String file) {
+        if (!this.file.equals(file)) {
+            return null;
+        }
+        RowReader taken = reader;
+        reader = null;
+        return taken;
+    }
+
+    /**
+     * Closes the reader if no session took it.
+     */
+    @Override
+    public synchronized void close() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                Logger.logMessage(Logger.LogLevel.WARNING, "Failed to close batch file " + file + ": " + e.getMessage());
+            }
+            reader = null;
+        }
+    }
+}
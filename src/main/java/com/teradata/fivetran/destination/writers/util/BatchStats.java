@@ -0,0 +1,90 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import com.teradata.fivetran.destination.Logger;
+
+/**
+ * Histograms of the rows and estimated bytes of the batches a writer executes.
+ *
+ * Bucket i of a histogram counts the batches with a value in [2^(i-1), 2^i), bucket 0 those with a
+ * value of 0, so the histograms show whether batches are cut by the row count or by the byte budget.
+ */
+public class BatchStats {
+    private static final int BUCKETS = 64;
+
+    private final long[] rowHistogram = new long[BUCKETS];
+    private final long[] byteHistogram = new long[BUCKETS];
+    private long batches, rows, bytes;
+
+    /**
+     * Records an executed batch.
+     *
+     * @param batchRows  The number of rows of the batch.
+     * @param batchBytes The estimated encoded size of the batch.
+     */
+    public synchronized void record(long batchRows, long batchBytes) {
+        batches++;
+        rows += batchRows;
+        bytes += batchBytes;
+        rowHistogram[bucket(batchRows)]++;
+        byteHistogram[bucket(batchBytes)]++;
+    }
+
+    static int bucket(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    public synchronized long getBatches() {
+        return batches;
+    }
+
+    /**
+     * Returns a copy of the histogram of rows per batch.
+     */
+    public synchronized long[] getRowHistogram() {
+        return rowHistogram.clone();
+    }
+
+    /**
+     * Returns a copy of the histogram of estimated bytes per batch.
+     */
+    public synchronized long[] getByteHistogram() {
+        return byteHistogram.clone();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d batches, %d rows, %d bytes; rows per batch %s; bytes per batch %s",
+                batches, rows, bytes, format(rowHistogram), format(byteHistogram));
+    }
+
+    // Lists the non-empty buckets as "[low, high): count"
+    private static String format(long[] histogram) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] == 0) {
+                continue;
+            }
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            if (i == 0) {
+                sb.append("0");
+            } else {
+                sb.append('[').append(1L << (i - 1)).append(", ").append(i == 63 ? "inf" : String.valueOf(1L << i)).append(')');
+            }
+            sb.append(": ").append(histogram[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Logs the histograms for a file or table.
+     *
+     * @param what The name of the file or table.
+     */
+    public void log(String what) {
+        if (getBatches() > 0) {
+            Logger.logMessage(Logger.LogLevel.INFO, "Batches of " + what + ": " + this);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The codecs of the columns of a batch file, in header order, built once per header.
+ *
+ * Rows are bound with one codec call per cell. A text cell is NULL when it is missing, equals the
+ * null string of the batch or is the literal "null", as the load writers have always treated it.
+ *
+ * The plan also estimates the encoded size of the rows it binds, so that writers can send a batch
+ * of wide rows before it reaches its row count.
+ */
+public class CodecPlan {
+    private final ColumnCodec[] codecs;
+    private final String nullString;
+    // Row length and null indicator bits of every row
+    private final int rowOverhead;
+    private long batchBytes = 0;
+
+    /**
+     * @param codecs     The codec of every column of the header.
+     * @param nullString The null string of the batch.
+     */
+    public CodecPlan(ColumnCodec[] codecs, String nullString) {
+        this.codecs = codecs;
+        this.nullString = nullString;
+        this.rowOverhead = 2 + (codecs.length + 7) / 8;
+    }
+
+    /**
+     * Returns the codec of a column.
+     *
+     * @param i The position of the column in the header.
+     */
+    public ColumnCodec get(int i) {
+        return codecs[i];
+    }
+
+    /**
+     * Binds a row of text cells to the parameters 1 to n of a statement.
+     */
+    public void bindRow(PreparedStatement stmt, List<String> row) throws SQLException {
+        batchBytes += rowOverhead;
+        for (int i = 0; i < row.size(); i++) {
+            String value = row.get(i);
+            if (value == null || value.equals(nullString) || value.equals("null")) {
+                codecs[i].bindNull(stmt, i + 1);
+            } else {
+                codecs[i].bindText(stmt, i + 1, value);
+                batchBytes += codecs[i].encodedSize(value);
+            }
+        }
+    }
+
+    /**
+     * Binds a row of typed values to the parameters 1 to n of a statement. Null values are SQL NULL.
+     */
+    public void bindValues(PreparedStatement stmt, Object[] values) throws SQLException {
+        batchBytes += rowOverhead;
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                codecs[i].bindNull(stmt, i + 1);
+            } else if (value instanceof String) {
+                codecs[i].bindText(stmt, i + 1, (String) value);
+                batchBytes += codecs[i].encodedSize((String) value);
+            } else {
+                codecs[i].bindValue(stmt, i + 1, value);
+                batchBytes += codecs[i].encodedSize(value);
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated encoded size of the rows bound since the last reset.
+     */
+    public long getBatchBytes() {
+        return batchBytes;
+    }
+
+    /**
+     * Starts estimating the size of a new batch.
+     */
+    public void resetBatchBytes() {
+        batchBytes = 0;
+    }
+}
@@ -0,0 +1,634 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import com.teradata.fivetran.destination.TeradataJDBCUtil;
+import fivetran_sdk.v2.DataType;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Binds the values of one column to a prepared statement.
+ *
+ * A codec is chosen once per column from its data type, so binding a cell is a single virtual call
+ * instead of a switch over the type. Text values come from CSV files, typed values from Parquet
+ * files; a typed value of an unexpected Java type is bound like its text.
+ *
+ * BINARY, JSON and XML values longer than STREAM_THRESHOLD characters are bound as streams over
+ * the cell, so a multi-megabyte value is not copied again for every batched row. Malformed Base64
+ * in a streamed BINARY value is only detected when the driver reads the stream.
+ */
+public abstract class ColumnCodec {
+    // Decimals of up to this many digits fit in a long
+    static final int MAX_LONG_DIGITS = 18;
+    // LOB values longer than this many characters are streamed to the driver
+    static final int STREAM_THRESHOLD = 64000;
+
+    private static final Map<DataType, ColumnCodec> CODECS = new EnumMap<>(DataType.class);
+
+    static {
+        CODECS.put(DataType.BOOLEAN, new BooleanCodec());
+        CODECS.put(DataType.SHORT, new ShortCodec());
+        CODECS.put(DataType.INT, new IntCodec());
+        CODECS.put(DataType.LONG, new LongCodec());
+        CODECS.put(DataType.DECIMAL, new DecimalCodec(MAX_LONG_DIGITS, -1));
+        CODECS.put(DataType.FLOAT, new FloatCodec());
+        CODECS.put(DataType.DOUBLE, new DoubleCodec());
+        CODECS.put(DataType.NAIVE_TIME, new TimeCodec());
+        CODECS.put(DataType.NAIVE_DATE, new DateCodec());
+        CODECS.put(DataType.NAIVE_DATETIME, new TimestampCodec());
+        CODECS.put(DataType.UTC_DATETIME, new TimestampCodec());
+        CODECS.put(DataType.BINARY, new BinaryCodec());
+        CODECS.put(DataType.XML, new XmlCodec());
+        CODECS.put(DataType.JSON, new JsonCodec());
+    }
+
+    private static final ColumnCodec STRING = new StringCodec(null);
+
+    /**
+     * Grows a VARCHAR column so that it can hold longer values.
+     */
+    public interface Widener {
+        /**
+         * Called with a value longer than the column was known to hold.
+         *
+         * @param length The length of the value.
+         * @return The length the column now holds, or Integer.MAX_VALUE if it cannot grow further.
+         * @throws SQLException If the column cannot be altered.
+         */
+        int widen(int length) throws SQLException;
+    }
+
+    private final int sqlType;
+    // The size of a value in a request, or -1 if it depends on the value
+    private final int width;
+
+    ColumnCodec(int sqlType) {
+        this(sqlType, -1);
+    }
+
+    ColumnCodec(int sqlType, int width) {
+        this.sqlType = sqlType;
+        this.width = width;
+    }
+
+    /**
+     * Returns the shared codec of a data type. Types without a codec of their own are bound as strings.
+     */
+    public static ColumnCodec forType(DataType type) {
+        ColumnCodec codec = CODECS.get(type);
+        return codec == null ? STRING : codec;
+    }
+
+    /**
+     * Returns a codec for a DECIMAL column that rounds every value half up to the scale of the column.
+     *
+     * @param precision The precision of the column. Text values of columns of up to 18 digits are
+     *                  read into an unscaled long instead of being parsed by BigDecimal.
+     * @param scale     The scale of the column.
+     */
+    public static ColumnCodec forDecimal(int precision, int scale) {
+        return new DecimalCodec(precision, scale);
+    }
+
+    /**
+     * Returns a codec for a STRING column that widens the column before binding longer values.
+     *
+     * @param length  The length the column holds.
+     * @param widener Grows the column.
+     */
+    public static ColumnCodec forString(int length, Widener widener) {
+        return new StringCodec(widener, length);
+    }
+
+    /**
+     * Returns the JDBC type used to bind NULL to a column of a data type.
+     */
+    public static int sqlType(DataType type) {
+        switch (type) {
+            case BOOLEAN:
+            case SHORT:
+            case INT:
+                return Types.INTEGER;
+            case LONG:
+                return Types.BIGINT;
+            case DECIMAL:
+                return Types.DECIMAL;
+            case FLOAT:
+                return Types.FLOAT;
+            case DOUBLE:
+                return Types.DOUBLE;
+            case NAIVE_TIME:
+                return Types.TIME;
+            case NAIVE_DATE:
+                return Types.DATE;
+            case NAIVE_DATETIME:
+            case UTC_DATETIME:
+                return Types.TIMESTAMP;
+            case BINARY:
+                return Types.BINARY;
+            case XML:
+                return Types.SQLXML;
+            default:
+                return Types.VARCHAR;
+        }
+    }
+
+    /**
+     * Estimates the size of a value given as text in a request: the width of fixed-size types, the
+     * length of the text and its length prefix otherwise.
+     */
+    public int encodedSize(String value) {
+        return width >= 0 ? width : value.length() + 2;
+    }
+
+    /**
+     * Estimates the size of a typed value in a request. The value is not null.
+     */
+    public int encodedSize(Object value) {
+        if (width >= 0) {
+            return width;
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length + 2;
+        }
+        return encodedSize(value instanceof String ? (String) value : text(value));
+    }
+
+    /**
+     * Binds SQL NULL with the JDBC type of the column.
+     */
+    public void bindNull(PreparedStatement stmt, int index) throws SQLException {
+        stmt.setNull(index, sqlType);
+    }
+
+    /**
+     * Binds a value given as text, as it is written in CSV batch files.
+     */
+    public abstract void bindText(PreparedStatement stmt, int index, String value) throws SQLException;
+
+    /**
+     * Binds a typed value. The value is not null.
+     */
+    public void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+        bindText(stmt, index, text(value));
+    }
+
+    /**
+     * Formats a typed value like the text of CSV batch files.
+     */
+    static String text(Object value) {
+        if (value instanceof byte[]) {
+            return Base64.getEncoder().encodeToString((byte[]) value);
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        return value.toString();
+    }
+
+    private static final class BooleanCodec extends ColumnCodec {
+        BooleanCodec() {
+            super(Types.INTEGER, 1);
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            if (value.equalsIgnoreCase("true")) {
+                stmt.setByte(index, (byte) 1);
+            } else if (value.equalsIgnoreCase("false")) {
+                stmt.setByte(index, (byte) 0);
+            } else {
+                stmt.setByte(index, Byte.parseByte(value));
+            }
+        }
+
+        @Override
+        public void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+            if (value instanceof Boolean) {
+                stmt.setByte(index, (byte) ((Boolean) value ? 1 : 0));
+            } else {
+                bindText(stmt, index, text(value));
+            }
+        }
+    }
+
+    private static final class ShortCodec extends ColumnCodec {
+        ShortCodec() {
+            super(Types.INTEGER, 2);
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            stmt.setShort(index, Short.parseShort(value));
+        }
+
+        @Override
+        public void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+            if (value instanceof Integer || value instanceof Long) {
+                stmt.setShort(index, ((Number) value).shortValue());
+            } else {
+                bindText(stmt, index, text(value));
+            }
+        }
+    }
+
+    private static final class IntCodec extends ColumnCodec {
+        IntCodec() {
+            super(Types.INTEGER, 4);
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            stmt.setInt(index, Integer.parseInt(value));
+        }
+
+        @Override
+        public void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+            if (value instanceof Integer) {
+                stmt.setInt(index, (Integer) value);
+            } else {
+                bindText(stmt, index, text(value));
+            }
+        }
+    }
+
+    private static final class LongCodec extends ColumnCodec {
+        LongCodec() {
+            super(Types.BIGINT, 8);
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            stmt.setLong(index, Long.parseLong(value));
+        }
+
+        @Override
+        public void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+            if (value instanceof Integer || value instanceof Long) {
+                stmt.setLong(index, ((Number) value).longValue());
+            } else {
+                bindText(stmt, index, text(value));
+            }
+        }
+    }
+
+    private static final class DecimalCodec extends ColumnCodec {
+        private static final long NOT_A_LONG = Long.MIN_VALUE;
+
+        private final boolean unscaledLong;
+        // Negative if values are bound with their own scale
+        private final int scale;
+
+        DecimalCodec(int precision, int scale) {
+            super(Types.DECIMAL, precision <= MAX_LONG_DIGITS ? 8 : 16);
+            this.unscaledLong = precision <= MAX_LONG_DIGITS;
+            this.scale = scale;
+        }
+
+        private void bind(PreparedStatement stmt, int index, BigDecimal value) throws SQLException {
+            stmt.setBigDecimal(index, scale < 0 ? value : value.setScale(scale, RoundingMode.HALF_UP));
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            if (unscaledLong) {
+                int dot = value.indexOf('.');
+                int valueScale = scale >= 0 ? scale : dot < 0 ? 0 : value.length() - dot - 1;
+                long unscaled = unscaled(value, valueScale);
+                if (unscaled != NOT_A_LONG) {
+                    stmt.setBigDecimal(index, BigDecimal.valueOf(unscaled, valueScale));
+                    return;
+                }
+            }
+            bind(stmt, index, new BigDecimal(value));
+        }
+
+        @Override
+        public void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+            if (value instanceof BigDecimal) {
+                bind(stmt, index, (BigDecimal) value);
+            } else {
+                bindText(stmt, index, text(value));
+            }
+        }
+
+        /**
+         * Reads a plain decimal into its unscaled value at a scale, rounding dropped digits half up.
+         *
+         * @return The unscaled value, or NOT_A_LONG if the text has an exponent, is not a decimal
+         * or needs more than 18 digits at the scale, so that it is left to BigDecimal.
+         */
+        static long unscaled(String s, int scale) {
+            int length = s.length();
+            int pos = 0;
+            boolean negative = false;
+            if (length > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+                negative = s.charAt(0) == '-';
+                pos++;
+            }
+
+            long value = 0;
+            int digits = 0;
+            // Digits read after the point, -1 before it
+            int fraction = -1;
+            int firstDropped = -1;
+            boolean any = false;
+            for (; pos < length; pos++) {
+                char c = s.charAt(pos);
+                if (c == '.' && fraction < 0) {
+                    fraction = 0;
+                    continue;
+                }
+                if (c < '0' || c > '9') {
+                    return NOT_A_LONG;
+                }
+                any = true;
+                if (fraction >= 0) {
+                    if (fraction == scale) {
+                        if (firstDropped < 0) {
+                            firstDropped = c - '0';
+                        }
+                        continue;
+                    }
+                    fraction++;
+                }
+                // Leading zeros do not count against the digits a long holds
+                if (value != 0 || c != '0') {
+                    if (++digits > MAX_LONG_DIGITS) {
+                        return NOT_A_LONG;
+                    }
+                    value = value * 10 + (c - '0');
+                }
+            }
+            if (!any) {
+                return NOT_A_LONG;
+            }
+
+            for (int i = Math.max(fraction, 0); i < scale; i++) {
+                if (value != 0 && ++digits > MAX_LONG_DIGITS) {
+                    return NOT_A_LONG;
+                }
+                value *= 10;
+            }
+            // HALF_UP rounds away from zero, so the magnitude is rounded before the sign is applied
+            if (firstDropped >= 5) {
+                value++;
+            }
+            return negative ? -value : value;
+        }
+    }
+
+    private static final class FloatCodec extends ColumnCodec {
+        FloatCodec() {
+            super(Types.FLOAT, 8);
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            stmt.setFloat(index, Float.parseFloat(value));
+        }
+
+        @Override
+        public void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+            if (value instanceof Float) {
+                stmt.setFloat(index, (Float) value);
+            } else {
+                bindText(stmt, index, text(value));
+            }
+        }
+    }
+
+    private static final class DoubleCodec extends ColumnCodec {
+        DoubleCodec() {
+            super(Types.DOUBLE, 8);
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            stmt.setDouble(index, Double.parseDouble(value));
+        }
+
+        @Override
+        public void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+            if (value instanceof Float || value instanceof Double) {
+                stmt.setDouble(index, ((Number) value).doubleValue());
+            } else {
+                bindText(stmt, index, text(value));
+            }
+        }
+    }
+
+    private static final class TimeCodec extends ColumnCodec {
+        TimeCodec() {
+            super(Types.TIME, 15);
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            stmt.setTime(index, Time.valueOf(value));
+        }
+
+        @Override
+        public void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+            if (value instanceof Time) {
+                stmt.setTime(index, (Time) value);
+            } else {
+                bindText(stmt, index, text(value));
+            }
+        }
+    }
+
+    private static final class DateCodec extends ColumnCodec {
+        DateCodec() {
+            super(Types.DATE, 4);
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            stmt.setDate(index, Date.valueOf(value));
+        }
+
+        @Override
+        public void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+            if (value instanceof Date) {
+                stmt.setDate(index, (Date) value);
+            } else {
+                bindText(stmt, index, text(value));
+            }
+        }
+    }
+
+    private static final class TimestampCodec extends ColumnCodec {
+        // Drivers may keep state in the calendar while converting, so every thread has its own
+        private static final ThreadLocal<Calendar> UTC =
+                ThreadLocal.withInitial(() -> Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+
+        TimestampCodec() {
+            super(Types.TIMESTAMP, 26);
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            Timestamp timestamp = IsoTimestampParser.parse(value);
+            if (timestamp != null) {
+                stmt.setTimestamp(index, timestamp, UTC.get());
+            } else {
+                stmt.setTimestamp(index, TeradataJDBCUtil.getTimestampFromObject(TeradataJDBCUtil.formatISODateTime(value)));
+            }
+        }
+
+        @Override
+        public void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+            if (value instanceof Timestamp) {
+                stmt.setTimestamp(index, (Timestamp) value, UTC.get());
+            } else {
+                bindText(stmt, index, text(value));
+            }
+        }
+    }
+
+    private static final class BinaryCodec extends ColumnCodec {
+        BinaryCodec() {
+            super(Types.BINARY);
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            if (value.length() > STREAM_THRESHOLD) {
+                stmt.setBinaryStream(index, Base64.getDecoder().wrap(new AsciiStream(value)), decodedLength(value));
+            } else {
+                stmt.setBytes(index, Base64.getDecoder().decode(value));
+            }
+        }
+
+        @Override
+        public int encodedSize(String value) {
+            return decodedLength(value) + 2;
+        }
+
+        // The length of the bytes of Base64 text, which may omit its padding
+        static int decodedLength(String value) {
+            int length = value.length();
+            int padding = 0;
+            while (padding < 2 && length - padding > 0 && value.charAt(length - padding - 1) == '=') {
+                padding++;
+            }
+            return (int) (length * 3L / 4) - padding;
+        }
+
+        @Override
+        public void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+            if (value instanceof byte[]) {
+                stmt.setBytes(index, (byte[]) value);
+            } else {
+                bindText(stmt, index, text(value));
+            }
+        }
+    }
+
+    private static final class XmlCodec extends ColumnCodec {
+        XmlCodec() {
+            super(Types.SQLXML);
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            if (value.length() > STREAM_THRESHOLD) {
+                stmt.setCharacterStream(index, new StringReader(value), value.length());
+                return;
+            }
+            SQLXML sqlxml = stmt.getConnection().createSQLXML();
+            sqlxml.setString(value);
+            stmt.setSQLXML(index, sqlxml);
+        }
+    }
+
+    private static final class JsonCodec extends ColumnCodec {
+        JsonCodec() {
+            super(Types.VARCHAR);
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            if (value.length() > STREAM_THRESHOLD) {
+                stmt.setCharacterStream(index, new StringReader(value), value.length());
+            } else {
+                stmt.setObject(index, new JSONStruct("JSON", new Object[]{value}));
+            }
+        }
+    }
+
+    private static final class StringCodec extends ColumnCodec {
+        private final Widener widener;
+        private int length;
+
+        StringCodec(Widener widener) {
+            this(widener, Integer.MAX_VALUE);
+        }
+
+        StringCodec(Widener widener, int length) {
+            super(Types.VARCHAR);
+            this.widener = widener;
+            this.length = length;
+        }
+
+        @Override
+        public void bindText(PreparedStatement stmt, int index, String value) throws SQLException {
+            if (value.length() > length) {
+                length = widener.widen(value.length());
+            }
+            stmt.setString(index, value);
+        }
+    }
+
+    /**
+     * Reads the characters of Base64 text as bytes, without copying it.
+     */
+    private static final class AsciiStream extends InputStream {
+        private final String text;
+        private int pos;
+
+        AsciiStream(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read() {
+            return pos < text.length() ? text.charAt(pos++) & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos >= text.length()) {
+                return -1;
+            }
+            int n = Math.min(len, text.length() - pos);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) text.charAt(pos++);
+            }
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return text.length() - pos;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.Calendar;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decodes the DataParcel column of a FastLoad error table (ERR1).
+ *
+ * The parcel holds the failed record exactly as it was sent by the FastLoad session: the null
+ * indicator bytes followed by every field in the layout of the USING clause, in the byte order of
+ * the session. The decoder is built from the same USING type strings that FastLoadDataWriter
+ * generated for the job.
+ *
+ * Fields of LOB, JSON and XML type have no fixed layout in the parcel; rows of a job with such
+ * fields are rejected one by one, so the caller reports them instead of recovering them.
+ */
+public class DataParcelDecoder {
+    private static final Pattern LENGTH_PATTERN = Pattern.compile("\\(\\s*(\\d+)\\s*(?:,\\s*(\\d+)\\s*)?\\)");
+
+    private enum FieldKind { DECIMAL, VARCHAR, CHAR, INTEGER, SMALLINT, BIGINT, BYTEINT, FLOAT, DATE, BYTE, VARBYTE, UNSUPPORTED }
+
+    private final FieldKind[] kinds;
+    private final int[] lengths;
+    private final int[] scales;
+    private final Charset charset;
+    private final ByteOrder byteOrder;
+    private final String unsupported;
+
+    /**
+     * @param types4Using The USING type of every field, in parcel order.
+     * @param charset     The session character set the character fields were sent in.
+     * @param byteOrder   The byte order of the session the parcels were sent in.
+     */
+    public DataParcelDecoder(String[] types4Using, Charset charset, ByteOrder byteOrder) {
+        this.charset = charset;
+        this.byteOrder = byteOrder;
+        String unsupportedType = null;
+        kinds = new FieldKind[types4Using.length];
+        lengths = new int[types4Using.length];
+        scales = new int[types4Using.length];
+        for (int i = 0; i < types4Using.length; i++) {
+            String type = types4Using[i].trim().toUpperCase();
+            Matcher m = LENGTH_PATTERN.matcher(type);
+            boolean hasLength = m.find();
+            if (type.startsWith("DECIMAL") || type.startsWith("NUMERIC")) {
+                kinds[i] = FieldKind.DECIMAL;
+                lengths[i] = hasLength ? Integer.parseInt(m.group(1)) : 5;
+                scales[i] = hasLength && m.group(2) != null ? Integer.parseInt(m.group(2)) : 0;
+            } else if (type.startsWith("VARCHAR") || type.startsWith("LONG VARCHAR")) {
+                kinds[i] = FieldKind.VARCHAR;
+            } else if (type.startsWith("CHAR")) {
+                kinds[i] = FieldKind.CHAR;
+                lengths[i] = hasLength ? Integer.parseInt(m.group(1)) : 1;
+            } else if (type.startsWith("INTEGER")) {
+                kinds[i] = FieldKind.INTEGER;
+            } else if (type.startsWith("SMALLINT")) {
+                kinds[i] = FieldKind.SMALLINT;
+            } else if (type.startsWith("BIGINT")) {
+                kinds[i] = FieldKind.BIGINT;
+            } else if (type.startsWith("BYTEINT")) {
+                kinds[i] = FieldKind.BYTEINT;
+            } else if (type.startsWith("FLOAT") || type.startsWith("REAL") || type.startsWith("DOUBLE")) {
+                kinds[i] = FieldKind.FLOAT;
+            } else if (type.startsWith("DATE")) {
+                kinds[i] = FieldKind.DATE;
+            } else if (type.startsWith("VARBYTE")) {
+                kinds[i] = FieldKind.VARBYTE;
+            } else if (type.startsWith("BYTE")) {
+                kinds[i] = FieldKind.BYTE;
+                lengths[i] = hasLength ? Integer.parseInt(m.group(1)) : 1;
+            } else {
+                kinds[i] = FieldKind.UNSUPPORTED;
+                if (unsupportedType == null) {
+                    unsupportedType = types4Using[i].trim();
+                }
+            }
+        }
+        this.unsupported = unsupportedType;
+    }
+
+    /**
+     * Returns the Java charset of a Teradata session character set, as HELP SESSION names it.
+     *
+     * @param sessionCharset The session character set, for example ASCII, UTF8 or UTF16.
+     */
+    public static Charset forSessionCharset(String sessionCharset) {
+        String name = sessionCharset == null ? "" : sessionCharset.trim().toUpperCase();
+        switch (name) {
+            case "UTF8":
+                return StandardCharsets.UTF_8;
+            case "UTF16":
+                return StandardCharsets.UTF_16;
+            case "LATIN9_0A":
+                return Charset.forName("ISO-8859-15");
+            case "LATIN1252_0A":
+                return Charset.forName("windows-1252");
+            default:
+                // ASCII sessions transfer LATIN text byte for byte
+                return StandardCharsets.ISO_8859_1;
+        }
+    }
+
+    /**
+     * Decodes one parcel.
+     *
+     * @param parcel The DataParcel value.
+     * @return The field values; nulls for fields whose null indicator is set.
+     * @throws IllegalArgumentException If the parcel does not match the USING layout.
+     */
+    public Object[] decode(byte[] parcel) {
+        if (unsupported != null) {
+            throw new IllegalArgumentException("Unsupported USING type in FastLoad error row: " + unsupported);
+        }
+        Object[] row = tryDecode(parcel);
+        if (row == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Data parcel of %d bytes does not match the layout of %d fields", parcel.length, kinds.length));
+        }
+        return row;
+    }
+
+    private Object[] tryDecode(byte[] parcel) {
+        ByteBuffer buf = ByteBuffer.wrap(parcel).order(byteOrder);
+        int indicatorBytes = (kinds.length + 7) / 8;
+        if (parcel.length < indicatorBytes) {
+            return null;
+        }
+        byte[] indicators = new byte[indicatorBytes];
+        buf.get(indicators);
+
+        Object[] row = new Object[kinds.length];
+        try {
+            for (int i = 0; i < kinds.length; i++) {
+                // Null fields still occupy their space in the parcel
+                boolean isNull = (indicators[i / 8] & (0x80 >>> (i % 8))) != 0;
+                Object value = readField(buf, i);
+                row[i] = isNull ? null : value;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+        return buf.hasRemaining() ? null : row;
+    }
+
+    private Object readField(ByteBuffer buf, int i) {
+        switch (kinds[i]) {
+            case DECIMAL:
+                return readDecimal(buf, lengths[i], scales[i]);
+            case VARCHAR: {
+                int len = Short.toUnsignedInt(buf.getShort());
+                byte[] bytes = new byte[len];
+                buf.get(bytes);
+                return text(bytes, buf.order());
+            }
+            case CHAR: {
+                byte[] bytes = new byte[lengths[i]];
+                buf.get(bytes);
+                return text(bytes, buf.order()).trim();
+            }
+            case INTEGER:
+                return buf.getInt();
+            case SMALLINT:
+                return buf.getShort();
+            case BIGINT:
+                return buf.getLong();
+            case BYTEINT:
+                return buf.get();
+            case FLOAT:
+                return buf.getDouble();
+            case DATE:
+                return toDate(buf.getInt());
+            case VARBYTE: {
+                int len = Short.toUnsignedInt(buf.getShort());
+                byte[] bytes = new byte[len];
+                buf.get(bytes);
+                return bytes;
+            }
+            case BYTE: {
+                byte[] bytes = new byte[lengths[i]];
+                buf.get(bytes);
+                return bytes;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported field kind " + kinds[i]);
+        }
+    }
+
+    // UTF16 text comes in the byte order of the parcel
+    private String text(byte[] bytes, ByteOrder order) {
+        if (charset == StandardCharsets.UTF_16) {
+            return new String(bytes, order == ByteOrder.LITTLE_ENDIAN ? StandardCharsets.UTF_16LE : StandardCharsets.UTF_16BE);
+        }
+        return new String(bytes, charset);
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buf, int precision, int scale) {
+        int size;
+        if (precision <= 2) {
+            size = 1;
+        } else if (precision <= 4) {
+            size = 2;
+        } else if (precision <= 9) {
+            size = 4;
+        } else if (precision <= 18) {
+            size = 8;
+        } else {
+            size = 16;
+        }
+        byte[] bytes = new byte[size];
+        buf.get(bytes);
+        if (buf.order() == ByteOrder.LITTLE_ENDIAN) {
+            // BigInteger expects big-endian two's complement
+            for (int l = 0, r = size - 1; l < r; l++, r--) {
+                byte t = bytes[l];
+                bytes[l] = bytes[r];
+                bytes[r] = t;
+            }
+        }
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+
+    /**
+     * Converts a date in IntegerDate form, (year - 1900) * 10000 + month * 100 + day.
+     */
+    private static Date toDate(int value) {
+        int year = value / 10000 + 1900;
+        int month = (value / 100) % 100;
+        int day = value % 100;
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            throw new IllegalArgumentException("Invalid integer date " + value);
+        }
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(year, month - 1, day);
+        return new Date(cal.getTimeInMillis());
+    }
+}
@@ -0,0 +1,344 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teradata.fivetran.destination.Logger;
+import com.teradata.fivetran.destination.TeradataJDBCUtil;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Journal describing an unfinished FastLoad job.
+ *
+ * The journal is written every time the control session takes a checkpoint. It records the
+ * staging and error tables used by the job, the layout of the batch it loads and, per FastLoad
+ * session, how many data rows of each source file had been acknowledged by the database at that
+ * checkpoint. When the same batch is retried, FastLoadDataWriter reads the journal and restarts
+ * the paused FastLoad from the last checkpoint instead of loading all files again.
+ *
+ * Journals are kept in the td_fastload_journal table of the target database, next to the staging
+ * and error tables they describe, so that they survive a restart of the connector.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class FastLoadJournal {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** Table holding the journals of the unfinished FastLoad jobs of a database */
+    public static final String JOURNAL_TABLE = "td_fastload_journal";
+
+    // Connection the journal is written through, not serialized
+    private Connection conn;
+
+    private String database;
+    private String table;
+    private String stagingTable;
+    private String errorTable1;
+    private String errorTable2;
+    private List<String> files = new ArrayList<>();
+    // Layout of the batch: header of the files, column definitions of the staging table and file params
+    private List<String> header = new ArrayList<>();
+    private String schema;
+    private String fileParams;
+    private long checkpoints;
+    // session number -> source file -> acknowledged data rows
+    private Map<String, Map<String, Long>> sessionProgress = new HashMap<>();
+    private Set<String> completedFiles = new HashSet<>();
+
+    public FastLoadJournal() {
+    }
+
+    /**
+     * Loads the journal of an unfinished FastLoad into the given table.
+     *
+     * @param conn     Connection to the target database, in auto-commit mode.
+     * @param database The target database.
+     * @param table    The target table.
+     * @return The journal, or null if there is no unfinished FastLoad for the table.
+     * @throws SQLException If the journal table cannot be read.
+     */
+    public static FastLoadJournal load(Connection conn, String database, String table) throws SQLException {
+        String query = String.format("SELECT journal FROM %s WHERE target_table = ?",
+                TeradataJDBCUtil.escapeTable(database, JOURNAL_TABLE));
+        String json = null;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    Clob clob = rs.getClob(1);
+                    json = clob == null ? null : clob.getSubString(1, (int) clob.length());
+                }
+            }
+        } catch (SQLException e) {
+            if (e.getErrorCode() == 3807) {
+                // No FastLoad of the database was ever journaled
+                return null;
+            }
+            throw e;
+        }
+        if (json == null) {
+            return null;
+        }
+        try {
+            FastLoadJournal journal = MAPPER.readValue(json, FastLoadJournal.class);
+            journal.conn = conn;
+            return journal;
+        } catch (IOException e) {
+            Logger.logMessage(Logger.LogLevel.WARNING,
+                    String.format("Ignoring unreadable FastLoad journal of %s.%s: %s", database, table, e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Creates the journal for a new FastLoad job and persists it.
+     *
+     * @param conn       Connection to the target database, in auto-commit mode.
+     * @param files      The source files of the batch.
+     * @param header     The header of the source files.
+     * @param schema     The column definitions of the staging table.
+     * @param fileParams The file params of the batch, serialized.
+     * @throws SQLException If the journal cannot be written.
+     */
+    public static FastLoadJournal start(Connection conn, String database, String table, String stagingTable,
+                                        String errorTable1, String errorTable2, List<String> files,
+                                        List<String> header, String schema, String fileParams) throws SQLException {
+        FastLoadJournal journal = new FastLoadJournal();
+        journal.conn = conn;
+        journal.database = database;
+        journal.table = table;
+        journal.stagingTable = stagingTable;
+        journal.errorTable1 = errorTable1;
+        journal.errorTable2 = errorTable2;
+        journal.files = new ArrayList<>(files);
+        journal.header = new ArrayList<>(header);
+        journal.schema = schema;
+        journal.fileParams = fileParams;
+        journal.save();
+        return journal;
+    }
+
+    /**
+     * Checks whether the journal was written for the same batch: the same set of source files,
+     * with the same header, staging table columns and file params.
+     *
+     * @param sourceFiles The files of the current batch.
+     * @param header      The header of the files of the current batch.
+     * @param schema      The column definitions of the staging table of the current batch.
+     * @param fileParams  The file params of the current batch, serialized.
+     * @return true if the FastLoad described by this journal can be resumed for this batch.
+     */
+    public boolean matches(List<String> sourceFiles, List<String> header, String schema, String fileParams) {
+        return files != null && new HashSet<>(files).equals(new HashSet<>(sourceFiles))
+                && header.equals(this.header)
+                && Objects.equals(schema, this.schema)
+                && Objects.equals(fileParams, this.fileParams);
+    }
+
+    /**
+     * Records a checkpoint taken by the control session and persists the journal.
+     *
+     * @param progress       Session number -> source file -> acknowledged data rows.
+     * @param finishedFiles  Files that were completely loaded before the checkpoint.
+     */
+    public synchronized void recordCheckpoint(Map<Integer, Map<String, Long>> progress, Set<String> finishedFiles) throws SQLException {
+        for (Map.Entry<Integer, Map<String, Long>> entry : progress.entrySet()) {
+            sessionProgress.put(String.valueOf(entry.getKey()), new HashMap<>(entry.getValue()));
+        }
+        completedFiles.addAll(finishedFiles);
+        checkpoints++;
+        save();
+        Logger.logMessage(Logger.LogLevel.INFO,
+                String.format("FastLoad checkpoint %d recorded for %s.%s: %s", checkpoints, database, table, sessionProgress));
+    }
+
+    /**
+     * Returns the number of data rows of the given file that were acknowledged at the last checkpoint.
+     *
+     * @param file The source file.
+     * @return The number of rows to skip when the file is loaded again.
+     */
+    public synchronized long acknowledgedRows(String file) {
+        long rows = 0;
+        for (Map<String, Long> perFile : sessionProgress.values()) {
+            Long r = perFile.get(file);
+            if (r != null && r > rows) {
+                rows = r;
+            }
+        }
+        return rows;
+    }
+
+    public synchronized boolean isCompleted(String file) {
+        return completedFiles.contains(file);
+    }
+
+    /**
+     * Removes the journal once the FastLoad finished or was abandoned.
+     */
+    public void discard() {
+        String delete = String.format("DELETE FROM %s WHERE target_table = ?",
+                TeradataJDBCUtil.escapeTable(database, JOURNAL_TABLE));
+        try (PreparedStatement stmt = conn.prepareStatement(delete)) {
+            stmt.setString(1, table);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            Logger.logMessage(Logger.LogLevel.WARNING,
+                    String.format("Failed to remove FastLoad journal for %s.%s: %s", database, table, e.getMessage()));
+        }
+    }
+
+    // The row of the table is replaced in one multi-statement request, which commits as a whole
+    private synchronized void save() throws SQLException {
+        String json;
+        try {
+            json = MAPPER.writeValueAsString(this);
+        } catch (IOException e) {
+            throw new SQLException("Failed to serialize FastLoad journal: " + e.getMessage(), e);
+        }
+        String journalTable = TeradataJDBCUtil.escapeTable(database, JOURNAL_TABLE);
+        String replace = String.format("DELETE FROM %s WHERE target_table = ?; INSERT INTO %s (target_table, journal) VALUES (?, ?)",
+                journalTable, journalTable);
+        try {
+            write(replace, json);
+        } catch (SQLException e) {
+            if (e.getErrorCode() != 3807) {
+                throw e;
+            }
+            createJournalTable();
+            write(replace, json);
+        }
+    }
+
+    private void write(String replace, String json) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(replace)) {
+            stmt.setString(1, table);
+            stmt.setString(2, table);
+            stmt.setCharacterStream(3, new StringReader(json), json.length());
+            stmt.executeUpdate();
+        }
+    }
+
+    private void createJournalTable() throws SQLException {
+        String create = String.format("CREATE TABLE %s (target_table VARCHAR(128) CHARACTER SET UNICODE NOT NULL, "
+                + "journal CLOB CHARACTER SET UNICODE) UNIQUE PRIMARY INDEX (target_table)",
+                TeradataJDBCUtil.escapeTable(database, JOURNAL_TABLE));
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(create);
+        } catch (SQLException e) {
+            // 3803: created by a FastLoad into another table of the database
+            if (e.getErrorCode() != 3803) {
+                throw e;
+            }
+        }
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public void setDatabase(String database) {
+        this.database = database;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public String getStagingTable() {
+        return stagingTable;
+    }
+
+    public void setStagingTable(String stagingTable) {
+        this.stagingTable = stagingTable;
+    }
+
+    public String getErrorTable1() {
+        return errorTable1;
+    }
+
+    public void setErrorTable1(String errorTable1) {
+        this.errorTable1 = errorTable1;
+    }
+
+    public String getErrorTable2() {
+        return errorTable2;
+    }
+
+    public void setErrorTable2(String errorTable2) {
+        this.errorTable2 = errorTable2;
+    }
+
+    public List<String> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<String> files) {
+        this.files = files;
+    }
+
+    public List<String> getHeader() {
+        return header;
+    }
+
+    public void setHeader(List<String> header) {
+        this.header = header;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public void setSchema(String schema) {
+        this.schema = schema;
+    }
+
+    public String getFileParams() {
+        return fileParams;
+    }
+
+    public void setFileParams(String fileParams) {
+        this.fileParams = fileParams;
+    }
+
+    public long getCheckpoints() {
+        return checkpoints;
+    }
+
+    public void setCheckpoints(long checkpoints) {
+        this.checkpoints = checkpoints;
+    }
+
+    public Map<String, Map<String, Long>> getSessionProgress() {
+        return sessionProgress;
+    }
+
+    public void setSessionProgress(Map<String, Map<String, Long>> sessionProgress) {
+        this.sessionProgress = sessionProgress;
+    }
+
+    public Set<String> getCompletedFiles() {
+        return completedFiles;
+    }
+
+    public void setCompletedFiles(Set<String> completedFiles) {
+        this.completedFiles = completedFiles;
+    }
+}
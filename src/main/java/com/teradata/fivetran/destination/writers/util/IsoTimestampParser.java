@@ -0,0 +1,140 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import java.sql.Timestamp;
+
+/**
+ * Parses the ISO-8601 timestamps of batch files without intermediate strings.
+ *
+ * Accepted are "yyyy-MM-dd'T'HH:mm:ss", with a space instead of the 'T', an optional fraction of up
+ * to nine digits and an optional "Z" or "+HH:MM"/"-HH:MM" offset. The fraction is truncated to
+ * microseconds, the precision of the TIMESTAMP(6) columns the connector creates. The digits are
+ * read straight into epoch seconds and nanoseconds of UTC, so no time zone rules are involved; the
+ * result is meant to be bound with a UTC calendar, which stores the digits as they were written.
+ */
+public final class IsoTimestampParser {
+    // Days from 0000-03-01 to 1970-01-01
+    private static final int DAYS_BEFORE_EPOCH = 719468;
+
+    private IsoTimestampParser() {
+    }
+
+    /**
+     * Parses a timestamp.
+     *
+     * @param s The text of the timestamp.
+     * @return The instant the digits denote in UTC, or null if the text is not in the accepted form.
+     */
+    public static Timestamp parse(CharSequence s) {
+        int length = s.length();
+        if (length < 19 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return null;
+        }
+        char separator = s.charAt(10);
+        if (separator != 'T' && separator != ' ') {
+            return null;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+
+        int pos = 19;
+        int nanos = 0;
+        if (pos < length && s.charAt(pos) == '.') {
+            pos++;
+            int start = pos;
+            int scale = 100000000;
+            while (pos < length && isDigit(s.charAt(pos))) {
+                // Digits beyond microseconds are dropped
+                if (scale >= 1000) {
+                    nanos += (s.charAt(pos) - '0') * scale;
+                }
+                scale /= 10;
+                pos++;
+            }
+            if (pos == start || pos - start > 9) {
+                return null;
+            }
+        }
+
+        int offsetSeconds = 0;
+        if (pos < length) {
+            char zone = s.charAt(pos);
+            if (zone == 'Z' && pos + 1 == length) {
+                pos++;
+            } else if ((zone == '+' || zone == '-') && pos + 6 == length && s.charAt(pos + 3) == ':') {
+                int offsetHours = digits(s, pos + 1, 2);
+                int offsetMinutes = digits(s, pos + 4, 2);
+                if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+                    return null;
+                }
+                offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (zone == '-' ? -1 : 1);
+                pos += 6;
+            } else {
+                return null;
+            }
+        }
+
+        long epochSecond = epochDay(year, month, day) * 86400L + hour * 3600 + minute * 60 + second - offsetSeconds;
+        Timestamp timestamp = new Timestamp(epochSecond * 1000L);
+        timestamp.setNanos(nanos);
+        return timestamp;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Returns the value of count decimal digits, or -1 if one of the characters is not a digit.
+     */
+    private static int digits(CharSequence s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Returns the days since 1970-01-01 of a date of the proleptic Gregorian calendar.
+     */
+    static long epochDay(int year, int month, int day) {
+        // Count from March, so that the leap day is the last day of the year
+        long y = month <= 2 ? year - 1 : year;
+        int m = month <= 2 ? month + 9 : month - 3;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * m + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - DAYS_BEFORE_EPOCH;
+    }
+}
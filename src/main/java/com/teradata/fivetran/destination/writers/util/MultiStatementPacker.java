@@ -0,0 +1,271 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import com.teradata.fivetran.destination.Logger;
+import com.teradata.fivetran.destination.TeradataJDBCUtil;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups parameterized per-row statements into as few requests as possible.
+ *
+ * Consecutive statements of the same shape (identical request text) are sent as one JDBC batch of
+ * up to batchSize rows on a cached PreparedStatement. Statements of different shapes are collected
+ * until the pack holds the configured number of statements or would exceed the request text or
+ * parameter limits of the driver, and are then sent as one Teradata multi-statement request with
+ * the statement texts joined by ';'. Teradata executes a multi-statement request as a single unit
+ * and only overlaps steps that are independent, so the statements keep their order.
+ *
+ * Prepared requests come from a {@link PreparedStatementCache}, which lets rows and packs with the
+ * same shape reuse them. If a multi-statement request fails in Teradata mode with auto-commit,
+ * nothing of it was applied, and its statements are replayed one at a time to find the row that
+ * caused the failure. In ANSI mode the statements before the failing one stay applied, and inside a
+ * transaction the failure rolled back the whole transaction, so the failure is rethrown there
+ * instead. A failed batch is mapped to its row through the update counts of the
+ * BatchUpdateException.
+ */
+public class MultiStatementPacker implements AutoCloseable {
+    public static final int DEFAULT_SIZE = 16;
+
+    // Teradata limits a request to 1 MB of text and 2048 USING fields
+    static final int MAX_REQUEST_CHARS = 1000000;
+    static final int MAX_PARAMETERS = 2048;
+
+    /**
+     * Binds the parameters of one statement of the pack.
+     */
+    public interface Binder {
+        /**
+         * @param stmt       The statement to bind.
+         * @param firstIndex The parameter index of the first parameter of this statement.
+         * @throws SQLException If a parameter cannot be set.
+         */
+        void bind(PreparedStatement stmt, int firstIndex) throws SQLException;
+    }
+
+    private static class PendingStatement {
+        final String sql;
+        final int parameterCount;
+        final Binder binder;
+        final Object row;
+
+        PendingStatement(String sql, int parameterCount, Binder binder, Object row) {
+            this.sql = sql;
+            this.parameterCount = parameterCount;
+            this.binder = binder;
+            this.row = row;
+        }
+    }
+
+    private final PreparedStatementCache cache;
+    private final String database;
+    private final String table;
+    private final int maxStatements;
+    private final int batchSize;
+    private final List<PendingStatement> pending = new ArrayList<>();
+    // True while all pending statements have the same request text
+    private boolean uniform = true;
+    private int pendingParameters = 0;
+    private int pendingChars = 0;
+    // Whether the session uses Teradata transaction semantics, read on the first failed request
+    private Boolean teradataMode = null;
+
+    /**
+     * @param cache         The statement cache of the connection. Its owner closes it.
+     * @param database      The database name, used in error messages.
+     * @param table         The table name, used in error messages.
+     * @param maxStatements The maximum number of statements of different shapes in one request.
+     *                      1 sends them on their own.
+     * @param batchSize     The maximum number of rows of one shape sent in one batch.
+     */
+    public MultiStatementPacker(PreparedStatementCache cache, String database, String table,
+                                int maxStatements, int batchSize) {
+        this.cache = cache;
+        this.database = database;
+        this.table = table;
+        this.maxStatements = Math.max(1, maxStatements);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Adds a statement and sends the pending statements when they cannot take it.
+     *
+     * @param sql            The statement text. Callers should pass the same String instance for every
+     *                       row of a shape.
+     * @param parameterCount The number of parameter markers in the statement.
+     * @param binder         Binds the parameters of the statement.
+     * @param row            The row the statement was built from, used to report failures.
+     * @throws SQLException If a request fails.
+     */
+    public void add(String sql, int parameterCount, Binder binder, Object row) throws SQLException {
+        if (!pending.isEmpty()) {
+            boolean sameShape = uniform && pending.get(0).sql.equals(sql);
+            if (sameShape) {
+                if (pending.size() >= batchSize) {
+                    flush();
+                }
+            } else if (uniform && pending.size() > 1) {
+                // A run of one shape is sent as a batch rather than mixed into a pack
+                flush();
+            } else if (pending.size() >= maxStatements
+                    || pendingParameters + parameterCount > MAX_PARAMETERS
+                    || pendingChars + sql.length() + 1 > MAX_REQUEST_CHARS) {
+                flush();
+            }
+        }
+        if (!pending.isEmpty() && !pending.get(0).sql.equals(sql)) {
+            uniform = false;
+        }
+        pending.add(new PendingStatement(sql, parameterCount, binder, row));
+        pendingParameters += parameterCount;
+        pendingChars += sql.length() + 1;
+    }
+
+    /**
+     * Sends the pending statements. Must be called before DDL on the table and when the writer commits.
+     *
+     * @throws SQLException If a statement fails.
+     */
+    public void flush() throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            if (pending.size() == 1) {
+                execute(pending.get(0));
+            } else if (uniform) {
+                executeBatch();
+            } else {
+                executePack();
+            }
+        } finally {
+            pending.clear();
+            uniform = true;
+            pendingParameters = 0;
+            pendingChars = 0;
+        }
+    }
+
+    private void executeBatch() throws SQLException {
+        PreparedStatement stmt = cache.get(pending.get(0).sql);
+        try {
+            for (PendingStatement s : pending) {
+                s.binder.bind(stmt, 1);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } catch (BatchUpdateException e) {
+            stmt.clearBatch();
+            int[] counts = e.getUpdateCounts();
+            int failed = counts == null ? 0 : counts.length;
+            for (int i = 0; counts != null && i < counts.length; i++) {
+                if (counts[i] == Statement.EXECUTE_FAILED) {
+                    failed = i;
+                    break;
+                }
+            }
+            PendingStatement s = pending.get(Math.min(failed, pending.size() - 1));
+            SQLException cause = e.getNextException() != null ? e.getNextException() : e;
+            throw failure(s, cause);
+        } catch (SQLException e) {
+            stmt.clearBatch();
+            throw e;
+        }
+    }
+
+    private void executePack() throws SQLException {
+        StringBuilder request = new StringBuilder(pendingChars);
+        for (PendingStatement s : pending) {
+            if (request.length() > 0) {
+                request.append(";");
+            }
+            request.append(s.sql);
+        }
+
+        PreparedStatement stmt = cache.get(request.toString());
+        try {
+            int index = 1;
+            for (PendingStatement s : pending) {
+                s.binder.bind(stmt, index);
+                index += s.parameterCount;
+            }
+            stmt.execute();
+            drainResults(stmt);
+        } catch (SQLException e) {
+            stmt.clearParameters();
+            if (!canReplay(stmt.getConnection())) {
+                Logger.logMessage(Logger.LogLevel.SEVERE, String.format(
+                        "Multi-statement request of %d statements failed on table %s: %s",
+                        pending.size(), TeradataJDBCUtil.escapeTable(database, table), e.getMessage()));
+                throw new SQLException(String.format("Multi-statement request of %d statements failed on table: %s with error: %s",
+                        pending.size(), TeradataJDBCUtil.escapeTable(database, table), e.getMessage()), e);
+            }
+            Logger.logMessage(Logger.LogLevel.WARNING, String.format(
+                    "Multi-statement request of %d statements failed on table %s, replaying it statement by statement: %s",
+                    pending.size(), TeradataJDBCUtil.escapeTable(database, table), e.getMessage()));
+            for (PendingStatement s : pending) {
+                execute(s);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a failed request left nothing applied and nothing else rolled back, which
+     * holds only in Teradata mode with auto-commit.
+     */
+    private boolean canReplay(Connection conn) throws SQLException {
+        if (!conn.getAutoCommit()) {
+            return false;
+        }
+        if (teradataMode == null) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("HELP SESSION")) {
+                String semantics = rs.next() ? rs.getString("Transaction Semantics") : null;
+                teradataMode = semantics != null && "Teradata".equalsIgnoreCase(semantics.trim());
+            }
+        }
+        return teradataMode;
+    }
+
+    private void execute(PendingStatement s) throws SQLException {
+        try {
+            PreparedStatement stmt = cache.get(s.sql);
+            s.binder.bind(stmt, 1);
+            stmt.execute();
+        } catch (SQLException e) {
+            throw failure(s, e);
+        }
+    }
+
+    private SQLException failure(PendingStatement s, SQLException e) {
+        Logger.logMessage(Logger.LogLevel.SEVERE, String.format("Failed to execute statement for row: %s, %s", s.row, e.getMessage()));
+        return new SQLException("Failed to execute (" + s.sql + ") on table: "
+                + TeradataJDBCUtil.escapeTable(database, table) + " with error: "
+                + e.getMessage(), e);
+    }
+
+    private static void drainResults(PreparedStatement stmt) throws SQLException {
+        // Consume the result of every statement so that errors of later statements surface here
+        while (stmt.getMoreResults() || stmt.getUpdateCount() != -1) {
+            // Nothing to read for DML
+        }
+    }
+
+    /**
+     * Discards the pending statements, call {@link #flush()} first to send them. The statement
+     * cache stays open for the other users of the connection.
+     */
+    @Override
+    public void close() {
+        pending.clear();
+        uniform = true;
+        pendingParameters = 0;
+        pendingChars = 0;
+    }
+}
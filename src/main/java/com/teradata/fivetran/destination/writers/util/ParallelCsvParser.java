@@ -0,0 +1,309 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import com.opencsv.CSVParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Parses the plain CSV content of a batch file on a worker pool.
+ *
+ * The content is read in chunks of about {@link #CHUNK_SIZE} bytes. Each chunk ends at the last
+ * line break at which the number of quote characters seen so far is even, which is where the
+ * parser is outside a quoted field and a row ends. The split is a guess: a quote escaped with the
+ * escape character does not toggle the quoting, so every worker parses its chunk as if it started
+ * at a row boundary and reports whether it ended in the middle of a row. When it did, the guess for
+ * the next chunk was wrong and that chunk is parsed again on the reading thread, continuing the
+ * row with the parser state of the previous chunk. Rows are returned in file order.
+ *
+ * The rows are the same as those of a CSVReader with the parser of {@link BatchFileDecoder#csvParser()}:
+ * lines are split like BufferedReader.readLine and a row spanning several lines is parsed with
+ * CSVParser.parseLineMulti. Content that fits into one chunk is parsed on the reading thread.
+ *
+ * A chunk is only read ahead with a permit of the chunk semaphore, which parsers of several files
+ * can share to bound the memory of their chunks together. Without a permit the next chunk is parsed
+ * on the reading thread once the chunks in flight are consumed.
+ */
+public class ParallelCsvParser implements RowReader {
+    public static final int CHUNK_SIZE = 4 << 20;
+    private static final byte QUOTE = '"';
+
+    /**
+     * The rows of a chunk, and the row it ended in the middle of.
+     */
+    private static class Chunk {
+        final String text;
+        final List<String[]> rows = new ArrayList<>();
+        CSVParser pendingParser;
+        String[] pendingFields;
+
+        Chunk(String text) {
+            this.text = text;
+        }
+    }
+
+    private final InputStream in;
+    private final ExecutorService executor;
+    private final int maxChunksInFlight;
+    private final Semaphore chunkPermits;
+    private final BatchFileDecoder.Stats stats;
+    private final ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+    // Whether each chunk in flight holds a permit
+    private final ArrayDeque<Boolean> permits = new ArrayDeque<>();
+    private byte[] buffer = new byte[CHUNK_SIZE];
+    // Bytes of the buffer that belong to the next chunk
+    private int buffered = 0;
+    private boolean eof = false;
+    private List<String[]> rows = new ArrayList<>();
+    private int rowIndex = 0;
+    // Parser and fields of a row that continues into the next chunk
+    private CSVParser pendingParser;
+    private String[] pendingFields;
+
+    /**
+     * @param in                The plain content of the file.
+     * @param executor          The pool the chunks are parsed on.
+     * @param maxChunksInFlight The maximum number of chunks read ahead.
+     * @param stats             The counters the decoded characters are added to.
+     */
+    public ParallelCsvParser(InputStream in, ExecutorService executor, int maxChunksInFlight, BatchFileDecoder.Stats stats) {
+        this(in, executor, maxChunksInFlight, new Semaphore(Math.max(1, maxChunksInFlight)), stats);
+    }
+
+    /**
+     * @param in                The plain content of the file.
+     * @param executor          The pool the chunks are parsed on.
+     * @param maxChunksInFlight The maximum number of chunks read ahead.
+     * @param chunkPermits      The permits for the chunks read ahead, shared with other parsers.
+     * @param stats             The counters the decoded characters are added to.
+     */
+    public ParallelCsvParser(InputStream in, ExecutorService executor, int maxChunksInFlight, Semaphore chunkPermits,
+                             BatchFileDecoder.Stats stats) {
+        this.in = in;
+        this.executor = executor;
+        this.maxChunksInFlight = Math.max(1, maxChunksInFlight);
+        this.chunkPermits = chunkPermits;
+        this.stats = stats;
+    }
+
+    @Override
+    public String[] readNext() throws IOException {
+        while (rowIndex >= rows.size()) {
+            if (!nextChunk()) {
+                return null;
+            }
+        }
+        String[] row = rows.get(rowIndex);
+        rows.set(rowIndex++, null);
+        return row;
+    }
+
+    private boolean nextChunk() throws IOException {
+        long start = System.nanoTime();
+        while (!eof && inFlight.size() < maxChunksInFlight) {
+            boolean permit = chunkPermits.tryAcquire();
+            if (!permit && !inFlight.isEmpty()) {
+                // Other parsers hold the read-ahead, consume the chunks in flight first
+                break;
+            }
+            final byte[] bytes;
+            try {
+                bytes = readChunk();
+            } catch (IOException | RuntimeException e) {
+                release(permit);
+                throw e;
+            }
+            if (bytes == null) {
+                release(permit);
+                break;
+            }
+            if (!permit || (eof && inFlight.isEmpty())) {
+                // The whole content is in this chunk, or no chunk may be read ahead
+                release(permit);
+                inFlight.add(CompletableFuture.completedFuture(parse(bytes)));
+                permits.add(false);
+            } else {
+                inFlight.add(executor.submit(() -> parse(bytes)));
+                permits.add(true);
+            }
+        }
+
+        Future<Chunk> future = inFlight.poll();
+        if (future != null) {
+            release(permits.poll());
+        }
+        if (future == null) {
+            if (pendingParser == null) {
+                return false;
+            }
+            // The file ends in the middle of a quoted field, CSVReader returns what was parsed
+            rows = new ArrayList<>();
+            if (pendingFields != null) {
+                rows.add(pendingFields);
+            }
+            rowIndex = 0;
+            pendingParser = null;
+            pendingFields = null;
+            return true;
+        }
+
+        Chunk chunk = get(future);
+        if (pendingParser != null) {
+            // The chunk started in the middle of a row, parse it again from there
+            Chunk fixed = new Chunk(chunk.text);
+            fixed.pendingParser = pendingParser;
+            fixed.pendingFields = pendingFields;
+            parseLines(fixed);
+            chunk = fixed;
+        }
+        rows = chunk.rows;
+        rowIndex = 0;
+        pendingParser = chunk.pendingParser;
+        pendingFields = chunk.pendingFields;
+        stats.addDecoded(chunk.text.length(), System.nanoTime() - start);
+        return true;
+    }
+
+    /**
+     * Reads the next chunk, ending after the last line break outside quotes.
+     *
+     * @return The bytes of the chunk, or null at the end of the content.
+     */
+    private byte[] readChunk() throws IOException {
+        int scanned = 0;
+        int quotes = 0;
+        int split = -1;
+        while (true) {
+            // Find the last line break with an even number of quotes before it
+            for (int i = scanned; i < buffered; i++) {
+                byte b = buffer[i];
+                if (b == QUOTE) {
+                    quotes++;
+                } else if (b == '\n' && (quotes & 1) == 0) {
+                    split = i + 1;
+                }
+            }
+            scanned = buffered;
+
+            if (eof) {
+                split = buffered;
+                break;
+            }
+            if (split > 0 && buffered >= CHUNK_SIZE) {
+                break;
+            }
+            if (buffered == buffer.length) {
+                // One row is larger than the buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int n = in.read(buffer, buffered, buffer.length - buffered);
+            if (n < 0) {
+                eof = true;
+            } else {
+                buffered += n;
+            }
+        }
+
+        if (split == 0) {
+            return null;
+        }
+        byte[] chunk = Arrays.copyOf(buffer, split);
+        // Rows after the split belong to the next chunk
+        System.arraycopy(buffer, split, buffer, 0, buffered - split);
+        buffered -= split;
+        return chunk;
+    }
+
+    private void release(boolean permit) {
+        if (permit) {
+            chunkPermits.release();
+        }
+    }
+
+    private static Chunk parse(byte[] bytes) throws IOException {
+        Chunk chunk = new Chunk(new String(bytes, StandardCharsets.UTF_8));
+        parseLines(chunk);
+        return chunk;
+    }
+
+    /**
+     * Parses the lines of a chunk, continuing the pending row of the chunk if it has one.
+     */
+    private static void parseLines(Chunk chunk) throws IOException {
+        String text = chunk.text;
+        CSVParser parser = chunk.pendingParser != null ? chunk.pendingParser : BatchFileDecoder.csvParser();
+        String[] fields = chunk.pendingFields;
+        int pos = 0;
+        int length = text.length();
+        while (pos < length) {
+            // Split lines like BufferedReader.readLine: \n, \r or \r\n
+            int end = pos;
+            while (end < length && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+            String line = text.substring(pos, end);
+            boolean crlf = end + 1 < length && text.charAt(end) == '\r' && text.charAt(end + 1) == '\n';
+            pos = crlf ? end + 2 : end + 1;
+
+            String[] parsed = parser.parseLineMulti(line);
+            if (parsed.length > 0) {
+                fields = fields == null ? parsed : concat(fields, parsed);
+            }
+            if (!parser.isPending()) {
+                if (fields != null) {
+                    chunk.rows.add(fields);
+                }
+                fields = null;
+            }
+        }
+        if (parser.isPending()) {
+            chunk.pendingParser = parser;
+            chunk.pendingFields = fields;
+        } else {
+            chunk.pendingParser = null;
+            chunk.pendingFields = null;
+        }
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        String[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static Chunk get(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing CSV");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to parse CSV: " + cause.getMessage(), cause);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<Chunk> future : inFlight) {
+            future.cancel(true);
+            release(permits.poll());
+        }
+        inFlight.clear();
+        in.close();
+    }
+}
@@ -0,0 +1,289 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Decompresses a ZSTD stream made of several frames on a worker pool.
+ *
+ * Frames are independent of each other, so the stream is scanned frame by frame (RFC 8878): the
+ * frame header gives the content size and the block headers give the length of the frame. Every
+ * frame whose content size is declared and at most {@link #MAX_FRAME_CONTENT_SIZE} is handed to a
+ * worker, which decompresses it between direct buffers kept per thread, so the native decoder
+ * neither pins nor copies heap arrays. The frames are returned in stream order; at most
+ * {@link #MAX_FRAMES_IN_FLIGHT} frames are read ahead. Skippable frames are dropped.
+ *
+ * A frame that cannot be decompressed on its own (unknown or large content size, dictionary,
+ * reserved bits) ends the scan: it and the rest of the stream go through a sequential
+ * ZstdInputStream, which also reports any corruption.
+ */
+public class ParallelZstdInputStream extends InputStream {
+    static final int MAX_FRAME_CONTENT_SIZE = 16 << 20;
+    static final int MAX_FRAMES_IN_FLIGHT = 8;
+
+    private static final int MAGIC = 0xFD2FB528;
+    private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+    private static final int[] DICTIONARY_ID_SIZE = {0, 1, 2, 4};
+    private static final int CHECKSUM_SIZE = 4;
+
+    private static final ThreadLocal<ByteBuffer[]> BUFFERS = ThreadLocal.withInitial(() -> new ByteBuffer[2]);
+
+    private final InputStream in;
+    private final ExecutorService executor;
+    private final ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+    // The bytes of the frame being scanned
+    private byte[] frame = new byte[1 << 16];
+    private int frameLength = 0;
+    private boolean eof = false;
+    // The sequential decoder for the rest of the stream, once the scan stopped
+    private InputStream tail;
+    private byte[] current = new byte[0];
+    private int pos = 0;
+
+    /**
+     * @param in       The compressed stream.
+     * @param executor The pool the frames are decompressed on.
+     */
+    public ParallelZstdInputStream(InputStream in, ExecutorService executor) {
+        this.in = in;
+        this.executor = executor;
+    }
+
+    private void scan() throws IOException {
+        while (tail == null && !eof && inFlight.size() < MAX_FRAMES_IN_FLIGHT) {
+            scanFrame();
+        }
+    }
+
+    private void scanFrame() throws IOException {
+        frameLength = 0;
+        if (!readFrameBytes(4, true)) {
+            eof = true;
+            return;
+        }
+        int magic = littleEndian(0, 4);
+        if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+            readFrameBytes(4, false);
+            skipFrame(littleEndian(4, 4) & 0xFFFFFFFFL);
+            return;
+        }
+        if (magic != MAGIC) {
+            fallBack();
+            return;
+        }
+
+        readFrameBytes(1, false);
+        int descriptor = frame[4] & 0xFF;
+        int contentSizeFlag = descriptor >>> 6;
+        boolean singleSegment = (descriptor & 0x20) != 0;
+        boolean reserved = (descriptor & 0x08) != 0;
+        boolean checksum = (descriptor & 0x04) != 0;
+        int dictionaryIdSize = DICTIONARY_ID_SIZE[descriptor & 0x03];
+        int contentSizeSize = contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeFlag;
+        if (reserved || dictionaryIdSize != 0 || contentSizeSize == 0) {
+            fallBack();
+            return;
+        }
+
+        int headerEnd = frameLength + (singleSegment ? 0 : 1) + dictionaryIdSize + contentSizeSize;
+        readFrameBytes(headerEnd - frameLength, false);
+        long contentSize = contentSizeSize == 8
+                ? (littleEndian(headerEnd - 8, 4) & 0xFFFFFFFFL) | ((long) littleEndian(headerEnd - 4, 4) << 32)
+                : littleEndian(headerEnd - contentSizeSize, contentSizeSize) & 0xFFFFFFFFL;
+        if (contentSizeSize == 2) {
+            contentSize += 256;
+        }
+        if (contentSize < 0 || contentSize > MAX_FRAME_CONTENT_SIZE) {
+            fallBack();
+            return;
+        }
+
+        boolean last = false;
+        while (!last) {
+            readFrameBytes(3, false);
+            int header = littleEndian(frameLength - 3, 3);
+            last = (header & 1) != 0;
+            int type = (header >>> 1) & 3;
+            int size = header >>> 3;
+            if (type == 3) {
+                // Reserved block type, let the sequential decoder report it
+                fallBack();
+                return;
+            }
+            readFrameBytes(type == 1 ? 1 : size, false);
+            if (frameLength > MAX_FRAME_CONTENT_SIZE + (1 << 20)) {
+                fallBack();
+                return;
+            }
+        }
+        if (checksum) {
+            readFrameBytes(CHECKSUM_SIZE, false);
+        }
+
+        final byte[] compressed = Arrays.copyOf(frame, frameLength);
+        final int size = (int) contentSize;
+        inFlight.add(executor.submit(() -> decompressFrame(compressed, size)));
+    }
+
+    private static byte[] decompressFrame(byte[] compressed, int size) throws IOException {
+        ByteBuffer[] buffers = BUFFERS.get();
+        ByteBuffer src = buffers[0];
+        if (src == null || src.capacity() < compressed.length) {
+            src = buffers[0] = ByteBuffer.allocateDirect(Math.max(compressed.length, 1 << 20));
+        }
+        ByteBuffer dst = buffers[1];
+        if (dst == null || dst.capacity() < size) {
+            dst = buffers[1] = ByteBuffer.allocateDirect(Math.max(size, 1 << 20));
+        }
+        src.clear();
+        src.put(compressed);
+        dst.clear();
+
+        long result = Zstd.decompressDirectByteBuffer(dst, 0, size, src, 0, compressed.length);
+        if (Zstd.isError(result)) {
+            throw new IOException("Failed to decompress ZSTD frame: " + Zstd.getErrorName(result));
+        }
+        if (result != size) {
+            throw new IOException(String.format("ZSTD frame declares %d bytes of content but has %d", size, result));
+        }
+        byte[] out = new byte[size];
+        dst.limit(size);
+        dst.get(out);
+        return out;
+    }
+
+    private void fallBack() throws IOException {
+        InputStream rest = new SequenceInputStream(new ByteArrayInputStream(frame, 0, frameLength), in);
+        tail = new BufferedInputStream(new ZstdInputStream(rest), BatchFileDecoder.BUFFER_SIZE);
+    }
+
+    /**
+     * Appends bytes of the stream to the frame buffer.
+     *
+     * @return false if the stream ended before the first byte and endAllowed is set.
+     */
+    private boolean readFrameBytes(int count, boolean endAllowed) throws IOException {
+        if (frameLength + count > frame.length) {
+            frame = Arrays.copyOf(frame, Math.max(frameLength + count, 2 * frame.length));
+        }
+        int read = 0;
+        while (read < count) {
+            int n = in.read(frame, frameLength + read, count - read);
+            if (n < 0) {
+                if (read == 0 && endAllowed) {
+                    return false;
+                }
+                throw new EOFException("ZSTD stream ended in the middle of a frame");
+            }
+            read += n;
+        }
+        frameLength += count;
+        return true;
+    }
+
+    private void skipFrame(long count) throws IOException {
+        while (count > 0) {
+            long n = in.skip(count);
+            if (n <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("ZSTD stream ended in the middle of a skippable frame");
+                }
+                n = 1;
+            }
+            count -= n;
+        }
+    }
+
+    private int littleEndian(int offset, int size) {
+        int value = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            value = (value << 8) | (frame[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private boolean next() throws IOException {
+        scan();
+        Future<byte[]> future = inFlight.poll();
+        if (future == null) {
+            return false;
+        }
+        try {
+            current = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decompressing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to decompress ZSTD frame: " + cause.getMessage(), cause);
+        }
+        pos = 0;
+        scan();
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (pos >= current.length) {
+            if (!next()) {
+                return tail == null ? -1 : tail.read();
+            }
+        }
+        return current[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (pos >= current.length) {
+            if (!next()) {
+                return tail == null ? -1 : tail.read(b, off, len);
+            }
+        }
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (pos < current.length) {
+            return current.length - pos;
+        }
+        return tail == null || !inFlight.isEmpty() ? 0 : tail.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<byte[]> future : inFlight) {
+            future.cancel(true);
+        }
+        inFlight.clear();
+        if (tail != null) {
+            tail.close();
+        } else {
+            in.close();
+        }
+    }
+}
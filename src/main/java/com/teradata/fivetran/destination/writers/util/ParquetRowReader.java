@@ -0,0 +1,287 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import org.apache.parquet.ParquetReadOptions;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.column.ColumnReader;
+import org.apache.parquet.column.impl.ColumnReadStoreImpl;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads a Parquet batch file column by column.
+ *
+ * The file is read one row group at a time, with one column reader per column advanced in step, so
+ * only the pages being decoded are held in memory. Every column gets a decoder chosen once from its
+ * physical and logical type, which turns the stored value into the Java value a JDBC binder takes
+ * without going through text. Timestamps are instants of UTC whose digits are those of the stored
+ * value, as {@link IsoTimestampParser} returns them for CSV files.
+ *
+ * Rows read with {@link #readNext()} are formatted the way Fivetran writes CSV files, so writers
+ * that only handle text work unchanged. Parquet files have no nested columns in batch files; a
+ * nested column is rejected.
+ */
+public class ParquetRowReader implements TypedRowReader {
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSS");
+    private static final long JULIAN_EPOCH_DAY = 2440588;
+
+    /**
+     * Decodes the current value of a column reader.
+     */
+    private interface ValueDecoder {
+        Object read(ColumnReader reader);
+    }
+
+    private final ParquetFileReader file;
+    private final Path tempFile;
+    private final String nullString;
+    private final MessageType schema;
+    private final List<ColumnDescriptor> columns;
+    private final ValueDecoder[] decoders;
+    private final boolean[] utc;
+    private final ColumnReader[] readers;
+    private boolean headerRead = false;
+    private long rowsLeft = 0;
+
+    /**
+     * @param input      The Parquet file.
+     * @param nullString The text returned for SQL NULL by {@link #readNext()}.
+     * @param tempFile   A temporary file holding the decoded content, deleted on close, or null.
+     * @throws IOException If the footer cannot be read or a column has an unsupported type.
+     */
+    public ParquetRowReader(InputFile input, String nullString, Path tempFile) throws IOException {
+        this.tempFile = tempFile;
+        this.nullString = nullString;
+        this.file = new ParquetFileReader(input, ParquetReadOptions.builder(new PlainParquetConfiguration()).build());
+        try {
+            this.schema = file.getFooter().getFileMetaData().getSchema();
+            for (Type field : schema.getFields()) {
+                if (!field.isPrimitive()) {
+                    throw new IOException("Nested Parquet column " + field.getName() + " is not supported");
+                }
+            }
+            this.columns = schema.getColumns();
+            this.decoders = new ValueDecoder[columns.size()];
+            this.utc = new boolean[columns.size()];
+            this.readers = new ColumnReader[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                PrimitiveType type = columns.get(i).getPrimitiveType();
+                decoders[i] = decoder(type);
+                LogicalTypeAnnotation annotation = type.getLogicalTypeAnnotation();
+                utc[i] = annotation instanceof LogicalTypeAnnotation.TimestampLogicalTypeAnnotation
+                        && ((LogicalTypeAnnotation.TimestampLogicalTypeAnnotation) annotation).isAdjustedToUTC();
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static ValueDecoder decoder(PrimitiveType type) throws IOException {
+        LogicalTypeAnnotation annotation = type.getLogicalTypeAnnotation();
+        if (annotation instanceof LogicalTypeAnnotation.DecimalLogicalTypeAnnotation) {
+            final int scale = ((LogicalTypeAnnotation.DecimalLogicalTypeAnnotation) annotation).getScale();
+            switch (type.getPrimitiveTypeName()) {
+                case INT32:
+                    return r -> BigDecimal.valueOf(r.getInteger(), scale);
+                case INT64:
+                    return r -> BigDecimal.valueOf(r.getLong(), scale);
+                default:
+                    return r -> new BigDecimal(new BigInteger(r.getBinary().getBytes()), scale);
+            }
+        }
+
+        switch (type.getPrimitiveTypeName()) {
+            case BOOLEAN:
+                return ColumnReader::getBoolean;
+            case INT32:
+                if (annotation instanceof LogicalTypeAnnotation.DateLogicalTypeAnnotation) {
+                    return r -> Date.valueOf(LocalDate.ofEpochDay(r.getInteger()));
+                }
+                if (annotation instanceof LogicalTypeAnnotation.TimeLogicalTypeAnnotation) {
+                    return r -> Time.valueOf(LocalTime.ofNanoOfDay(r.getInteger() * 1000000L));
+                }
+                return ColumnReader::getInteger;
+            case INT64:
+                if (annotation instanceof LogicalTypeAnnotation.TimestampLogicalTypeAnnotation) {
+                    final long perSecond = unitsPerSecond(((LogicalTypeAnnotation.TimestampLogicalTypeAnnotation) annotation).getUnit());
+                    return r -> timestamp(r.getLong(), perSecond);
+                }
+                if (annotation instanceof LogicalTypeAnnotation.TimeLogicalTypeAnnotation) {
+                    final long nanosPerUnit = 1000000000L / unitsPerSecond(((LogicalTypeAnnotation.TimeLogicalTypeAnnotation) annotation).getUnit());
+                    return r -> Time.valueOf(LocalTime.ofNanoOfDay(r.getLong() * nanosPerUnit));
+                }
+                return ColumnReader::getLong;
+            case INT96:
+                return r -> int96Timestamp(r.getBinary());
+            case FLOAT:
+                return ColumnReader::getFloat;
+            case DOUBLE:
+                return ColumnReader::getDouble;
+            case BINARY:
+            case FIXED_LEN_BYTE_ARRAY:
+                if (annotation instanceof LogicalTypeAnnotation.StringLogicalTypeAnnotation
+                        || annotation instanceof LogicalTypeAnnotation.JsonLogicalTypeAnnotation
+                        || annotation instanceof LogicalTypeAnnotation.EnumLogicalTypeAnnotation) {
+                    return r -> r.getBinary().toStringUsingUTF8();
+                }
+                if (annotation instanceof LogicalTypeAnnotation.UUIDLogicalTypeAnnotation) {
+                    return r -> {
+                        ByteBuffer bytes = r.getBinary().toByteBuffer();
+                        return new UUID(bytes.getLong(bytes.position()), bytes.getLong(bytes.position() + 8)).toString();
+                    };
+                }
+                return r -> r.getBinary().getBytes();
+            default:
+                throw new IOException("Unsupported Parquet column type " + type);
+        }
+    }
+
+    private static long unitsPerSecond(LogicalTypeAnnotation.TimeUnit unit) {
+        switch (unit) {
+            case MILLIS:
+                return 1000L;
+            case MICROS:
+                return 1000000L;
+            default:
+                return 1000000000L;
+        }
+    }
+
+    private static Timestamp timestamp(long value, long perSecond) {
+        long seconds = Math.floorDiv(value, perSecond);
+        int nanos = (int) (Math.floorMod(value, perSecond) * (1000000000L / perSecond));
+        return timestamp(seconds, nanos);
+    }
+
+    private static Timestamp timestamp(long epochSecond, int nanos) {
+        Timestamp timestamp = new Timestamp(epochSecond * 1000L);
+        timestamp.setNanos(nanos);
+        return timestamp;
+    }
+
+    private static Timestamp int96Timestamp(Binary value) {
+        ByteBuffer bytes = value.toByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        long nanosOfDay = bytes.getLong(bytes.position());
+        long julianDay = bytes.getInt(bytes.position() + 8);
+        return timestamp((julianDay - JULIAN_EPOCH_DAY) * 86400L + nanosOfDay / 1000000000L,
+                (int) (nanosOfDay % 1000000000L));
+    }
+
+    private boolean nextRowGroup() throws IOException {
+        PageReadStore pages;
+        do {
+            pages = file.readNextRowGroup();
+            if (pages == null) {
+                return false;
+            }
+        } while (pages.getRowCount() == 0);
+
+        ColumnReadStoreImpl store = new ColumnReadStoreImpl(pages, new GroupRecordConverter(schema).getRootConverter(),
+                schema, file.getFooter().getFileMetaData().getCreatedBy());
+        for (int i = 0; i < columns.size(); i++) {
+            readers[i] = store.getColumnReader(columns.get(i));
+        }
+        rowsLeft = pages.getRowCount();
+        return true;
+    }
+
+    @Override
+    public String[] readNext() throws IOException {
+        if (!headerRead) {
+            headerRead = true;
+            String[] header = new String[columns.size()];
+            for (int i = 0; i < header.length; i++) {
+                header[i] = schema.getFields().get(i).getName();
+            }
+            return header;
+        }
+
+        Object[] values = readNextValues();
+        if (values == null) {
+            return null;
+        }
+        String[] row = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            row[i] = text(values[i], utc[i]);
+        }
+        return row;
+    }
+
+    @Override
+    public Object[] readNextValues() throws IOException {
+        headerRead = true;
+        if (rowsLeft == 0 && !nextRowGroup()) {
+            return null;
+        }
+        Object[] values = new Object[readers.length];
+        for (int i = 0; i < readers.length; i++) {
+            ColumnReader reader = readers[i];
+            if (reader.getCurrentDefinitionLevel() == columns.get(i).getMaxDefinitionLevel()) {
+                values[i] = decoders[i].read(reader);
+            }
+            reader.consume();
+        }
+        rowsLeft--;
+        return values;
+    }
+
+    /**
+     * Formats a value like the CSV files of Fivetran.
+     */
+    private String text(Object value, boolean utc) {
+        if (value == null) {
+            return nullString;
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        if (value instanceof byte[]) {
+            return Base64.getEncoder().encodeToString((byte[]) value);
+        }
+        if (value instanceof Timestamp) {
+            Timestamp timestamp = (Timestamp) value;
+            String text = LocalDateTime.ofEpochSecond(Math.floorDiv(timestamp.getTime(), 1000L), timestamp.getNanos(),
+                    ZoneOffset.UTC).format(TIMESTAMP_FORMAT);
+            return utc ? text + "Z" : text;
+        }
+        return value.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            file.close();
+        } finally {
+            if (tempFile != null) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import com.teradata.fivetran.destination.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of prepared statements of one connection, keyed by request text.
+ *
+ * Writers build the request text once per statement shape, so rows of the same shape get the same
+ * PreparedStatement back and Teradata does not have to parse the request again. Evicted statements
+ * are closed.
+ */
+public class PreparedStatementCache implements AutoCloseable {
+    public static final int DEFAULT_SIZE = 32;
+
+    private final Connection conn;
+    private final Map<String, PreparedStatement> statements;
+
+    /**
+     * @param conn    The connection the statements are prepared on.
+     * @param maxSize The maximum number of statements kept open.
+     */
+    public PreparedStatementCache(Connection conn, int maxSize) {
+        this.conn = conn;
+        final int limit = Math.max(1, maxSize);
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > limit) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached statement for the request, preparing it on a miss.
+     *
+     * @param sql The request text.
+     * @return The prepared statement. It must not be closed by the caller.
+     * @throws SQLException If the request cannot be prepared.
+     */
+    public PreparedStatement get(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt == null) {
+            stmt = conn.prepareStatement(sql);
+            statements.put(sql, stmt);
+        }
+        return stmt;
+    }
+
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            Logger.logMessage(Logger.LogLevel.WARNING, "Failed to close cached statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes all cached statements.
+     */
+    @Override
+    public void close() {
+        for (PreparedStatement stmt : statements.values()) {
+            closeQuietly(stmt);
+        }
+        statements.clear();
+    }
+}
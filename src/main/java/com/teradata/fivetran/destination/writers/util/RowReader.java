@@ -0,0 +1,17 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of the parsed rows of a batch file.
+ */
+public interface RowReader extends Closeable {
+    /**
+     * Returns the next row.
+     *
+     * @return The values of the row, or null at the end of the file.
+     * @throws IOException If the file cannot be read or parsed.
+     */
+    String[] readNext() throws IOException;
+}
@@ -0,0 +1,21 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import java.io.IOException;
+
+/**
+ * Source of rows that are stored with their types, such as Parquet batch files.
+ *
+ * The first call of {@link #readNext()} returns the header like for CSV files. After it, rows can
+ * be read either as text with {@link #readNext()} or as typed values with {@link #readNextValues()}.
+ */
+public interface TypedRowReader extends RowReader {
+    /**
+     * Returns the next row as Java values: Boolean, Integer, Long, Float, Double, BigDecimal,
+     * java.sql.Date, java.sql.Time, java.sql.Timestamp, byte[] or String. SQL NULL is null.
+     * Timestamps are instants of UTC whose digits in UTC are the stored ones.
+     *
+     * @return The values of the row, or null at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    Object[] readNextValues() throws IOException;
+}
@@ -0,0 +1,72 @@
+package com.teradata.fivetran.destination.writers.util;
+
+import com.teradata.fivetran.destination.Logger;
+import com.teradata.fivetran.destination.TeradataJDBCUtil;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Widens the VARCHAR columns of a target table for all writers of one call.
+ *
+ * Writers that stage on sessions of their own each know the lengths of the target as they were
+ * when they started, so one of them may resize a column another one has already widened further.
+ * The widener re-reads the current length of the column under its lock and only ever makes a
+ * column longer.
+ */
+public class VarcharWidener {
+    private final String database;
+    private final String table;
+
+    public VarcharWidener(String database, String table) {
+        this.database = database;
+        this.table = table;
+    }
+
+    /**
+     * Makes a VARCHAR column of the target at least the given length, up to the longest length its
+     * character set allows.
+     *
+     * @param conn   The session to resize the column on. DDL commits the open transaction of it.
+     * @param column The column name.
+     * @param length The length the column must hold.
+     * @return The length of the column afterwards, or -1 if the target has no such VARCHAR column.
+     * @throws SQLException If the column cannot be resized.
+     */
+    public synchronized int widen(Connection conn, String column, int length) throws SQLException {
+        return widen(conn, column, length, TeradataJDBCUtil.getVarcharColumnLengths(conn, database, table));
+    }
+
+    /**
+     * Makes several VARCHAR columns of the target at least the given lengths, reading the current
+     * lengths once.
+     *
+     * @param conn    The session to resize the columns on. DDL commits the open transaction of it.
+     * @param lengths The length each column must hold, by column name.
+     * @throws SQLException If a column cannot be resized.
+     */
+    public synchronized void widen(Connection conn, Map<String, Integer> lengths) throws SQLException {
+        Map<String, ColumnMetadata> current = TeradataJDBCUtil.getVarcharColumnLengths(conn, database, table);
+        for (Map.Entry<String, Integer> entry : lengths.entrySet()) {
+            widen(conn, entry.getKey(), entry.getValue(), current);
+        }
+    }
+
+    private int widen(Connection conn, String column, int length, Map<String, ColumnMetadata> current)
+            throws SQLException {
+        ColumnMetadata meta = current.get(column);
+        if (meta == null) {
+            return -1;
+        }
+        int currentLen = meta.getLength();
+        int safeLength = Math.min(length, meta.getMaxAllowedLength());
+        if (safeLength <= currentLen) {
+            return currentLen;
+        }
+        Logger.logMessage(Logger.LogLevel.INFO, String.format("Widening %s.%s from VARCHAR(%d) to VARCHAR(%d)",
+                TeradataJDBCUtil.escapeTable(database, table), column, currentLen, safeLength));
+        TeradataJDBCUtil.resizeVarcharColumn(conn, database, table, null, column, currentLen, safeLength);
+        return safeLength;
+    }
+}
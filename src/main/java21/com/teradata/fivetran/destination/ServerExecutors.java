@@ -0,0 +1,23 @@
+package com.teradata.fivetran.destination;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors of the gRPC server on Java 21 and later.
+ */
+public class ServerExecutors {
+
+    private ServerExecutors() {
+    }
+
+    /**
+     * Returns an executor that runs every task on a new virtual thread. The number of calls, and so
+     * of Teradata sessions, is then bounded only by --max-concurrent-calls.
+     *
+     * @return The executor.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
@@ -0,0 +1,56 @@
+package com.teradata.fivetran.destination;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import com.teradata.fivetran.destination.writers.util.AdaptiveBatchSizer;
+
+public class AdaptiveBatchSizerTest {
+
+    // Executes a full batch at the given rows per second
+    private static void batch(AdaptiveBatchSizer sizer, double rowsPerSecond) {
+        int rows = sizer.batchSize();
+        sizer.record(rows, (long) (rows / rowsPerSecond * 1e9));
+    }
+
+    @Test
+    public void growsWhileThroughputHoldsAndHalvesOnDrop() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer("db.grow", 10000, 1000, 15000);
+        assertEquals(10000, sizer.batchSize());
+
+        batch(sizer, 50000);
+        assertEquals(11000, sizer.batchSize());
+        batch(sizer, 52000);
+        assertEquals(12000, sizer.batchSize());
+        // Within a tenth of the previous batch is not a drop
+        batch(sizer, 48000);
+        assertEquals(13000, sizer.batchSize());
+        batch(sizer, 30000);
+        assertEquals(6500, sizer.batchSize());
+
+        // Batches cut short by the end of a file do not move the size
+        sizer.record(10, 1000000);
+        assertEquals(6500, sizer.batchSize());
+
+        for (int i = 0; i < 20; i++) {
+            batch(sizer, 60000);
+        }
+        assertEquals(15000, sizer.batchSize());
+    }
+
+    @Test
+    public void nextSyncStartsAtTheTunedSize() {
+        assertNull(AdaptiveBatchSizer.tunedSize("db.remember"));
+        AdaptiveBatchSizer first = new AdaptiveBatchSizer("db.remember", 5000, 1000, 100000);
+        batch(first, 10000);
+        batch(first, 10000);
+        assertEquals(7000, (int) AdaptiveBatchSizer.tunedSize("db.remember"));
+
+        AdaptiveBatchSizer next = new AdaptiveBatchSizer("db.remember", 5000, 1000, 100000);
+        assertEquals(7000, next.batchSize());
+        // The tuned size stays within the bounds of the next sync
+        assertEquals(6000, new AdaptiveBatchSizer("db.remember", 5000, 1000, 6000).batchSize());
+    }
+}
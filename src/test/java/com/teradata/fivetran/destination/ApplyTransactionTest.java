@@ -0,0 +1,48 @@
+package com.teradata.fivetran.destination;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ApplyTransactionTest {
+
+    // Records the transaction calls made on a connection
+    private static Connection recorder(List<String> calls) {
+        return (Connection) Proxy.newProxyInstance(ApplyTransactionTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    calls.add(method.getName() + (args == null ? "" : Arrays.toString(args)));
+                    return null;
+                });
+    }
+
+    @Test
+    public void committedStepsAreNotRolledBack() throws Exception {
+        List<String> calls = new ArrayList<>();
+        try (ApplyTransaction tx = ApplyTransaction.begin(recorder(calls), true)) {
+            tx.commit();
+        }
+        assertEquals(Arrays.asList("setAutoCommit[false]", "commit", "setAutoCommit[true]"), calls);
+    }
+
+    @Test
+    public void failedStepsAreRolledBack() throws Exception {
+        List<String> calls = new ArrayList<>();
+        try (ApplyTransaction tx = ApplyTransaction.begin(recorder(calls), true)) {
+            // A step failed before the commit
+        }
+        assertEquals(Arrays.asList("setAutoCommit[false]", "rollback", "setAutoCommit[true]"), calls);
+
+        calls.clear();
+        try (ApplyTransaction tx = ApplyTransaction.begin(recorder(calls), false)) {
+            tx.commit();
+        }
+        assertEquals(Collections.emptyList(), calls);
+    }
+}
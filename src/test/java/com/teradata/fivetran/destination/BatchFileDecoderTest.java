@@ -0,0 +1,361 @@
+package com.teradata.fivetran.destination;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.google.protobuf.ByteString;
+import com.opencsv.CSVReader;
+import com.teradata.fivetran.destination.writers.util.BatchFileDecoder;
+import com.teradata.fivetran.destination.writers.util.BatchFileProbe;
+import com.teradata.fivetran.destination.writers.util.ParallelCsvParser;
+import com.teradata.fivetran.destination.writers.util.ParallelZstdInputStream;
+import com.teradata.fivetran.destination.writers.util.RowReader;
+import com.teradata.fivetran.destination.writers.util.TypedRowReader;
+
+import fivetran_sdk.v2.Compression;
+import fivetran_sdk.v2.Encryption;
+import fivetran_sdk.v2.FileParams;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.io.LocalOutputFile;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchFileDecoderTest {
+
+    // Builds a CSV file larger than the decoder buffer, with non-ASCII values
+    private static byte[] csv(int rows) {
+        StringBuilder sb = new StringBuilder("id,name\n");
+        for (int i = 0; i < rows; i++) {
+            sb.append(i).append(",\"näme ").append(i).append("\"\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] data) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encrypt(byte[] data, byte[] key) throws Exception {
+        byte[] iv = new byte[16];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(iv);
+        out.write(cipher.doFinal(data));
+        return out.toByteArray();
+    }
+
+    @Test
+    public void encryptedAndCompressed() throws Exception {
+        int rows = 100000;
+        byte[] plain = csv(rows);
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        byte[] file = encrypt(gzip(plain), key);
+
+        FileParams params = FileParams.newBuilder()
+                .setEncryption(Encryption.AES)
+                .setCompression(Compression.GZIP)
+                .build();
+        BatchFileDecoder decoder = new BatchFileDecoder(params,
+                Collections.singletonMap("file", ByteString.copyFrom(key)));
+        try (CSVReader reader = decoder.openCsv("file", new ByteArrayInputStream(file))) {
+            assertArrayEquals(new String[]{"id", "name"}, reader.readNext());
+            for (int i = 0; i < rows; i++) {
+                assertArrayEquals(new String[]{String.valueOf(i), "näme " + i}, reader.readNext());
+            }
+            assertNull(reader.readNext());
+        }
+
+        assertEquals(file.length, decoder.getStats().getReadBytes());
+        assertEquals(plain.length, decoder.getStats().getDecompressedBytes());
+    }
+
+    @Test
+    public void largeEncryptedFile() throws Exception {
+        // Large enough to be decrypted in parallel chunks
+        int rows = 600000;
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        Path file = Files.createTempFile("batch", ".csv.aes");
+        try {
+            Files.write(file, encrypt(csv(rows), key));
+            FileParams params = FileParams.newBuilder().setEncryption(Encryption.AES).build();
+            BatchFileDecoder decoder = new BatchFileDecoder(params,
+                    Collections.singletonMap(file.toString(), ByteString.copyFrom(key)));
+            try (CSVReader reader = decoder.openCsv(file.toString())) {
+                assertArrayEquals(new String[]{"id", "name"}, reader.readNext());
+                for (int i = 0; i < rows; i++) {
+                    assertArrayEquals(new String[]{String.valueOf(i), "näme " + i}, reader.readNext());
+                }
+                assertNull(reader.readNext());
+            }
+            assertEquals(Files.size(file), decoder.getStats().getReadBytes());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void multiFrameZstd() throws Exception {
+        int rows = 200000;
+        byte[] plain = csv(rows);
+        int frameSize = 256 * 1024;
+        int streamed = plain.length / 2;
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        // Frames with a declared content size, separated by a skippable frame
+        for (int off = 0; off < streamed; off += frameSize) {
+            int end = Math.min(off + frameSize, streamed);
+            file.write(Zstd.compress(Arrays.copyOfRange(plain, off, end), 3));
+            file.write(new byte[]{0x50, 0x2A, 0x4D, 0x18, 3, 0, 0, 0, 1, 2, 3});
+        }
+        // A streamed frame has no content size and is decompressed sequentially with the rest
+        try (ZstdOutputStream zstd = new ZstdOutputStream(file)) {
+            zstd.write(plain, streamed, frameSize);
+        }
+        file.write(Zstd.compress(Arrays.copyOfRange(plain, streamed + frameSize, plain.length), 3));
+
+        // Decompress with several workers whatever the number of processors of the test machine
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (InputStream in = new ParallelZstdInputStream(new ByteArrayInputStream(file.toByteArray()), executor)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            assertArrayEquals(plain, out.toByteArray());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelRowsMatchCsvReader() throws Exception {
+        // Several parse chunks of rows with quoted line breaks, escaped quotes and mixed line ends
+        String[] values = {"plain", "\"quoted, with comma\"", "\"multi\nline\r\nvalue\"", "\"say \"\"hi\"\"\"",
+                "\"\0\"escaped\"", "", "näme"};
+        String[] lineEnds = {"\n", "\r\n", "\r"};
+        // With this seed, escaped quotes make some chunk splits land inside a quoted field
+        Random random = new Random(1);
+        StringBuilder sb = new StringBuilder("id,a,b\n");
+        for (int i = 0; sb.length() < 20 << 20; i++) {
+            sb.append(i).append(',').append(values[random.nextInt(values.length)])
+                    .append(',').append(values[random.nextInt(values.length)])
+                    .append(lineEnds[random.nextInt(lineEnds.length)]);
+        }
+        sb.append("last,\"unterminated\nfield");
+        byte[] file = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        FileParams params = FileParams.newBuilder().build();
+        BatchFileDecoder decoder = new BatchFileDecoder(params, null);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        int rows = 0;
+        try (CSVReader expected = decoder.openCsv("file", new ByteArrayInputStream(file));
+             RowReader actual = new ParallelCsvParser(new ByteArrayInputStream(file), executor, 8, decoder.getStats())) {
+            String[] row;
+            do {
+                row = expected.readNext();
+                assertArrayEquals(row, actual.readNext(), "row " + rows);
+                rows++;
+            } while (row != null);
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(rows > 100000);
+    }
+
+    @Test
+    public void parsersShareTheChunksReadAhead() throws Exception {
+        byte[] file = csv(1000000);
+        FileParams params = FileParams.newBuilder().build();
+        BatchFileDecoder decoder = new BatchFileDecoder(params, null);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Semaphore permits = new Semaphore(2);
+        int rows = 0;
+        try (CSVReader expected = decoder.openCsv("file", new ByteArrayInputStream(file));
+             RowReader first = new ParallelCsvParser(new ByteArrayInputStream(file), executor, 8, permits, decoder.getStats());
+             RowReader second = new ParallelCsvParser(new ByteArrayInputStream(file), executor, 8, permits, decoder.getStats())) {
+            String[] row;
+            do {
+                row = expected.readNext();
+                assertArrayEquals(row, first.readNext(), "row " + rows);
+                assertArrayEquals(row, second.readNext(), "row " + rows);
+                rows++;
+            } while (row != null);
+        } finally {
+            executor.shutdown();
+        }
+        // The header, the rows and the end of the file
+        assertEquals(1000002, rows);
+        assertEquals(2, permits.availablePermits());
+    }
+
+    @Test
+    public void smallFilesAreParsedOnTheReadingThread() throws Exception {
+        Path file = Files.createTempFile("batch", ".csv");
+        try {
+            Files.write(file, csv(1000));
+            FileParams params = FileParams.newBuilder().build();
+            try (RowReader reader = new BatchFileDecoder(params, null).openRows(file.toString())) {
+                assertFalse(reader instanceof ParallelCsvParser);
+                assertArrayEquals(new String[]{"id", "name"}, reader.readNext());
+                assertArrayEquals(new String[]{"0", "näme 0"}, reader.readNext());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void probeHandsOverReaderAfterHeader() throws Exception {
+        Path file = Files.createTempFile("batch", ".csv.gz");
+        try {
+            Files.write(file, gzip(csv(10)));
+            FileParams params = FileParams.newBuilder().setCompression(Compression.GZIP).build();
+            try (BatchFileProbe probe = BatchFileProbe.open(file.toString(), params, null)) {
+                assertEquals(Arrays.asList("id", "name"), probe.getHeader());
+                assertNull(probe.take("other"));
+                try (RowReader reader = probe.take(file.toString())) {
+                    assertArrayEquals(new String[]{"0", "näme 0"}, reader.readNext());
+                }
+                assertNull(probe.take(file.toString()));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Writes a Parquet file with small row groups, so that it has several of them
+    private static void parquet(Path file, int rows) throws Exception {
+        MessageType schema = MessageTypeParser.parseMessageType("message batch { required int32 id; "
+                + "optional int64 amount (DECIMAL(18,2)); optional binary name (STRING); "
+                + "optional int64 updated (TIMESTAMP(MICROS,true)); }");
+        Files.deleteIfExists(file);
+        try (ParquetWriter<Group> writer = ExampleParquetWriter.builder(new LocalOutputFile(file))
+                .withConf(new PlainParquetConfiguration()).withType(schema).withRowGroupSize(64 << 10).build()) {
+            SimpleGroupFactory groups = new SimpleGroupFactory(schema);
+            for (int i = 0; i < rows; i++) {
+                Group group = groups.newGroup().append("id", i);
+                if (i % 3 != 0) {
+                    group.append("amount", 100L * i + 5).append("name", "näme " + i);
+                }
+                group.append("updated", 1700000000123456L + i * 1000000L);
+                writer.write(group);
+            }
+        }
+    }
+
+    @Test
+    public void parquetRowsAreTyped() throws Exception {
+        Path file = Files.createTempFile("batch", ".parquet");
+        try {
+            parquet(file, 50000);
+            FileParams params = FileParams.newBuilder().build();
+            try (RowReader reader = new BatchFileDecoder(params, null).openRows(file.toString())) {
+                assertTrue(reader instanceof TypedRowReader);
+                assertArrayEquals(new String[]{"id", "amount", "name", "updated"}, reader.readNext());
+                TypedRowReader typed = (TypedRowReader) reader;
+                int rows = 0;
+                Object[] values;
+                while ((values = typed.readNextValues()) != null) {
+                    assertEquals(rows, values[0]);
+                    if (rows % 3 == 0) {
+                        assertNull(values[1]);
+                        assertNull(values[2]);
+                    } else {
+                        assertEquals(BigDecimal.valueOf(100L * rows + 5, 2), values[1]);
+                        assertEquals("näme " + rows, values[2]);
+                    }
+                    assertEquals(Instant.parse("2023-11-14T22:13:20.123456Z").plusSeconds(rows),
+                            ((Timestamp) values[3]).toInstant());
+                    rows++;
+                }
+                assertEquals(50000, rows);
+            }
+
+            try (RowReader reader = new BatchFileDecoder(params, null).openRows(file.toString())) {
+                reader.readNext();
+                assertArrayEquals(new String[]{"0", params.getNullString(), params.getNullString(),
+                        "2023-11-14T22:13:20.123456Z"}, reader.readNext());
+                assertArrayEquals(new String[]{"1", "1.05", "näme 1", "2023-11-14T22:13:21.123456Z"}, reader.readNext());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void encryptedAndCompressedParquet() throws Exception {
+        Path file = Files.createTempFile("batch", ".parquet");
+        Path encrypted = Files.createTempFile("batch", ".parquet.zst.aes");
+        try {
+            parquet(file, 1000);
+            byte[] key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            Files.write(encrypted, encrypt(Zstd.compress(Files.readAllBytes(file)), key));
+            FileParams params = FileParams.newBuilder()
+                    .setEncryption(Encryption.AES).setCompression(Compression.ZSTD).build();
+            BatchFileDecoder decoder = new BatchFileDecoder(params,
+                    Collections.singletonMap(encrypted.toString(), ByteString.copyFrom(key)));
+            try (RowReader reader = decoder.openRows(encrypted.toString())) {
+                assertTrue(reader instanceof TypedRowReader);
+                assertArrayEquals(new String[]{"id", "amount", "name", "updated"}, reader.readNext());
+                int rows = 0;
+                while (((TypedRowReader) reader).readNextValues() != null) {
+                    rows++;
+                }
+                assertEquals(1000, rows);
+            }
+        } finally {
+            Files.delete(file);
+            Files.delete(encrypted);
+        }
+    }
+
+    @Test
+    public void missingInitializationVector() {
+        byte[] key = new byte[32];
+        FileParams params = FileParams.newBuilder().setEncryption(Encryption.AES).build();
+        BatchFileDecoder decoder = new BatchFileDecoder(params,
+                Collections.singletonMap("file", ByteString.copyFrom(key)));
+        Exception e = assertThrows(Exception.class,
+                () -> decoder.openCsv("file", new ByteArrayInputStream(new byte[5])));
+        assertTrue(e.getMessage().contains("has only 5 bytes"));
+    }
+}
@@ -0,0 +1,124 @@
+package com.teradata.fivetran.destination;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class BulkheadTest {
+
+    @Test
+    public void runsAtMostItsLimitAndQueuesTheRest() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Bulkhead bulkhead = new Bulkhead("test", 2, pool);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch started = new CountDownLatch(2);
+            CountDownLatch done = new CountDownLatch(5);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            for (int i = 0; i < 5; i++) {
+                bulkhead.execute(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    done.countDown();
+                });
+            }
+
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertEquals(2, bulkhead.getRunning());
+            assertEquals(3, bulkhead.getQueueDepth());
+
+            release.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(2, maxRunning.get());
+            assertEquals(0, bulkhead.getQueueDepth());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void awaitIdleWaitsForRunningTasks() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Bulkhead bulkhead = new Bulkhead("test", 1, pool);
+            CountDownLatch release = new CountDownLatch(1);
+            for (int i = 0; i < 2; i++) {
+                bulkhead.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertFalse(bulkhead.awaitIdle(200, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            assertTrue(bulkhead.awaitIdle(10, TimeUnit.SECONDS));
+            assertEquals(0, bulkhead.getRunning());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void waitingTasksLeaveTheirPlaceToQueuedTasks() throws Exception {
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Bulkhead bulkhead = new Bulkhead("test", 1, pool);
+            CountDownLatch turn = new CountDownLatch(1);
+            CountDownLatch waiting = new CountDownLatch(1);
+            CountDownLatch otherRan = new CountDownLatch(1);
+            CountDownLatch resumed = new CountDownLatch(1);
+            bulkhead.execute(() -> {
+                try {
+                    Bulkhead.releaseWhile(() -> {
+                        waiting.countDown();
+                        turn.await();
+                        return null;
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                resumed.countDown();
+            });
+            assertTrue(waiting.await(10, TimeUnit.SECONDS));
+            bulkhead.execute(otherRan::countDown);
+
+            // The queued task runs while the first one waits
+            assertTrue(otherRan.await(10, TimeUnit.SECONDS));
+            assertEquals(1, bulkhead.getWaiting());
+            assertFalse(bulkhead.awaitIdle(200, TimeUnit.MILLISECONDS));
+
+            turn.countDown();
+            assertTrue(resumed.await(10, TimeUnit.SECONDS));
+            assertTrue(bulkhead.awaitIdle(10, TimeUnit.SECONDS));
+            assertEquals(0, bulkhead.getWaiting());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void describeTableIsAControlCall() {
+        assertTrue(Bulkhead.isControl("DescribeTable"));
+        assertTrue(Bulkhead.isControl("ConfigurationForm"));
+        assertFalse(Bulkhead.isControl("WriteBatch"));
+        assertFalse(Bulkhead.isControl("Migrate"));
+    }
+}
@@ -0,0 +1,69 @@
+package com.teradata.fivetran.destination;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.grpc.Context;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CancellationScopeTest {
+
+    // A connection whose statements count the calls to cancel()
+    private static Connection connection(AtomicInteger cancels) {
+        Statement stmt = (Statement) Proxy.newProxyInstance(CancellationScopeTest.class.getClassLoader(),
+                new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "cancel":
+                            cancels.incrementAndGet();
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return method.getReturnType() == boolean.class ? false : null;
+                    }
+                });
+        return (Connection) Proxy.newProxyInstance(CancellationScopeTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) ->
+                        method.getName().equals("createStatement") ? stmt : null);
+    }
+
+    @Test
+    public void cancellingTheCallCancelsItsStatements() throws Exception {
+        AtomicInteger cancels = new AtomicInteger();
+        Context.CancellableContext context = Context.current().withCancellation();
+        Context previous = context.attach();
+        try (CancellationScope scope = CancellationScope.open("WriteBatch")) {
+            assertSame(scope, CancellationScope.current());
+            Connection conn = scope.track(connection(cancels));
+            conn.createStatement();
+            scope.checkCancelled();
+
+            context.cancel(null);
+            assertTrue(scope.isCancelled());
+            assertEquals(1, cancels.get());
+            assertThrows(CancellationException.class, scope::checkCancelled);
+
+            // Statements created after the cancellation run, for the cleanup of the call
+            conn.createStatement();
+            assertEquals(1, cancels.get());
+        } finally {
+            context.detach(previous);
+        }
+        assertFalse(CancellationScope.current().isCancelled());
+    }
+
+    @Test
+    public void connectionsOutsideOfACallAreNotWrapped() {
+        Connection conn = connection(new AtomicInteger());
+        assertSame(conn, CancellationScope.current().track(conn));
+        CancellationScope.current().checkCancelled();
+    }
+}
@@ -0,0 +1,218 @@
+package com.teradata.fivetran.destination;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.teradata.fivetran.destination.writers.util.BatchStats;
+import com.teradata.fivetran.destination.writers.util.CodecPlan;
+import com.teradata.fivetran.destination.writers.util.ColumnCodec;
+import com.teradata.fivetran.destination.writers.util.IsoTimestampParser;
+import com.teradata.fivetran.destination.writers.util.JSONStruct;
+
+import fivetran_sdk.v2.DataType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnCodecTest {
+
+    // Records the setter calls made on a prepared statement as "method(index, value)", with
+    // timestamps bound with a calendar as instants
+    private static PreparedStatement recorder(List<String> calls) {
+        return (PreparedStatement) Proxy.newProxyInstance(ColumnCodecTest.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    Object value = args[1];
+                    if (value instanceof JSONStruct) {
+                        value = Arrays.asList(((JSONStruct) value).getAttributes());
+                    } else if (value instanceof Timestamp && args.length == 3) {
+                        value = ((Timestamp) value).toInstant();
+                    }
+                    calls.add(method.getName() + "(" + args[0] + ", " + value + ")");
+                    return null;
+                });
+    }
+
+    @Test
+    public void bindsEachTypeWithItsSetter() throws Exception {
+        List<String> calls = new ArrayList<>();
+        PreparedStatement stmt = recorder(calls);
+
+        ColumnCodec.forType(DataType.BOOLEAN).bindText(stmt, 1, "true");
+        ColumnCodec.forType(DataType.SHORT).bindText(stmt, 2, "7");
+        ColumnCodec.forType(DataType.DECIMAL).bindText(stmt, 3, "12.345");
+        ColumnCodec.forType(DataType.FLOAT).bindText(stmt, 4, "1.5");
+        ColumnCodec.forType(DataType.JSON).bindText(stmt, 5, "{\"a\":1}");
+        ColumnCodec.forType(DataType.UTC_DATETIME).bindText(stmt, 6, "2024-01-02T03:04:05.123456789Z");
+        ColumnCodec.forType(DataType.UNSPECIFIED).bindText(stmt, 7, "x");
+
+        // DECIMAL and JSON do not fall through to the setter of the next type
+        assertEquals(Arrays.asList(
+                "setByte(1, 1)",
+                "setShort(2, 7)",
+                "setBigDecimal(3, 12.345)",
+                "setFloat(4, 1.5)",
+                "setObject(5, [{\"a\":1}])",
+                "setTimestamp(6, 2024-01-02T03:04:05.123456Z)",
+                "setString(7, x)"), calls);
+    }
+
+    @Test
+    public void planBindsNullsAndTypedValues() throws Exception {
+        List<String> calls = new ArrayList<>();
+        PreparedStatement stmt = recorder(calls);
+        CodecPlan plan = new CodecPlan(new ColumnCodec[]{
+                ColumnCodec.forType(DataType.INT),
+                ColumnCodec.forDecimal(10, 2),
+                ColumnCodec.forType(DataType.NAIVE_DATETIME)}, "NULL");
+
+        plan.bindRow(stmt, Arrays.asList("1", "2.345", "NULL"));
+        plan.bindRow(stmt, Arrays.asList("null", "-2.345", "2024-01-02T03:04:05"));
+        plan.bindValues(stmt, new Object[]{3, new BigDecimal("1.005"), Timestamp.from(Instant.parse("2024-01-02T03:04:05Z"))});
+        plan.bindValues(stmt, new Object[]{null, 4L, "2024-01-02T03:04:05"});
+
+        assertEquals(Arrays.asList(
+                "setInt(1, 1)", "setBigDecimal(2, 2.35)", "setNull(3, " + Types.TIMESTAMP + ")",
+                "setNull(1, " + Types.INTEGER + ")", "setBigDecimal(2, -2.35)", "setTimestamp(3, 2024-01-02T03:04:05Z)",
+                "setInt(1, 3)", "setBigDecimal(2, 1.01)", "setTimestamp(3, 2024-01-02T03:04:05Z)",
+                "setNull(1, " + Types.INTEGER + ")", "setBigDecimal(2, 4.00)", "setTimestamp(3, 2024-01-02T03:04:05Z)"),
+                calls);
+    }
+
+    @Test
+    public void decimalsReadIntoLongsMatchBigDecimal() throws Exception {
+        String[] values = {"0", "-0", "+7", "1.", ".5", "-.5", "0.005", "-2.345", "2.344999", "99.995", "-99.995",
+                "123456789012.3456", "999999999999999.999", "0000000000000000000001.25", "12345678901234567.89",
+                "1e3", "-1.5E-2", "1.2.3", "-", ".", "12a"};
+        for (int scale : new int[]{-1, 0, 2, 3}) {
+            ColumnCodec fast = scale < 0 ? ColumnCodec.forType(DataType.DECIMAL) : ColumnCodec.forDecimal(18, scale);
+            ColumnCodec wide = scale < 0 ? ColumnCodec.forType(DataType.DECIMAL) : ColumnCodec.forDecimal(38, scale);
+            for (String value : values) {
+                List<String> expected = new ArrayList<>();
+                List<String> calls = new ArrayList<>();
+                String expectedError = bindDecimal(wide, value, expected);
+                assertEquals(expectedError, bindDecimal(fast, value, calls), value);
+                assertEquals(expected, calls, value + " at scale " + scale);
+            }
+        }
+    }
+
+    // Binds a decimal and returns the type of the exception thrown, if any
+    private static String bindDecimal(ColumnCodec codec, String value, List<String> calls) throws Exception {
+        try {
+            codec.bindText(recorder(calls), 1, value);
+            return null;
+        } catch (NumberFormatException e) {
+            return e.getClass().getName();
+        }
+    }
+
+    @Test
+    public void batchBytesAreEstimatedPerCell() throws Exception {
+        CodecPlan plan = new CodecPlan(new ColumnCodec[]{
+                ColumnCodec.forType(DataType.INT),
+                ColumnCodec.forType(DataType.UTC_DATETIME),
+                ColumnCodec.forType(DataType.STRING)}, "NULL");
+        PreparedStatement stmt = recorder(new ArrayList<>());
+        plan.bindRow(stmt, Arrays.asList("1", "2024-01-02T03:04:05Z", "abc"));
+        plan.bindRow(stmt, Arrays.asList("NULL", "NULL", "NULL"));
+        plan.bindValues(stmt, new Object[]{2, null, "abcdef"});
+        assertEquals((3 + 4 + 26 + 5) + 3 + (3 + 4 + 8), plan.getBatchBytes());
+
+        BatchStats stats = new BatchStats();
+        stats.record(10000, plan.getBatchBytes());
+        stats.record(1, 0);
+        stats.record(3, 5);
+        assertEquals(3, stats.getBatches());
+        long[] rows = stats.getRowHistogram();
+        assertEquals(1, rows[1]);
+        assertEquals(1, rows[2]);
+        assertEquals(1, rows[14]);
+        long[] bytes = stats.getByteHistogram();
+        assertEquals(1, bytes[0]);
+        assertEquals(1, bytes[3]);
+        assertEquals(1, bytes[6]);
+    }
+
+    @Test
+    public void isoTimestampsKeepTheirDigits() {
+        for (String text : new String[]{"1970-01-01T00:00:00Z", "2024-02-29T23:59:59.999999Z", "1899-12-31 12:00:00",
+                "2000-03-01T00:00:00.5Z", "2262-04-11T23:47:16.854775Z", "0001-01-01T00:00:00Z"}) {
+            Instant expected = java.time.LocalDateTime.parse(text.replace(' ', 'T').replace("Z", ""))
+                    .toInstant(java.time.ZoneOffset.UTC);
+            assertEquals(expected, IsoTimestampParser.parse(text).toInstant(), text);
+        }
+        // Digits beyond microseconds are dropped, like formatISODateTime does
+        assertEquals(123456000, IsoTimestampParser.parse("2024-01-02T03:04:05.123456789Z").getNanos());
+        assertEquals(Instant.parse("2024-01-02T01:34:05Z"),
+                IsoTimestampParser.parse("2024-01-02T03:04:05+01:30").toInstant());
+        for (String text : new String[]{"2024-02-30T00:00:00Z", "2023-02-29T00:00:00Z", "2024-01-02T24:00:00",
+                "2024-01-02", "2024-01-02T03:04:05.", "2024-01-02T03:04:05Zx", "2024/01/02T03:04:05"}) {
+            assertNull(IsoTimestampParser.parse(text), text);
+        }
+    }
+
+    @Test
+    public void largeLobsAreStreamed() throws Exception {
+        byte[] bytes = new byte[100000];
+        new Random(7).nextBytes(bytes);
+        String base64 = Base64.getEncoder().encodeToString(bytes);
+        char[] chars = new char[70000];
+        Arrays.fill(chars, 'x');
+        String json = "\"" + new String(chars) + "\"";
+
+        List<Object[]> calls = new ArrayList<>();
+        PreparedStatement stmt = (PreparedStatement) Proxy.newProxyInstance(ColumnCodecTest.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    calls.add(new Object[]{method.getName(), args[1], args[2]});
+                    return null;
+                });
+        CodecPlan plan = new CodecPlan(new ColumnCodec[]{
+                ColumnCodec.forType(DataType.BINARY), ColumnCodec.forType(DataType.JSON)}, "NULL");
+        plan.bindRow(stmt, Arrays.asList(base64, json));
+
+        assertEquals("setBinaryStream", calls.get(0)[0]);
+        assertEquals(bytes.length, calls.get(0)[2]);
+        InputStream in = (InputStream) calls.get(0)[1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n; (n = in.read(buffer)) > 0; ) {
+            out.write(buffer, 0, n);
+        }
+        assertArrayEquals(bytes, out.toByteArray());
+
+        assertEquals("setCharacterStream", calls.get(1)[0]);
+        assertEquals(json.length(), calls.get(1)[2]);
+        // Row length and null bits, then the decoded bytes and the characters with their length prefixes
+        assertEquals(3 + bytes.length + 2 + json.length() + 2, plan.getBatchBytes());
+        plan.resetBatchBytes();
+        assertEquals(0, plan.getBatchBytes());
+    }
+
+    @Test
+    public void stringCodecWidensOnlyForLongerValues() throws Exception {
+        List<String> calls = new ArrayList<>();
+        List<Integer> widened = new ArrayList<>();
+        ColumnCodec codec = ColumnCodec.forString(3, length -> {
+            widened.add(length);
+            return length < 6 ? length : Integer.MAX_VALUE;
+        });
+        PreparedStatement stmt = recorder(calls);
+        for (String value : new String[]{"abc", "abcd", "abc", "abcdefgh", "abcdefghijk"}) {
+            codec.bindText(stmt, 1, value);
+        }
+        assertEquals(Arrays.asList(4, 8), widened);
+        assertEquals(5, calls.size());
+    }
+}
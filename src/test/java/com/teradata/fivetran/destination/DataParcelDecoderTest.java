@@ -0,0 +1,112 @@
+package com.teradata.fivetran.destination;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+
+import org.junit.jupiter.api.Test;
+
+import com.teradata.fivetran.destination.writers.util.DataParcelDecoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataParcelDecoderTest {
+
+    private static final String[] TYPES = {"INTEGER", "VARCHAR(10)", "DECIMAL (38, 2)", "DATE", "CHAR(19)"};
+
+    // Builds a parcel in indicator mode: null indicators followed by all fields
+    private static byte[] parcel(ByteOrder order, boolean varcharIsNull) {
+        ByteBuffer buf = ByteBuffer.allocate(64).order(order);
+        buf.put((byte) (varcharIsNull ? 0x40 : 0x00));
+        buf.putInt(42);
+        byte[] text = varcharIsNull ? new byte[0] : "hello".getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) text.length);
+        buf.put(text);
+        byte[] decimal = new byte[16];
+        // 12345 with scale 2 is 123.45
+        if (order == ByteOrder.LITTLE_ENDIAN) {
+            decimal[0] = (byte) 0x39;
+            decimal[1] = (byte) 0x30;
+        } else {
+            decimal[15] = (byte) 0x39;
+            decimal[14] = (byte) 0x30;
+        }
+        buf.put(decimal);
+        buf.putInt((2024 - 1900) * 10000 + 1 * 100 + 15);
+        buf.put("2024-01-15 10:20:30".getBytes(StandardCharsets.UTF_8));
+        byte[] result = new byte[buf.position()];
+        buf.flip();
+        buf.get(result);
+        return result;
+    }
+
+    @Test
+    public void littleEndian() {
+        DataParcelDecoder decoder = new DataParcelDecoder(TYPES, StandardCharsets.UTF_8, ByteOrder.LITTLE_ENDIAN);
+        Object[] row = decoder.decode(parcel(ByteOrder.LITTLE_ENDIAN, false));
+        assertEquals(42, row[0]);
+        assertEquals("hello", row[1]);
+        assertEquals(new BigDecimal("123.45"), row[2]);
+        assertEquals(Date.valueOf("2024-01-15"), row[3]);
+        assertEquals("2024-01-15 10:20:30", row[4]);
+    }
+
+    @Test
+    public void bigEndian() {
+        DataParcelDecoder decoder = new DataParcelDecoder(TYPES, StandardCharsets.UTF_8, ByteOrder.BIG_ENDIAN);
+        Object[] row = decoder.decode(parcel(ByteOrder.BIG_ENDIAN, false));
+        assertEquals(42, row[0]);
+        assertEquals(new BigDecimal("123.45"), row[2]);
+    }
+
+    @Test
+    public void onlyTheByteOrderOfTheSession() {
+        // The length of the VARCHAR field read in the other byte order overruns the parcel
+        DataParcelDecoder decoder = new DataParcelDecoder(TYPES, StandardCharsets.UTF_8, ByteOrder.LITTLE_ENDIAN);
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(parcel(ByteOrder.BIG_ENDIAN, false)));
+    }
+
+    @Test
+    public void nullIndicator() {
+        DataParcelDecoder decoder = new DataParcelDecoder(TYPES, StandardCharsets.UTF_8, ByteOrder.LITTLE_ENDIAN);
+        Object[] row = decoder.decode(parcel(ByteOrder.LITTLE_ENDIAN, true));
+        assertNull(row[1]);
+        assertEquals(42, row[0]);
+    }
+
+    @Test
+    public void truncatedParcel() {
+        DataParcelDecoder decoder = new DataParcelDecoder(TYPES, StandardCharsets.UTF_8, ByteOrder.LITTLE_ENDIAN);
+        byte[] full = parcel(ByteOrder.LITTLE_ENDIAN, false);
+        byte[] truncated = new byte[full.length - 3];
+        System.arraycopy(full, 0, truncated, 0, truncated.length);
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(truncated));
+    }
+
+    @Test
+    public void sessionCharset() {
+        byte[] text = "Grüße".getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer buf = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) 0);
+        buf.putShort((short) text.length);
+        buf.put(text);
+        byte[] parcel = new byte[buf.position()];
+        buf.flip();
+        buf.get(parcel);
+        DataParcelDecoder decoder = new DataParcelDecoder(new String[]{"VARCHAR(10)"},
+                DataParcelDecoder.forSessionCharset("ASCII"), ByteOrder.LITTLE_ENDIAN);
+        assertEquals("Grüße", decoder.decode(parcel)[0]);
+        assertEquals(StandardCharsets.UTF_8, DataParcelDecoder.forSessionCharset("UTF8 "));
+        assertEquals(StandardCharsets.UTF_16, DataParcelDecoder.forSessionCharset("UTF16"));
+    }
+
+    @Test
+    public void unsupportedTypesRejectRowsOnly() {
+        // The decoder is still built, so the rows are reported one by one
+        DataParcelDecoder decoder = new DataParcelDecoder(new String[]{"INTEGER", "CLOB(2M)"}, StandardCharsets.UTF_8,
+                ByteOrder.LITTLE_ENDIAN);
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(new byte[]{0, 1, 0, 0, 0}));
+    }
+}
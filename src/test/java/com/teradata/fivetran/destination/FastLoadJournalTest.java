@@ -0,0 +1,90 @@
+package com.teradata.fivetran.destination;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.teradata.fivetran.destination.writers.util.FastLoadJournal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FastLoadJournalTest extends IntegrationTestBase {
+
+    private static final List<String> HEADER = Arrays.asList("id", "a");
+    private static final String SCHEMA = "\"id\" INTEGER, \"a\" VARCHAR(256)";
+    private static final String PARAMS = "params";
+
+    // Progress of one session: alternating file names and acknowledged rows
+    private static Map<String, Long> rows(Object... fileAndRows) {
+        Map<String, Long> rows = new HashMap<>();
+        for (int i = 0; i < fileAndRows.length; i += 2) {
+            rows.put((String) fileAndRows[i], (Long) fileAndRows[i + 1]);
+        }
+        return rows;
+    }
+
+    @Test
+    public void resumesOnlyTheSameBatchOfTheSameTable() throws Exception {
+        try (Connection conn = TeradataJDBCUtil.createConnection(conf)) {
+            // No journal table yet
+            assertNull(FastLoadJournal.load(conn, database, "t1"));
+
+            FastLoadJournal journal = FastLoadJournal.start(conn, database, "t1", "t1_stage", "t1_err1", "t1_err2",
+                    Arrays.asList("a.csv", "b.csv"), HEADER, SCHEMA, PARAMS);
+            try {
+                FastLoadJournal loaded = FastLoadJournal.load(conn, database, "t1");
+                assertNotNull(loaded);
+                assertEquals("t1_stage", loaded.getStagingTable());
+                // The files are split between the sessions in any order
+                assertTrue(loaded.matches(Arrays.asList("b.csv", "a.csv"), HEADER, SCHEMA, PARAMS));
+                assertFalse(loaded.matches(Arrays.asList("a.csv", "c.csv"), HEADER, SCHEMA, PARAMS));
+                assertFalse(loaded.matches(Collections.singletonList("a.csv"), HEADER, SCHEMA, PARAMS));
+                assertFalse(loaded.matches(Arrays.asList("a.csv", "b.csv", "c.csv"), HEADER, SCHEMA, PARAMS));
+                // The same files with another layout
+                assertFalse(loaded.matches(Arrays.asList("a.csv", "b.csv"), Arrays.asList("a", "id"), SCHEMA, PARAMS));
+                assertFalse(loaded.matches(Arrays.asList("a.csv", "b.csv"), HEADER, "\"id\" BIGINT, \"a\" VARCHAR(256)", PARAMS));
+                assertFalse(loaded.matches(Arrays.asList("a.csv", "b.csv"), HEADER, SCHEMA, "other params"));
+
+                assertNull(FastLoadJournal.load(conn, database, "t2"));
+            } finally {
+                journal.discard();
+            }
+            assertNull(FastLoadJournal.load(conn, database, "t1"));
+        }
+    }
+
+    @Test
+    public void skipsTheRowsAcknowledgedAtTheLastCheckpoint() throws Exception {
+        try (Connection conn = TeradataJDBCUtil.createConnection(conf)) {
+            FastLoadJournal journal = FastLoadJournal.start(conn, database, "t3", "t3_stage", "t3_err1", "t3_err2",
+                    Arrays.asList("a.csv", "b.csv", "c.csv", "d.csv"), HEADER, SCHEMA, PARAMS);
+            try {
+                Map<Integer, Map<String, Long>> progress = new HashMap<>();
+                progress.put(1, rows("a.csv", 1000L));
+                progress.put(2, rows("b.csv", 500L));
+                journal.recordCheckpoint(progress, Collections.emptySet());
+
+                // Session 1 finished a.csv and moved on to c.csv; a batch of session 2 failed, so its
+                // position stays at the one of the last batch it sent
+                progress.put(1, rows("a.csv", 1200L, "c.csv", 300L));
+                progress.put(2, rows("b.csv", 500L));
+                journal.recordCheckpoint(progress, Collections.singleton("a.csv"));
+
+                FastLoadJournal loaded = FastLoadJournal.load(conn, database, "t3");
+                assertEquals(2, loaded.getCheckpoints());
+                assertTrue(loaded.isCompleted("a.csv"));
+                assertFalse(loaded.isCompleted("b.csv"));
+                assertEquals(500, loaded.acknowledgedRows("b.csv"));
+                assertEquals(300, loaded.acknowledgedRows("c.csv"));
+                assertEquals(0, loaded.acknowledgedRows("d.csv"));
+            } finally {
+                journal.discard();
+            }
+        }
+    }
+}
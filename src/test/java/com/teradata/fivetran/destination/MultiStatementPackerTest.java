@@ -0,0 +1,88 @@
+package com.teradata.fivetran.destination;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.teradata.fivetran.destination.writers.util.MultiStatementPacker;
+import com.teradata.fivetran.destination.writers.util.PreparedStatementCache;
+
+public class MultiStatementPackerTest {
+
+    // A connection whose statements record the calls that send them
+    private static Connection recorder(List<String> calls) {
+        return (Connection) Proxy.newProxyInstance(MultiStatementPackerTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("prepareStatement")) {
+                        return null;
+                    }
+                    String sql = (String) args[0];
+                    calls.add("prepare " + sql);
+                    return Proxy.newProxyInstance(MultiStatementPackerTest.class.getClassLoader(),
+                            new Class<?>[]{PreparedStatement.class}, (stmt, m, a) -> {
+                                switch (m.getName()) {
+                                    case "setInt":
+                                        return null;
+                                    case "addBatch":
+                                    case "execute":
+                                    case "executeBatch":
+                                        calls.add(m.getName() + " " + sql);
+                                        return m.getName().equals("execute") ? (Object) false : new int[0];
+                                    case "getMoreResults":
+                                        return false;
+                                    case "getUpdateCount":
+                                        return -1;
+                                    default:
+                                        return null;
+                                }
+                            });
+                });
+    }
+
+    private static void add(MultiStatementPacker packer, String sql, int value) throws Exception {
+        packer.add(sql, 1, (stmt, firstIndex) -> stmt.setInt(firstIndex, value), value);
+    }
+
+    @Test
+    public void rowsOfTheSameShapeAreSentAsOneBatch() throws Exception {
+        List<String> calls = new ArrayList<>();
+        try (PreparedStatementCache cache = new PreparedStatementCache(recorder(calls), 4)) {
+            MultiStatementPacker packer = new MultiStatementPacker(cache, "db", "t", 16, 3);
+            String update = "UPDATE t SET a = ?";
+            for (int i = 0; i < 4; i++) {
+                add(packer, update, i);
+            }
+            packer.flush();
+            // Three rows fill a batch, the fourth one is sent on its own by the same statement
+            assertEquals(Arrays.asList("prepare " + update,
+                    "addBatch " + update, "addBatch " + update, "addBatch " + update, "executeBatch " + update,
+                    "execute " + update), calls);
+
+            calls.clear();
+            add(packer, update, 5);
+            add(packer, update, 6);
+            packer.flush();
+            assertEquals(Arrays.asList("addBatch " + update, "addBatch " + update, "executeBatch " + update), calls);
+        }
+    }
+
+    @Test
+    public void rowsOfDifferentShapesAreSentAsOneRequest() throws Exception {
+        List<String> calls = new ArrayList<>();
+        try (PreparedStatementCache cache = new PreparedStatementCache(recorder(calls), 4)) {
+            MultiStatementPacker packer = new MultiStatementPacker(cache, "db", "t", 16, 100);
+            add(packer, "UPDATE t SET a = ?", 1);
+            add(packer, "UPDATE t SET b = ?", 2);
+            packer.flush();
+            assertEquals(Arrays.asList("prepare UPDATE t SET a = ?;UPDATE t SET b = ?",
+                    "execute UPDATE t SET a = ?;UPDATE t SET b = ?"), calls);
+        }
+    }
+}
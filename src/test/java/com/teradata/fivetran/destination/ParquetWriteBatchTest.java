@@ -0,0 +1,189 @@
+package com.teradata.fivetran.destination;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.io.LocalOutputFile;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+import org.junit.jupiter.api.Test;
+
+import fivetran_sdk.v2.BatchFileFormat;
+import fivetran_sdk.v2.CapabilitiesRequest;
+import fivetran_sdk.v2.CapabilitiesResponse;
+import fivetran_sdk.v2.FileParams;
+import fivetran_sdk.v2.Table;
+import fivetran_sdk.v2.WriteBatchRequest;
+import fivetran_sdk.v2.WriteBatchResponse;
+import fivetran_sdk.v2.WriteHistoryBatchRequest;
+import io.grpc.stub.StreamObserver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writes Parquet batch files through the service, the way Fivetran sends them with
+ * --batch-file-format parquet.
+ */
+public class ParquetWriteBatchTest extends IntegrationTestBase {
+
+    private static final FileParams PARAMS = FileParams.newBuilder().setNullString("NULL")
+            .setUnmodifiedString("unm").build();
+
+    // Collects the responses of a call
+    private static class Responses<T> implements StreamObserver<T> {
+        final List<T> values = new ArrayList<>();
+        boolean completed = false;
+
+        @Override
+        public void onNext(T value) {
+            values.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            fail(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+
+    // Writes a Parquet file with the given schema; each row holds the values of the schema columns
+    private static String parquet(String schema, Object[]... rows) throws Exception {
+        MessageType type = MessageTypeParser.parseMessageType(schema);
+        Path file = Files.createTempFile("batch", ".parquet");
+        file.toFile().deleteOnExit();
+        Files.delete(file);
+        try (ParquetWriter<Group> writer = ExampleParquetWriter.builder(new LocalOutputFile(file))
+                .withConf(new PlainParquetConfiguration()).withType(type).build()) {
+            SimpleGroupFactory groups = new SimpleGroupFactory(type);
+            for (Object[] row : rows) {
+                Group group = groups.newGroup();
+                for (int i = 0; i < row.length; i++) {
+                    String name = type.getFieldName(i);
+                    if (row[i] instanceof Integer) {
+                        group.append(name, (Integer) row[i]);
+                    } else if (row[i] instanceof Long) {
+                        group.append(name, (Long) row[i]);
+                    } else if (row[i] != null) {
+                        group.append(name, (String) row[i]);
+                    }
+                }
+                writer.write(group);
+            }
+        }
+        return file.toString();
+    }
+
+    @Test
+    public void capabilitiesRequestCsvByDefault() {
+        Responses<CapabilitiesResponse> csv = new Responses<>();
+        new TeradataDestinationServiceImpl().capabilities(CapabilitiesRequest.getDefaultInstance(), csv);
+        assertEquals(BatchFileFormat.CSV, csv.values.get(0).getBatchFileFormat());
+
+        Responses<CapabilitiesResponse> parquet = new Responses<>();
+        new TeradataDestinationServiceImpl(new TableWriteScheduler(1), BatchFileFormat.PARQUET)
+                .capabilities(CapabilitiesRequest.getDefaultInstance(), parquet);
+        assertEquals(BatchFileFormat.PARQUET, parquet.values.get(0).getBatchFileFormat());
+    }
+
+    // Test for a batch with replace, update and delete files in Parquet
+    @Test
+    public void replaceUpdateDelete() throws Exception {
+        String tableName = IntegrationTestBase.schema + "_" + "parquetReplaceUpdateDelete";
+        Table t;
+        try (Connection conn = TeradataJDBCUtil.createConnection(conf);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) +
+                    "(id INT PRIMARY KEY NOT NULL, a INT, b VARCHAR(10))");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + " VALUES(1, 1, 'one')");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + " VALUES(2, 2, 'two')");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + " VALUES(3, 3, 'three')");
+            t = TeradataJDBCUtil.getTable(conf, database, tableName, tableName, testWarningHandle);
+        }
+
+        // Update and delete files carry the unmodified marker, so their columns are strings
+        WriteBatchRequest request = WriteBatchRequest.newBuilder()
+                .putAllConfiguration(confMap)
+                .setSchemaName(IntegrationTestBase.schema)
+                .setTable(t.toBuilder().setName("parquetReplaceUpdateDelete"))
+                .setFileParams(PARAMS)
+                .addReplaceFiles(parquet("message batch { required int32 id; optional int32 a; optional binary b (STRING); }",
+                        new Object[]{1, 10, "ten"}, new Object[]{4, 4, "four"}))
+                .addUpdateFiles(parquet("message batch { required int32 id; optional binary a (STRING); optional binary b (STRING); }",
+                        new Object[]{2, "unm", "twenty"}))
+                .addDeleteFiles(parquet("message batch { required int32 id; optional binary a (STRING); optional binary b (STRING); }",
+                        new Object[]{3, "unm", "unm"}))
+                .build();
+        Responses<WriteBatchResponse> responses = new Responses<>();
+        new TeradataDestinationServiceImpl().writeBatch(request, responses);
+        assertTrue(responses.completed);
+        assertTrue(responses.values.get(responses.values.size() - 1).getSuccess(), responses.values.toString());
+
+        checkResult("SELECT * FROM " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + " ORDER BY id",
+                Arrays.asList(
+                        Arrays.asList("1", "10", "ten"),
+                        Arrays.asList("2", "2", "twenty"),
+                        Arrays.asList("4", "4", "four")));
+    }
+
+    // Test for a history batch with earliest start and replace files in Parquet
+    @Test
+    public void history() throws Exception {
+        String tableName = IntegrationTestBase.schema + "_" + "parquetHistory";
+        Table t;
+        try (Connection conn = TeradataJDBCUtil.createConnection(conf);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + "(" +
+                    "id INT NOT NULL, " +
+                    "data VARCHAR(10), " +
+                    "_fivetran_active BYTEINT, " +
+                    "_fivetran_start TIMESTAMP(6) NOT NULL," +
+                    "_fivetran_end TIMESTAMP(6)," +
+                    "PRIMARY KEY(id, _fivetran_start))");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + " VALUES(1, 'a', 1, '2005-05-24 20:57:00.0', '9999-12-31 23:59:59.999999')");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + " VALUES(2, 'b', 1, '2005-05-24 20:57:00.0', '9999-12-31 23:59:59.999999')");
+            t = TeradataJDBCUtil.getTable(conf, database, tableName, tableName, testWarningHandle);
+        }
+
+        // 2005-05-26T20:57:00Z and 9999-12-31T23:59:59.999999Z in microseconds
+        long start = 1117141020000000L;
+        long end = 253402300799999999L;
+        String timestamp = "(TIMESTAMP(MICROS,true))";
+        WriteHistoryBatchRequest request = WriteHistoryBatchRequest.newBuilder()
+                .putAllConfiguration(confMap)
+                .setSchemaName(IntegrationTestBase.schema)
+                .setTable(t.toBuilder().setName("parquetHistory"))
+                .setFileParams(PARAMS)
+                .addEarliestStartFiles(parquet("message batch { required int32 id; required int64 _fivetran_start " + timestamp + "; }",
+                        new Object[]{2, start}))
+                .addReplaceFiles(parquet("message batch { required int32 id; optional binary data (STRING); "
+                                + "optional int32 _fivetran_active; required int64 _fivetran_start " + timestamp + "; "
+                                + "optional int64 _fivetran_end " + timestamp + "; }",
+                        new Object[]{2, "c", 1, start, end}))
+                .build();
+        Responses<WriteBatchResponse> responses = new Responses<>();
+        new TeradataDestinationServiceImpl().writeHistoryBatch(request, responses);
+        assertTrue(responses.completed);
+        assertTrue(responses.values.get(responses.values.size() - 1).getSuccess(), responses.values.toString());
+
+        checkResult("SELECT id, data, _fivetran_active FROM " + TeradataJDBCUtil.escapeTable(conf.database(), tableName)
+                        + " ORDER BY id, _fivetran_start",
+                Arrays.asList(
+                        Arrays.asList("1", "a", "1"),
+                        Arrays.asList("2", "b", "0"),
+                        Arrays.asList("2", "c", "1")));
+    }
+}
@@ -0,0 +1,60 @@
+package com.teradata.fivetran.destination;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.teradata.fivetran.destination.writers.util.PreparedStatementCache;
+
+public class PreparedStatementCacheTest {
+
+    // A connection whose statements record when they are prepared and closed
+    private static Connection recorder(List<String> calls) {
+        return (Connection) Proxy.newProxyInstance(PreparedStatementCacheTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("prepareStatement")) {
+                        return null;
+                    }
+                    String sql = (String) args[0];
+                    calls.add("prepare " + sql);
+                    return Proxy.newProxyInstance(PreparedStatementCacheTest.class.getClassLoader(),
+                            new Class<?>[]{PreparedStatement.class}, (stmt, m, a) -> {
+                                if (m.getName().equals("close")) {
+                                    calls.add("close " + sql);
+                                }
+                                return null;
+                            });
+                });
+    }
+
+    @Test
+    public void evictsAndClosesTheLeastRecentlyUsedStatement() throws Exception {
+        List<String> calls = new ArrayList<>();
+        PreparedStatementCache cache = new PreparedStatementCache(recorder(calls), 2);
+        PreparedStatement a = cache.get("a");
+        cache.get("b");
+        // a is used again, so b is now the least recently used one
+        assertSame(a, cache.get("a"));
+        cache.get("c");
+        assertEquals(Arrays.asList("prepare a", "prepare b", "prepare c", "close b"), calls);
+
+        calls.clear();
+        assertSame(a, cache.get("a"));
+        PreparedStatement b = cache.get("b");
+        assertEquals(Arrays.asList("prepare b", "close c"), calls);
+
+        calls.clear();
+        cache.close();
+        assertEquals(2, calls.size());
+        assertNotSame(a, b);
+    }
+}
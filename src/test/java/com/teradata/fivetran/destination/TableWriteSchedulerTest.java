@@ -0,0 +1,87 @@
+package com.teradata.fivetran.destination;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class TableWriteSchedulerTest {
+
+    // Waits until the scheduler counts the given number of calls on a table
+    private static void awaitDepth(TableWriteScheduler scheduler, String table, int depth) throws InterruptedException {
+        for (int i = 0; i < 1000 && scheduler.getQueueDepth("db", table) != depth; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(depth, scheduler.getQueueDepth("db", table));
+    }
+
+    @Test
+    public void callsOnATableRunInArrivalOrder() throws Exception {
+        TableWriteScheduler scheduler = new TableWriteScheduler(4);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+            TableWriteScheduler.Permit first = scheduler.acquire("WriteBatch", "db", "t");
+            CountDownLatch done = new CountDownLatch(3);
+            for (int i = 1; i <= 3; i++) {
+                int call = i;
+                pool.execute(() -> {
+                    try (TableWriteScheduler.Permit permit = scheduler.acquire("WriteBatch", "db", "T")) {
+                        order.add(call);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                });
+                // Table names differ in case only, the calls queue on the same table
+                awaitDepth(scheduler, "t", call + 1);
+            }
+
+            // Another table does not wait
+            try (TableWriteScheduler.Permit other = scheduler.acquire("Truncate", "db", "u")) {
+                assertEquals(1, scheduler.getQueueDepth("db", "u"));
+            }
+
+            first.close();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(1, 2, 3), order);
+            assertEquals(0, scheduler.getQueueDepth("db", "t"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void interruptedCallsLeaveTheQueue() throws Exception {
+        TableWriteScheduler scheduler = new TableWriteScheduler(1);
+        TableWriteScheduler.Permit first = scheduler.acquire("WriteBatch", "db", "t");
+        Thread waiting = new Thread(() -> {
+            try {
+                scheduler.acquire("AlterTable", "db", "t").close();
+            } catch (InterruptedException e) {
+                // expected
+            }
+        });
+        waiting.start();
+        awaitDepth(scheduler, "t", 2);
+        waiting.interrupt();
+        waiting.join(10000);
+        awaitDepth(scheduler, "t", 1);
+
+        first.close();
+        // The ticket of the interrupted call is skipped
+        try (TableWriteScheduler.Permit next = scheduler.acquire("Truncate", "db", "t")) {
+            assertEquals(1, scheduler.getQueueDepth("db", "t"));
+        }
+        assertEquals(0, scheduler.getQueueDepth("db", "t"));
+    }
+}
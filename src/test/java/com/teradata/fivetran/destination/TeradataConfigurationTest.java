@@ -21,5 +21,6 @@ public class TeradataConfigurationTest extends IntegrationTestBase {
         assertEquals(database, conf.database());
         assertEquals(password, conf.password());
         assertEquals(10000, conf.batchSize());
+        assertEquals(16L * 1024 * 1024, conf.batchMaxBytes());
     }
 }
\ No newline at end of file
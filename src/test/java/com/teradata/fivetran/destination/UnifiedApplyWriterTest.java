@@ -0,0 +1,129 @@
+package com.teradata.fivetran.destination;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import com.teradata.fivetran.destination.writers.UnifiedApplyWriter;
+import com.teradata.fivetran.destination.writers.util.ColumnMetadata;
+import org.junit.jupiter.api.Test;
+
+import fivetran_sdk.v2.FileParams;
+import fivetran_sdk.v2.Table;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class UnifiedApplyWriterTest extends IntegrationTestBase {
+
+    private static String file(String content) throws Exception {
+        Path path = Files.createTempFile("unified_apply", ".csv");
+        path.toFile().deleteOnExit();
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path.toString();
+    }
+
+    // Test for staging replace, update and delete files and applying them in one pass
+    @Test
+    public void replaceUpdateDelete() throws Exception {
+        String tableName = IntegrationTestBase.schema + "_" + "unifiedReplaceUpdateDelete";
+        try (Connection conn = TeradataJDBCUtil.createConnection(conf);
+             Statement stmt = conn.createStatement()) {
+            // Create a table and insert data
+            stmt.execute("CREATE TABLE " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) +
+                    "(id INT PRIMARY KEY NOT NULL, a INT, b VARCHAR(10), d DATE)");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + " VALUES(1, 1, 'one', DATE '2024-01-01')");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + " VALUES(2, 2, 'two', DATE '2024-01-02')");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + " VALUES(3, 3, 'three', DATE '2024-01-03')");
+
+            Table t = TeradataJDBCUtil.getTable(conf, database, tableName, tableName, testWarningHandle);
+            FileParams params = FileParams.newBuilder().setNullString("NULL")
+                    .setUnmodifiedString("unm").build();
+
+            UnifiedApplyWriter w = new UnifiedApplyWriter(conn, database, t.getName(), t.getColumnsList(),
+                    params, null, 123, testWarningHandle);
+            try {
+                // The later replace row of a key wins
+                w.stage(UnifiedApplyWriter.OP_REPLACE, Arrays.asList(
+                        file("id,a,b,d\n1,10,ten,2024-02-01\n4,4,four,2024-01-04\n"),
+                        file("id,a,b,d\n4,40,forty,2024-01-04\n")));
+                w.stage(UnifiedApplyWriter.OP_UPDATE, Collections.singletonList(
+                        file("id,a,b,d\n2,unm,twenty,unm\n2,22,unm,unm\n")));
+                // Unmodified cells of delete rows are neither parsed nor used to widen columns
+                w.stage(UnifiedApplyWriter.OP_DELETE, Collections.singletonList(
+                        file("id,a,b,d\n3,unm,unm,unm\n100,unm,unm,unm\n")));
+                w.apply();
+            } finally {
+                w.dropTempTable();
+            }
+        }
+
+        // Verify the data in the table
+        checkResult("SELECT * FROM " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + " ORDER BY id",
+                Arrays.asList(
+                        Arrays.asList("1", "10", "ten", "2024-02-01"),
+                        Arrays.asList("2", "22", "twenty", "2024-01-02"),
+                        Arrays.asList("4", "40", "forty", "2024-01-04")));
+    }
+
+    // Test for writers staging on two sessions, which must never shorten a column the other one widened
+    @Test
+    public void writersOfOneCallOnlyWidenTheTarget() throws Exception {
+        String tableName = IntegrationTestBase.schema + "_" + "unifiedWidenOnSessions";
+        try (Connection conn = TeradataJDBCUtil.createConnection(conf);
+             Connection session = TeradataJDBCUtil.createConnection(conf);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) +
+                    "(id INT PRIMARY KEY NOT NULL, b VARCHAR(10))");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + " VALUES(1, 'one')");
+
+            Table t = TeradataJDBCUtil.getTable(conf, database, tableName, tableName, testWarningHandle);
+            FileParams params = FileParams.newBuilder().setNullString("NULL")
+                    .setUnmodifiedString("unm").build();
+
+            UnifiedApplyWriter w = new UnifiedApplyWriter(conn, database, t.getName(), t.getColumnsList(),
+                    params, null, 123, testWarningHandle);
+            UnifiedApplyWriter updates = new UnifiedApplyWriter(session, database, t.getName(), t.getColumnsList(),
+                    params, null, 123, testWarningHandle);
+            updates.shareWidener(w);
+            try {
+                // Both writers read the lengths of the target before either of them widens it
+                w.stage(UnifiedApplyWriter.OP_REPLACE, Collections.singletonList(file("id,b
+2,two
+")));
+                updates.stage(UnifiedApplyWriter.OP_UPDATE, Collections.singletonList(
+                        file("id,b
+1," + repeat('u', 30) + "
+")));
+                // Still knows VARCHAR(10), but the target is already longer than this row
+                w.stage(UnifiedApplyWriter.OP_REPLACE, Collections.singletonList(
+                        file("id,b
+3," + repeat('r', 20) + "
+")));
+                w.adopt(updates);
+                w.apply();
+            } finally {
+                w.dropTempTable();
+            }
+
+            Map<String, ColumnMetadata> lengths = TeradataJDBCUtil.getVarcharColumnLengths(conn, database, tableName);
+            assertEquals(30, lengths.get("b").getLength());
+        }
+
+        checkResult("SELECT * FROM " + TeradataJDBCUtil.escapeTable(conf.database(), tableName) + " ORDER BY id",
+                Arrays.asList(
+                        Arrays.asList("1", repeat('u', 30)),
+                        Arrays.asList("2", "two"),
+                        Arrays.asList("3", repeat('r', 20))));
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -3,16 +3,20 @@ package com.teradata.fivetran.destination;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
 
 import com.teradata.fivetran.destination.writers.UpdateWriter;
+import com.teradata.fivetran.destination.writers.VarcharLengthScanner;
+import com.teradata.fivetran.destination.writers.util.VarcharWidener;
 import org.junit.jupiter.api.Test;
 import com.teradata.fivetran.destination.writers.LoadDataWriter;
 
@@ -134,6 +138,113 @@ public class UpdateWriterTest extends IntegrationTestBase {
                         Arrays.asList("7", "10", "9"), Arrays.asList("10", "11", "12")));
     }
 
+    // Test for updates sent in multi-statement requests, including a partial last pack
+    @Test
+    public void packedUpdates() throws Exception {
+        String tableName = IntegrationTestBase.schema + "_" + "packedUpdates";
+        try (Connection conn = TeradataJDBCUtil.createConnection(conf);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE " + TeradataJDBCUtil.escapeTable(conf.database(),tableName) + "(id INT PRIMARY KEY NOT NULL, a INT, b INT)");
+            for (int i = 1; i <= 5; i++) {
+                stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(),tableName) + " VALUES(" + i + ", 0, 0)");
+            }
+
+            Table t = TeradataJDBCUtil.getTable(conf, database, tableName, tableName,  testWarningHandle);
+            FileParams params = FileParams.newBuilder().setNullString("NULL")
+                    .setUnmodifiedString("unm").build();
+
+            UpdateWriter u = new UpdateWriter(conn, database, t.getName(), t.getColumnsList(), params, null, 123);
+            u.setMultiStatementSize(3);
+            u.setHeader(List.of("id", "a", "b"));
+            u.writeRow(List.of("1", "10", "unm"));
+            u.writeRow(List.of("2", "unm", "20"));
+            u.writeRow(List.of("3", "30", "31"));
+            u.writeRow(List.of("1", "11", "unm"));
+            u.writeRow(List.of("4", "NULL", "unm"));
+            // Later updates of the same row must win
+            u.writeRow(List.of("1", "12", "13"));
+            u.writeRow(List.of("5", "50", "unm"));
+            u.commit();
+        }
+
+        checkResult("SELECT * FROM " + TeradataJDBCUtil.escapeTable(conf.database(),tableName) + " ORDER BY id",
+                Arrays.asList(Arrays.asList("1", "12", "13"), Arrays.asList("2", "0", "20"),
+                        Arrays.asList("3", "30", "31"), Arrays.asList("4", null, "0"),
+                        Arrays.asList("5", "50", "0")));
+    }
+
+    // Test for a packed update failing inside the apply transaction: nothing of the pack is replayed
+    // outside of the transaction, and the rollback leaves the target unchanged
+    @Test
+    public void failedPackInApplyTransaction() throws Exception {
+        String tableName = IntegrationTestBase.schema + "_" + "failedPackInApplyTransaction";
+        try (Connection conn = TeradataJDBCUtil.createConnection(conf);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE " + TeradataJDBCUtil.escapeTable(conf.database(),tableName) +
+                    "(id INT PRIMARY KEY NOT NULL, a INT, b INT CHECK (b < 100))");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(),tableName) + " VALUES(1, 1, 1)");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(),tableName) + " VALUES(2, 2, 2)");
+
+            Table t = TeradataJDBCUtil.getTable(conf, database, tableName, tableName,  testWarningHandle);
+            FileParams params = FileParams.newBuilder().setNullString("NULL")
+                    .setUnmodifiedString("unm").build();
+
+            try (ApplyTransaction tx = ApplyTransaction.begin(conn, true)) {
+                UpdateWriter u = new UpdateWriter(conn, database, t.getName(), t.getColumnsList(), params, null, 123);
+                u.setMultiStatementSize(16);
+                u.setHeader(List.of("id", "a", "b"));
+                // Two shapes, so both updates go into one multi-statement request
+                u.writeRow(List.of("1", "10", "unm"));
+                u.writeRow(List.of("2", "unm", "500"));
+                assertThrows(SQLException.class, u::commit);
+            }
+        }
+
+        checkResult("SELECT * FROM " + TeradataJDBCUtil.escapeTable(conf.database(),tableName) + " ORDER BY id",
+                Arrays.asList(Arrays.asList("1", "1", "1"), Arrays.asList("2", "2", "2")));
+    }
+
+    // Test for VARCHAR columns the updates need: they are widened before the apply transaction, and
+    // an update that would widen a column inside of it fails instead of committing the steps before it
+    @Test
+    public void widenedBeforeApplyTransaction() throws Exception {
+        String tableName = IntegrationTestBase.schema + "_" + "widenedBeforeApplyTransaction";
+        try (Connection conn = TeradataJDBCUtil.createConnection(conf);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE " + TeradataJDBCUtil.escapeTable(conf.database(),tableName) +
+                    "(id INT PRIMARY KEY NOT NULL, b VARCHAR(5))");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(),tableName) + " VALUES(1, 'one')");
+            stmt.execute("INSERT INTO " + TeradataJDBCUtil.escapeTable(conf.database(),tableName) + " VALUES(2, 'two')");
+
+            Table t = TeradataJDBCUtil.getTable(conf, database, tableName, tableName,  testWarningHandle);
+            FileParams params = FileParams.newBuilder().setNullString("NULL")
+                    .setUnmodifiedString("unm").build();
+
+            VarcharLengthScanner scanner = new VarcharLengthScanner(conn, database, t.getName(), t.getColumnsList(),
+                    params, null, 123);
+            scanner.setHeader(List.of("id", "b"));
+            scanner.writeRow(List.of("1", "twelve chars"));
+            scanner.widen(new VarcharWidener(database, t.getName()));
+
+            try (ApplyTransaction tx = ApplyTransaction.begin(conn, true)) {
+                UpdateWriter u = new UpdateWriter(conn, database, t.getName(), t.getColumnsList(), params, null, 123);
+                u.setHeader(List.of("id", "b"));
+                u.writeRow(List.of("1", "twelve chars"));
+                u.commit();
+                tx.commit();
+            }
+
+            try (ApplyTransaction tx = ApplyTransaction.begin(conn, true)) {
+                UpdateWriter u = new UpdateWriter(conn, database, t.getName(), t.getColumnsList(), params, null, 123);
+                u.setHeader(List.of("id", "b"));
+                assertThrows(SQLException.class, () -> u.writeRow(List.of("2", "more than twelve chars")));
+            }
+        }
+
+        checkResult("SELECT * FROM " + TeradataJDBCUtil.escapeTable(conf.database(),tableName) + " ORDER BY id",
+                Arrays.asList(Arrays.asList("1", "twelve chars"), Arrays.asList("2", "two")));
+    }
+
     // Test for updating a table with all possible byte values
     @Test
     public void allBytes() throws Exception {
@@ -0,0 +1,94 @@
+package com.teradata.fivetran.destination;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBatchCoalescerTest {
+
+    @Test
+    public void callsWithinTheWindowAreAnsweredWithTheMergedBatch() throws Exception {
+        WriteBatchCoalescer<String, String> coalescer = new WriteBatchCoalescer<>(new TableWriteScheduler(4));
+        WriteBatchCoalescer<String, String>.Group first = coalescer.join("WriteBatch", "db", "t1", "t1", "a", 10, 100);
+        WriteBatchCoalescer<String, String>.Group second = coalescer.join("WriteBatch", "db", "t1", "t1", "b", 10, 100);
+        WriteBatchCoalescer<String, String>.Group other = coalescer.join("WriteBatch", "db", "t2", "t2", "c", 10, 100);
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertTrue(first.ledBy("a"));
+        assertFalse(second.ledBy("b"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<String>> follower = executor.submit(second::await);
+            assertEquals(Arrays.asList("a", "b"), first.close(50));
+            assertFalse(follower.isDone());
+            first.complete(Collections.singletonList("ok"), null);
+            assertEquals(Collections.singletonList("ok"), follower.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // A closed group takes no more calls
+        assertTrue(coalescer.join("WriteBatch", "db", "t1", "t1", "d", 10, 100).ledBy("d"));
+    }
+
+    @Test
+    public void groupClosesOnceItReachesTheSizeThreshold() throws Exception {
+        WriteBatchCoalescer<String, String> coalescer = new WriteBatchCoalescer<>(new TableWriteScheduler(4));
+        WriteBatchCoalescer<String, String>.Group group = coalescer.join("WriteBatch", "db", "t1", "t1", "a", 60, 100);
+        coalescer.join("WriteBatch", "db", "t1", "t1", "b", 60, 100);
+
+        long start = System.currentTimeMillis();
+        assertEquals(Arrays.asList("a", "b"), group.close(60_000));
+        assertTrue(System.currentTimeMillis() - start < 10_000);
+        assertTrue(coalescer.join("WriteBatch", "db", "t1", "t1", "c", 10, 100).ledBy("c"));
+
+        group.complete(Collections.emptyList(), "failed");
+        assertThrows(IllegalStateException.class, group::await);
+    }
+
+    @Test
+    public void callsOnTheTableAfterTheLeaderKeepLaterCallsOutOfTheGroup() throws Exception {
+        TableWriteScheduler scheduler = new TableWriteScheduler(4);
+        WriteBatchCoalescer<String, String> coalescer = new WriteBatchCoalescer<>(scheduler);
+        WriteBatchCoalescer<String, String>.Group group = coalescer.join("WriteBatch", "db", "t1", "t1", "a", 10, 100);
+
+        // A truncate arrives after the leader and before the next batch
+        TableWriteScheduler.Ticket truncate = scheduler.take("Truncate", "db", "t1");
+        WriteBatchCoalescer<String, String>.Group next = coalescer.join("WriteBatch", "db", "t1", "t1", "b", 10, 100);
+        assertNotSame(group, next);
+        assertTrue(next.ledBy("b"));
+        assertEquals(Collections.singletonList("a"), group.close(60_000));
+
+        // The groups and the truncate take their turns in the order the calls arrived
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> second = executor.submit(() -> turn(next.ticket(), "b", order));
+            Future<?> third = executor.submit(() -> turn(truncate, "truncate", order));
+            Thread.sleep(100);
+            turn(group.ticket(), "a", order);
+            second.get(5, TimeUnit.SECONDS);
+            third.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(Arrays.asList("a", "truncate", "b"), order);
+    }
+
+    private static Void turn(TableWriteScheduler.Ticket ticket, String call, List<String> order) throws InterruptedException {
+        try (TableWriteScheduler.Permit permit = ticket.await()) {
+            order.add(call);
+        }
+        return null;
+    }
+}